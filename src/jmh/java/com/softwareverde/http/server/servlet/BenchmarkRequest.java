@@ -0,0 +1,111 @@
+package com.softwareverde.http.server.servlet;
+
+import com.softwareverde.http.HttpMethod;
+import com.softwareverde.http.querystring.GetParameters;
+import com.softwareverde.http.querystring.PostParameters;
+import com.softwareverde.http.server.servlet.request.Headers;
+import com.softwareverde.http.server.servlet.request.Request;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An in-memory Request, so that servlets may be benchmarked without a socket.
+ */
+public class BenchmarkRequest extends Request {
+    protected static class BenchmarkHeaders extends Headers {
+        protected final Map<String, List<String>> _headers = new HashMap<>();
+
+        @Override
+        public Boolean containsHeader(final String key) {
+            return _headers.containsKey(key);
+        }
+
+        @Override
+        public List<String> getHeader(final String key) {
+            final List<String> values = _headers.get(key);
+            return ((values != null) ? values : Collections.<String>emptyList());
+        }
+    }
+
+    protected static class BenchmarkGetParameters extends GetParameters {
+        protected final Map<String, String> _parameters = new HashMap<>();
+
+        @Override
+        public boolean containsKey(final String key) {
+            return _parameters.containsKey(key);
+        }
+
+        @Override
+        public String get(final String key) {
+            return _parameters.get(key);
+        }
+    }
+
+    protected static class BenchmarkPostParameters extends PostParameters {
+        protected final Map<String, String> _parameters = new HashMap<>();
+
+        @Override
+        public boolean containsKey(final String key) {
+            return _parameters.containsKey(key);
+        }
+
+        @Override
+        public String get(final String key) {
+            return _parameters.get(key);
+        }
+    }
+
+    protected final HttpMethod _method;
+    protected final String _filePath;
+    protected final BenchmarkHeaders _headers = new BenchmarkHeaders();
+    protected final BenchmarkGetParameters _getParameters = new BenchmarkGetParameters();
+    protected final BenchmarkPostParameters _postParameters = new BenchmarkPostParameters();
+
+    public BenchmarkRequest(final HttpMethod method, final String filePath) {
+        _method = method;
+        _filePath = filePath;
+    }
+
+    public BenchmarkRequest setHeader(final String key, final String value) {
+        _headers._headers.put(key, Collections.singletonList(value));
+        return this;
+    }
+
+    public BenchmarkRequest setGetParameter(final String key, final String value) {
+        _getParameters._parameters.put(key, value);
+        return this;
+    }
+
+    public BenchmarkRequest setPostParameter(final String key, final String value) {
+        _postParameters._parameters.put(key, value);
+        return this;
+    }
+
+    @Override
+    public HttpMethod getMethod() {
+        return _method;
+    }
+
+    @Override
+    public String getFilePath() {
+        return _filePath;
+    }
+
+    @Override
+    public Headers getHeaders() {
+        return _headers;
+    }
+
+    @Override
+    public GetParameters getGetParameters() {
+        return _getParameters;
+    }
+
+    @Override
+    public PostParameters getPostParameters() {
+        return _postParameters;
+    }
+}
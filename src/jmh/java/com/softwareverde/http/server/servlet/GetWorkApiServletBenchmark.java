@@ -0,0 +1,54 @@
+package com.softwareverde.http.server.servlet;
+
+import com.softwareverde.constable.bytearray.ByteArray;
+import com.softwareverde.http.HttpMethod;
+import com.softwareverde.http.server.servlet.response.Response;
+import com.softwareverde.monetize.BenchmarkStratumServer;
+import com.softwareverde.monetize.difficulty.VariableDifficultyEngine;
+import com.softwareverde.monetize.share.JobRegistry;
+import com.softwareverde.monetize.subscription.SubscriptionRegistry;
+import com.softwareverde.monetize.work.WorkResponseCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a get-work poll end-to-end, from the request through the rendered response, for a job that is already
+ *  cached (the common case: jobs change every few seconds while miners poll continuously).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GetWorkApiServletBenchmark {
+    protected GetWorkApiServlet _getWorkApiServlet;
+    protected BenchmarkRequest _request;
+
+    @Setup
+    public void setup() {
+        final SubscriptionRegistry subscriptionRegistry = new SubscriptionRegistry(new SubscriptionRegistry.RemovalCallback() {
+            @Override
+            public void onSubscriptionRemoved(final Long minerId) { }
+        });
+        subscriptionRegistry.addSubscription(ByteArray.fromHexString(BenchmarkStratumServer.SUBSCRIPTION_ID_HEX), 1L, ByteArray.fromHexString(BenchmarkStratumServer.EXTRA_NONCE_1_HEX), BenchmarkStratumServer.EXTRA_NONCE_2_BYTE_COUNT, "127.0.0.1");
+
+        _getWorkApiServlet = new GetWorkApiServlet(new BenchmarkStratumServer(), subscriptionRegistry, new JobRegistry(), new WorkResponseCache(), new VariableDifficultyEngine());
+        _request = new BenchmarkRequest(HttpMethod.GET, "/api/v1/monetize/get-work").setGetParameter("subscriptionId", BenchmarkStratumServer.SUBSCRIPTION_ID_HEX);
+    }
+
+    @Benchmark
+    public Response getWork() {
+        return _getWorkApiServlet.onRequest(_request);
+    }
+}
@@ -0,0 +1,93 @@
+package com.softwareverde.http.server.servlet;
+
+import com.softwareverde.http.HttpMethod;
+import com.softwareverde.json.Json;
+import com.softwareverde.monetize.BenchmarkStratumServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MonetizedServletBenchmark {
+    protected static final String WORKER_SUBMIT_MESSAGE = "[\"" + BenchmarkStratumServer.SUBSCRIPTION_ID_HEX + "\",\"" + BenchmarkStratumServer.JOB_ID_HEX + "\",\"00A1B2C3D4E5F607\",\"6123ABCD\",\"DEADBEEF\"]";
+
+    @Param({ "16", "1024", "16384" })
+    public int freeEndpointCount;
+
+    protected MonetizedServlet _monetizedServlet;
+
+    protected BenchmarkRequest _exactFreeRequest;
+    protected BenchmarkRequest _prefixFreeRequest;
+    protected BenchmarkRequest _paidRequest;
+
+    protected BenchmarkRequest _headerShareRequest;
+    protected BenchmarkRequest _getParameterShareRequest;
+    protected BenchmarkRequest _postParameterShareRequest;
+
+    @Setup
+    public void setup() throws Exception {
+        final File directory = Files.createTempDirectory("monetize-benchmark").toFile();
+        directory.deleteOnExit();
+
+        _monetizedServlet = new MonetizedServlet(directory, null);
+        for (int i = 0; i < freeEndpointCount; ++i) {
+            final boolean isStrictMatch = ((i % 2) == 0);
+            _monetizedServlet.addFreeEndpoint(("/free/" + i + (isStrictMatch ? "/index.html" : "/")), isStrictMatch);
+        }
+
+        _exactFreeRequest = new BenchmarkRequest(HttpMethod.GET, "/free/" + ((freeEndpointCount / 2) & ~1) + "/index.html");
+        _prefixFreeRequest = new BenchmarkRequest(HttpMethod.GET, "/free/" + (((freeEndpointCount / 2) & ~1) + 1) + "/images/logo.png");
+        _paidRequest = new BenchmarkRequest(HttpMethod.GET, "/paid/articles/2021/benchmark.html");
+
+        _headerShareRequest = new BenchmarkRequest(HttpMethod.GET, "/paid/article.html").setHeader(MonetizedServlet.HEADER_NAME, WORKER_SUBMIT_MESSAGE);
+        _getParameterShareRequest = new BenchmarkRequest(HttpMethod.GET, "/paid/article.html").setGetParameter(MonetizedServlet.HEADER_NAME, WORKER_SUBMIT_MESSAGE);
+        _postParameterShareRequest = new BenchmarkRequest(HttpMethod.POST, "/paid/article.html").setPostParameter(MonetizedServlet.HEADER_NAME, WORKER_SUBMIT_MESSAGE);
+    }
+
+    @Benchmark
+    public Boolean isFreeRequestExactMatch() {
+        return _monetizedServlet._isFreeRequest(_exactFreeRequest);
+    }
+
+    @Benchmark
+    public Boolean isFreeRequestPrefixMatch() {
+        return _monetizedServlet._isFreeRequest(_prefixFreeRequest);
+    }
+
+    @Benchmark
+    public Boolean isFreeRequestMiss() {
+        return _monetizedServlet._isFreeRequest(_paidRequest);
+    }
+
+    @Benchmark
+    public Json getWorkerSubmitMessageFromHeader() {
+        return _monetizedServlet._getWorkerSubmitMessage(_headerShareRequest);
+    }
+
+    @Benchmark
+    public Json getWorkerSubmitMessageFromGetParameter() {
+        return _monetizedServlet._getWorkerSubmitMessage(_getParameterShareRequest);
+    }
+
+    @Benchmark
+    public Json getWorkerSubmitMessageFromPostParameter() {
+        return _monetizedServlet._getWorkerSubmitMessage(_postParameterShareRequest);
+    }
+}
@@ -0,0 +1,75 @@
+package com.softwareverde.monetize;
+
+import com.softwareverde.bitcoin.server.module.stratum.BitcoinCoreStratumServer;
+import com.softwareverde.bitcoin.server.stratum.message.server.MinerNotifyMessage;
+import com.softwareverde.cryptography.hash.sha256.Sha256Hash;
+import com.softwareverde.json.Json;
+
+/**
+ * A stratum server that serves a single fixed job and accepts every share, so that benchmarks measure only the
+ *  monetization layer.
+ */
+public class BenchmarkStratumServer extends BitcoinCoreStratumServer {
+    public static final Long JOB_ID = 42L;
+    public static final String JOB_ID_HEX = "2A";
+    public static final String SUBSCRIPTION_ID_HEX = "0102030405060708";
+    public static final String EXTRA_NONCE_1_HEX = "ABCDEF01";
+    public static final Integer EXTRA_NONCE_2_BYTE_COUNT = 8;
+    public static final String PREVIOUS_BLOCK_HASH_HEX = "00000000000000000123456789ABCDEF0123456789ABCDEF0123456789ABCDEF";
+    public static final String MINER_NOTIFY_JSON;
+    static {
+        final StringBuilder merkleBranches = new StringBuilder();
+        for (int i = 0; i < 12; ++i) { // A block of ~4000 transactions...
+            if (i > 0) { merkleBranches.append(','); }
+            merkleBranches.append("\"");
+            for (int j = 0; j < 8; ++j) {
+                merkleBranches.append(String.format("%08X", ((i + 1) * 0x01010101 * (j + 1))));
+            }
+            merkleBranches.append("\"");
+        }
+
+        MINER_NOTIFY_JSON =
+            "{\"id\":null,\"method\":\"mining.notify\",\"params\":[" +
+            "\"" + JOB_ID_HEX + "\"," +
+            "\"" + PREVIOUS_BLOCK_HASH_HEX + "\"," +
+            "\"01000000010000000000000000000000000000000000000000000000000000000000000000FFFFFFFF2003A1B2C3\"," +
+            "\"FFFFFFFF0100F2052A010000001976A914000000000000000000000000000000000000000088AC00000000\"," +
+            "[" + merkleBranches + "]," +
+            "\"20000000\",\"1D00FFFF\",\"6123ABCD\",true]}";
+    }
+
+    public static class BenchmarkMinerNotifyMessage extends MinerNotifyMessage {
+        protected Sha256Hash _previousBlockHash = Sha256Hash.fromHexString(PREVIOUS_BLOCK_HASH_HEX);
+
+        @Override
+        public Sha256Hash getLittleEndianPreviousBlockHash() {
+            return _previousBlockHash;
+        }
+
+        @Override
+        public void setLittleEndianPreviousBlockHash(final Sha256Hash previousBlockHash) {
+            _previousBlockHash = previousBlockHash;
+        }
+
+        @Override
+        public Json toJson() {
+            return Json.parse(MINER_NOTIFY_JSON);
+        }
+    }
+
+    @Override
+    public MinerNotifyMessage getMinerWork(final Long minerId, final Boolean shouldAbandonOldJobs) {
+        return new BenchmarkMinerNotifyMessage();
+    }
+
+    @Override
+    public Boolean submitShare(final Json workerSubmitMessage) {
+        return true;
+    }
+
+    @Override
+    public void invertDifficulty(final Boolean shouldInvertDifficulty) { }
+
+    @Override
+    public void setShareDifficulty(final Long shareDifficulty) { }
+}
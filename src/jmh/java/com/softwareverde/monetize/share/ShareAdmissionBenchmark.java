@@ -0,0 +1,137 @@
+package com.softwareverde.monetize.share;
+
+import com.softwareverde.constable.bytearray.ByteArray;
+import com.softwareverde.json.Json;
+import com.softwareverde.monetize.BenchmarkStratumServer;
+import com.softwareverde.monetize.difficulty.VariableDifficultyEngine;
+import com.softwareverde.monetize.subscription.SubscriptionRegistry;
+import com.softwareverde.monetize.work.WorkResponseCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures share validation throughput.  Shares are issued at the maximum work exponent so that (practically) every
+ *  share is fully hashed and then rejected as INVALID_WORK, which is the most expensive path that does not consume
+ *  replay-cache capacity.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShareAdmissionBenchmark {
+    protected static final int SHARE_COUNT = 65536; // Must be a power of two.
+    protected static final Integer WORK_EXPONENT = 24;
+
+    @State(Scope.Benchmark)
+    public static class Pipeline {
+        public ShareAdmissionPipeline shareAdmissionPipeline;
+        public ShareValidationExecutor shareValidationExecutor;
+        public Json duplicateShare;
+        public Json malformedShare;
+        public final AtomicInteger threadIndex = new AtomicInteger(0);
+
+        @Setup
+        public void setup() {
+            final SubscriptionRegistry subscriptionRegistry = new SubscriptionRegistry(new SubscriptionRegistry.RemovalCallback() {
+                @Override
+                public void onSubscriptionRemoved(final Long minerId) { }
+            });
+            subscriptionRegistry.addSubscription(ByteArray.fromHexString(BenchmarkStratumServer.SUBSCRIPTION_ID_HEX), 1L, ByteArray.fromHexString(BenchmarkStratumServer.EXTRA_NONCE_1_HEX), BenchmarkStratumServer.EXTRA_NONCE_2_BYTE_COUNT, "127.0.0.1");
+
+            final WorkResponseCache workResponseCache = new WorkResponseCache();
+            workResponseCache.cacheJob(BenchmarkStratumServer.JOB_ID, Json.parse(BenchmarkStratumServer.MINER_NOTIFY_JSON));
+
+            final JobRegistry jobRegistry = new JobRegistry();
+            jobRegistry.recordJob(BenchmarkStratumServer.JOB_ID);
+
+            final VariableDifficultyEngine difficultyEngine = new VariableDifficultyEngine(WORK_EXPONENT, WORK_EXPONENT, WORK_EXPONENT, VariableDifficultyEngine.DEFAULT_TARGET_SHARE_INTERVAL_MS, VariableDifficultyEngine.DEFAULT_RETARGET_INTERVAL_MS);
+            difficultyEngine.issueJob(1L, BenchmarkStratumServer.JOB_ID);
+
+            final ShareReplayCache shareReplayCache = new ShareReplayCache();
+            final ShareIdentifierCalculator shareIdentifierCalculator = new ShareIdentifierCalculator(ShareIdentifierCalculator.Mode.BINARY);
+            shareAdmissionPipeline = new ShareAdmissionPipeline(new BenchmarkStratumServer(), shareReplayCache, jobRegistry, shareIdentifierCalculator, subscriptionRegistry, workResponseCache, difficultyEngine);
+            shareValidationExecutor = new ShareValidationExecutor(shareAdmissionPipeline, 0, ShareValidationExecutor.DEFAULT_QUEUE_DEPTH, ShareValidationExecutor.DEFAULT_TIMEOUT_MS, ShareValidationExecutor.DEFAULT_RETRY_AFTER_SECONDS);
+
+            duplicateShare = _createShare(0xFFFFFFFF, 0);
+            shareReplayCache.add(workResponseCache.getJobKey(BenchmarkStratumServer.JOB_ID), shareIdentifierCalculator.calculateFingerprint(BenchmarkStratumServer.JOB_ID_HEX, duplicateShare.getString(2), duplicateShare.getString(3), duplicateShare.getString(4)));
+
+            malformedShare = Json.parse("[\"" + BenchmarkStratumServer.SUBSCRIPTION_ID_HEX + "\",\"" + BenchmarkStratumServer.JOB_ID_HEX + "\",\"ZZ\",\"6123ABCD\",\"DEADBEEF\"]");
+        }
+
+        @TearDown
+        public void tearDown() {
+            shareValidationExecutor.shutdown();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Shares {
+        public final Json[] shares = new Json[SHARE_COUNT];
+        public int index = 0;
+
+        @Setup(Level.Trial)
+        public void setup(final Pipeline pipeline) {
+            final int threadIndex = pipeline.threadIndex.getAndIncrement();
+            for (int i = 0; i < SHARE_COUNT; ++i) {
+                shares[i] = _createShare(threadIndex, i);
+            }
+        }
+
+        public Json next() {
+            final Json share = shares[index];
+            index = ((index + 1) & (SHARE_COUNT - 1));
+            return share;
+        }
+    }
+
+    protected static Json _createShare(final int extraNonce2, final int nonce) {
+        return Json.parse("[\"" + BenchmarkStratumServer.SUBSCRIPTION_ID_HEX + "\",\"" + BenchmarkStratumServer.JOB_ID_HEX + "\",\"" + String.format("%08X%08X", extraNonce2, 0) + "\",\"6123ABCD\",\"" + String.format("%08X", nonce) + "\"]");
+    }
+
+    @Benchmark
+    public ShareAdmissionResult admitShare(final Pipeline pipeline, final Shares shares) {
+        return pipeline.shareAdmissionPipeline.admit(shares.next());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public ShareAdmissionResult admitShareConcurrently(final Pipeline pipeline, final Shares shares) {
+        return pipeline.shareAdmissionPipeline.admit(shares.next());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public ShareAdmissionResult admitShareViaExecutor(final Pipeline pipeline, final Shares shares) {
+        return pipeline.shareValidationExecutor.admit(shares.next());
+    }
+
+    @Benchmark
+    public ShareAdmissionResult admitDuplicateShare(final Pipeline pipeline) {
+        return pipeline.shareAdmissionPipeline.admit(pipeline.duplicateShare);
+    }
+
+    @Benchmark
+    public ShareAdmissionResult admitMalformedShare(final Pipeline pipeline) {
+        return pipeline.shareAdmissionPipeline.admit(pipeline.malformedShare);
+    }
+
+    @Benchmark
+    public Long calculateShareKey(final Pipeline pipeline, final Shares shares) {
+        return pipeline.shareAdmissionPipeline.calculateShareKey(shares.next());
+    }
+}
@@ -0,0 +1,85 @@
+package com.softwareverde.monetize.share;
+
+import com.softwareverde.json.Json;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShareHashCalculatorBenchmark {
+    protected final Long _jobId = 42L;
+    protected final byte[] _extraNonce1 = new byte[]{ 0x01, 0x02, 0x03, 0x04 };
+    protected final String _timestampHex = "6123ABCD";
+    protected final byte[] _target = new byte[32];
+
+    protected final ShareHashCalculator _shareHashCalculator = new ShareHashCalculator();
+    protected Json _notifyParameters;
+    protected int _nonce = 0;
+
+    protected static String _repeat(final String value, final int count) {
+        final StringBuilder stringBuilder = new StringBuilder();
+        for (int i = 0; i < count; ++i) {
+            stringBuilder.append(value);
+        }
+        return stringBuilder.toString();
+    }
+
+    @Setup
+    public void setup() {
+        final Json merkleBranches = new Json(true);
+        for (int i = 0; i < 12; ++i) { // ~4000 transactions...
+            merkleBranches.add(_repeat(String.format("%02X", i), 32));
+        }
+
+        _notifyParameters = new Json(true);
+        _notifyParameters.add("2A");
+        _notifyParameters.add(_repeat("00", 32));
+        _notifyParameters.add(_repeat("01", 120)); // Coinbase head
+        _notifyParameters.add(_repeat("02", 90)); // Coinbase tail
+        _notifyParameters.add(merkleBranches);
+        _notifyParameters.add("20000000");
+        _notifyParameters.add("1D00FFFF");
+        _notifyParameters.add(_timestampHex);
+    }
+
+    /**
+     * A miner submitting another share for the same extraNonce2: only the header's second block is hashed.
+     */
+    @Benchmark
+    public boolean verifySameExtraNonce2() {
+        _nonce += 1;
+        return _shareHashCalculator.isTargetSatisfied(_jobId, _notifyParameters, _extraNonce1, "00000001", _timestampHex, String.format("%08X", _nonce), _target);
+    }
+
+    /**
+     * A share for a new extraNonce2: the coinbase remainder and merkle branches are hashed from the job's midstate.
+     */
+    @Benchmark
+    public boolean verifyNewExtraNonce2() {
+        _nonce += 1;
+        return _shareHashCalculator.isTargetSatisfied(_jobId, _notifyParameters, _extraNonce1, String.format("%08X", _nonce), _timestampHex, "DEADBEEF", _target);
+    }
+
+    /**
+     * The job's parameters are re-parsed for every share.
+     */
+    @Benchmark
+    public boolean verifyUncached() {
+        _nonce += 1;
+        return _shareHashCalculator.isTargetSatisfied(_notifyParameters, _extraNonce1, String.format("%08X", _nonce), _timestampHex, "DEADBEEF", _target);
+    }
+}
@@ -0,0 +1,39 @@
+package com.softwareverde.monetize.share;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShareIdentifierBenchmark {
+    protected final String _taskIdHex = "000000000000002A";
+    protected final String _extraNonce2Hex = "00A1B2C3D4E5F607";
+    protected final String _timestampHex = "6123ABCD";
+    protected final String _nonceHex = "DEADBEEF";
+
+    protected final ShareIdentifierCalculator _binaryCalculator = new ShareIdentifierCalculator(ShareIdentifierCalculator.Mode.BINARY);
+    protected final ShareIdentifierCalculator _legacyCalculator = new ShareIdentifierCalculator(ShareIdentifierCalculator.Mode.LEGACY_JSON);
+
+    @Benchmark
+    public long calculateBinaryFingerprint() {
+        return _binaryCalculator.calculateFingerprint(_taskIdHex, _extraNonce2Hex, _timestampHex, _nonceHex);
+    }
+
+    @Benchmark
+    public long calculateLegacyJsonFingerprint() {
+        return _legacyCalculator.calculateFingerprint(_taskIdHex, _extraNonce2Hex, _timestampHex, _nonceHex);
+    }
+}
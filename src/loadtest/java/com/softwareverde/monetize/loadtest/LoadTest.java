@@ -0,0 +1,181 @@
+package com.softwareverde.monetize.loadtest;
+
+import com.softwareverde.logging.LineNumberAnnotatedLog;
+import com.softwareverde.logging.LogLevel;
+import com.softwareverde.logging.Logger;
+import com.softwareverde.monetize.WebServer;
+import com.softwareverde.monetize.configuration.Configuration;
+import com.softwareverde.util.Util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Runs the server in-process against a LoadTestStratumServer and drives it with simulated browser miners, so that the
+ *  subscribe, get-work, and paid-request flow can be capacity-tested without a node.
+ *  Usage: LoadTest [--configuration <file>] [--clients <count>] [--hashesPerSecond <count>] [--warmupSeconds <seconds>]
+ *   [--durationSeconds <seconds>] [--shareWorkExponent <exponent>] [--jobIntervalMs <ms>] [--port <port>]
+ *  The configuration file (e.g. conf/server.conf) is optional; rate limits, TLS, the work stream, the binary socket,
+ *  the content stream, and the replay snapshot are always disabled, and a generated directory is served.
+ */
+public class LoadTest {
+    protected static final Map<String, String> DEFAULT_OPTIONS = new HashMap<>();
+    static {
+        DEFAULT_OPTIONS.put("configuration", "");
+        DEFAULT_OPTIONS.put("clients", "100");
+        DEFAULT_OPTIONS.put("hashesPerSecond", "2000");
+        DEFAULT_OPTIONS.put("warmupSeconds", "10");
+        DEFAULT_OPTIONS.put("durationSeconds", "60");
+        DEFAULT_OPTIONS.put("shareWorkExponent", "10");
+        DEFAULT_OPTIONS.put("jobIntervalMs", "30000");
+        DEFAULT_OPTIONS.put("port", "18080");
+    }
+
+    protected static final String PAID_PATH = "/paid.html";
+    protected static final Integer PAID_CONTENT_BYTE_COUNT = 16384;
+
+    protected static void _exitFailure(final String errorMessage) {
+        System.err.println(errorMessage);
+        System.exit(1);
+    }
+
+    protected static Map<String, String> _parseOptions(final String[] commandLineArguments) {
+        final HashMap<String, String> options = new HashMap<>(DEFAULT_OPTIONS);
+        for (int i = 0; i < commandLineArguments.length; i += 2) {
+            final String argument = commandLineArguments[i];
+            final String optionName = (argument.startsWith("--") ? argument.substring(2) : null);
+            if ( (optionName == null) || (! DEFAULT_OPTIONS.containsKey(optionName)) || ((i + 1) >= commandLineArguments.length) ) {
+                _exitFailure("Unknown option: " + argument + "  Options: " + DEFAULT_OPTIONS.keySet());
+            }
+            options.put(optionName, commandLineArguments[i + 1]);
+        }
+        return options;
+    }
+
+    /**
+     * Creates the served directory: a free index.html and a paid resource.
+     */
+    protected static File _createRootDirectory() throws IOException {
+        final File rootDirectory = Files.createTempDirectory("monetize-load-test").toFile();
+        rootDirectory.deleteOnExit();
+
+        final File indexFile = new File(rootDirectory, "index.html");
+        Files.write(indexFile.toPath(), "<html><body>Load Test</body></html>".getBytes(StandardCharsets.UTF_8));
+        indexFile.deleteOnExit();
+
+        final byte[] paidContent = new byte[PAID_CONTENT_BYTE_COUNT];
+        Arrays.fill(paidContent, (byte) 'A');
+        final File paidFile = new File(rootDirectory, PAID_PATH.substring(1));
+        Files.write(paidFile.toPath(), paidContent);
+        paidFile.deleteOnExit();
+
+        return rootDirectory;
+    }
+
+    protected static Configuration _createConfiguration(final Map<String, String> options, final File rootDirectory, final int clientCount) throws IOException {
+        final Properties properties = new Properties();
+        final String configurationFilename = options.get("configuration");
+        if (! Util.isBlank(configurationFilename)) {
+            try (final InputStream inputStream = new FileInputStream(configurationFilename)) {
+                properties.load(inputStream);
+            }
+        }
+
+        final String shareWorkExponent = options.get("shareWorkExponent");
+        properties.setProperty("server.rootDirectory", rootDirectory.getAbsolutePath());
+        properties.setProperty("server.httpPort", options.get("port"));
+        properties.setProperty("server.tlsPort", "0");
+        properties.setProperty("server.workStreamPort", "0");
+        properties.setProperty("server.socketPort", "0");
+        properties.setProperty("server.contentStreamPort", "0");
+        properties.setProperty("server.snapshotFile", "");
+        properties.setProperty("server.workPollIntervalMs", "100");
+        properties.setProperty("server.maxSubscriptionCount", String.valueOf(Math.max(65536, (clientCount * 2))));
+        properties.setProperty("server.maxSubscriptionsPerClient", String.valueOf(clientCount * 2)); // Every simulated client shares one address...
+        properties.setProperty("server.minShareWorkExponent", shareWorkExponent);
+        properties.setProperty("server.initialShareWorkExponent", shareWorkExponent);
+        properties.setProperty("server.resourcePriceWorkExponent", shareWorkExponent);
+        for (final String routeName : new String[]{ "subscribe", "getWork", "submitShares", "content" }) {
+            properties.setProperty("server." + routeName + "RequestsPerMinutePerClient", "0");
+            properties.setProperty("server." + routeName + "RequestsPerMinutePerSubscription", "0");
+        }
+
+        final File configurationFile = File.createTempFile("monetize-load-test", ".conf");
+        configurationFile.deleteOnExit();
+        try (final OutputStream outputStream = new FileOutputStream(configurationFile)) {
+            properties.store(outputStream, "Generated by LoadTest");
+        }
+        return new Configuration(configurationFile);
+    }
+
+    protected static void _awaitReady(final WebServer webServer) throws InterruptedException {
+        final long deadline = (System.currentTimeMillis() + 30000L);
+        while (! webServer.isReady()) {
+            if (System.currentTimeMillis() > deadline) {
+                _exitFailure("Server did not become ready.");
+            }
+            Thread.sleep(50L);
+        }
+    }
+
+    public static void main(final String[] commandLineArguments) throws Exception {
+        Logger.setLog(LineNumberAnnotatedLog.getInstance());
+        Logger.setLogLevel(LogLevel.WARN);
+
+        final Map<String, String> options = _parseOptions(commandLineArguments);
+        final int clientCount = Util.parseInt(options.get("clients"));
+        final long hashesPerSecond = Util.parseLong(options.get("hashesPerSecond"));
+        final long warmupMs = (Util.parseLong(options.get("warmupSeconds")) * 1000L);
+        final long durationMs = (Util.parseLong(options.get("durationSeconds")) * 1000L);
+
+        final File rootDirectory = _createRootDirectory();
+        final Configuration configuration = _createConfiguration(options, rootDirectory, clientCount);
+        final LoadTestStratumServer stratumServer = new LoadTestStratumServer(Util.parseLong(options.get("jobIntervalMs")));
+        final WebServer webServer = new WebServer(configuration.getServerProperties(), stratumServer, configuration.getDatabaseProperties());
+        webServer.start();
+        _awaitReady(webServer);
+
+        final String baseUrl = ("http://localhost:" + options.get("port"));
+        final LoadTestReport loadTestReport = new LoadTestReport(webServer.getRequestMetrics());
+        final List<Thread> threads = new ArrayList<>(clientCount);
+        for (int i = 0; i < clientCount; ++i) {
+            final Thread thread = new Thread(new SimulatedMiner(baseUrl, PAID_PATH, hashesPerSecond, loadTestReport, (long) i));
+            thread.setName("Simulated Miner " + i);
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+
+        System.out.println("[Warming up " + clientCount + " clients at " + hashesPerSecond + " h/s for " + (warmupMs / 1000L) + "s]");
+        Thread.sleep(warmupMs);
+
+        System.out.println("[Measuring for " + (durationMs / 1000L) + "s]");
+        loadTestReport.start();
+        Thread.sleep(durationMs);
+        loadTestReport.stop();
+
+        for (final Thread thread : threads) {
+            thread.interrupt();
+        }
+        for (final Thread thread : threads) {
+            thread.join(5000L);
+        }
+
+        System.out.print(loadTestReport.render());
+
+        webServer.stop();
+        System.exit(0);
+    }
+}
@@ -0,0 +1,129 @@
+package com.softwareverde.monetize.loadtest;
+
+import com.softwareverde.monetize.metrics.RequestMetrics;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Locale;
+
+/**
+ * Collects the client-observed latency of each endpoint during the measured period and renders throughput, latency
+ *  percentiles, and the server's allocation per request.
+ */
+public class LoadTestReport {
+    public enum Endpoint {
+        SUBSCRIBE(RequestMetrics.RequestType.SUBSCRIBE),
+        GET_WORK(RequestMetrics.RequestType.GET_WORK),
+        PAID_CONTENT(RequestMetrics.RequestType.PAID);
+
+        public final RequestMetrics.RequestType requestType;
+
+        Endpoint(final RequestMetrics.RequestType requestType) {
+            this.requestType = requestType;
+        }
+    }
+
+    protected static class Samples {
+        protected long[] _durationsNanos = new long[4096];
+        protected int _count = 0;
+        protected long _errorCount = 0L;
+
+        public synchronized void record(final long durationNanos, final boolean wasSuccess) {
+            if (! wasSuccess) {
+                _errorCount += 1L;
+                return;
+            }
+
+            if (_count == _durationsNanos.length) {
+                _durationsNanos = Arrays.copyOf(_durationsNanos, (_durationsNanos.length * 2));
+            }
+            _durationsNanos[_count] = durationNanos;
+            _count += 1;
+        }
+
+        public synchronized long[] getSortedDurations() {
+            final long[] durationsNanos = Arrays.copyOf(_durationsNanos, _count);
+            Arrays.sort(durationsNanos);
+            return durationsNanos;
+        }
+
+        public synchronized long getErrorCount() {
+            return _errorCount;
+        }
+    }
+
+    protected static double _getPercentileMs(final long[] sortedDurationsNanos, final double percentile) {
+        if (sortedDurationsNanos.length == 0) { return 0D; }
+
+        final int index = (int) Math.min((sortedDurationsNanos.length - 1), Math.ceil(percentile * sortedDurationsNanos.length) - 1);
+        return (sortedDurationsNanos[Math.max(0, index)] / 1_000_000D);
+    }
+
+    protected final EnumMap<Endpoint, Samples> _samples = new EnumMap<>(Endpoint.class);
+    protected final EnumMap<Endpoint, Long> _startRequestCounts = new EnumMap<>(Endpoint.class);
+    protected final EnumMap<Endpoint, Long> _startAllocatedBytes = new EnumMap<>(Endpoint.class);
+    protected final RequestMetrics _requestMetrics;
+    protected volatile boolean _isRecording = false;
+    protected long _startTimestamp;
+    protected long _endTimestamp;
+
+    public LoadTestReport(final RequestMetrics requestMetrics) {
+        _requestMetrics = requestMetrics;
+        for (final Endpoint endpoint : Endpoint.values()) {
+            _samples.put(endpoint, new Samples());
+        }
+    }
+
+    /**
+     * Begins the measured period; requests completed before it (e.g. during warm-up) are not reported.
+     */
+    public void start() {
+        for (final Endpoint endpoint : Endpoint.values()) {
+            _startRequestCounts.put(endpoint, _requestMetrics.getRequestCount(endpoint.requestType));
+            _startAllocatedBytes.put(endpoint, _requestMetrics.getAllocatedBytes(endpoint.requestType));
+        }
+        _startTimestamp = System.currentTimeMillis();
+        _isRecording = true;
+    }
+
+    public void stop() {
+        _isRecording = false;
+        _endTimestamp = System.currentTimeMillis();
+    }
+
+    /**
+     * Records a completed request; requests that failed or were refused (e.g. 402, 429, 503) are counted as errors.
+     */
+    public void record(final Endpoint endpoint, final long durationNanos, final boolean wasSuccess) {
+        if (! _isRecording) { return; }
+
+        _samples.get(endpoint).record(durationNanos, wasSuccess);
+    }
+
+    public String render() {
+        final double durationSeconds = (Math.max(1L, (_endTimestamp - _startTimestamp)) / 1000D);
+
+        final StringBuilder stringBuilder = new StringBuilder();
+        stringBuilder.append(String.format(Locale.ROOT, "%-14s %10s %8s %10s %9s %9s %9s %14s%n", "endpoint", "requests", "errors", "req/s", "p50 ms", "p99 ms", "max ms", "bytes/request"));
+        for (final Endpoint endpoint : Endpoint.values()) {
+            final Samples samples = _samples.get(endpoint);
+            final long[] sortedDurationsNanos = samples.getSortedDurations();
+
+            final long serverRequestCount = (_requestMetrics.getRequestCount(endpoint.requestType) - _startRequestCounts.get(endpoint));
+            final long serverAllocatedBytes = (_requestMetrics.getAllocatedBytes(endpoint.requestType) - _startAllocatedBytes.get(endpoint));
+            final long bytesPerRequest = ((serverRequestCount > 0L) ? (serverAllocatedBytes / serverRequestCount) : 0L);
+
+            stringBuilder.append(String.format(Locale.ROOT, "%-14s %10d %8d %10.1f %9.2f %9.2f %9.2f %14d%n",
+                endpoint.name().toLowerCase(Locale.ROOT),
+                sortedDurationsNanos.length,
+                samples.getErrorCount(),
+                (sortedDurationsNanos.length / durationSeconds),
+                _getPercentileMs(sortedDurationsNanos, 0.50D),
+                _getPercentileMs(sortedDurationsNanos, 0.99D),
+                _getPercentileMs(sortedDurationsNanos, 1.00D),
+                bytesPerRequest
+            ));
+        }
+        return stringBuilder.toString();
+    }
+}
@@ -0,0 +1,134 @@
+package com.softwareverde.monetize.loadtest;
+
+import com.softwareverde.bitcoin.server.module.stratum.BitcoinCoreStratumServer;
+import com.softwareverde.bitcoin.server.stratum.message.server.MinerNotifyMessage;
+import com.softwareverde.bitcoin.server.stratum.message.server.MinerSubscribeResponseMessage;
+import com.softwareverde.constable.bytearray.ByteArray;
+import com.softwareverde.cryptography.hash.sha256.Sha256Hash;
+import com.softwareverde.json.Json;
+
+/**
+ * A stratum server that needs no node: it issues a deterministic block template at the minimum (regtest) network
+ *  difficulty, replaced by a new job every jobIntervalMs, and accepts every share.
+ *  Shares are still validated against the miner's share target by the ShareAdmissionPipeline, so simulated miners must
+ *  perform real proof of work.
+ */
+public class LoadTestStratumServer extends BitcoinCoreStratumServer {
+    public static final Integer EXTRA_NONCE_2_BYTE_COUNT = 4;
+    public static final String NETWORK_DIFFICULTY_HEX = "207FFFFF";
+    public static final Long BASE_TIMESTAMP = 1600000000L;
+
+    protected static String _createMinerNotifyJson(final long jobId) {
+        final String jobIdHex = String.format("%08X", jobId);
+
+        final StringBuilder merkleBranches = new StringBuilder();
+        for (int i = 0; i < 12; ++i) { // A block of ~4000 transactions...
+            if (i > 0) { merkleBranches.append(','); }
+            merkleBranches.append("\"");
+            for (int j = 0; j < 8; ++j) {
+                merkleBranches.append(String.format("%08X", ((i + 1) * 0x01010101 * (j + 1)) ^ ((int) jobId)));
+            }
+            merkleBranches.append("\"");
+        }
+
+        return
+            "{\"id\":null,\"method\":\"mining.notify\",\"params\":[" +
+            "\"" + jobIdHex + "\"," +
+            "\"" + _getPreviousBlockHashHex(jobId) + "\"," +
+            "\"01000000010000000000000000000000000000000000000000000000000000000000000000FFFFFFFF2003A1B2C3\"," +
+            "\"FFFFFFFF0100F2052A010000001976A914000000000000000000000000000000000000000088AC00000000\"," +
+            "[" + merkleBranches + "]," +
+            "\"20000000\",\"" + NETWORK_DIFFICULTY_HEX + "\",\"" + String.format("%08X", (BASE_TIMESTAMP + jobId)) + "\",true]}";
+    }
+
+    protected static String _getPreviousBlockHashHex(final long jobId) {
+        return String.format("%048X%016X", 0L, jobId);
+    }
+
+    public static class LoadTestMinerNotifyMessage extends MinerNotifyMessage {
+        protected final String _json;
+        protected Sha256Hash _previousBlockHash;
+
+        public LoadTestMinerNotifyMessage(final long jobId) {
+            _json = _createMinerNotifyJson(jobId);
+            _previousBlockHash = Sha256Hash.fromHexString(_getPreviousBlockHashHex(jobId));
+        }
+
+        @Override
+        public Sha256Hash getLittleEndianPreviousBlockHash() {
+            return _previousBlockHash;
+        }
+
+        @Override
+        public void setLittleEndianPreviousBlockHash(final Sha256Hash previousBlockHash) {
+            _previousBlockHash = previousBlockHash;
+        }
+
+        @Override
+        public Json toJson() {
+            return Json.parse(_json);
+        }
+    }
+
+    public static class LoadTestMinerSubscribeResponseMessage extends MinerSubscribeResponseMessage {
+        protected final String _subscriptionIdHex;
+        protected final String _extraNonce1Hex;
+
+        public LoadTestMinerSubscribeResponseMessage(final long minerId) {
+            _subscriptionIdHex = String.format("%016X", minerId);
+            _extraNonce1Hex = String.format("%08X", minerId);
+        }
+
+        @Override
+        public ByteArray getSubscriptionId() {
+            return ByteArray.fromHexString(_subscriptionIdHex);
+        }
+
+        @Override
+        public Json toJson() {
+            return Json.parse(
+                "{\"id\":1,\"result\":[" +
+                "[[\"mining.set_difficulty\",\"" + _subscriptionIdHex + "\"],[\"mining.notify\",\"" + _subscriptionIdHex + "\"]]," +
+                "\"" + _extraNonce1Hex + "\"," + EXTRA_NONCE_2_BYTE_COUNT + "],\"error\":null}"
+            );
+        }
+    }
+
+    protected final Long _jobIntervalMs;
+    protected final Long _startTimestamp = System.currentTimeMillis();
+
+    public LoadTestStratumServer(final Long jobIntervalMs) {
+        _jobIntervalMs = jobIntervalMs;
+    }
+
+    @Override
+    public MinerSubscribeResponseMessage subscribeMiner(final Long minerId) {
+        return new LoadTestMinerSubscribeResponseMessage(minerId);
+    }
+
+    @Override
+    public MinerNotifyMessage getMinerWork(final Long minerId, final Boolean shouldAbandonOldJobs) {
+        final long jobId = (1L + ((System.currentTimeMillis() - _startTimestamp) / _jobIntervalMs));
+        return new LoadTestMinerNotifyMessage(jobId);
+    }
+
+    @Override
+    public Boolean submitShare(final Json workerSubmitMessage) {
+        return true;
+    }
+
+    @Override
+    public void unsubscribeMiner(final Long minerId) { }
+
+    @Override
+    public void invertDifficulty(final Boolean shouldInvertDifficulty) { }
+
+    @Override
+    public void setShareDifficulty(final Long shareDifficulty) { }
+
+    @Override
+    public void start() { }
+
+    @Override
+    public void stop() { }
+}
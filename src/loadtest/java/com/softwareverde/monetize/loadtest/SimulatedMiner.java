@@ -0,0 +1,219 @@
+package com.softwareverde.monetize.loadtest;
+
+import com.softwareverde.json.Json;
+import com.softwareverde.monetize.share.ShareHashCalculator;
+import com.softwareverde.monetize.share.ShareUtil;
+import com.softwareverde.util.HexUtil;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Replays the monetize.js protocol as a single browser would: subscribe once, then repeatedly get work, mine a share at
+ *  the issued share difficulty (at most hashesPerSecond), and spend it on a paid resource via the Monetization
+ *  parameter.  Runs until interrupted.
+ */
+public class SimulatedMiner implements Runnable {
+    protected static final int CONNECT_TIMEOUT_MS = 5000;
+    protected static final int READ_TIMEOUT_MS = 30000;
+    protected static final long RETRY_DELAY_MS = 250L;
+
+    protected static class Subscription {
+        public final String subscriptionId;
+        public final byte[] extraNonce1;
+        public final int extraNonce2ByteCount;
+
+        public Subscription(final String subscriptionId, final byte[] extraNonce1, final int extraNonce2ByteCount) {
+            this.subscriptionId = subscriptionId;
+            this.extraNonce1 = extraNonce1;
+            this.extraNonce2ByteCount = extraNonce2ByteCount;
+        }
+    }
+
+    protected static String _readFully(final InputStream inputStream) throws IOException {
+        if (inputStream == null) { return ""; }
+
+        try (final InputStream closeableInputStream = inputStream) {
+            final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[8192];
+            int byteCount;
+            while ((byteCount = closeableInputStream.read(buffer)) >= 0) {
+                byteArrayOutputStream.write(buffer, 0, byteCount);
+            }
+            return new String(byteArrayOutputStream.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    protected final String _baseUrl;
+    protected final String _paidPath;
+    protected final Long _hashesPerSecond;
+    protected final LoadTestReport _loadTestReport;
+    protected final ShareHashCalculator _shareHashCalculator = new ShareHashCalculator();
+    protected final Random _random;
+
+    protected long _hashCount = 0L;
+    protected long _hashingStartNanos = System.nanoTime();
+
+    /**
+     * Performs the request and records its latency; returns the response body, or null if the request failed or was
+     *  refused.
+     */
+    protected String _request(final LoadTestReport.Endpoint endpoint, final String path) {
+        final long startNanos = System.nanoTime();
+        boolean wasSuccess = false;
+        try {
+            final HttpURLConnection connection = (HttpURLConnection) new URL(_baseUrl + path).openConnection();
+            connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+            connection.setReadTimeout(READ_TIMEOUT_MS);
+            connection.setRequestProperty("Accept-Encoding", "gzip");
+
+            final int responseCode = connection.getResponseCode();
+            wasSuccess = (responseCode == 200);
+
+            // The body is always consumed so that the connection is returned to the keep-alive pool...
+            final String body = _readFully(wasSuccess ? connection.getInputStream() : connection.getErrorStream());
+            return (wasSuccess ? body : null);
+        }
+        catch (final IOException exception) {
+            return null;
+        }
+        finally {
+            _loadTestReport.record(endpoint, (System.nanoTime() - startNanos), wasSuccess);
+        }
+    }
+
+    protected Subscription _subscribe() {
+        final String body = _request(LoadTestReport.Endpoint.SUBSCRIBE, "/api/v1/monetize/subscribe");
+        if (body == null) { return null; }
+
+        final Json resultJson = Json.parse(body).get("result"); // [subscriptions, extraNonce1, extraNonce2ByteCount]
+        if ( (resultJson == null) || (resultJson.length() < 3) ) { return null; }
+
+        final Json subscriptionsJson = resultJson.get(0);
+        for (int i = 0; i < subscriptionsJson.length(); ++i) {
+            final Json subscriptionJson = subscriptionsJson.get(i);
+            if (subscriptionJson.length() < 2) { continue; }
+
+            if ("mining.notify".equals(subscriptionJson.getString(0))) {
+                return new Subscription(subscriptionJson.getString(1), HexUtil.hexStringToByteArray(resultJson.getString(1)), resultJson.getInteger(2));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Sleeps as needed so that the miner does not exceed its configured hashrate.
+     */
+    protected void _throttle() throws InterruptedException {
+        if (_hashesPerSecond < 1L) { return; }
+
+        final long expectedElapsedNanos = ((_hashCount * 1_000_000_000L) / _hashesPerSecond);
+        final long aheadNanos = (expectedElapsedNanos - (System.nanoTime() - _hashingStartNanos));
+        if (aheadNanos > 1_000_000L) {
+            Thread.sleep(aheadNanos / 1_000_000L);
+        }
+    }
+
+    /**
+     * Mines the job until a share satisfying the share target is found, and returns the mining.submit parameters.
+     */
+    protected Json _mineShare(final Subscription subscription, final Json notifyParameters, final byte[] shareTarget) throws InterruptedException {
+        final String jobIdHex = notifyParameters.getString(0);
+        final Long jobId = ShareUtil.parseHexLong(jobIdHex);
+        final String timestampHex = notifyParameters.getString(7);
+
+        final byte[] extraNonce2 = new byte[subscription.extraNonce2ByteCount];
+        _random.nextBytes(extraNonce2);
+        extraNonce2[0] = 0; // Leave room to increment, as monetize.js does...
+
+        String extraNonce2Hex = HexUtil.toHexString(extraNonce2);
+        int nonce = _random.nextInt();
+        while (true) {
+            nonce += 1;
+            if (nonce == 0) { // Overflowed; move on to the next extraNonce2...
+                for (int i = (extraNonce2.length - 1); i >= 0; --i) {
+                    extraNonce2[i] += 1;
+                    if (extraNonce2[i] != 0) { break; }
+                }
+                extraNonce2Hex = HexUtil.toHexString(extraNonce2);
+            }
+
+            final String nonceHex = String.format("%08X", nonce);
+            _hashCount += 1L;
+            if (_shareHashCalculator.isTargetSatisfied(jobId, notifyParameters, subscription.extraNonce1, extraNonce2Hex, timestampHex, nonceHex, shareTarget)) {
+                final Json share = new Json(true);
+                share.add(subscription.subscriptionId);
+                share.add(jobIdHex);
+                share.add(extraNonce2Hex);
+                share.add(timestampHex);
+                share.add(nonceHex);
+                return share;
+            }
+
+            if ((_hashCount & 0x0F) == 0L) {
+                if (Thread.currentThread().isInterrupted()) { throw new InterruptedException(); }
+                _throttle();
+            }
+        }
+    }
+
+    protected void _run() throws InterruptedException {
+        Subscription subscription = null;
+        while (subscription == null) {
+            subscription = _subscribe();
+            if (subscription == null) {
+                Thread.sleep(RETRY_DELAY_MS);
+            }
+        }
+
+        final String getWorkPath = ("/api/v1/monetize/get-work?subscriptionId=" + subscription.subscriptionId);
+        _hashingStartNanos = System.nanoTime();
+        while (! Thread.currentThread().isInterrupted()) {
+            final String body = _request(LoadTestReport.Endpoint.GET_WORK, getWorkPath);
+            if (body == null) {
+                Thread.sleep(RETRY_DELAY_MS);
+                continue;
+            }
+
+            final Json resultJson = Json.parse(body).get("result");
+            final Json notifyParameters = ((resultJson != null) ? resultJson.get("params") : null);
+            final String shareTargetHex = ((resultJson != null) ? resultJson.getString("shareDifficulty") : null);
+            if ( (notifyParameters == null) || (shareTargetHex == null) ) {
+                Thread.sleep(RETRY_DELAY_MS);
+                continue;
+            }
+
+            final Json share = _mineShare(subscription, notifyParameters, HexUtil.hexStringToByteArray(shareTargetHex));
+
+            try {
+                final String encodedShare = URLEncoder.encode(share.toString(), "UTF-8");
+                _request(LoadTestReport.Endpoint.PAID_CONTENT, (_paidPath + "?Monetization=" + encodedShare));
+            }
+            catch (final IOException exception) {
+                throw new RuntimeException(exception);
+            }
+        }
+    }
+
+    public SimulatedMiner(final String baseUrl, final String paidPath, final Long hashesPerSecond, final LoadTestReport loadTestReport, final Long seed) {
+        _baseUrl = baseUrl;
+        _paidPath = paidPath;
+        _hashesPerSecond = hashesPerSecond;
+        _loadTestReport = loadTestReport;
+        _random = new Random(seed);
+    }
+
+    @Override
+    public void run() {
+        try {
+            _run();
+        }
+        catch (final InterruptedException exception) { }
+    }
+}
@@ -0,0 +1,96 @@
+package com.softwareverde.http.server.servlet;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * An immutable lookup structure for a set of endpoints.
+ *  Strict endpoints are matched exactly via a hash set; non-strict endpoints are matched as case-insensitive prefixes
+ *  via a character trie.  Matching does not allocate.
+ */
+public class CompiledEndpointMatcher {
+    public static final CompiledEndpointMatcher EMPTY = new CompiledEndpointMatcher(new HashSet<String>(0), new HashSet<String>(0));
+
+    protected static class Node {
+        protected char[] _keys = new char[0];
+        protected Node[] _children = new Node[0];
+        protected boolean _isTerminal = false;
+
+        public Node getChild(final char key) {
+            final int index = Arrays.binarySearch(_keys, key);
+            if (index < 0) { return null; }
+            return _children[index];
+        }
+
+        public Node getOrCreateChild(final char key) {
+            final int index = Arrays.binarySearch(_keys, key);
+            if (index >= 0) { return _children[index]; }
+
+            final int insertionIndex = (-index - 1);
+            final int childCount = _keys.length;
+
+            final char[] keys = new char[childCount + 1];
+            final Node[] children = new Node[childCount + 1];
+            System.arraycopy(_keys, 0, keys, 0, insertionIndex);
+            System.arraycopy(_children, 0, children, 0, insertionIndex);
+            System.arraycopy(_keys, insertionIndex, keys, (insertionIndex + 1), (childCount - insertionIndex));
+            System.arraycopy(_children, insertionIndex, children, (insertionIndex + 1), (childCount - insertionIndex));
+
+            final Node child = new Node();
+            keys[insertionIndex] = key;
+            children[insertionIndex] = child;
+
+            _keys = keys;
+            _children = children;
+            return child;
+        }
+
+        public boolean isTerminal() {
+            return _isTerminal;
+        }
+
+        public void setIsTerminal(final boolean isTerminal) {
+            _isTerminal = isTerminal;
+        }
+    }
+
+    protected final Set<String> _exactEndpoints;
+    protected final Node _prefixRoot = new Node();
+
+    public CompiledEndpointMatcher(final Collection<String> exactEndpoints, final Collection<String> prefixEndpoints) {
+        _exactEndpoints = new HashSet<>(exactEndpoints);
+
+        for (final String prefixEndpoint : prefixEndpoints) {
+            if (prefixEndpoint == null) { continue; }
+
+            Node node = _prefixRoot;
+            final int characterCount = prefixEndpoint.length();
+            for (int i = 0; i < characterCount; ++i) {
+                final char character = Character.toLowerCase(prefixEndpoint.charAt(i));
+                node = node.getOrCreateChild(character);
+            }
+            node.setIsTerminal(true);
+        }
+    }
+
+    public Boolean matches(final String endpoint) {
+        if (endpoint == null) { return false; }
+
+        if (_exactEndpoints.contains(endpoint)) { return true; }
+
+        Node node = _prefixRoot;
+        if (node.isTerminal()) { return true; }
+
+        final int characterCount = endpoint.length();
+        for (int i = 0; i < characterCount; ++i) {
+            final char character = Character.toLowerCase(endpoint.charAt(i));
+            node = node.getChild(character);
+            if (node == null) { return false; }
+            if (node.isTerminal()) { return true; }
+        }
+
+        return false;
+    }
+}
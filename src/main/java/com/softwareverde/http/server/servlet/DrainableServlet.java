@@ -0,0 +1,36 @@
+package com.softwareverde.http.server.servlet;
+
+import com.softwareverde.http.server.servlet.request.Request;
+import com.softwareverde.http.server.servlet.response.Response;
+import com.softwareverde.monetize.lifecycle.RequestDrain;
+
+/**
+ * Registers each request handled by the wrapped Servlet with the RequestDrain so that shutdown waits for it.
+ *  Requests received once the server has begun draining are refused with a 503 and a Retry-After, so that clients
+ *  retry against another node (or this one, once restarted).
+ */
+public class DrainableServlet implements Servlet {
+    protected final Servlet _servlet;
+    protected final RequestDrain _requestDrain;
+    protected final Integer _retryAfterSeconds;
+
+    public DrainableServlet(final Servlet servlet, final RequestDrain requestDrain, final Integer retryAfterSeconds) {
+        _servlet = servlet;
+        _requestDrain = requestDrain;
+        _retryAfterSeconds = retryAfterSeconds;
+    }
+
+    @Override
+    public Response onRequest(final Request request) {
+        if (! _requestDrain.tryEnter()) {
+            return ServletUtil.createOverloadedResponse(_retryAfterSeconds);
+        }
+
+        try {
+            return _servlet.onRequest(request);
+        }
+        finally {
+            _requestDrain.exit();
+        }
+    }
+}
@@ -1,34 +1,37 @@
 package com.softwareverde.http.server.servlet;
 
-import com.softwareverde.bitcoin.block.header.difficulty.Difficulty;
 import com.softwareverde.bitcoin.server.module.stratum.BitcoinCoreStratumServer;
 import com.softwareverde.bitcoin.server.stratum.message.server.MinerNotifyMessage;
-import com.softwareverde.bitcoin.server.stratum.task.StratumUtil;
-import com.softwareverde.constable.bytearray.ByteArray;
-import com.softwareverde.cryptography.hash.sha256.Sha256Hash;
 import com.softwareverde.http.HttpMethod;
 import com.softwareverde.http.querystring.GetParameters;
 import com.softwareverde.http.server.servlet.request.Request;
 import com.softwareverde.http.server.servlet.response.JsonResponse;
 import com.softwareverde.http.server.servlet.response.Response;
 import com.softwareverde.json.Json;
-
-import java.util.concurrent.ConcurrentHashMap;
+import com.softwareverde.monetize.difficulty.VariableDifficultyEngine;
+import com.softwareverde.monetize.share.JobRegistry;
+import com.softwareverde.monetize.subscription.SubscriptionRegistry;
+import com.softwareverde.monetize.work.WorkResponseCache;
 
 public class GetWorkApiServlet implements Servlet {
     protected final BitcoinCoreStratumServer _stratumServer;
-    protected final ConcurrentHashMap<ByteArray, Long> _subscriptionMinerIds;
-
-    protected Difficulty _shareDifficulty;
+    protected final SubscriptionRegistry _subscriptionRegistry;
+    protected final JobRegistry _jobRegistry;
+    protected final WorkResponseCache _workResponseCache;
+    protected final VariableDifficultyEngine _difficultyEngine;
 
-    public GetWorkApiServlet(final BitcoinCoreStratumServer stratumServer, final ConcurrentHashMap<ByteArray, Long> subscriptionMinerIds) {
+    public GetWorkApiServlet(final BitcoinCoreStratumServer stratumServer, final SubscriptionRegistry subscriptionRegistry, final JobRegistry jobRegistry, final WorkResponseCache workResponseCache, final VariableDifficultyEngine difficultyEngine) {
         _stratumServer = stratumServer;
-        _subscriptionMinerIds = subscriptionMinerIds;
+        _subscriptionRegistry = subscriptionRegistry;
+        _jobRegistry = jobRegistry;
+        _workResponseCache = workResponseCache;
+        _difficultyEngine = difficultyEngine;
 
-        final long multiplier = (long) Math.pow(2, 18);
-        _shareDifficulty = Difficulty.BASE_DIFFICULTY.multiplyBy(multiplier);
+        // The stratum server validates shares against the easiest difficulty that may be issued; each share is also
+        //  validated against the difficulty issued to its miner by the ShareAdmissionPipeline.
+        final Long minShareDifficultyMultiplier = _difficultyEngine.getShareDifficultyMultiplier(_difficultyEngine.getMinWorkExponent());
         _stratumServer.invertDifficulty(true);
-        _stratumServer.setShareDifficulty(multiplier);
+        _stratumServer.setShareDifficulty(minShareDifficultyMultiplier);
     }
 
     @Override
@@ -43,8 +46,7 @@ public class GetWorkApiServlet implements Servlet {
         }
 
         final GetParameters getParameters = request.getGetParameters();
-        final ByteArray subscriptionId = ByteArray.fromHexString(getParameters.get("subscriptionId"));
-        final Long minerId = _subscriptionMinerIds.get(subscriptionId);
+        final Long minerId = _subscriptionRegistry.touchSubscription(getParameters.get("subscriptionId"));
 
         if (minerId == null) {
             return ServletUtil.createErrorResponse(Response.Codes.BAD_REQUEST, "Invalid subscription ID.");
@@ -55,17 +57,22 @@ public class GetWorkApiServlet implements Servlet {
             return ServletUtil.createErrorResponse(Response.Codes.SERVER_ERROR, "Unable to generate work.");
         }
 
-        { // Un-swab the previousBlockHash...
-            final Sha256Hash unSwabbedBlockHash = minerNotifyMessage.getLittleEndianPreviousBlockHash();
-            final ByteArray swabbedBytes = StratumUtil.swabBytes(unSwabbedBlockHash);
-            final Sha256Hash swabbedBlockHash = Sha256Hash.wrap(swabbedBytes.getBytes());
-            minerNotifyMessage.setLittleEndianPreviousBlockHash(swabbedBlockHash);
+        final Long jobId = _workResponseCache.cacheWork(minerNotifyMessage);
+        if (jobId == null) {
+            return ServletUtil.createErrorResponse(Response.Codes.SERVER_ERROR, "Unable to generate work.");
         }
+        _jobRegistry.recordJob(jobId); // Record the job so that shares mined against it are admitted...
 
-        final Json minerNotifyMessageJson = minerNotifyMessage.toJson();
-        minerNotifyMessageJson.put("shareDifficulty", _shareDifficulty.getBytes());
+        final Integer workExponent = _difficultyEngine.issueJob(minerId, jobId);
+        final byte[] responseBytes = _workResponseCache.getResponse(jobId, _difficultyEngine.getShareTargetHex(workExponent));
+        if (responseBytes == null) {
+            return ServletUtil.createErrorResponse(Response.Codes.SERVER_ERROR, "Unable to generate work.");
+        }
 
-        final Json json = ServletUtil.createSuccessJson(minerNotifyMessageJson);
-        return new JsonResponse(Response.Codes.OK, json);
+        final Response response = new Response();
+        response.setCode(Response.Codes.OK);
+        response.setHeader(Response.Headers.CONTENT_TYPE, "application/json");
+        response.setContent(responseBytes);
+        return response;
     }
 }
@@ -0,0 +1,33 @@
+package com.softwareverde.http.server.servlet;
+
+import com.softwareverde.http.server.servlet.request.Request;
+import com.softwareverde.http.server.servlet.response.Response;
+import com.softwareverde.monetize.metrics.RequestMetrics;
+
+/**
+ * Records the latency and allocation of each request handled by the wrapped Servlet.
+ */
+public class InstrumentedServlet implements Servlet {
+    protected final Servlet _servlet;
+    protected final RequestMetrics _requestMetrics;
+    protected final RequestMetrics.RequestType _requestType;
+
+    public InstrumentedServlet(final Servlet servlet, final RequestMetrics requestMetrics, final RequestMetrics.RequestType requestType) {
+        _servlet = servlet;
+        _requestMetrics = requestMetrics;
+        _requestType = requestType;
+    }
+
+    @Override
+    public Response onRequest(final Request request) {
+        final long startAllocatedBytes = RequestMetrics.getCurrentThreadAllocatedBytes();
+        final long startNanos = System.nanoTime();
+        try {
+            return _servlet.onRequest(request);
+        }
+        finally {
+            final long durationNanos = (System.nanoTime() - startNanos);
+            _requestMetrics.record(_requestType, durationNanos, (RequestMetrics.getCurrentThreadAllocatedBytes() - startAllocatedBytes));
+        }
+    }
+}
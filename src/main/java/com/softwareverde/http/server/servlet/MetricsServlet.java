@@ -0,0 +1,63 @@
+package com.softwareverde.http.server.servlet;
+
+import com.softwareverde.http.HttpMethod;
+import com.softwareverde.http.server.servlet.request.Headers;
+import com.softwareverde.http.server.servlet.request.Request;
+import com.softwareverde.http.server.servlet.response.Response;
+import com.softwareverde.monetize.metrics.MetricsRegistry;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.List;
+
+/**
+ * Serves the server's metrics in the Prometheus text exposition format.
+ *  Requests must present the configured token as a bearer token (i.e. "Authorization: Bearer <token>").
+ */
+public class MetricsServlet implements Servlet {
+    public static final String AUTHORIZATION_HEADER_NAME = "Authorization";
+    public static final String BEARER_PREFIX = "Bearer ";
+
+    protected static final Integer UNAUTHORIZED_CODE = 401;
+
+    protected final MetricsRegistry _metricsRegistry;
+    protected final byte[] _token;
+
+    protected Boolean _isAuthorized(final Request request) {
+        final Headers headers = request.getHeaders();
+        if (! headers.containsHeader(AUTHORIZATION_HEADER_NAME)) { return false; }
+
+        final List<String> headerValues = headers.getHeader(AUTHORIZATION_HEADER_NAME);
+        if (headerValues.isEmpty()) { return false; }
+
+        final String headerValue = headerValues.get(0);
+        if ( (headerValue == null) || (! headerValue.startsWith(BEARER_PREFIX)) ) { return false; }
+
+        final byte[] token = headerValue.substring(BEARER_PREFIX.length()).trim().getBytes(StandardCharsets.UTF_8);
+        return MessageDigest.isEqual(_token, token); // Constant-time comparison...
+    }
+
+    public MetricsServlet(final MetricsRegistry metricsRegistry, final String token) {
+        _metricsRegistry = metricsRegistry;
+        _token = token.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public Response onRequest(final Request request) {
+        if (request.getMethod() != HttpMethod.GET) {
+            return ServletUtil.createErrorResponse(Response.Codes.BAD_REQUEST, "Bad request.");
+        }
+
+        if (! _isAuthorized(request)) {
+            final Response response = ServletUtil.createErrorResponse(UNAUTHORIZED_CODE, "Unauthorized.");
+            response.setHeader("WWW-Authenticate", "Bearer");
+            return response;
+        }
+
+        final Response response = new Response();
+        response.setCode(Response.Codes.OK);
+        response.setHeader(Response.Headers.CONTENT_TYPE, MetricsRegistry.CONTENT_TYPE);
+        response.setContent(_metricsRegistry.render());
+        return response;
+    }
+}
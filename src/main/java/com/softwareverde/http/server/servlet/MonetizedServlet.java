@@ -1,28 +1,42 @@
 package com.softwareverde.http.server.servlet;
 
-import com.softwareverde.bitcoin.server.module.stratum.BitcoinCoreStratumServer;
-import com.softwareverde.concurrent.ConcurrentHashSet;
-import com.softwareverde.constable.bytearray.ByteArray;
-import com.softwareverde.cryptography.hash.sha256.Sha256Hash;
-import com.softwareverde.cryptography.util.HashUtil;
 import com.softwareverde.http.querystring.GetParameters;
 import com.softwareverde.http.querystring.PostParameters;
 import com.softwareverde.http.server.servlet.request.Headers;
 import com.softwareverde.http.server.servlet.request.Request;
 import com.softwareverde.http.server.servlet.response.Response;
 import com.softwareverde.json.Json;
-import com.softwareverde.logging.Logger;
-import com.softwareverde.util.ByteUtil;
-import com.softwareverde.util.HexUtil;
-import com.softwareverde.util.StringUtil;
+import com.softwareverde.monetize.content.ByteRange;
+import com.softwareverde.monetize.content.CachedContent;
+import com.softwareverde.monetize.content.ContentCache;
+import com.softwareverde.monetize.credit.AccessTokenAuthority;
+import com.softwareverde.monetize.credit.ByteBudgetLedger;
+import com.softwareverde.monetize.credit.ShareCreditLedger;
+import com.softwareverde.monetize.difficulty.VariableDifficultyEngine;
+import com.softwareverde.monetize.ledger.ShareLedger;
+import com.softwareverde.monetize.logging.SampledLog;
+import com.softwareverde.monetize.metrics.RequestMetrics;
+import com.softwareverde.monetize.share.ShareAdmissionResult;
+import com.softwareverde.monetize.share.ShareUtil;
+import com.softwareverde.monetize.share.ShareValidationExecutor;
+import com.softwareverde.monetize.subscription.SubscriptionRegistry;
 import com.softwareverde.util.Util;
 
 import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class MonetizedServlet extends DirectoryServlet {
     public static final String HEADER_NAME = "Monetization";
+    public static final Long DEFAULT_MAX_RANGE_BYTE_COUNT = (1024L * 1024L);
+
+    protected static final Integer RANGE_NOT_SATISFIABLE_CODE = 416;
+    protected static final Integer PARTIAL_CONTENT_CODE = 206;
 
     protected static class EndpointMatcher {
         public final String endpoint;
@@ -33,18 +47,6 @@ public class MonetizedServlet extends DirectoryServlet {
             this.strictMatchIsEnabled = strictMatchIsEnabled;
         }
 
-        public Boolean matches(final String endpoint) {
-            if (this.strictMatchIsEnabled) {
-                return Util.areEqual(endpoint, this.endpoint);
-            }
-
-            if ( (endpoint == null) || (this.endpoint == null) ) { return false; }
-
-            final String lowerCaseEndpoint = endpoint.toLowerCase();
-            final String thisLowerCaseEndpoint = this.endpoint.toLowerCase();
-            return lowerCaseEndpoint.startsWith(thisLowerCaseEndpoint);
-        }
-
         @Override
         public boolean equals(final Object object) {
             if (! (object instanceof EndpointMatcher)) { return false; }
@@ -60,19 +62,324 @@ public class MonetizedServlet extends DirectoryServlet {
         }
     }
 
-    protected final Integer _maxSubmittedShareHistory = 1048576;
-    protected final ConcurrentHashSet<Object> _submittedShares = new ConcurrentHashSet<>();
-    protected final BitcoinCoreStratumServer _stratumServer;
-    protected final HashSet<EndpointMatcher> _freeEndpoints = new HashSet<>();
+    protected final ShareValidationExecutor _shareValidationExecutor;
+    protected final HashSet<EndpointMatcher> _freeEndpoints = new HashSet<>(); // Guarded by _freeEndpoints.
+    protected volatile CompiledEndpointMatcher _freeEndpointMatcher = CompiledEndpointMatcher.EMPTY;
+
+    protected final Integer _maxMissingFilePathCount = 65536;
+    protected final Set<String> _missingFilePaths = ConcurrentHashMap.newKeySet();
+    protected volatile ErrorHandler _fileNotFoundHandler;
+    protected volatile ContentCache _contentCache;
+    protected volatile AccessTokenAuthority _accessTokenAuthority;
+    protected volatile ShareCreditLedger _shareCreditLedger;
+    protected volatile Long _resourcePrice;
+    protected volatile SubscriptionRegistry _subscriptionRegistry;
+    protected volatile VariableDifficultyEngine _difficultyEngine;
+    protected volatile ShareLedger _shareLedger;
+    protected volatile RequestMetrics _requestMetrics;
+    protected volatile ByteBudgetLedger _byteBudgetLedger;
+    protected volatile Long _maxRangeByteCount = DEFAULT_MAX_RANGE_BYTE_COUNT;
+    protected volatile SampledLog _paymentRequiredLog = new SampledLog("Payment required");
+
+    protected void _rememberMissingFilePath(final String filePath) {
+        if (filePath == null) { return; }
+
+        if (_missingFilePaths.size() >= _maxMissingFilePathCount) {
+            // Evict an arbitrary entry; a forgotten path only costs a single DirectoryServlet lookup...
+            final Iterator<String> iterator = _missingFilePaths.iterator();
+            if (iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+
+        _missingFilePaths.add(filePath);
+    }
+
+    protected CompiledEndpointMatcher _compileFreeEndpoints() {
+        final ArrayList<String> exactEndpoints = new ArrayList<>();
+        final ArrayList<String> prefixEndpoints = new ArrayList<>();
+        for (final EndpointMatcher endpointMatcher : _freeEndpoints) {
+            if (endpointMatcher.strictMatchIsEnabled) {
+                exactEndpoints.add(endpointMatcher.endpoint);
+            }
+            else {
+                prefixEndpoints.add(endpointMatcher.endpoint);
+            }
+        }
+        return new CompiledEndpointMatcher(exactEndpoints, prefixEndpoints);
+    }
 
     protected Boolean _isFreeRequest(final Request request) {
         final String filePath = request.getFilePath();
-        for (final EndpointMatcher endpointMatcher : _freeEndpoints) {
-            if (endpointMatcher.matches(filePath)) {
-                return true;
+        final CompiledEndpointMatcher freeEndpointMatcher = _freeEndpointMatcher;
+        return freeEndpointMatcher.matches(filePath);
+    }
+
+    protected String _getHeaderValue(final Request request, final String headerName) {
+        final Headers headers = request.getHeaders();
+        if (! headers.containsHeader(headerName)) { return null; }
+
+        final List<String> headerValues = headers.getHeader(headerName);
+        if (headerValues.isEmpty()) { return null; }
+
+        return headerValues.get(0);
+    }
+
+    protected String _getCookieValue(final Request request, final String cookieName) {
+        final String cookieHeaderValue = _getHeaderValue(request, "Cookie");
+        if (cookieHeaderValue == null) { return null; }
+
+        final String cookiePrefix = (cookieName + "=");
+        for (final String cookie : cookieHeaderValue.split(";")) {
+            final String trimmedCookie = cookie.trim();
+            if (trimmedCookie.startsWith(cookiePrefix)) {
+                return trimmedCookie.substring(cookiePrefix.length());
             }
         }
-        return false;
+        return null;
+    }
+
+    /**
+     * Returns the access token sent via the Monetization-Token header or query parameter, or the MonetizationToken
+     *  cookie, or null.  The query parameter is used by clients that receive their token via the binary work socket,
+     *  which cannot set cookies.
+     */
+    protected String _getAccessToken(final Request request) {
+        final String headerValue = _getHeaderValue(request, AccessTokenAuthority.HEADER_NAME);
+        if (headerValue != null) { return headerValue.trim(); }
+
+        final GetParameters getParameters = request.getGetParameters();
+        if (getParameters.containsKey(AccessTokenAuthority.HEADER_NAME)) {
+            return getParameters.get(AccessTokenAuthority.HEADER_NAME);
+        }
+
+        return _getCookieValue(request, AccessTokenAuthority.COOKIE_NAME);
+    }
+
+    /**
+     * Returns the byte budget grant sent via the Monetization-Grant header or query parameter, or the MonetizationGrant
+     *  cookie, or null.
+     */
+    protected String _getGrantId(final Request request) {
+        final String headerValue = _getHeaderValue(request, ByteBudgetLedger.HEADER_NAME);
+        if (headerValue != null) { return headerValue.trim(); }
+
+        final GetParameters getParameters = request.getGetParameters();
+        if (getParameters.containsKey(ByteBudgetLedger.HEADER_NAME)) {
+            return getParameters.get(ByteBudgetLedger.HEADER_NAME);
+        }
+
+        return _getCookieValue(request, ByteBudgetLedger.COOKIE_NAME);
+    }
+
+    /**
+     * Pays for the request from the credit of the miner identified by the request's access token.
+     *  Returns false if the request has no valid access token or if the miner's balance is insufficient.
+     */
+    protected Boolean _redeemAccessToken(final Request request) {
+        final AccessTokenAuthority accessTokenAuthority = _accessTokenAuthority;
+        final ShareCreditLedger shareCreditLedger = _shareCreditLedger;
+        if ( (accessTokenAuthority == null) || (shareCreditLedger == null) ) { return false; }
+
+        final String accessToken = _getAccessToken(request);
+        if (accessToken == null) { return false; }
+
+        final Long minerId = accessTokenAuthority.verifyToken(accessToken);
+        if (minerId == null) { return false; }
+
+        return shareCreditLedger.spend(minerId, _resourcePrice);
+    }
+
+    /**
+     * Pays for the request with the accepted share: the share's work (2^N expected hashes, where N is the work exponent
+     *  the share's job was issued at) is credited to its miner and the resource's price is deducted.
+     *  Returns false if the miner's balance cannot pay for the resource; the share's work remains credited, so it may be
+     *  combined with further shares or redeemed via an access token.
+     *  If share pricing is not configured, each accepted share pays for one resource.
+     */
+    protected Boolean _payWithShare(final Json workerSubmitMessage) {
+        final SubscriptionRegistry subscriptionRegistry = _subscriptionRegistry;
+        final VariableDifficultyEngine difficultyEngine = _difficultyEngine;
+        final ShareCreditLedger shareCreditLedger = _shareCreditLedger;
+        if ( (subscriptionRegistry == null) || (difficultyEngine == null) || (shareCreditLedger == null) ) { return true; }
+
+        final Long minerId = subscriptionRegistry.touchSubscription(workerSubmitMessage.getString(0));
+        if (minerId == null) { return false; }
+
+        final long jobId = ShareUtil.parseHexLong(workerSubmitMessage.getString(1));
+        final Integer workExponent = difficultyEngine.getIssuedWorkExponent(minerId, jobId);
+        if (workExponent == null) { return false; }
+
+        shareCreditLedger.credit(minerId, (1L << workExponent));
+        return shareCreditLedger.spend(minerId, _resourcePrice);
+    }
+
+    protected void _recordServedResource(final Request request, final ShareLedger.PaymentType paymentType, final String subscriptionIdHex) {
+        final ShareLedger shareLedger = _shareLedger;
+        if (shareLedger == null) { return; }
+
+        shareLedger.recordServedResource(request.getFilePath(), paymentType, subscriptionIdHex);
+    }
+
+    /**
+     * Returns the range requested by the request's Range header, truncated to maxRangeByteCount, or null if the full
+     *  content should be served (i.e. the request has no Range header).
+     */
+    protected ByteRange _getByteRange(final Request request, final CachedContent cachedContent) {
+        final ByteRange byteRange = ByteRange.parse(_getHeaderValue(request, "Range"), cachedContent.getByteCount());
+        if ( (byteRange == null) || (byteRange == ByteRange.UNSATISFIABLE) ) { return byteRange; }
+
+        return byteRange.limit(_maxRangeByteCount);
+    }
+
+    /**
+     * Renders the content, or the range of its (unencoded) bytes if byteRange is not null.
+     *  Conditional requests (If-None-Match) are only honored for free requests, since a 304 would otherwise consume
+     *  the request's share without serving content.
+     */
+    protected Response _createContentResponse(final Request request, final CachedContent cachedContent, final Boolean isFreeRequest, final ByteRange byteRange) {
+        final String eTag = cachedContent.getETag();
+        if (isFreeRequest) {
+            final String ifNoneMatch = _getHeaderValue(request, "If-None-Match");
+            if ( (ifNoneMatch != null) && (ifNoneMatch.contains(eTag) || ifNoneMatch.trim().equals("*")) ) {
+                final Integer notModifiedCode = 304;
+
+                final Response response = new Response();
+                response.setCode(notModifiedCode);
+                response.setHeader("ETag", eTag);
+                return response;
+            }
+        }
+
+        if (byteRange == ByteRange.UNSATISFIABLE) {
+            final Response response = new Response();
+            response.setCode(RANGE_NOT_SATISFIABLE_CODE);
+            response.setHeader("Content-Range", ByteRange.toUnsatisfiableContentRange(cachedContent.getByteCount()));
+            return response;
+        }
+
+        final Response response = new Response();
+        response.setHeader(Response.Headers.CONTENT_TYPE, cachedContent.getContentType());
+        response.setHeader("ETag", eTag);
+        response.setHeader("Accept-Ranges", "bytes");
+
+        if (byteRange != null) { // Only the range is copied onto the heap, regardless of the file's size...
+            response.setCode(PARTIAL_CONTENT_CODE);
+            response.setHeader("Content-Range", byteRange.toContentRange(cachedContent.getByteCount()));
+            response.setContent(cachedContent.getBytes(byteRange));
+            return response;
+        }
+
+        response.setCode(Response.Codes.OK);
+        if (cachedContent.hasGzippedBytes()) {
+            response.setHeader("Vary", "Accept-Encoding");
+
+            final String acceptEncoding = _getHeaderValue(request, "Accept-Encoding");
+            if ( (acceptEncoding != null) && acceptEncoding.contains("gzip") ) {
+                response.setHeader("Content-Encoding", "gzip");
+                response.setContent(cachedContent.getGzippedBytes());
+                return response;
+            }
+        }
+
+        response.setContent(cachedContent.getBytes());
+        return response;
+    }
+
+    /**
+     * Serves the requested file from the ContentCache, if one is set.
+     *  Requests the cache cannot serve (e.g. directory listings and missing files) are delegated to the DirectoryServlet.
+     */
+    protected Response _serveContent(final Request request, final Boolean isFreeRequest) {
+        final ContentCache contentCache = _contentCache;
+        if (contentCache == null) {
+            return super.onRequest(request);
+        }
+
+        final CachedContent cachedContent = contentCache.get(request.getFilePath());
+        if (cachedContent == null) {
+            return super.onRequest(request);
+        }
+
+        return _createContentResponse(request, cachedContent, isFreeRequest, _getByteRange(request, cachedContent));
+    }
+
+    /**
+     * Serves the request from the byte budget of the grant it presents, if any.
+     *  Range requests are truncated to the grant's remaining bytes; requests for the full content are only served if the grant can pay
+     *  for all of it.  Returns null if the request must be paid for instead.
+     */
+    protected Response _serveGrantedContent(final Request request) {
+        final ByteBudgetLedger byteBudgetLedger = _byteBudgetLedger;
+        final ContentCache contentCache = _contentCache;
+        if ( (byteBudgetLedger == null) || (contentCache == null) ) { return null; }
+
+        final String grantId = _getGrantId(request);
+        if (grantId == null) { return null; }
+
+        final Path file = contentCache.resolveFile(request.getFilePath());
+        if (file == null) { return null; }
+
+        final CachedContent cachedContent = contentCache.get(request.getFilePath());
+        if (cachedContent == null) { return null; }
+
+        final ByteRange byteRange = _getByteRange(request, cachedContent);
+        if (byteRange == ByteRange.UNSATISFIABLE) {
+            return _createContentResponse(request, cachedContent, false, byteRange);
+        }
+
+        final Boolean isPartialAllowed = (byteRange != null);
+        final Long requestedByteCount = (isPartialAllowed ? byteRange.getByteCount() : cachedContent.getByteCount());
+        final Long spentByteCount = byteBudgetLedger.spend(grantId, file.toString(), requestedByteCount, isPartialAllowed);
+        if (spentByteCount < 1L) { return null; }
+
+        return _createContentResponse(request, cachedContent, false, (isPartialAllowed ? byteRange.limit(spentByteCount) : null));
+    }
+
+    protected Boolean _isCookiePathSafe(final String filePath) {
+        if ( (filePath == null) || (! filePath.startsWith("/")) ) { return false; }
+
+        for (int i = 0; i < filePath.length(); ++i) {
+            final char character = filePath.charAt(i);
+            if ( (character <= ' ') || (character >= 0x7F) || (character == ';') || (character == ',') ) { return false; }
+        }
+        return true;
+    }
+
+    /**
+     * Serves the paid request and, if it is for streamed content (i.e. a range request, or content larger than a single
+     *  range), grants it a byte budget for its subsequent requests for the same file.
+     *  The grant is returned via the Monetization-Grant header and as a cookie scoped to the file's path, so that media
+     *  players send it with their range requests automatically.
+     */
+    protected Response _servePaidContent(final Request request) {
+        final Response response = _serveContent(request, false);
+
+        final ByteBudgetLedger byteBudgetLedger = _byteBudgetLedger;
+        final ContentCache contentCache = _contentCache;
+        if ( (byteBudgetLedger == null) || (contentCache == null) ) { return response; }
+
+        final Integer responseCode = response.getCode();
+        if ( (! Util.areEqual(responseCode, Response.Codes.OK)) && (! Util.areEqual(responseCode, PARTIAL_CONTENT_CODE)) ) { return response; }
+
+        final String filePath = request.getFilePath();
+        final CachedContent cachedContent = contentCache.get(filePath);
+        if (cachedContent == null) { return response; }
+
+        final boolean isStreamed = ( Util.areEqual(responseCode, PARTIAL_CONTENT_CODE) || (cachedContent.getByteCount() > _maxRangeByteCount) );
+        if (! isStreamed) { return response; }
+
+        final Path file = contentCache.resolveFile(filePath);
+        if (file == null) { return response; }
+
+        final String grantId = byteBudgetLedger.createGrant(file.toString());
+        response.setHeader(ByteBudgetLedger.HEADER_NAME, grantId);
+        if (_isCookiePathSafe(filePath)) {
+            final long maxAgeSeconds = (byteBudgetLedger.getGrantTtlMs() / 1000L);
+            response.setHeader("Set-Cookie", (ByteBudgetLedger.COOKIE_NAME + "=" + grantId + "; Path=" + filePath + "; Max-Age=" + maxAgeSeconds + "; HttpOnly; SameSite=Strict"));
+        }
+        return response;
     }
 
     protected Response _createInvalidPaymentResponse() {
@@ -125,71 +432,152 @@ public class MonetizedServlet extends DirectoryServlet {
         return null;
     }
 
-    protected Sha256Hash _calculateShareIdentifier(final Json workerSubmitMessage) {
-        final String workerUsername = workerSubmitMessage.getString(0); // Unused.
-        final String taskIdHex = workerSubmitMessage.getString(1);
-        final String stratumExtraNonce2 = workerSubmitMessage.getString(2);
-        final String stratumTimestamp = workerSubmitMessage.getString(3);
-        final String stratumNonce = workerSubmitMessage.getString(4);
+    protected Response _onRequest(final Request request, final boolean isFreeRequest) {
+        final ErrorHandler fileNotFoundHandler = _fileNotFoundHandler;
+        if ( (fileNotFoundHandler != null) && _missingFilePaths.contains(request.getFilePath()) ) {
+            return fileNotFoundHandler.onFileNotFound(request);
+        }
+
+        if (isFreeRequest) {
+            return _serveContent(request, true);
+        }
 
-        // Put the parameters into their canonical form to prevent reusing malleable shares...
-        final Long taskId = ByteUtil.bytesToLong(HexUtil.hexStringToByteArray(taskIdHex));
-        final ByteArray extraNonce2 = ByteArray.wrap(HexUtil.hexStringToByteArray(stratumExtraNonce2));
-        final Long nonce = ByteUtil.bytesToLong(HexUtil.hexStringToByteArray(stratumNonce));
-        final Long timestamp = ByteUtil.bytesToLong(HexUtil.hexStringToByteArray(stratumTimestamp));
+        final Response grantedResponse = _serveGrantedContent(request);
+        if (grantedResponse != null) {
+            return grantedResponse;
+        }
 
-        final String canonicalMessage;
-        {
-            final Json canonicalMessageJson = new Json(true);
-            canonicalMessageJson.add(taskId);
-            canonicalMessageJson.add(extraNonce2);
-            canonicalMessageJson.add(nonce);
-            canonicalMessageJson.add(timestamp);
-            canonicalMessage = canonicalMessageJson.toString();
+        if (_redeemAccessToken(request)) {
+            _recordServedResource(request, ShareLedger.PaymentType.CREDIT, null);
+            return _servePaidContent(request);
         }
 
-        final ByteArray canonicalMessageBytes = ByteArray.wrap(StringUtil.stringToBytes(canonicalMessage));
-        return HashUtil.sha256(canonicalMessageBytes);
+        final Json workerSubmitMessage = _getWorkerSubmitMessage(request);
+        final ShareAdmissionResult shareAdmissionResult = _shareValidationExecutor.admit(workerSubmitMessage);
+        if (shareAdmissionResult == ShareAdmissionResult.OVERLOADED) {
+            return ServletUtil.createOverloadedResponse(_shareValidationExecutor.getRetryAfterSeconds());
+        }
+        if ( (! shareAdmissionResult.isAccepted()) || (! _payWithShare(workerSubmitMessage)) ) {
+            _paymentRequiredLog.record(request.getFilePath());
+            return _createInvalidPaymentResponse();
+        }
+
+        _recordServedResource(request, ShareLedger.PaymentType.SHARE, workerSubmitMessage.getString(0));
+        return _servePaidContent(request);
     }
 
-    public MonetizedServlet(final File directory, final BitcoinCoreStratumServer stratumServer) {
+    public MonetizedServlet(final File directory, final ShareValidationExecutor shareValidationExecutor) {
         super(directory);
-        _stratumServer = stratumServer;
+        _shareValidationExecutor = shareValidationExecutor;
     }
 
     public void addFreeEndpoint(final String endpoint, final Boolean strictMatchEnabled) {
-        _freeEndpoints.add(new EndpointMatcher(endpoint, strictMatchEnabled));
+        synchronized (_freeEndpoints) {
+            _freeEndpoints.add(new EndpointMatcher(endpoint, strictMatchEnabled));
+            _freeEndpointMatcher = _compileFreeEndpoints();
+        }
     }
 
     @Override
-    public Response onRequest(final Request request) {
-        if (_isFreeRequest(request)) {
-            return super.onRequest(request);
-        }
+    public void setErrorHandler(final ErrorHandler errorHandler) {
+        _fileNotFoundHandler = errorHandler;
+        super.setErrorHandler(new ErrorHandler() {
+            @Override
+            public Response onFileNotFound(final Request request) {
+                _rememberMissingFilePath(request.getFilePath());
+                return errorHandler.onFileNotFound(request);
+            }
+        });
+    }
 
-        final Json workerSubmitMessage = _getWorkerSubmitMessage(request);
-        if (workerSubmitMessage == null) {
-            Logger.debug("Payment required: " + request.getFilePath());
-            return _createInvalidPaymentResponse();
-        }
+    /**
+     * Serves files from the provided ContentCache instead of reading them from disk on every request.
+     *  The ContentCache must be invalidated by the caller when the served files change.
+     */
+    public void setContentCache(final ContentCache contentCache) {
+        _contentCache = contentCache;
+    }
 
-        final Boolean isValidShare = _stratumServer.submitShare(workerSubmitMessage);
-        if (! isValidShare) {
-            Logger.debug("Payment required: " + request.getFilePath());
-            return _createInvalidPaymentResponse();
-        }
+    /**
+     * Allows paid requests to be paid for with credit purchased via the SubmitSharesApiServlet.
+     *  Each paid request presenting a valid access token deducts resourcePrice (in expected hashes) from its miner's
+     *  balance; requests without sufficient credit fall back to requiring a share.
+     */
+    public void setShareCredit(final AccessTokenAuthority accessTokenAuthority, final ShareCreditLedger shareCreditLedger, final Long resourcePrice) {
+        _resourcePrice = resourcePrice;
+        _shareCreditLedger = shareCreditLedger;
+        _accessTokenAuthority = accessTokenAuthority;
+    }
 
-        final Sha256Hash shareIdentifier = _calculateShareIdentifier(workerSubmitMessage);
-        final boolean isUnique = _submittedShares.add(shareIdentifier);
-        if (! isUnique) {
-            Logger.debug("Payment required: " + request.getFilePath());
-            return _createInvalidPaymentResponse();
-        }
+    /**
+     * Prices shares submitted with paid requests by the work they were issued at, rather than one resource per share;
+     *  requires the share credit set via MonetizedServlet::setShareCredit.
+     */
+    public void setSharePricing(final SubscriptionRegistry subscriptionRegistry, final VariableDifficultyEngine difficultyEngine) {
+        _subscriptionRegistry = subscriptionRegistry;
+        _difficultyEngine = difficultyEngine;
+    }
 
-        if (_submittedShares.size() >= _maxSubmittedShareHistory) {
-            _submittedShares.clear();
+    /**
+     * Grants each paid request for streamed content a byte budget for the same file, from which subsequent requests
+     *  presenting the grant are paid.
+     */
+    public void setByteBudgetLedger(final ByteBudgetLedger byteBudgetLedger) {
+        _byteBudgetLedger = byteBudgetLedger;
+    }
+
+    /**
+     * Limits the bytes served by a single range request; ranges are copied onto the heap, so this bounds the memory used
+     *  by each in-flight response regardless of the file's size.  Clients request the remainder via further ranges.
+     *  Requests without a Range header are served whole; the ContentStreamServer serves them without copying the file.
+     */
+    public void setMaxRangeByteCount(final Long maxRangeByteCount) {
+        _maxRangeByteCount = maxRangeByteCount;
+    }
+
+    /**
+     * Sets the log that samples and aggregates requests rejected for lacking a valid payment.
+     */
+    public void setPaymentRequiredLog(final SampledLog paymentRequiredLog) {
+        _paymentRequiredLog = paymentRequiredLog;
+    }
+
+    /**
+     * Records each paid request within the ShareLedger.
+     */
+    public void setShareLedger(final ShareLedger shareLedger) {
+        _shareLedger = shareLedger;
+    }
+
+    /**
+     * Records the latency and allocation of each request as either FREE or PAID.
+     */
+    public void setRequestMetrics(final RequestMetrics requestMetrics) {
+        _requestMetrics = requestMetrics;
+    }
+
+    /**
+     * Forgets all paths that were previously not found.
+     *  Should be invoked whenever files within the served directory are created.
+     */
+    public void clearMissingFilePaths() {
+        _missingFilePaths.clear();
+    }
+
+    @Override
+    public Response onRequest(final Request request) {
+        final boolean isFreeRequest = _isFreeRequest(request);
+        final RequestMetrics requestMetrics = _requestMetrics;
+        if (requestMetrics == null) {
+            return _onRequest(request, isFreeRequest);
         }
 
-        return super.onRequest(request);
+        final long startAllocatedBytes = RequestMetrics.getCurrentThreadAllocatedBytes();
+        final long startNanos = System.nanoTime();
+        final Response response = _onRequest(request, isFreeRequest);
+        final long durationNanos = (System.nanoTime() - startNanos);
+        final long allocatedBytes = (RequestMetrics.getCurrentThreadAllocatedBytes() - startAllocatedBytes);
+        requestMetrics.record((isFreeRequest ? RequestMetrics.RequestType.FREE : RequestMetrics.RequestType.PAID), durationNanos, allocatedBytes);
+        return response;
     }
 }
@@ -0,0 +1,110 @@
+package com.softwareverde.http.server.servlet;
+
+import com.softwareverde.http.querystring.GetParameters;
+import com.softwareverde.http.querystring.PostParameters;
+import com.softwareverde.http.server.servlet.request.Request;
+import com.softwareverde.http.server.servlet.response.Response;
+import com.softwareverde.monetize.ratelimit.TokenBucketRateLimiter;
+import com.softwareverde.monetize.share.ShareUtil;
+import com.softwareverde.monetize.subscription.SubscriptionRegistry;
+import com.softwareverde.util.StringUtil;
+
+/**
+ * Rejects requests to the wrapped Servlet with a 429 once the client's (and, if provided, the subscription's) token
+ *  bucket is empty.  Either rate limiter may be null to disable it.  The subscription is identified by the
+ *  "subscriptionId" GET or POST parameter, and its bucket is keyed by the subscription's canonical key (so that
+ *  different encodings of the same id share a bucket).  Requests without an existing subscription are only limited per
+ *  client, so that fabricated ids cannot churn the subscription bucket table.
+ */
+public class RateLimitedServlet implements Servlet {
+    public static final String SUBSCRIPTION_ID_PARAMETER_NAME = "subscriptionId";
+    protected static final int MAX_SUBSCRIPTION_ID_CHARACTER_COUNT = 64;
+    protected static final byte[] RATE_LIMITED_CONTENT = StringUtil.stringToBytes("{\"wasSuccess\":0,\"errorCode\":429,\"errorMessage\":\"Too many requests.\"}");
+
+    protected final Servlet _servlet;
+    protected final String _routeName;
+    protected final TokenBucketRateLimiter _clientRateLimiter;
+    protected final TokenBucketRateLimiter _subscriptionRateLimiter;
+    protected final SubscriptionRegistry _subscriptionRegistry;
+
+    protected String _getSubscriptionId(final Request request) {
+        final GetParameters getParameters = request.getGetParameters();
+        if (getParameters.containsKey(SUBSCRIPTION_ID_PARAMETER_NAME)) {
+            return getParameters.get(SUBSCRIPTION_ID_PARAMETER_NAME);
+        }
+
+        final PostParameters postParameters = request.getPostParameters();
+        if (postParameters.containsKey(SUBSCRIPTION_ID_PARAMETER_NAME)) {
+            return postParameters.get(SUBSCRIPTION_ID_PARAMETER_NAME);
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the canonical key of the request's subscription, or null if the request does not identify an existing
+     *  subscription.
+     */
+    protected String _getSubscriptionBucketKey(final Request request) {
+        final String subscriptionId = _getSubscriptionId(request);
+        if (! ShareUtil.isHexString(subscriptionId, 2, MAX_SUBSCRIPTION_ID_CHARACTER_COUNT)) { return null; }
+
+        final Long subscriptionKey = SubscriptionRegistry.toSubscriptionKey(subscriptionId);
+        if ( (subscriptionKey == null) || (! _subscriptionRegistry.hasSubscription(subscriptionKey)) ) { return null; }
+
+        return Long.toHexString(subscriptionKey);
+    }
+
+    protected Response _createRateLimitedResponse() {
+        final Integer tooManyRequestsCode = 429;
+
+        final Response response = new Response();
+        response.setCode(tooManyRequestsCode);
+        response.setHeader(Response.Headers.CONTENT_TYPE, "application/json");
+        response.setHeader("Retry-After", "1");
+        response.setContent(RATE_LIMITED_CONTENT);
+        return response;
+    }
+
+    /**
+     * The subscriptionRegistry is only consulted if subscriptionRateLimiter is not null.
+     */
+    public RateLimitedServlet(final Servlet servlet, final String routeName, final TokenBucketRateLimiter clientRateLimiter, final TokenBucketRateLimiter subscriptionRateLimiter, final SubscriptionRegistry subscriptionRegistry) {
+        _servlet = servlet;
+        _routeName = routeName;
+        _clientRateLimiter = clientRateLimiter;
+        _subscriptionRateLimiter = subscriptionRateLimiter;
+        _subscriptionRegistry = subscriptionRegistry;
+    }
+
+    @Override
+    public Response onRequest(final Request request) {
+        if (_clientRateLimiter != null) {
+            if (! _clientRateLimiter.tryAcquire(ServletUtil.getClientAddress(request))) {
+                return _createRateLimitedResponse();
+            }
+        }
+
+        if (_subscriptionRateLimiter != null) {
+            final String subscriptionBucketKey = _getSubscriptionBucketKey(request);
+            if ( (subscriptionBucketKey != null) && (! _subscriptionRateLimiter.tryAcquire(subscriptionBucketKey)) ) {
+                return _createRateLimitedResponse();
+            }
+        }
+
+        return _servlet.onRequest(request);
+    }
+
+    public String getRouteName() {
+        return _routeName;
+    }
+
+    /**
+     * Returns the number of requests rejected by either rate limiter.
+     */
+    public Long getRejectedCount() {
+        final long clientRejectedCount = ((_clientRateLimiter != null) ? _clientRateLimiter.getRejectedCount() : 0L);
+        final long subscriptionRejectedCount = ((_subscriptionRateLimiter != null) ? _subscriptionRateLimiter.getRejectedCount() : 0L);
+        return (clientRejectedCount + subscriptionRejectedCount);
+    }
+}
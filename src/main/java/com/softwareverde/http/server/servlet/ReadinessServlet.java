@@ -0,0 +1,33 @@
+package com.softwareverde.http.server.servlet;
+
+import com.softwareverde.http.HttpMethod;
+import com.softwareverde.http.server.servlet.request.Request;
+import com.softwareverde.http.server.servlet.response.Response;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Reports whether the server is ready to serve paid requests, for load balancers and rolling restarts.
+ *  Responds 200 once ready and 503 while starting or shutting down.
+ */
+public class ReadinessServlet implements Servlet {
+    protected final BooleanSupplier _isReady;
+
+    public ReadinessServlet(final BooleanSupplier isReady) {
+        _isReady = isReady;
+    }
+
+    @Override
+    public Response onRequest(final Request request) {
+        if (request.getMethod() != HttpMethod.GET) {
+            return ServletUtil.createErrorResponse(Response.Codes.BAD_REQUEST, "Bad request.");
+        }
+
+        if (! _isReady.getAsBoolean()) {
+            final Integer serviceUnavailableCode = 503;
+            return ServletUtil.createErrorResponse(serviceUnavailableCode, "Not ready.");
+        }
+
+        return ServletUtil.createSuccessResponse();
+    }
+}
@@ -1,5 +1,7 @@
 package com.softwareverde.http.server.servlet;
 
+import com.softwareverde.http.server.servlet.request.HostNameLookup;
+import com.softwareverde.http.server.servlet.request.Request;
 import com.softwareverde.http.server.servlet.response.JsonResponse;
 import com.softwareverde.http.server.servlet.response.Response;
 import com.softwareverde.json.Json;
@@ -38,5 +40,26 @@ public class ServletUtil {
         return new JsonResponse(responseCode, responseJson);
     }
 
+    /**
+     * Returns a 503 response instructing the client to retry after the provided number of seconds.
+     */
+    public static Response createOverloadedResponse(final Integer retryAfterSeconds) {
+        final Integer serviceUnavailableCode = 503;
+
+        final JsonResponse response = ServletUtil.createErrorResponse(serviceUnavailableCode, "Server busy.");
+        response.setHeader("Retry-After", String.valueOf(retryAfterSeconds));
+        return response;
+    }
+
+    /**
+     * Returns the IP address of the connected client, or null if it cannot be determined.
+     */
+    public static String getClientAddress(final Request request) {
+        final HostNameLookup hostNameLookup = request.resolveHostname();
+        if (hostNameLookup == null) { return null; }
+
+        return hostNameLookup.getIpAddress();
+    }
+
     protected ServletUtil() { }
 }
@@ -0,0 +1,130 @@
+package com.softwareverde.http.server.servlet;
+
+import com.softwareverde.http.HttpMethod;
+import com.softwareverde.http.querystring.PostParameters;
+import com.softwareverde.http.server.servlet.request.Request;
+import com.softwareverde.http.server.servlet.response.JsonResponse;
+import com.softwareverde.http.server.servlet.response.Response;
+import com.softwareverde.json.Json;
+import com.softwareverde.monetize.credit.AccessTokenAuthority;
+import com.softwareverde.monetize.credit.ShareCreditLedger;
+import com.softwareverde.monetize.difficulty.VariableDifficultyEngine;
+import com.softwareverde.monetize.share.ShareAdmissionResult;
+import com.softwareverde.monetize.share.ShareUtil;
+import com.softwareverde.monetize.share.ShareValidationExecutor;
+import com.softwareverde.monetize.subscription.SubscriptionRegistry;
+import com.softwareverde.util.Util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+/**
+ * Accepts a batch of shares for a single subscription, validates them in parallel, and credits their work to the
+ *  subscription's balance.  The response sets a short-lived access token (as a cookie and within the result) that
+ *  MonetizedServlet redeems against the balance, so a page's paid resources may be bought with a single request.
+ *  If every share of the batch is rejected due to overload, a 503 with a Retry-After is returned instead.
+ *  POST parameters: subscriptionId, shares (a JSON array of mining.submit parameter arrays).
+ */
+public class SubmitSharesApiServlet implements Servlet {
+    public static final Integer MAX_SHARE_COUNT = 64;
+
+    protected final SubscriptionRegistry _subscriptionRegistry;
+    protected final ShareValidationExecutor _shareValidationExecutor;
+    protected final VariableDifficultyEngine _difficultyEngine;
+    protected final ShareCreditLedger _shareCreditLedger;
+    protected final AccessTokenAuthority _accessTokenAuthority;
+    protected final Long _resourcePrice;
+
+    protected String _createAccessTokenCookie(final String accessToken) {
+        final long maxAgeSeconds = (_accessTokenAuthority.getTokenTtlMs() / 1000L);
+        return (AccessTokenAuthority.COOKIE_NAME + "=" + accessToken + "; Path=/; Max-Age=" + maxAgeSeconds + "; HttpOnly; SameSite=Strict");
+    }
+
+    /**
+     * Returns the work credited by the accepted share, which was issued to the miner at a known difficulty.
+     */
+    protected Long _getShareWork(final Long minerId, final Json workerSubmitMessage) {
+        final long taskId = ShareUtil.parseHexLong(workerSubmitMessage.getString(1));
+        final Integer workExponent = _difficultyEngine.getIssuedWorkExponent(minerId, taskId);
+        if (workExponent == null) { return 0L; }
+
+        return (1L << workExponent);
+    }
+
+    public SubmitSharesApiServlet(final SubscriptionRegistry subscriptionRegistry, final ShareValidationExecutor shareValidationExecutor, final VariableDifficultyEngine difficultyEngine, final ShareCreditLedger shareCreditLedger, final AccessTokenAuthority accessTokenAuthority, final Long resourcePrice) {
+        _subscriptionRegistry = subscriptionRegistry;
+        _shareValidationExecutor = shareValidationExecutor;
+        _difficultyEngine = difficultyEngine;
+        _shareCreditLedger = shareCreditLedger;
+        _accessTokenAuthority = accessTokenAuthority;
+        _resourcePrice = resourcePrice;
+    }
+
+    @Override
+    public Response onRequest(final Request request) {
+        if (request.getMethod() != HttpMethod.POST) {
+            return ServletUtil.createErrorResponse(Response.Codes.BAD_REQUEST, "Bad request.");
+        }
+
+        final PostParameters postParameters = request.getPostParameters();
+        final String subscriptionIdHex = postParameters.get("subscriptionId");
+        final Long minerId = _subscriptionRegistry.touchSubscription(subscriptionIdHex);
+        if (minerId == null) {
+            return ServletUtil.createErrorResponse(Response.Codes.BAD_REQUEST, "Invalid subscription ID.");
+        }
+
+        final Json sharesJson = Json.parse(Util.coalesce(postParameters.get("shares"), ""));
+        if ( (sharesJson == null) || (! sharesJson.isArray()) || (sharesJson.length() < 1) ) {
+            return ServletUtil.createErrorResponse(Response.Codes.BAD_REQUEST, "Missing shares.");
+        }
+        if (sharesJson.length() > MAX_SHARE_COUNT) {
+            return ServletUtil.createErrorResponse(Response.Codes.BAD_REQUEST, "Too many shares; at most " + MAX_SHARE_COUNT + " may be submitted at once.");
+        }
+
+        final int shareCount = sharesJson.length();
+        final List<Future<ShareAdmissionResult>> pendingResults = new ArrayList<>(shareCount);
+        final List<Json> workerSubmitMessages = new ArrayList<>(shareCount);
+        for (int i = 0; i < shareCount; ++i) {
+            final Json workerSubmitMessage = sharesJson.get(i);
+            workerSubmitMessages.add(workerSubmitMessage);
+
+            final boolean isForSubscription = ( (workerSubmitMessage != null) && workerSubmitMessage.isArray() && Util.areEqual(subscriptionIdHex, workerSubmitMessage.getString(0)) );
+            pendingResults.add(isForSubscription ? _shareValidationExecutor.submit(workerSubmitMessage) : CompletableFuture.completedFuture(ShareAdmissionResult.MALFORMED));
+        }
+
+        int acceptedShareCount = 0;
+        int overloadedShareCount = 0;
+        long creditedWork = 0L;
+        for (int i = 0; i < shareCount; ++i) {
+            final ShareAdmissionResult shareAdmissionResult = _shareValidationExecutor.getResult(pendingResults.get(i));
+            if (shareAdmissionResult == ShareAdmissionResult.OVERLOADED) {
+                overloadedShareCount += 1;
+            }
+            if (! shareAdmissionResult.isAccepted()) { continue; }
+
+            acceptedShareCount += 1;
+            creditedWork += _getShareWork(minerId, workerSubmitMessages.get(i));
+        }
+
+        if (overloadedShareCount == shareCount) {
+            return ServletUtil.createOverloadedResponse(_shareValidationExecutor.getRetryAfterSeconds());
+        }
+
+        final Long balance = (creditedWork > 0L ? _shareCreditLedger.credit(minerId, creditedWork) : _shareCreditLedger.getBalance(minerId));
+        final String accessToken = _accessTokenAuthority.createToken(minerId);
+
+        final Json resultJson = new Json(false);
+        resultJson.put("acceptedShareCount", acceptedShareCount);
+        resultJson.put("rejectedShareCount", (shareCount - acceptedShareCount));
+        resultJson.put("overloadedShareCount", overloadedShareCount);
+        resultJson.put("balance", balance);
+        resultJson.put("resourcePrice", _resourcePrice);
+        resultJson.put("accessToken", accessToken);
+
+        final JsonResponse response = new JsonResponse(Response.Codes.OK, ServletUtil.createSuccessJson(resultJson));
+        response.setHeader("Set-Cookie", _createAccessTokenCookie(accessToken));
+        return response;
+    }
+}
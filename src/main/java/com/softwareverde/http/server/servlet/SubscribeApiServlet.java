@@ -1,25 +1,29 @@
 package com.softwareverde.http.server.servlet;
 
-import com.softwareverde.bitcoin.server.module.stratum.BitcoinCoreStratumServer;
-import com.softwareverde.bitcoin.server.stratum.message.server.MinerSubscribeResponseMessage;
-import com.softwareverde.constable.bytearray.ByteArray;
 import com.softwareverde.http.HttpMethod;
 import com.softwareverde.http.server.servlet.request.Request;
 import com.softwareverde.http.server.servlet.response.JsonResponse;
 import com.softwareverde.http.server.servlet.response.Response;
-
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicLong;
+import com.softwareverde.json.Json;
+import com.softwareverde.monetize.subscription.MinerSubscriber;
 
 public class SubscribeApiServlet implements Servlet {
-    protected final BitcoinCoreStratumServer _stratumServer;
-
-    protected final AtomicLong _minerIdGenerator = new AtomicLong(0L);
-    protected final ConcurrentHashMap<ByteArray, Long> _subscriptionMinerIds;
-
-    public SubscribeApiServlet(final BitcoinCoreStratumServer stratumServer, final ConcurrentHashMap<ByteArray, Long> subscriptionMinerIds) {
-        _stratumServer = stratumServer;
-        _subscriptionMinerIds = subscriptionMinerIds;
+    protected final MinerSubscriber _minerSubscriber;
+    protected final Integer _workStreamPort;
+    protected final Integer _socketPort;
+    protected final Long _resourcePrice;
+
+    /**
+     * If workStreamPort is not null, the subscription response advertises it so that clients can receive new work via
+     *  the WorkStreamServer instead of polling.
+     *  If socketPort is not null, the subscription response advertises the BinaryWorkServer's port.
+     *  resourcePrice is the work (in expected hashes) deducted from a miner's credit for each paid resource.
+     */
+    public SubscribeApiServlet(final MinerSubscriber minerSubscriber, final Integer workStreamPort, final Integer socketPort, final Long resourcePrice) {
+        _minerSubscriber = minerSubscriber;
+        _workStreamPort = workStreamPort;
+        _socketPort = socketPort;
+        _resourcePrice = resourcePrice;
     }
 
     @Override
@@ -28,15 +32,26 @@ public class SubscribeApiServlet implements Servlet {
             return ServletUtil.createErrorResponse(Response.Codes.BAD_REQUEST, "Bad request.");
         }
 
-        final Long minerId = _minerIdGenerator.incrementAndGet();
-        final MinerSubscribeResponseMessage minerSubscribeResponseMessage = _stratumServer.subscribeMiner(minerId);
-        if (minerSubscribeResponseMessage == null) {
+        final Integer tooManyRequestsCode = 429;
+
+        final String clientAddress = ServletUtil.getClientAddress(request);
+        final MinerSubscriber.Subscription subscription = _minerSubscriber.subscribe(clientAddress);
+        if (subscription.status == MinerSubscriber.Status.CLIENT_AT_CAPACITY) {
+            return ServletUtil.createErrorResponse(tooManyRequestsCode, "Too many subscriptions.");
+        }
+        if (subscription.status != MinerSubscriber.Status.SUBSCRIBED) {
             return ServletUtil.createErrorResponse(Response.Codes.SERVER_ERROR, "Unable to subscribe miner.");
         }
 
-        final ByteArray subscriptionId = minerSubscribeResponseMessage.getSubscriptionId();
-        _subscriptionMinerIds.put(subscriptionId, minerId);
+        final Json json = subscription.subscribeResponseJson;
+        if (_workStreamPort != null) {
+            json.put("workStreamPort", _workStreamPort);
+        }
+        if (_socketPort != null) {
+            json.put("socketPort", _socketPort);
+        }
+        json.put("resourcePrice", _resourcePrice);
 
-        return new JsonResponse(Response.Codes.OK, minerSubscribeResponseMessage);
+        return new JsonResponse(Response.Codes.OK, json);
     }
 }
@@ -3,7 +3,9 @@ package com.softwareverde.monetize;
 import com.softwareverde.bitcoin.server.configuration.StratumProperties;
 import com.softwareverde.logging.LineNumberAnnotatedLog;
 import com.softwareverde.monetize.configuration.Configuration;
+import com.softwareverde.monetize.configuration.DatabaseProperties;
 import com.softwareverde.monetize.configuration.ServerProperties;
+import com.softwareverde.monetize.logging.AsyncLog;
 import com.softwareverde.logging.LogLevel;
 import com.softwareverde.logging.Logger;
 import com.softwareverde.logging.log.AnnotatedLog;
@@ -50,9 +52,35 @@ public class Main {
 
         final ServerProperties serverProperties = configuration.getServerProperties();
         final StratumProperties stratumProperties = configuration.getStratumProperties();
+        final DatabaseProperties databaseProperties = configuration.getDatabaseProperties();
+
+        final Integer logBufferCapacity = serverProperties.getLogBufferCapacity();
+        if (logBufferCapacity > 0) { // Format and write log events on a dedicated thread...
+            final AsyncLog asyncLog = new AsyncLog(System.out, logBufferCapacity);
+            for (final String packageName : serverProperties.getLineNumberLogPackages()) {
+                asyncLog.addLineNumberPackage(packageName);
+            }
+            asyncLog.start();
+            Logger.setLog(asyncLog);
+        }
 
         Logger.debug("[Starting Web Server]");
-        final WebServer webServer = new WebServer(serverProperties, stratumProperties);
+        final WebServer webServer = new WebServer(serverProperties, stratumProperties, databaseProperties);
+
+        { // Drain in-flight requests and save the replay state on SIGTERM/SIGINT...
+            final Thread shutdownThread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Logger.debug("[Stopping Web Server]");
+                    webServer.stop();
+                    Logger.debug("[Web Server Stopped]");
+                    Logger.flush();
+                }
+            });
+            shutdownThread.setName("Shutdown");
+            Runtime.getRuntime().addShutdownHook(shutdownThread);
+        }
+
         webServer.start();
 
         while (true) {
@@ -6,22 +6,66 @@ import com.softwareverde.bitcoin.server.configuration.StratumProperties;
 import com.softwareverde.bitcoin.server.module.stratum.BitcoinCoreStratumServer;
 import com.softwareverde.bitcoin.server.module.stratum.BitcoinVerdeStratumServer;
 import com.softwareverde.concurrent.threadpool.CachedThreadPool;
-import com.softwareverde.constable.bytearray.ByteArray;
 import com.softwareverde.http.server.HttpServer;
 import com.softwareverde.http.server.endpoint.Endpoint;
 import com.softwareverde.http.server.servlet.DirectoryServlet;
+import com.softwareverde.http.server.servlet.DrainableServlet;
 import com.softwareverde.http.server.servlet.GetWorkApiServlet;
+import com.softwareverde.http.server.servlet.InstrumentedServlet;
+import com.softwareverde.http.server.servlet.MetricsServlet;
 import com.softwareverde.http.server.servlet.MonetizedServlet;
+import com.softwareverde.http.server.servlet.RateLimitedServlet;
+import com.softwareverde.http.server.servlet.ReadinessServlet;
 import com.softwareverde.http.server.servlet.Servlet;
+import com.softwareverde.http.server.servlet.SubmitSharesApiServlet;
 import com.softwareverde.http.server.servlet.SubscribeApiServlet;
 import com.softwareverde.http.server.servlet.request.Request;
 import com.softwareverde.http.server.servlet.response.Response;
 import com.softwareverde.logging.Logger;
+import com.softwareverde.database.DatabaseException;
+import com.softwareverde.database.mysql.MysqlDatabaseConnectionFactory;
+import com.softwareverde.monetize.configuration.DatabaseProperties;
 import com.softwareverde.monetize.configuration.ServerProperties;
+import com.softwareverde.monetize.content.ContentCache;
+import com.softwareverde.monetize.content.ContentStreamServer;
+import com.softwareverde.monetize.content.DirectoryWatcher;
+import com.softwareverde.monetize.credit.AccessTokenAuthority;
+import com.softwareverde.monetize.credit.ByteBudgetLedger;
+import com.softwareverde.monetize.credit.ShareCreditLedger;
+import com.softwareverde.monetize.difficulty.VariableDifficultyEngine;
+import com.softwareverde.monetize.ledger.ShareLedger;
+import com.softwareverde.monetize.lifecycle.RequestDrain;
+import com.softwareverde.monetize.logging.SampledLog;
+import com.softwareverde.monetize.metrics.HashrateEstimator;
+import com.softwareverde.monetize.metrics.MetricsRegistry;
+import com.softwareverde.monetize.metrics.RequestMetrics;
+import com.softwareverde.monetize.ratelimit.TokenBucketRateLimiter;
+import com.softwareverde.monetize.share.BlockCandidateSubmitter;
+import com.softwareverde.monetize.share.JobRegistry;
+import com.softwareverde.monetize.share.MysqlShareReplayStore;
+import com.softwareverde.monetize.share.ShareAdmissionPipeline;
+import com.softwareverde.monetize.share.ShareAdmissionResult;
+import com.softwareverde.monetize.share.ShareAdmissionStatistics;
+import com.softwareverde.monetize.share.ShareIdentifierCalculator;
+import com.softwareverde.monetize.share.ShareReplayCache;
+import com.softwareverde.monetize.share.ShareReplaySnapshot;
+import com.softwareverde.monetize.share.ShareReplayStore;
+import com.softwareverde.monetize.share.ShareValidationExecutor;
+import com.softwareverde.monetize.subscription.MinerSubscriber;
+import com.softwareverde.monetize.subscription.SubscriptionRegistry;
+import com.softwareverde.monetize.work.BinaryWorkServer;
+import com.softwareverde.monetize.work.WorkPublisher;
+import com.softwareverde.monetize.work.WorkResponseCache;
+import com.softwareverde.monetize.work.WorkStreamServer;
 import com.softwareverde.util.Util;
 
 import java.io.File;
-import java.util.concurrent.ConcurrentHashMap;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class WebServer {
     protected final ServerProperties _serverProperties;
@@ -30,6 +74,34 @@ public class WebServer {
     protected final HttpServer _apiServer = new HttpServer();
     protected final BitcoinCoreStratumServer _stratumServer;
     protected final Address _coinbaseAddress;
+    protected final ShareReplayCache _shareReplayCache;
+    protected final MysqlShareReplayStore _mysqlShareReplayStore;
+    protected final JobRegistry _jobRegistry;
+    protected final ShareAdmissionPipeline _shareAdmissionPipeline;
+    protected final BlockCandidateSubmitter _blockCandidateSubmitter;
+    protected final SubscriptionRegistry _subscriptionRegistry;
+    protected final MinerSubscriber _minerSubscriber;
+    protected final WorkResponseCache _workResponseCache;
+    protected final VariableDifficultyEngine _difficultyEngine;
+    protected final ShareCreditLedger _shareCreditLedger;
+    protected final AccessTokenAuthority _accessTokenAuthority;
+    protected final ByteBudgetLedger _byteBudgetLedger;
+    protected final ShareValidationExecutor _shareValidationExecutor;
+    protected final Long _resourcePrice;
+    protected final WorkPublisher _workPublisher;
+    protected final ShareLedger _shareLedger;
+    protected final MetricsRegistry _metricsRegistry = new MetricsRegistry();
+    protected final RequestMetrics _requestMetrics = new RequestMetrics();
+    protected final CopyOnWriteArrayList<RateLimitedServlet> _rateLimitedServlets = new CopyOnWriteArrayList<>();
+    protected final RequestDrain _requestDrain = new RequestDrain();
+    protected final ShareReplaySnapshot _shareReplaySnapshot;
+    protected final AtomicBoolean _isStopped = new AtomicBoolean(false);
+    protected volatile boolean _isStratumStarted = false;
+    protected volatile long _startTimestamp;
+    protected DirectoryWatcher _directoryWatcher;
+    protected WorkStreamServer _workStreamServer;
+    protected BinaryWorkServer _binaryWorkServer;
+    protected ContentStreamServer _contentStreamServer;
 
     protected <T extends Servlet> void _assignEndpoint(final String path, final T servlet) {
         final Endpoint endpoint = new Endpoint(servlet);
@@ -38,6 +110,32 @@ public class WebServer {
         _apiServer.addEndpoint(endpoint);
     }
 
+    protected TokenBucketRateLimiter _createRateLimiter(final Long requestsPerMinute, final Integer burst) {
+        if (requestsPerMinute < 1L) { return null; } // Disabled...
+
+        return new TokenBucketRateLimiter(requestsPerMinute, burst, _serverProperties.getRateLimitMaxBucketCount());
+    }
+
+    /**
+     * Wraps the servlet with per-client and per-subscription rate limits; a limit of zero requests per minute disables it.
+     */
+    protected Servlet _rateLimit(final Servlet servlet, final String routeName, final Long requestsPerMinutePerClient, final Long requestsPerMinutePerSubscription, final Integer burst) {
+        final TokenBucketRateLimiter clientRateLimiter = _createRateLimiter(requestsPerMinutePerClient, burst);
+        final TokenBucketRateLimiter subscriptionRateLimiter = _createRateLimiter(requestsPerMinutePerSubscription, burst);
+        if ( (clientRateLimiter == null) && (subscriptionRateLimiter == null) ) { return servlet; }
+
+        final RateLimitedServlet rateLimitedServlet = new RateLimitedServlet(servlet, routeName, clientRateLimiter, subscriptionRateLimiter, _subscriptionRegistry);
+        _rateLimitedServlets.add(rateLimitedServlet);
+        return rateLimitedServlet;
+    }
+
+    /**
+     * Wraps the servlet so that shutdown waits for its in-flight requests and refuses new ones.
+     */
+    protected Servlet _drainable(final Servlet servlet) {
+        return new DrainableServlet(servlet, _requestDrain, _serverProperties.getOverloadRetryAfterSeconds());
+    }
+
     protected Boolean _isSslEnabled() {
         if (_serverProperties.getTlsPort() < 1) {
             return false;
@@ -54,16 +152,305 @@ public class WebServer {
         return true;
     }
 
-    public WebServer(final ServerProperties serverProperties, final StratumProperties stratumProperties) {
+    protected void _registerMetrics() {
+        _metricsRegistry.addCollector(_requestMetrics);
+
+        final ShareAdmissionStatistics shareAdmissionStatistics = _shareAdmissionPipeline.getStatistics();
+        _metricsRegistry.addCollector(new MetricsRegistry.Collector() {
+            @Override
+            public void collect(final StringBuilder stringBuilder) {
+                final String name = "monetize_shares_total";
+                MetricsRegistry.appendHeader(stringBuilder, name, "Submitted shares by admission result.", "counter");
+                for (final ShareAdmissionResult shareAdmissionResult : ShareAdmissionResult.values()) {
+                    final String labels = ("result=\"" + shareAdmissionResult.name().toLowerCase(Locale.ROOT) + "\"");
+                    MetricsRegistry.appendSample(stringBuilder, name, labels, shareAdmissionStatistics.getCount(shareAdmissionResult));
+                }
+            }
+        });
+        _metricsRegistry.addCounter("monetize_accepted_share_work_total", "Expected hashes represented by accepted shares.", shareAdmissionStatistics::getAcceptedWork);
+
+        _metricsRegistry.addCollector(new MetricsRegistry.Collector() {
+            @Override
+            public void collect(final StringBuilder stringBuilder) {
+                final String name = "monetize_block_candidates_total";
+                MetricsRegistry.appendHeader(stringBuilder, name, "Shares satisfying the network target, by submission outcome.", "counter");
+                for (final BlockCandidateSubmitter.Outcome outcome : BlockCandidateSubmitter.Outcome.values()) {
+                    final String labels = ("outcome=\"" + outcome.name().toLowerCase(Locale.ROOT) + "\"");
+                    MetricsRegistry.appendSample(stringBuilder, name, labels, _blockCandidateSubmitter.getOutcomeCount(outcome));
+                }
+
+                final String latencyName = "monetize_block_candidate_submit_seconds";
+                MetricsRegistry.appendHeader(stringBuilder, latencyName, "Time from detecting a block candidate until the stratum server accepted it.", "histogram");
+                _blockCandidateSubmitter.getSubmitLatency().render(stringBuilder, latencyName, "");
+            }
+        });
+        _metricsRegistry.addCounter("monetize_block_candidate_retries_total", "Failed block candidate submissions that were retried.", _blockCandidateSubmitter::getRetryCount);
+
+        final HashrateEstimator hashrateEstimator = new HashrateEstimator(shareAdmissionStatistics);
+        _metricsRegistry.addGauge("monetize_estimated_client_hashrate", "Aggregate client hashes per second, estimated from accepted shares.", hashrateEstimator::getHashesPerSecond);
+
+        if (_shareReplayCache != null) {
+            _metricsRegistry.addGauge("monetize_replay_cache_shares", "Shares held by the replay cache.", _shareReplayCache::getShareCount);
+            _metricsRegistry.addGauge("monetize_replay_cache_jobs", "Jobs tracked by the replay cache.", () -> _shareReplayCache.getJobCount());
+        }
+        if (_mysqlShareReplayStore != null) {
+            _metricsRegistry.addGauge("monetize_shared_replay_store_queued_claims", "Share claims waiting to be written to the shared replay store.", () -> _mysqlShareReplayStore.getQueuedShareCount());
+            _metricsRegistry.addCounter("monetize_shared_replay_store_accepted_claims_total", "Share claims won by this node.", _mysqlShareReplayStore::getShareCount);
+            _metricsRegistry.addCounter("monetize_shared_replay_store_rejected_claims_total", "Share claims lost because the share had already been spent.", _mysqlShareReplayStore::getRejectedShareCount);
+            _metricsRegistry.addCounter("monetize_shared_replay_store_failed_claims_total", "Share claims rejected because they could not be written in time.", _mysqlShareReplayStore::getFailedShareCount);
+            _metricsRegistry.addCounter("monetize_shared_replay_store_lookups_total", "Duplicate checks that queried the shared replay store.", _mysqlShareReplayStore::getExactLookupCount);
+            _metricsRegistry.addCounter("monetize_shared_replay_store_skipped_lookups_total", "Duplicate checks answered by the local Bloom filter.", _mysqlShareReplayStore::getSkippedLookupCount);
+        }
+        _metricsRegistry.addGauge("monetize_active_subscriptions", "Active miner subscriptions.", () -> _subscriptionRegistry.getSubscriptionCount());
+        _metricsRegistry.addGauge("monetize_variable_difficulty_miners", "Miners tracked by the variable difficulty engine.", () -> _difficultyEngine.getMinerCount());
+        _metricsRegistry.addGauge("monetize_credit_accounts", "Miners holding purchased credit.", () -> _shareCreditLedger.getAccountCount());
+
+        _metricsRegistry.addGauge("monetize_share_validation_queue_depth", "Shares waiting for a validation thread.", () -> _shareValidationExecutor.getQueuedShareCount());
+        _metricsRegistry.addGauge("monetize_share_validation_active_threads", "Validation threads currently validating a share.", () -> _shareValidationExecutor.getActiveThreadCount());
+        _metricsRegistry.addCounter("monetize_coalesced_shares_total", "Concurrent duplicate submissions coalesced onto a single validation.", _shareValidationExecutor::getCoalescedShareCount);
+        _metricsRegistry.addCounter("monetize_share_validation_timeouts_total", "Shares whose submitter stopped waiting for their validation.", shareAdmissionStatistics::getTimeoutCount);
+
+        _metricsRegistry.addGauge("monetize_work_streams", "Open work stream connections.", () -> {
+            final WorkStreamServer workStreamServer = _workStreamServer;
+            return ((workStreamServer != null) ? workStreamServer.getStreamCount() : 0L);
+        });
+        _metricsRegistry.addGauge("monetize_binary_work_sockets", "Open binary work socket connections.", () -> {
+            final BinaryWorkServer binaryWorkServer = _binaryWorkServer;
+            return ((binaryWorkServer != null) ? binaryWorkServer.getOpenConnectionCount() : 0L);
+        });
+
+        _metricsRegistry.addCollector(new MetricsRegistry.Collector() {
+            @Override
+            public void collect(final StringBuilder stringBuilder) {
+                final String name = "monetize_rate_limited_requests_total";
+                MetricsRegistry.appendHeader(stringBuilder, name, "Requests rejected by a rate limit, by route.", "counter");
+                for (final RateLimitedServlet rateLimitedServlet : _rateLimitedServlets) {
+                    MetricsRegistry.appendSample(stringBuilder, name, ("route=\"" + rateLimitedServlet.getRouteName() + "\""), rateLimitedServlet.getRejectedCount());
+                }
+            }
+        });
+
+        if (_byteBudgetLedger != null) {
+            _metricsRegistry.addGauge("monetize_stream_grants", "Byte budget grants held for streamed content.", () -> _byteBudgetLedger.getGrantCount());
+            _metricsRegistry.addCounter("monetize_stream_granted_bytes_total", "Bytes of streamed content paid for by byte budget grants.", _byteBudgetLedger::getSpentByteCount);
+        }
+        _metricsRegistry.addGauge("monetize_content_stream_connections", "Open content stream connections.", () -> {
+            final ContentStreamServer contentStreamServer = _contentStreamServer;
+            return ((contentStreamServer != null) ? contentStreamServer.getConnectionCount() : 0L);
+        });
+
+        _metricsRegistry.addGauge("monetize_ready", "Whether the server is ready to serve paid requests.", () -> (this.isReady() ? 1L : 0L));
+        _metricsRegistry.addGauge("monetize_in_flight_requests", "Requests currently being served.", () -> _requestDrain.getInFlightRequestCount());
+
+        if (_shareLedger != null) {
+            _metricsRegistry.addGauge("monetize_share_ledger_queued_records", "Records waiting to be written to the share ledger.", () -> _shareLedger.getQueuedRecordCount());
+            _metricsRegistry.addCounter("monetize_share_ledger_dropped_records_total", "Records dropped because the share ledger queue was full or the write failed.", _shareLedger::getDroppedRecordCount);
+        }
+    }
+
+    /**
+     * Restores the replay state saved by the previous shutdown; must complete before shares are admitted.
+     */
+    protected void _restoreSnapshot() {
+        try {
+            final Long restoredShareCount = _shareReplaySnapshot.restore(_shareReplayCache, _serverProperties.getSnapshotMaxAgeMs());
+            Logger.debug("Restored " + restoredShareCount + " accepted shares from the snapshot.");
+        }
+        catch (final IOException exception) {
+            Logger.warn("Unable to restore the share replay snapshot.", exception);
+        }
+    }
+
+    protected void _saveSnapshot() {
+        try {
+            final Long savedShareCount = _shareReplaySnapshot.save(_shareReplayCache);
+            Logger.debug("Saved " + savedShareCount + " accepted shares to the snapshot.");
+        }
+        catch (final IOException exception) {
+            Logger.warn("Unable to save the share replay snapshot.", exception);
+        }
+    }
+
+    /**
+     * Starts the stratum server (which connects to the node) and then the WorkPublisher, off of the calling thread so
+     *  that the HTTP listener starts concurrently.  The server is ready once the first job has been published.
+     */
+    protected void _startStratumServer() {
+        final Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    _stratumServer.start();
+                    _isStratumStarted = true;
+                    Logger.debug("[Stratum Server Started in " + (System.currentTimeMillis() - _startTimestamp) + "ms]");
+                }
+                catch (final Exception exception) {
+                    Logger.warn("Unable to start stratum server.", exception);
+                    return;
+                }
+
+                _workPublisher.start();
+            }
+        });
+        thread.setName("Stratum Server Startup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Creates the schema, restores the replay state of recently accepted shares (unless the replay store is shared), and
+     *  starts the ledger's writer.  Must complete before shares are admitted.
+     */
+    protected void _startShareLedger() {
+        try {
+            _shareLedger.initializeSchema();
+            if (_shareReplayCache != null) {
+                final Integer restoredShareCount = _shareLedger.restoreReplayCache(_shareReplayCache, _serverProperties.getShareLedgerReplayWindowMs());
+                Logger.debug("Restored " + restoredShareCount + " accepted shares from the share ledger.");
+            }
+        }
+        catch (final DatabaseException exception) {
+            Logger.warn("Unable to restore accepted shares from the share ledger.", exception);
+        }
+
+        _shareLedger.start();
+    }
+
+    /**
+     * Creates the shared replay store's schema and starts its writer; must complete before shares are admitted.
+     */
+    protected void _startSharedReplayStore() {
+        try {
+            _mysqlShareReplayStore.initializeSchema();
+        }
+        catch (final DatabaseException exception) {
+            Logger.warn("Unable to initialize the shared replay store.", exception);
+        }
+
+        _mysqlShareReplayStore.start();
+    }
+
+    /**
+     * Creates the server with its own stratum server if stratumServer is null, which connects to the node configured by
+     *  stratumProperties.
+     */
+    protected WebServer(final ServerProperties serverProperties, final StratumProperties stratumProperties, final BitcoinCoreStratumServer stratumServer, final DatabaseProperties databaseProperties) {
         _serverProperties = serverProperties;
 
         _threadPool = new CachedThreadPool(12, 30000L);
-        _stratumServer = new BitcoinVerdeStratumServer(stratumProperties, _threadPool, new CoreInflater(), null);
+        _stratumServer = ((stratumServer != null) ? stratumServer : new BitcoinVerdeStratumServer(stratumProperties, _threadPool, new CoreInflater(), null));
         _coinbaseAddress = serverProperties.getCoinbaseAddress();
+        _jobRegistry = new JobRegistry();
+        _workResponseCache = new WorkResponseCache();
+        { // Shares paid inline must each cover the resource's price; a cheaper share would be spent without paying for its request...
+            final Integer resourcePriceWorkExponent = serverProperties.getResourcePriceWorkExponent();
+            final Integer minShareWorkExponent = Math.max(serverProperties.getMinShareWorkExponent(), resourcePriceWorkExponent);
+            final Integer maxShareWorkExponent = Math.max(serverProperties.getMaxShareWorkExponent(), minShareWorkExponent);
+            if (minShareWorkExponent > serverProperties.getMinShareWorkExponent()) {
+                Logger.warn("Raising minShareWorkExponent to resourcePriceWorkExponent (" + resourcePriceWorkExponent + ").");
+            }
+            _difficultyEngine = new VariableDifficultyEngine(minShareWorkExponent, maxShareWorkExponent, serverProperties.getInitialShareWorkExponent(), serverProperties.getTargetShareIntervalMs(), serverProperties.getShareRetargetIntervalMs());
+        }
+
+        _resourcePrice = (1L << serverProperties.getResourcePriceWorkExponent());
+        _shareCreditLedger = new ShareCreditLedger(_resourcePrice * serverProperties.getMaxCreditedResourceCount());
+        _accessTokenAuthority = new AccessTokenAuthority(serverProperties.getAccessTokenTtlMs()); // Credit is held in memory, so tokens are only valid until restart...
+        _byteBudgetLedger = ((serverProperties.getStreamGrantByteCount() > 0L) ? new ByteBudgetLedger(serverProperties.getStreamGrantByteCount(), serverProperties.getStreamGrantTtlMs(), serverProperties.getMaxStreamGrantCount()) : null);
+
+        _subscriptionRegistry = new SubscriptionRegistry(serverProperties.getMaxSubscriptionCount(), serverProperties.getSubscriptionIdleTimeoutMs(), serverProperties.getMaxSubscriptionsPerClient(), new SubscriptionRegistry.RemovalCallback() {
+            @Override
+            public void onSubscriptionRemoved(final Long minerId) {
+                _stratumServer.unsubscribeMiner(minerId);
+                _difficultyEngine.removeMiner(minerId);
+                _shareCreditLedger.removeMiner(minerId);
+            }
+        });
+        _minerSubscriber = new MinerSubscriber(_stratumServer, _subscriptionRegistry);
+
+        final MysqlDatabaseConnectionFactory databaseConnectionFactory = (Util.isBlank(databaseProperties.getHostname()) ? null : new MysqlDatabaseConnectionFactory(databaseProperties.getHostname(), databaseProperties.getPort(), databaseProperties.getSchema(), databaseProperties.getUsername(), databaseProperties.getPassword()));
+
+        final ShareReplayStore shareReplayStore;
+        if ( (databaseConnectionFactory != null) && serverProperties.isSharedReplayStoreEnabled() ) { // Shares are deduplicated across every node using the database...
+            _shareReplayCache = null;
+            _mysqlShareReplayStore = new MysqlShareReplayStore(databaseConnectionFactory, serverProperties.getSharedReplayStoreBatchSize(), serverProperties.getSharedReplayStoreBatchIntervalMs(), serverProperties.getSharedReplayStoreQueueDepth(), serverProperties.getShareValidationTimeoutMs(), serverProperties.getSharedReplayStoreBloomFilterShareCount(), serverProperties.getSharedReplayStoreRetentionMs());
+            shareReplayStore = _mysqlShareReplayStore;
+        }
+        else {
+            _shareReplayCache = new ShareReplayCache();
+            _mysqlShareReplayStore = null;
+            shareReplayStore = _shareReplayCache;
+        }
+
+        final ShareIdentifierCalculator.Mode shareIdentifierMode = (serverProperties.areLegacyShareIdentifiersEnabled() ? ShareIdentifierCalculator.Mode.LEGACY_JSON : ShareIdentifierCalculator.Mode.BINARY);
+        _shareAdmissionPipeline = new ShareAdmissionPipeline(_stratumServer, shareReplayStore, _jobRegistry, new ShareIdentifierCalculator(shareIdentifierMode), _subscriptionRegistry, _workResponseCache, _difficultyEngine);
+        _blockCandidateSubmitter = new BlockCandidateSubmitter(_stratumServer, _workResponseCache, serverProperties.getBlockSubmitMaxAttemptCount(), serverProperties.getBlockSubmitRetryDelayMs());
+        _shareAdmissionPipeline.setBlockCandidateSubmitter(_blockCandidateSubmitter);
+        _shareValidationExecutor = new ShareValidationExecutor(_shareAdmissionPipeline, serverProperties.getShareValidationThreadCount(), serverProperties.getShareValidationQueueDepth(), serverProperties.getShareValidationTimeoutMs(), serverProperties.getOverloadRetryAfterSeconds());
+
+        if (databaseConnectionFactory != null) {
+            _shareLedger = new ShareLedger(databaseConnectionFactory, serverProperties.getShareLedgerBatchSize(), serverProperties.getShareLedgerFlushIntervalMs(), serverProperties.getShareLedgerQueueDepth());
+            _shareAdmissionPipeline.setAcceptedShareCallback(new ShareAdmissionPipeline.AcceptedShareCallback() {
+                @Override
+                public void onShareAccepted(final String subscriptionIdHex, final Long minerId, final Long jobKey, final Long shareFingerprint, final Integer workExponent) {
+                    _shareLedger.recordAcceptedShare(subscriptionIdHex, jobKey, shareFingerprint, (1L << workExponent));
+                }
+            });
+        }
+        else {
+            _shareLedger = null;
+        }
+
+        _workPublisher = new WorkPublisher(_stratumServer, _workResponseCache, _jobRegistry, serverProperties.getWorkPollIntervalMs());
+        _workPublisher.addListener(_blockCandidateSubmitter);
+        _workPublisher.addListener(new WorkPublisher.Listener() {
+            protected final AtomicBoolean _isFirstJob = new AtomicBoolean(true);
+
+            @Override
+            public void onNewJob(final Long jobId) {
+                if (_isFirstJob.getAndSet(false)) {
+                    Logger.debug("[Ready in " + (System.currentTimeMillis() - _startTimestamp) + "ms]");
+                }
+            }
+        });
+        _workPublisher.addListener(new WorkPublisher.Listener() {
+            @Override
+            public void onNewJob(final Long jobId) { // Sweep idle subscriptions that are not reached while subscriptions are added...
+                _subscriptionRegistry.expireIdleSubscriptions();
+            }
+        });
+
+        final String snapshotFile = serverProperties.getSnapshotFile();
+        _shareReplaySnapshot = ( (Util.isBlank(snapshotFile) || (_shareReplayCache == null)) ? null : new ShareReplaySnapshot(new File(snapshotFile)));
+
+        _registerMetrics();
+    }
+
+    public WebServer(final ServerProperties serverProperties, final StratumProperties stratumProperties, final DatabaseProperties databaseProperties) {
+        this(serverProperties, stratumProperties, null, databaseProperties);
+    }
+
+    /**
+     * Creates the server using the provided stratum server instead of connecting to a node; used for load testing.
+     */
+    public WebServer(final ServerProperties serverProperties, final BitcoinCoreStratumServer stratumServer, final DatabaseProperties databaseProperties) {
+        this(serverProperties, null, stratumServer, databaseProperties);
     }
 
     public void start() {
+        _startTimestamp = System.currentTimeMillis();
+
+        if (_shareReplaySnapshot != null) {
+            _restoreSnapshot();
+        }
+        if (_mysqlShareReplayStore != null) {
+            _startSharedReplayStore();
+        }
+        if (_shareLedger != null) {
+            _startShareLedger();
+        }
+
         _threadPool.start();
+        _blockCandidateSubmitter.start();
         _apiServer.setPort(_serverProperties.getPort());
         _stratumServer.setCoinbaseAddress(_coinbaseAddress);
 
@@ -81,15 +468,13 @@ public class WebServer {
 
         { // Static Content
             final File servedDirectory = new File(_serverProperties.getRootDirectory() +"/");
-            final MonetizedServlet indexServlet = new MonetizedServlet(servedDirectory, _stratumServer);
+            final MonetizedServlet indexServlet = new MonetizedServlet(servedDirectory, _shareValidationExecutor);
 
             indexServlet.setShouldServeDirectories(true);
             indexServlet.setIndexFile("index.html");
             indexServlet.setErrorHandler(new DirectoryServlet.ErrorHandler() {
                 @Override
                 public Response onFileNotFound(final Request request) {
-                    indexServlet.reIndexFiles();
-
                     final Response response = new Response();
                     response.setCode(Response.Codes.NOT_FOUND);
                     response.setContent("Not found.");
@@ -102,38 +487,188 @@ public class WebServer {
             indexServlet.addFreeEndpoint("/js/http.js", true);
             indexServlet.addFreeEndpoint("/js/libauth.js", true);
             indexServlet.addFreeEndpoint("/js/monetize.js", true);
+            indexServlet.addFreeEndpoint("/js/monetize-worker.js", true);
+
+            final ContentCache contentCache = new ContentCache(servedDirectory, "index.html", _serverProperties.getContentCacheMaxByteCount(), _serverProperties.getContentCacheMaxFileByteCount());
+            indexServlet.setContentCache(contentCache);
+            indexServlet.setShareCredit(_accessTokenAuthority, _shareCreditLedger, _resourcePrice);
+            indexServlet.setSharePricing(_subscriptionRegistry, _difficultyEngine);
+            indexServlet.setShareLedger(_shareLedger);
+            indexServlet.setRequestMetrics(_requestMetrics);
+            indexServlet.setMaxRangeByteCount(_serverProperties.getMaxRangeByteCount());
+            indexServlet.setByteBudgetLedger(_byteBudgetLedger);
+            indexServlet.setPaymentRequiredLog(new SampledLog("Payment required", _serverProperties.getRejectionLogSampleRate(), _serverProperties.getRejectionLogMaxSampleCount(), _serverProperties.getRejectionLogIntervalMs()));
 
-            final Endpoint endpoint = new Endpoint(indexServlet);
+            _directoryWatcher = new DirectoryWatcher(servedDirectory);
+            _directoryWatcher.addListener(new DirectoryWatcher.Listener() {
+                @Override
+                public void onFilesChanged(final Set<Path> changedFiles) {
+                    contentCache.invalidate(changedFiles);
+                    indexServlet.reIndexFiles();
+                    indexServlet.clearMissingFilePaths();
+                }
+            });
+            _directoryWatcher.start();
+
+            final Servlet rateLimitedServlet = _rateLimit(_drainable(indexServlet), "content", _serverProperties.getContentRequestsPerMinutePerClient(), 0L, _serverProperties.getContentRequestBurst());
+            final Endpoint endpoint = new Endpoint(rateLimitedServlet);
             endpoint.setPath("/");
             endpoint.setStrictPathEnabled(false);
             _apiServer.addEndpoint(endpoint);
+
+            final Integer contentStreamPort = _serverProperties.getContentStreamPort();
+            if ( (contentStreamPort > 0) && (_byteBudgetLedger != null) ) { // Serve granted content via zero-copy transfers...
+                _contentStreamServer = new ContentStreamServer(contentStreamPort, _serverProperties.getMaxContentStreamConnectionCount(), contentCache, _byteBudgetLedger);
+                try {
+                    _contentStreamServer.start();
+                    Logger.debug("[Content Stream Listening on " + contentStreamPort + "]");
+                }
+                catch (final IOException exception) {
+                    Logger.warn("Unable to start content stream server.", exception);
+                }
+            }
         }
 
-        final ConcurrentHashMap<ByteArray, Long> subscriptionMinerIds = new ConcurrentHashMap<>();
+        final Integer workStreamPort = _serverProperties.getWorkStreamPort();
+        final boolean workStreamIsEnabled = (workStreamPort > 0);
+        final Integer socketPort = _serverProperties.getSocketPort();
+        final boolean socketIsEnabled = (socketPort > 0);
+
         {
-            final Endpoint endpoint = new Endpoint(new SubscribeApiServlet(_stratumServer, subscriptionMinerIds));
+            final SubscribeApiServlet subscribeApiServlet = new SubscribeApiServlet(_minerSubscriber, (workStreamIsEnabled ? workStreamPort : null), (socketIsEnabled ? socketPort : null), _resourcePrice);
+            final Servlet instrumentedServlet = new InstrumentedServlet(_drainable(subscribeApiServlet), _requestMetrics, RequestMetrics.RequestType.SUBSCRIBE);
+            final Endpoint endpoint = new Endpoint(_rateLimit(instrumentedServlet, "subscribe", _serverProperties.getSubscribeRequestsPerMinutePerClient(), 0L, _serverProperties.getSubscribeRequestBurst()));
             endpoint.setPath("/api/v1/monetize/subscribe");
             endpoint.setStrictPathEnabled(true);
             _apiServer.addEndpoint(endpoint);
         }
 
+        final GetWorkApiServlet getWorkApiServlet = new GetWorkApiServlet(_stratumServer, _subscriptionRegistry, _jobRegistry, _workResponseCache, _difficultyEngine);
         {
-            final Endpoint endpoint = new Endpoint(new GetWorkApiServlet(_stratumServer, subscriptionMinerIds));
+            final Servlet instrumentedServlet = new InstrumentedServlet(_drainable(getWorkApiServlet), _requestMetrics, RequestMetrics.RequestType.GET_WORK);
+            final Endpoint endpoint = new Endpoint(_rateLimit(instrumentedServlet, "get-work", _serverProperties.getGetWorkRequestsPerMinutePerClient(), _serverProperties.getGetWorkRequestsPerMinutePerSubscription(), _serverProperties.getGetWorkRequestBurst()));
             endpoint.setPath("/api/v1/monetize/get-work");
             endpoint.setStrictPathEnabled(true);
             _apiServer.addEndpoint(endpoint);
         }
 
-        _stratumServer.start();
+        {
+            final SubmitSharesApiServlet submitSharesApiServlet = new SubmitSharesApiServlet(_subscriptionRegistry, _shareValidationExecutor, _difficultyEngine, _shareCreditLedger, _accessTokenAuthority, _resourcePrice);
+            final Servlet instrumentedServlet = new InstrumentedServlet(_drainable(submitSharesApiServlet), _requestMetrics, RequestMetrics.RequestType.SUBMIT_SHARES);
+            final Endpoint endpoint = new Endpoint(_rateLimit(instrumentedServlet, "submit-shares", _serverProperties.getSubmitSharesRequestsPerMinutePerClient(), _serverProperties.getSubmitSharesRequestsPerMinutePerSubscription(), _serverProperties.getSubmitSharesRequestBurst()));
+            endpoint.setPath("/api/v1/monetize/submit-shares");
+            endpoint.setStrictPathEnabled(true);
+            _apiServer.addEndpoint(endpoint);
+        }
+
+        final String metricsToken = _serverProperties.getMetricsToken();
+        if (! Util.isBlank(metricsToken)) { // The metrics are served on the public port, so they are only exposed to scrapers presenting the token...
+            final Endpoint endpoint = new Endpoint(new MetricsServlet(_metricsRegistry, metricsToken));
+            endpoint.setPath("/metrics");
+            endpoint.setStrictPathEnabled(true);
+            _apiServer.addEndpoint(endpoint);
+        }
+
+        {
+            final Endpoint endpoint = new Endpoint(new ReadinessServlet(this::isReady));
+            endpoint.setPath("/ready");
+            endpoint.setStrictPathEnabled(true);
+            _apiServer.addEndpoint(endpoint);
+        }
+
+        _startStratumServer();
         _apiServer.start();
 
+        if (workStreamIsEnabled) { // Push new work to browser miners...
+            _workStreamServer = new WorkStreamServer(workStreamPort, _serverProperties.getMaxWorkStreamCount(), _subscriptionRegistry, _workResponseCache, _workPublisher, _difficultyEngine);
+            _workPublisher.addListener(_workStreamServer);
+
+            try {
+                _workStreamServer.start();
+                Logger.debug("[Work Stream Listening on " + workStreamPort + "]");
+            }
+            catch (final IOException exception) {
+                Logger.warn("Unable to start work stream server.", exception);
+            }
+        }
+        if (socketIsEnabled) { // Serve work and accept shares via the binary protocol...
+            _binaryWorkServer = new BinaryWorkServer(socketPort, _serverProperties.getMaxSocketConnectionCount(), _minerSubscriber, _subscriptionRegistry, _workResponseCache, _workPublisher, _difficultyEngine, _shareValidationExecutor, _shareCreditLedger, _accessTokenAuthority, _resourcePrice);
+            _workPublisher.addListener(_binaryWorkServer);
+
+            try {
+                _binaryWorkServer.start();
+                Logger.debug("[Binary Work Socket Listening on " + socketPort + "]");
+            }
+            catch (final IOException exception) {
+                Logger.warn("Unable to start binary work server.", exception);
+            }
+        }
+
         final Integer httpPort = _serverProperties.getPort();
         final Integer tlsPort = _serverProperties.getTlsPort();
         Logger.debug("[Server Listening on " + httpPort + (sslIsEnabled ? (" / " + tlsPort) : "") + "]");
     }
 
+    /**
+     * Returns true once the stratum server has started and work is available, until shutdown begins.
+     */
+    public Boolean isReady() {
+        if (_requestDrain.isDraining()) { return false; }
+        if (! _isStratumStarted) { return false; }
+
+        return (_workPublisher.getCurrentJobId() != null);
+    }
+
+    public RequestMetrics getRequestMetrics() {
+        return _requestMetrics;
+    }
+
+    /**
+     * Stops the server without dropping in-flight work: new requests are refused, in-flight requests and queued shares
+     *  are given up to the configured drain timeout to complete, and the replay state is saved once no more shares can
+     *  be admitted.  Subsequent invocations do nothing.
+     */
     public void stop() {
+        if (! _isStopped.compareAndSet(false, true)) { return; }
+
+        final long deadline = (System.currentTimeMillis() + _serverProperties.getShutdownDrainTimeoutMs());
+
+        if (_directoryWatcher != null) {
+            _directoryWatcher.stop();
+        }
+
+        _workPublisher.stop();
+        if (_workStreamServer != null) {
+            _workStreamServer.stop();
+        }
+        if (_binaryWorkServer != null) {
+            _binaryWorkServer.stop();
+        }
+        if (_contentStreamServer != null) {
+            _contentStreamServer.stop();
+        }
+
+        if (! _requestDrain.drain(Math.max(0L, (deadline - System.currentTimeMillis())))) {
+            Logger.warn("Shutdown deadline reached with " + _requestDrain.getInFlightRequestCount() + " requests in flight.");
+        }
+
+        _shareValidationExecutor.shutdown();
+        if (! _shareValidationExecutor.awaitTermination(Math.max(0L, (deadline - System.currentTimeMillis())))) {
+            Logger.warn("Shutdown deadline reached with " + _shareValidationExecutor.getQueuedShareCount() + " shares queued for validation.");
+        }
+
+        _blockCandidateSubmitter.stop(); // Submits any candidates that are still queued...
+        if (_shareReplaySnapshot != null) {
+            _saveSnapshot();
+        }
+
         _apiServer.stop();
+        if (_mysqlShareReplayStore != null) {
+            _mysqlShareReplayStore.stop();
+        }
+        if (_shareLedger != null) {
+            _shareLedger.stop();
+        }
         _stratumServer.stop();
         _threadPool.stop();
     }
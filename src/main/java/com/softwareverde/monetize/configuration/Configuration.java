@@ -3,17 +3,35 @@ package com.softwareverde.monetize.configuration;
 import com.softwareverde.bitcoin.address.AddressInflater;
 import com.softwareverde.bitcoin.server.configuration.StratumProperties;
 import com.softwareverde.bitcoin.server.configuration.StratumPropertiesLoader;
+import com.softwareverde.database.properties.DatabaseCredentials;
 import com.softwareverde.util.Util;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 
 public class Configuration {
+    /**
+     * Returns the non-blank values of the comma-separated list.
+     */
+    protected static List<String> _parseList(final String value) {
+        final List<String> values = new ArrayList<>();
+        for (final String item : value.split(",")) {
+            final String trimmedItem = item.trim();
+            if (! trimmedItem.isEmpty()) {
+                values.add(trimmedItem);
+            }
+        }
+        return values;
+    }
+
     protected final Properties _properties;
     protected ServerProperties _serverProperties;
     protected StratumProperties _stratumProperties;
+    protected DatabaseProperties _databaseProperties;
 
     protected void _loadServerProperties() {
         _serverProperties = new ServerProperties();
@@ -23,12 +41,80 @@ public class Configuration {
         _serverProperties._socketPort = Util.parseInt(_properties.getProperty("server.socketPort", "444"));
         _serverProperties._tlsCertificateFile = _properties.getProperty("server.tlsCertificateFile", "");
         _serverProperties._tlsKeyFile = _properties.getProperty("server.tlsKeyFile", "");
+        _serverProperties._legacyShareIdentifiersEnabled = Util.parseBool(_properties.getProperty("server.legacyShareIdentifiersEnabled", "0"));
+        _serverProperties._contentCacheMaxByteCount = Util.parseLong(_properties.getProperty("server.contentCacheMaxByteCount", "67108864"));
+        _serverProperties._contentCacheMaxFileByteCount = Util.parseLong(_properties.getProperty("server.contentCacheMaxFileByteCount", "4194304"));
+        _serverProperties._maxRangeByteCount = Util.parseLong(_properties.getProperty("server.maxRangeByteCount", "1048576"));
+        _serverProperties._streamGrantByteCount = Util.parseLong(_properties.getProperty("server.streamGrantByteCount", "67108864"));
+        _serverProperties._streamGrantTtlMs = Util.parseLong(_properties.getProperty("server.streamGrantTtlMs", "3600000"));
+        _serverProperties._maxStreamGrantCount = Util.parseInt(_properties.getProperty("server.maxStreamGrantCount", "65536"));
+        _serverProperties._contentStreamPort = Util.parseInt(_properties.getProperty("server.contentStreamPort", "0"));
+        _serverProperties._maxContentStreamConnectionCount = Util.parseInt(_properties.getProperty("server.maxContentStreamConnectionCount", "10000"));
+        _serverProperties._maxSubscriptionCount = Util.parseInt(_properties.getProperty("server.maxSubscriptionCount", "65536"));
+        _serverProperties._subscriptionIdleTimeoutMs = Util.parseLong(_properties.getProperty("server.subscriptionIdleTimeoutMs", "600000"));
+        _serverProperties._maxSubscriptionsPerClient = Util.parseInt(_properties.getProperty("server.maxSubscriptionsPerClient", "16"));
+        _serverProperties._workStreamPort = Util.parseInt(_properties.getProperty("server.workStreamPort", "0"));
+        _serverProperties._maxWorkStreamCount = Util.parseInt(_properties.getProperty("server.maxWorkStreamCount", "50000"));
+        _serverProperties._snapshotFile = _properties.getProperty("server.snapshotFile", "");
+        _serverProperties._snapshotMaxAgeMs = Util.parseLong(_properties.getProperty("server.snapshotMaxAgeMs", "1800000"));
+        _serverProperties._shutdownDrainTimeoutMs = Util.parseLong(_properties.getProperty("server.shutdownDrainTimeoutMs", "10000"));
+        _serverProperties._maxSocketConnectionCount = Util.parseInt(_properties.getProperty("server.maxSocketConnectionCount", "50000"));
+        _serverProperties._workPollIntervalMs = Util.parseLong(_properties.getProperty("server.workPollIntervalMs", "1000"));
+        _serverProperties._blockSubmitMaxAttemptCount = Util.parseInt(_properties.getProperty("server.blockSubmitMaxAttemptCount", "3"));
+        _serverProperties._blockSubmitRetryDelayMs = Util.parseLong(_properties.getProperty("server.blockSubmitRetryDelayMs", "25"));
+        _serverProperties._minShareWorkExponent = Util.parseInt(_properties.getProperty("server.minShareWorkExponent", "14"));
+        _serverProperties._maxShareWorkExponent = Util.parseInt(_properties.getProperty("server.maxShareWorkExponent", "24"));
+        _serverProperties._initialShareWorkExponent = Util.parseInt(_properties.getProperty("server.initialShareWorkExponent", "14"));
+        _serverProperties._targetShareIntervalMs = Util.parseLong(_properties.getProperty("server.targetShareIntervalMs", "5000"));
+        _serverProperties._shareRetargetIntervalMs = Util.parseLong(_properties.getProperty("server.shareRetargetIntervalMs", "30000"));
+        _serverProperties._resourcePriceWorkExponent = Util.parseInt(_properties.getProperty("server.resourcePriceWorkExponent", "14"));
+        _serverProperties._maxCreditedResourceCount = Util.parseInt(_properties.getProperty("server.maxCreditedResourceCount", "1024"));
+        _serverProperties._accessTokenTtlMs = Util.parseLong(_properties.getProperty("server.accessTokenTtlMs", "300000"));
+        _serverProperties._shareValidationThreadCount = Util.parseInt(_properties.getProperty("server.shareValidationThreadCount", "0"));
+        _serverProperties._shareValidationQueueDepth = Util.parseInt(_properties.getProperty("server.shareValidationQueueDepth", "1024"));
+        _serverProperties._shareValidationTimeoutMs = Util.parseLong(_properties.getProperty("server.shareValidationTimeoutMs", "5000"));
+        _serverProperties._overloadRetryAfterSeconds = Util.parseInt(_properties.getProperty("server.overloadRetryAfterSeconds", "1"));
+        _serverProperties._shareLedgerBatchSize = Util.parseInt(_properties.getProperty("server.shareLedgerBatchSize", "512"));
+        _serverProperties._shareLedgerFlushIntervalMs = Util.parseLong(_properties.getProperty("server.shareLedgerFlushIntervalMs", "250"));
+        _serverProperties._shareLedgerQueueDepth = Util.parseInt(_properties.getProperty("server.shareLedgerQueueDepth", "65536"));
+        _serverProperties._shareLedgerReplayWindowMs = Util.parseLong(_properties.getProperty("server.shareLedgerReplayWindowMs", "1800000"));
+        _serverProperties._sharedReplayStoreEnabled = Util.parseBool(_properties.getProperty("server.sharedReplayStoreEnabled", "0"));
+        _serverProperties._sharedReplayStoreBatchSize = Util.parseInt(_properties.getProperty("server.sharedReplayStoreBatchSize", "256"));
+        _serverProperties._sharedReplayStoreBatchIntervalMs = Util.parseLong(_properties.getProperty("server.sharedReplayStoreBatchIntervalMs", "2"));
+        _serverProperties._sharedReplayStoreQueueDepth = Util.parseInt(_properties.getProperty("server.sharedReplayStoreQueueDepth", "8192"));
+        _serverProperties._sharedReplayStoreBloomFilterShareCount = Util.parseLong(_properties.getProperty("server.sharedReplayStoreBloomFilterShareCount", "1048576"));
+        _serverProperties._sharedReplayStoreRetentionMs = Util.parseLong(_properties.getProperty("server.sharedReplayStoreRetentionMs", "3600000"));
+        _serverProperties._rateLimitMaxBucketCount = Util.parseInt(_properties.getProperty("server.rateLimitMaxBucketCount", "65536"));
+        _serverProperties._subscribeRequestsPerMinutePerClient = Util.parseLong(_properties.getProperty("server.subscribeRequestsPerMinutePerClient", "30"));
+        _serverProperties._subscribeRequestBurst = Util.parseInt(_properties.getProperty("server.subscribeRequestBurst", "10"));
+        _serverProperties._getWorkRequestsPerMinutePerClient = Util.parseLong(_properties.getProperty("server.getWorkRequestsPerMinutePerClient", "3000"));
+        _serverProperties._getWorkRequestsPerMinutePerSubscription = Util.parseLong(_properties.getProperty("server.getWorkRequestsPerMinutePerSubscription", "300"));
+        _serverProperties._getWorkRequestBurst = Util.parseInt(_properties.getProperty("server.getWorkRequestBurst", "30"));
+        _serverProperties._submitSharesRequestsPerMinutePerClient = Util.parseLong(_properties.getProperty("server.submitSharesRequestsPerMinutePerClient", "1200"));
+        _serverProperties._submitSharesRequestsPerMinutePerSubscription = Util.parseLong(_properties.getProperty("server.submitSharesRequestsPerMinutePerSubscription", "120"));
+        _serverProperties._submitSharesRequestBurst = Util.parseInt(_properties.getProperty("server.submitSharesRequestBurst", "20"));
+        _serverProperties._contentRequestsPerMinutePerClient = Util.parseLong(_properties.getProperty("server.contentRequestsPerMinutePerClient", "6000"));
+        _serverProperties._contentRequestBurst = Util.parseInt(_properties.getProperty("server.contentRequestBurst", "200"));
+        _serverProperties._logBufferCapacity = Util.parseInt(_properties.getProperty("server.logBufferCapacity", "65536"));
+        _serverProperties._lineNumberLogPackages = _parseList(_properties.getProperty("server.lineNumberLogPackages", "com.softwareverde.monetize"));
+        _serverProperties._rejectionLogSampleRate = Util.parseInt(_properties.getProperty("server.rejectionLogSampleRate", "100"));
+        _serverProperties._rejectionLogMaxSampleCount = Util.parseInt(_properties.getProperty("server.rejectionLogMaxSampleCount", "10"));
+        _serverProperties._rejectionLogIntervalMs = Util.parseLong(_properties.getProperty("server.rejectionLogIntervalMs", "10000"));
+        _serverProperties._metricsToken = _properties.getProperty("server.metricsToken", "").trim();
 
         final AddressInflater addressInflater = new AddressInflater();
         final String addressString = _properties.getProperty("server.coinbaseAddress", "");
         _serverProperties._coinbaseAddress = Util.coalesce(addressInflater.fromBase32Check(addressString), addressInflater.fromBase58Check(addressString));
     }
 
+    protected void _loadDatabaseProperties() {
+        _databaseProperties = new DatabaseProperties();
+        _databaseProperties._hostname = _properties.getProperty("database.hostname", "");
+        _databaseProperties._port = Util.parseInt(_properties.getProperty("database.port", "3306"));
+        _databaseProperties._schema = _properties.getProperty("database.schema", "monetize");
+        _databaseProperties._databaseCredentials = new DatabaseCredentials(_properties.getProperty("database.username", ""), _properties.getProperty("database.password", ""));
+    }
+
     protected void _loadStratumProperties() {
         _stratumProperties = StratumPropertiesLoader.loadProperties(_properties);
     }
@@ -43,9 +129,12 @@ public class Configuration {
 
         _loadServerProperties();
 
+        _loadDatabaseProperties();
+
         _loadStratumProperties();
     }
 
     public ServerProperties getServerProperties() { return _serverProperties; }
     public StratumProperties getStratumProperties() { return _stratumProperties; }
+    public DatabaseProperties getDatabaseProperties() { return _databaseProperties; }
 }
@@ -2,6 +2,8 @@ package com.softwareverde.monetize.configuration;
 
 import com.softwareverde.bitcoin.address.Address;
 
+import java.util.List;
+
 public class ServerProperties {
     protected String _rootDirectory;
     protected String _tlsCertificateFile;
@@ -10,6 +12,66 @@ public class ServerProperties {
     protected Integer _tlsPort;
     protected Integer _socketPort;
     protected Address _coinbaseAddress;
+    protected Boolean _legacyShareIdentifiersEnabled;
+    protected Long _contentCacheMaxByteCount;
+    protected Long _contentCacheMaxFileByteCount;
+    protected Long _maxRangeByteCount;
+    protected Long _streamGrantByteCount;
+    protected Long _streamGrantTtlMs;
+    protected Integer _maxStreamGrantCount;
+    protected Integer _contentStreamPort;
+    protected Integer _maxContentStreamConnectionCount;
+    protected Integer _maxSubscriptionCount;
+    protected Long _subscriptionIdleTimeoutMs;
+    protected Integer _maxSubscriptionsPerClient;
+    protected Integer _workStreamPort;
+    protected Integer _maxWorkStreamCount;
+    protected Integer _maxSocketConnectionCount;
+    protected String _snapshotFile;
+    protected Long _snapshotMaxAgeMs;
+    protected Long _shutdownDrainTimeoutMs;
+    protected Long _workPollIntervalMs;
+    protected Integer _blockSubmitMaxAttemptCount;
+    protected Long _blockSubmitRetryDelayMs;
+    protected Integer _minShareWorkExponent;
+    protected Integer _maxShareWorkExponent;
+    protected Integer _initialShareWorkExponent;
+    protected Long _targetShareIntervalMs;
+    protected Long _shareRetargetIntervalMs;
+    protected Integer _resourcePriceWorkExponent;
+    protected Integer _maxCreditedResourceCount;
+    protected Long _accessTokenTtlMs;
+    protected Integer _shareValidationThreadCount;
+    protected Integer _shareValidationQueueDepth;
+    protected Long _shareValidationTimeoutMs;
+    protected Integer _overloadRetryAfterSeconds;
+    protected Integer _shareLedgerBatchSize;
+    protected Long _shareLedgerFlushIntervalMs;
+    protected Integer _shareLedgerQueueDepth;
+    protected Long _shareLedgerReplayWindowMs;
+    protected Boolean _sharedReplayStoreEnabled;
+    protected Integer _sharedReplayStoreBatchSize;
+    protected Long _sharedReplayStoreBatchIntervalMs;
+    protected Integer _sharedReplayStoreQueueDepth;
+    protected Long _sharedReplayStoreBloomFilterShareCount;
+    protected Long _sharedReplayStoreRetentionMs;
+    protected Integer _rateLimitMaxBucketCount;
+    protected Long _subscribeRequestsPerMinutePerClient;
+    protected Integer _subscribeRequestBurst;
+    protected Long _getWorkRequestsPerMinutePerClient;
+    protected Long _getWorkRequestsPerMinutePerSubscription;
+    protected Integer _getWorkRequestBurst;
+    protected Long _submitSharesRequestsPerMinutePerClient;
+    protected Long _submitSharesRequestsPerMinutePerSubscription;
+    protected Integer _submitSharesRequestBurst;
+    protected Long _contentRequestsPerMinutePerClient;
+    protected Integer _contentRequestBurst;
+    protected Integer _logBufferCapacity;
+    protected List<String> _lineNumberLogPackages;
+    protected Integer _rejectionLogSampleRate;
+    protected Integer _rejectionLogMaxSampleCount;
+    protected Long _rejectionLogIntervalMs;
+    protected String _metricsToken;
 
     public String getRootDirectory() { return _rootDirectory; }
     public String getTlsCertificateFile() { return _tlsCertificateFile; }
@@ -18,5 +80,65 @@ public class ServerProperties {
     public Integer getTlsPort() { return _tlsPort; }
     public Integer getSocketPort() { return _socketPort; }
     public Address getCoinbaseAddress() { return _coinbaseAddress; }
+    public Boolean areLegacyShareIdentifiersEnabled() { return _legacyShareIdentifiersEnabled; }
+    public Long getContentCacheMaxByteCount() { return _contentCacheMaxByteCount; }
+    public Long getContentCacheMaxFileByteCount() { return _contentCacheMaxFileByteCount; }
+    public Long getMaxRangeByteCount() { return _maxRangeByteCount; }
+    public Long getStreamGrantByteCount() { return _streamGrantByteCount; }
+    public Long getStreamGrantTtlMs() { return _streamGrantTtlMs; }
+    public Integer getMaxStreamGrantCount() { return _maxStreamGrantCount; }
+    public Integer getContentStreamPort() { return _contentStreamPort; }
+    public Integer getMaxContentStreamConnectionCount() { return _maxContentStreamConnectionCount; }
+    public Integer getMaxSubscriptionCount() { return _maxSubscriptionCount; }
+    public Long getSubscriptionIdleTimeoutMs() { return _subscriptionIdleTimeoutMs; }
+    public Integer getMaxSubscriptionsPerClient() { return _maxSubscriptionsPerClient; }
+    public Integer getWorkStreamPort() { return _workStreamPort; }
+    public Integer getMaxWorkStreamCount() { return _maxWorkStreamCount; }
+    public Integer getMaxSocketConnectionCount() { return _maxSocketConnectionCount; }
+    public String getSnapshotFile() { return _snapshotFile; }
+    public Long getSnapshotMaxAgeMs() { return _snapshotMaxAgeMs; }
+    public Long getShutdownDrainTimeoutMs() { return _shutdownDrainTimeoutMs; }
+    public Long getWorkPollIntervalMs() { return _workPollIntervalMs; }
+    public Integer getBlockSubmitMaxAttemptCount() { return _blockSubmitMaxAttemptCount; }
+    public Long getBlockSubmitRetryDelayMs() { return _blockSubmitRetryDelayMs; }
+    public Integer getMinShareWorkExponent() { return _minShareWorkExponent; }
+    public Integer getMaxShareWorkExponent() { return _maxShareWorkExponent; }
+    public Integer getInitialShareWorkExponent() { return _initialShareWorkExponent; }
+    public Long getTargetShareIntervalMs() { return _targetShareIntervalMs; }
+    public Long getShareRetargetIntervalMs() { return _shareRetargetIntervalMs; }
+    public Integer getResourcePriceWorkExponent() { return _resourcePriceWorkExponent; }
+    public Integer getMaxCreditedResourceCount() { return _maxCreditedResourceCount; }
+    public Long getAccessTokenTtlMs() { return _accessTokenTtlMs; }
+    public Integer getShareValidationThreadCount() { return _shareValidationThreadCount; }
+    public Integer getShareValidationQueueDepth() { return _shareValidationQueueDepth; }
+    public Long getShareValidationTimeoutMs() { return _shareValidationTimeoutMs; }
+    public Integer getOverloadRetryAfterSeconds() { return _overloadRetryAfterSeconds; }
+    public Integer getShareLedgerBatchSize() { return _shareLedgerBatchSize; }
+    public Long getShareLedgerFlushIntervalMs() { return _shareLedgerFlushIntervalMs; }
+    public Integer getShareLedgerQueueDepth() { return _shareLedgerQueueDepth; }
+    public Long getShareLedgerReplayWindowMs() { return _shareLedgerReplayWindowMs; }
+    public Boolean isSharedReplayStoreEnabled() { return _sharedReplayStoreEnabled; }
+    public Integer getSharedReplayStoreBatchSize() { return _sharedReplayStoreBatchSize; }
+    public Long getSharedReplayStoreBatchIntervalMs() { return _sharedReplayStoreBatchIntervalMs; }
+    public Integer getSharedReplayStoreQueueDepth() { return _sharedReplayStoreQueueDepth; }
+    public Long getSharedReplayStoreBloomFilterShareCount() { return _sharedReplayStoreBloomFilterShareCount; }
+    public Long getSharedReplayStoreRetentionMs() { return _sharedReplayStoreRetentionMs; }
+    public Integer getRateLimitMaxBucketCount() { return _rateLimitMaxBucketCount; }
+    public Long getSubscribeRequestsPerMinutePerClient() { return _subscribeRequestsPerMinutePerClient; }
+    public Integer getSubscribeRequestBurst() { return _subscribeRequestBurst; }
+    public Long getGetWorkRequestsPerMinutePerClient() { return _getWorkRequestsPerMinutePerClient; }
+    public Long getGetWorkRequestsPerMinutePerSubscription() { return _getWorkRequestsPerMinutePerSubscription; }
+    public Integer getGetWorkRequestBurst() { return _getWorkRequestBurst; }
+    public Long getSubmitSharesRequestsPerMinutePerClient() { return _submitSharesRequestsPerMinutePerClient; }
+    public Long getSubmitSharesRequestsPerMinutePerSubscription() { return _submitSharesRequestsPerMinutePerSubscription; }
+    public Integer getSubmitSharesRequestBurst() { return _submitSharesRequestBurst; }
+    public Long getContentRequestsPerMinutePerClient() { return _contentRequestsPerMinutePerClient; }
+    public Integer getContentRequestBurst() { return _contentRequestBurst; }
+    public Integer getLogBufferCapacity() { return _logBufferCapacity; }
+    public List<String> getLineNumberLogPackages() { return _lineNumberLogPackages; }
+    public Integer getRejectionLogSampleRate() { return _rejectionLogSampleRate; }
+    public Integer getRejectionLogMaxSampleCount() { return _rejectionLogMaxSampleCount; }
+    public Long getRejectionLogIntervalMs() { return _rejectionLogIntervalMs; }
+    public String getMetricsToken() { return _metricsToken; }
 }
 
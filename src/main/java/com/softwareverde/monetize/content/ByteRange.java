@@ -0,0 +1,108 @@
+package com.softwareverde.monetize.content;
+
+/**
+ * An inclusive range of a representation's bytes, as requested via a "Range: bytes=..." header (RFC 7233).
+ *  Only single ranges are supported; requests for multiple ranges are served in full, which the RFC permits.
+ */
+public class ByteRange {
+    /**
+     * Returned by ByteRange::parse when the range is well-formed but starts beyond the end of the content.
+     */
+    public static final ByteRange UNSATISFIABLE = new ByteRange(-1L, -1L);
+
+    protected static final String UNIT_PREFIX = "bytes=";
+    protected static final int MAX_DIGIT_COUNT = 18;
+
+    /**
+     * Parses the non-negative decimal within [startIndex, endIndex), or returns -1 if it is empty or malformed.
+     */
+    protected static long _parseLong(final String string, final int startIndex, final int endIndex) {
+        if ( (endIndex <= startIndex) || ((endIndex - startIndex) > MAX_DIGIT_COUNT) ) { return -1L; }
+
+        long value = 0L;
+        for (int i = startIndex; i < endIndex; ++i) {
+            final char character = string.charAt(i);
+            if ( (character < '0') || (character > '9') ) { return -1L; }
+            value = ((value * 10L) + (character - '0'));
+        }
+        return value;
+    }
+
+    /**
+     * Returns the range requested by the Range header's value, clamped to contentByteCount.
+     *  Returns null if the header is absent, malformed, or requests multiple ranges (i.e. the full content should be
+     *  served), or ByteRange.UNSATISFIABLE if no requested byte exists (i.e. a 416 should be served).
+     */
+    public static ByteRange parse(final String headerValue, final Long contentByteCount) {
+        if (headerValue == null) { return null; }
+
+        final String value = headerValue.trim();
+        if ( (! value.startsWith(UNIT_PREFIX)) || (value.indexOf(',') >= 0) ) { return null; }
+
+        final int separatorIndex = value.indexOf('-', UNIT_PREFIX.length());
+        if (separatorIndex < 0) { return null; }
+
+        final long firstValue = _parseLong(value, UNIT_PREFIX.length(), separatorIndex);
+        final long lastValue = _parseLong(value, (separatorIndex + 1), value.length());
+
+        if (separatorIndex == UNIT_PREFIX.length()) { // Suffix range: "bytes=-N" requests the final N bytes...
+            if (lastValue < 0L) { return null; }
+            if ( (lastValue == 0L) || (contentByteCount == 0L) ) { return UNSATISFIABLE; }
+            return new ByteRange(Math.max(0L, (contentByteCount - lastValue)), (contentByteCount - 1L));
+        }
+
+        if (firstValue < 0L) { return null; }
+        if ( (separatorIndex + 1) < value.length() ) {
+            if ( (lastValue < 0L) || (lastValue < firstValue) ) { return null; }
+        }
+        if (firstValue >= contentByteCount) { return UNSATISFIABLE; }
+
+        final long lastByteIndex = ((lastValue < 0L) ? (contentByteCount - 1L) : Math.min(lastValue, (contentByteCount - 1L)));
+        return new ByteRange(firstValue, lastByteIndex);
+    }
+
+    /**
+     * Returns the value of the Content-Range header of a 416 response for the content.
+     */
+    public static String toUnsatisfiableContentRange(final Long contentByteCount) {
+        return ("bytes */" + contentByteCount);
+    }
+
+    protected final Long _firstByteIndex;
+    protected final Long _lastByteIndex;
+
+    public ByteRange(final Long firstByteIndex, final Long lastByteIndex) {
+        _firstByteIndex = firstByteIndex;
+        _lastByteIndex = lastByteIndex;
+    }
+
+    public Long getFirstByteIndex() {
+        return _firstByteIndex;
+    }
+
+    /**
+     * Returns the index of the range's final byte (inclusive).
+     */
+    public Long getLastByteIndex() {
+        return _lastByteIndex;
+    }
+
+    public Long getByteCount() {
+        return (_lastByteIndex - _firstByteIndex + 1L);
+    }
+
+    /**
+     * Returns the range truncated to at most byteCount bytes.
+     */
+    public ByteRange limit(final Long byteCount) {
+        if (this.getByteCount() <= byteCount) { return this; }
+        return new ByteRange(_firstByteIndex, (_firstByteIndex + byteCount - 1L));
+    }
+
+    /**
+     * Returns the value of the Content-Range header describing this range of the content.
+     */
+    public String toContentRange(final Long contentByteCount) {
+        return ("bytes " + _firstByteIndex + "-" + _lastByteIndex + "/" + contentByteCount);
+    }
+}
@@ -0,0 +1,92 @@
+package com.softwareverde.monetize.content;
+
+import java.nio.ByteBuffer;
+
+public class CachedContent {
+    protected final String _contentType;
+    protected final String _eTag;
+    protected final byte[] _bytes;
+    protected final byte[] _gzippedBytes;
+    protected final ByteBuffer _mappedBytes;
+
+    /**
+     * Creates a heap-resident entry; gzippedBytes may be null if compression was not worthwhile.
+     */
+    public CachedContent(final String contentType, final String eTag, final byte[] bytes, final byte[] gzippedBytes) {
+        _contentType = contentType;
+        _eTag = eTag;
+        _bytes = bytes;
+        _gzippedBytes = gzippedBytes;
+        _mappedBytes = null;
+    }
+
+    /**
+     * Creates an entry backed by a read-only memory-mapped file.
+     */
+    public CachedContent(final String contentType, final String eTag, final ByteBuffer mappedBytes) {
+        _contentType = contentType;
+        _eTag = eTag;
+        _bytes = null;
+        _gzippedBytes = null;
+        _mappedBytes = mappedBytes;
+    }
+
+    public String getContentType() {
+        return _contentType;
+    }
+
+    public String getETag() {
+        return _eTag;
+    }
+
+    public Boolean isMemoryMapped() {
+        return (_mappedBytes != null);
+    }
+
+    public Boolean hasGzippedBytes() {
+        return (_gzippedBytes != null);
+    }
+
+    /**
+     * Returns the (shared, unmodifiable) gzipped content, or null if there is no gzipped variant.
+     */
+    public byte[] getGzippedBytes() {
+        return _gzippedBytes;
+    }
+
+    /**
+     * Returns the content's bytes.
+     *  Heap-resident entries return their shared array, which must not be modified.
+     *  Memory-mapped entries are copied out of the page cache into a new array.
+     */
+    public byte[] getBytes() {
+        if (_mappedBytes == null) { return _bytes; }
+
+        final ByteBuffer byteBuffer = _mappedBytes.duplicate();
+        final byte[] bytes = new byte[byteBuffer.remaining()];
+        byteBuffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Returns a new array containing the range of the content's bytes; only the range is copied onto the heap.
+     */
+    public byte[] getBytes(final ByteRange byteRange) {
+        final int offset = byteRange.getFirstByteIndex().intValue();
+        final byte[] bytes = new byte[byteRange.getByteCount().intValue()];
+        if (_mappedBytes == null) {
+            System.arraycopy(_bytes, offset, bytes, 0, bytes.length);
+            return bytes;
+        }
+
+        final ByteBuffer byteBuffer = _mappedBytes.duplicate();
+        byteBuffer.position(offset);
+        byteBuffer.get(bytes);
+        return bytes;
+    }
+
+    public Long getByteCount() {
+        if (_mappedBytes != null) { return (long) _mappedBytes.capacity(); }
+        return (long) _bytes.length;
+    }
+}
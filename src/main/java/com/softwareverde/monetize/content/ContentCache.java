@@ -0,0 +1,280 @@
+package com.softwareverde.monetize.content;
+
+import com.softwareverde.logging.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Caches the files within a directory so that serving them does not require reading from disk.
+ *  Files up to maxCachedFileByteCount are held on the heap within a size-bounded LRU, along with a precompressed gzip
+ *  variant for compressible content types; larger files are memory-mapped.
+ *  Every entry carries a strong ETag derived from the SHA-256 of its content.
+ *  Entries must be invalidated when their files change (see ContentCache::invalidate).
+ */
+public class ContentCache {
+    public static final Long DEFAULT_MAX_BYTE_COUNT = (64L * 1024L * 1024L);
+    public static final Long DEFAULT_MAX_CACHED_FILE_BYTE_COUNT = (4L * 1024L * 1024L);
+    public static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+
+    protected static final HashMap<String, String> CONTENT_TYPES = new HashMap<>();
+    static {
+        CONTENT_TYPES.put("html", "text/html; charset=utf-8");
+        CONTENT_TYPES.put("htm", "text/html; charset=utf-8");
+        CONTENT_TYPES.put("css", "text/css; charset=utf-8");
+        CONTENT_TYPES.put("js", "application/javascript; charset=utf-8");
+        CONTENT_TYPES.put("json", "application/json");
+        CONTENT_TYPES.put("txt", "text/plain; charset=utf-8");
+        CONTENT_TYPES.put("xml", "application/xml");
+        CONTENT_TYPES.put("svg", "image/svg+xml");
+        CONTENT_TYPES.put("wasm", "application/wasm");
+        CONTENT_TYPES.put("png", "image/png");
+        CONTENT_TYPES.put("jpg", "image/jpeg");
+        CONTENT_TYPES.put("jpeg", "image/jpeg");
+        CONTENT_TYPES.put("gif", "image/gif");
+        CONTENT_TYPES.put("webp", "image/webp");
+        CONTENT_TYPES.put("ico", "image/x-icon");
+        CONTENT_TYPES.put("woff", "font/woff");
+        CONTENT_TYPES.put("woff2", "font/woff2");
+        CONTENT_TYPES.put("ttf", "font/ttf");
+        CONTENT_TYPES.put("pdf", "application/pdf");
+        CONTENT_TYPES.put("mp3", "audio/mpeg");
+        CONTENT_TYPES.put("ogg", "audio/ogg");
+        CONTENT_TYPES.put("wav", "audio/wav");
+        CONTENT_TYPES.put("mp4", "video/mp4");
+        CONTENT_TYPES.put("webm", "video/webm");
+    }
+
+    protected static String _getContentType(final Path file) {
+        final String fileName = file.getFileName().toString();
+        final int extensionIndex = fileName.lastIndexOf('.');
+        if (extensionIndex < 0) { return DEFAULT_CONTENT_TYPE; }
+
+        final String extension = fileName.substring(extensionIndex + 1).toLowerCase(Locale.ROOT);
+        final String contentType = CONTENT_TYPES.get(extension);
+        return (contentType != null ? contentType : DEFAULT_CONTENT_TYPE);
+    }
+
+    protected static Boolean _isCompressible(final String contentType) {
+        return (contentType.startsWith("text/") || contentType.startsWith("application/javascript") || contentType.startsWith("application/json") || contentType.startsWith("application/xml") || contentType.startsWith("image/svg") || contentType.startsWith("application/wasm"));
+    }
+
+    protected static String _calculateETag(final ByteBuffer byteBuffer) {
+        final MessageDigest messageDigest;
+        try {
+            messageDigest = MessageDigest.getInstance("SHA-256");
+        }
+        catch (final NoSuchAlgorithmException exception) {
+            throw new RuntimeException(exception);
+        }
+
+        messageDigest.update(byteBuffer.duplicate());
+        final byte[] hash = messageDigest.digest();
+
+        final StringBuilder stringBuilder = new StringBuilder("\"");
+        for (int i = 0; i < 16; ++i) {
+            stringBuilder.append(String.format("%02x", (hash[i] & 0xFF)));
+        }
+        stringBuilder.append("\"");
+        return stringBuilder.toString();
+    }
+
+    protected static byte[] _gzip(final byte[] bytes) throws IOException {
+        final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream(bytes.length / 2);
+        try (final GZIPOutputStream gzipOutputStream = new GZIPOutputStream(byteArrayOutputStream)) {
+            gzipOutputStream.write(bytes);
+        }
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    protected final Path _rootDirectory;
+    protected final String _indexFileName;
+    protected final Long _maxByteCount;
+    protected final Long _maxCachedFileByteCount;
+
+    protected final LinkedHashMap<Path, CachedContent> _heapEntries = new LinkedHashMap<>(64, 0.75F, true); // Guarded by _heapEntries.
+    protected Long _heapByteCount = 0L; // Guarded by _heapEntries.
+    protected final ConcurrentHashMap<Path, CachedContent> _mappedEntries = new ConcurrentHashMap<>();
+
+    protected Long _getHeapByteCount(final CachedContent cachedContent) {
+        final Long byteCount = cachedContent.getByteCount();
+        final byte[] gzippedBytes = cachedContent.getGzippedBytes();
+        return (byteCount + (gzippedBytes != null ? gzippedBytes.length : 0L));
+    }
+
+    /**
+     * Resolves the requested path to a regular file within the root directory, or returns null.
+     */
+    protected Path _resolveFile(final String filePath) {
+        if (filePath == null) { return null; }
+
+        final String relativePath = (filePath.startsWith("/") ? filePath.substring(1) : filePath);
+        Path file;
+        try {
+            file = _rootDirectory.resolve(relativePath).normalize();
+        }
+        catch (final Exception exception) {
+            return null;
+        }
+
+        if (! file.startsWith(_rootDirectory)) { return null; }
+
+        if (Files.isDirectory(file)) {
+            if (_indexFileName == null) { return null; }
+            file = file.resolve(_indexFileName);
+        }
+
+        if (! Files.isRegularFile(file)) { return null; }
+        return file;
+    }
+
+    protected CachedContent _loadHeapContent(final Path file) throws IOException {
+        final byte[] bytes = Files.readAllBytes(file);
+        final String contentType = _getContentType(file);
+        final String eTag = _calculateETag(ByteBuffer.wrap(bytes));
+
+        byte[] gzippedBytes = null;
+        if (_isCompressible(contentType)) {
+            final byte[] compressedBytes = _gzip(bytes);
+            if (compressedBytes.length < bytes.length) {
+                gzippedBytes = compressedBytes;
+            }
+        }
+
+        return new CachedContent(contentType, eTag, bytes, gzippedBytes);
+    }
+
+    protected CachedContent _loadMappedContent(final Path file) throws IOException {
+        try (final FileChannel fileChannel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final MappedByteBuffer mappedByteBuffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0L, fileChannel.size());
+            final String eTag = _calculateETag(mappedByteBuffer);
+            return new CachedContent(_getContentType(file), eTag, mappedByteBuffer);
+        }
+    }
+
+    protected void _putHeapEntry(final Path file, final CachedContent cachedContent) {
+        synchronized (_heapEntries) {
+            final CachedContent previousContent = _heapEntries.put(file, cachedContent);
+            if (previousContent != null) {
+                _heapByteCount -= _getHeapByteCount(previousContent);
+            }
+            _heapByteCount += _getHeapByteCount(cachedContent);
+
+            final Iterator<Map.Entry<Path, CachedContent>> iterator = _heapEntries.entrySet().iterator();
+            while ( (_heapByteCount > _maxByteCount) && iterator.hasNext() ) {
+                final Map.Entry<Path, CachedContent> leastRecentlyUsedEntry = iterator.next();
+                if (leastRecentlyUsedEntry.getValue() == cachedContent) { continue; }
+
+                _heapByteCount -= _getHeapByteCount(leastRecentlyUsedEntry.getValue());
+                iterator.remove();
+            }
+        }
+    }
+
+    protected Boolean _isChanged(final Path file, final Set<Path> changedFiles) {
+        for (final Path changedFile : changedFiles) {
+            if (file.startsWith(changedFile.toAbsolutePath().normalize())) { return true; }
+        }
+        return false;
+    }
+
+    public ContentCache(final File rootDirectory, final String indexFileName) {
+        this(rootDirectory, indexFileName, DEFAULT_MAX_BYTE_COUNT, DEFAULT_MAX_CACHED_FILE_BYTE_COUNT);
+    }
+
+    public ContentCache(final File rootDirectory, final String indexFileName, final Long maxByteCount, final Long maxCachedFileByteCount) {
+        _rootDirectory = rootDirectory.toPath().toAbsolutePath().normalize();
+        _indexFileName = indexFileName;
+        _maxByteCount = maxByteCount;
+        _maxCachedFileByteCount = maxCachedFileByteCount;
+    }
+
+    /**
+     * Returns the absolute path of the regular file within the root directory that the requested path resolves to
+     *  (directories resolve to their index file), or null.  The file is not loaded.
+     */
+    public Path resolveFile(final String filePath) {
+        return _resolveFile(filePath);
+    }
+
+    /**
+     * Returns the cached content for the requested path, loading it if necessary.
+     *  Returns null if the path does not resolve to a regular file within the root directory.
+     */
+    public CachedContent get(final String filePath) {
+        final Path file = _resolveFile(filePath);
+        if (file == null) { return null; }
+
+        synchronized (_heapEntries) {
+            final CachedContent cachedContent = _heapEntries.get(file);
+            if (cachedContent != null) { return cachedContent; }
+        }
+
+        final CachedContent mappedContent = _mappedEntries.get(file);
+        if (mappedContent != null) { return mappedContent; }
+
+        try {
+            final long byteCount = Files.size(file);
+            if (byteCount > _maxCachedFileByteCount) {
+                if (byteCount > Integer.MAX_VALUE) { return null; } // Leave files that cannot be mapped to the DirectoryServlet.
+
+                final CachedContent cachedContent = _loadMappedContent(file);
+                _mappedEntries.put(file, cachedContent);
+                return cachedContent;
+            }
+
+            final CachedContent cachedContent = _loadHeapContent(file);
+            _putHeapEntry(file, cachedContent);
+            return cachedContent;
+        }
+        catch (final IOException exception) {
+            Logger.debug("Unable to cache file: " + file);
+            return null;
+        }
+    }
+
+    /**
+     * Removes the entries for the provided absolute paths, or all entries if changedFiles is null.
+     *  Directories are treated as prefixes.
+     */
+    public void invalidate(final Set<Path> changedFiles) {
+        if (changedFiles == null) {
+            synchronized (_heapEntries) {
+                _heapEntries.clear();
+                _heapByteCount = 0L;
+            }
+            _mappedEntries.clear();
+            return;
+        }
+
+        synchronized (_heapEntries) {
+            final Iterator<Map.Entry<Path, CachedContent>> iterator = _heapEntries.entrySet().iterator();
+            while (iterator.hasNext()) {
+                final Map.Entry<Path, CachedContent> entry = iterator.next();
+                if (_isChanged(entry.getKey(), changedFiles)) {
+                    _heapByteCount -= _getHeapByteCount(entry.getValue());
+                    iterator.remove();
+                }
+            }
+        }
+
+        _mappedEntries.keySet().removeIf(file -> _isChanged(file, changedFiles));
+    }
+}
@@ -0,0 +1,304 @@
+package com.softwareverde.monetize.content;
+
+import com.softwareverde.monetize.credit.ByteBudgetLedger;
+import com.softwareverde.monetize.net.SelectorServer;
+import com.softwareverde.util.StringUtil;
+
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serves paid files with zero-copy transfers: response bodies are sent from the page cache via FileChannel::transferTo,
+ *  so no file content is copied onto the heap regardless of the file's size.
+ *  Requests are paid for from a byte budget granted by the MonetizedServlet, presented via the Monetization-Grant header
+ *  or query parameter, or the MonetizationGrant cookie.  Single byte ranges are supported, and connections are kept
+ *  alive so that a media player's range requests share a connection; HEAD requests are served without a grant.
+ *  The content is served over plain HTTP; TLS must be terminated in front of the server if pages are served via HTTPS.
+ */
+public class ContentStreamServer extends SelectorServer {
+    public static final Long KEEP_ALIVE_TIMEOUT_MS = 30000L;
+
+    protected static final Integer READ_BUFFER_BYTE_COUNT = 8192;
+    protected static final Long MAX_PENDING_WRITE_BYTE_COUNT = (64L * 1024L);
+
+    protected static final byte[] BAD_REQUEST_RESPONSE = StringUtil.stringToBytes("HTTP/1.1 400 Bad Request\r\nContent-Length: 0\r\nConnection: close\r\n\r\n");
+    protected static final byte[] PAYMENT_REQUIRED_RESPONSE = StringUtil.stringToBytes("HTTP/1.1 402 Payment Required\r\nContent-Length: 0\r\nConnection: close\r\n\r\n");
+    protected static final byte[] NOT_FOUND_RESPONSE = StringUtil.stringToBytes("HTTP/1.1 404 Not Found\r\nContent-Length: 0\r\nConnection: close\r\n\r\n");
+
+    protected static class Session {
+        public long lastRequestTimestamp;
+
+        public Session(final long lastRequestTimestamp) {
+            this.lastRequestTimestamp = lastRequestTimestamp;
+        }
+    }
+
+    protected static int _indexOfHeaderTerminator(final ByteBuffer buffer) {
+        final int limit = buffer.limit();
+        for (int i = buffer.position(); (i + 3) < limit; ++i) {
+            if ( (buffer.get(i) == '\r') && (buffer.get(i + 1) == '\n') && (buffer.get(i + 2) == '\r') && (buffer.get(i + 3) == '\n') ) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    protected static String _getQueryParameter(final String query, final String parameterName) {
+        if (query == null) { return null; }
+
+        for (final String parameter : query.split("&")) {
+            final int separatorIndex = parameter.indexOf('=');
+            if (separatorIndex < 0) { continue; }
+
+            final String key = parameter.substring(0, separatorIndex);
+            if (! key.equals(parameterName)) { continue; }
+
+            try {
+                return URLDecoder.decode(parameter.substring(separatorIndex + 1), "UTF-8");
+            }
+            catch (final Exception exception) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    protected static String _getCookieValue(final String cookieHeaderValue, final String cookieName) {
+        if (cookieHeaderValue == null) { return null; }
+
+        final String cookiePrefix = (cookieName + "=");
+        for (final String cookie : cookieHeaderValue.split(";")) {
+            final String trimmedCookie = cookie.trim();
+            if (trimmedCookie.startsWith(cookiePrefix)) {
+                return trimmedCookie.substring(cookiePrefix.length());
+            }
+        }
+        return null;
+    }
+
+    protected static String _decodePath(final String path) {
+        try {
+            return URLDecoder.decode(path.replace("+", "%2B"), "UTF-8"); // A '+' within a path is literal...
+        }
+        catch (final Exception exception) {
+            return null;
+        }
+    }
+
+    protected static void _closeFileChannel(final FileChannel fileChannel) {
+        if (fileChannel == null) { return; }
+
+        try {
+            fileChannel.close();
+        }
+        catch (final IOException exception) { }
+    }
+
+    protected final ContentCache _contentCache;
+    protected final ByteBudgetLedger _byteBudgetLedger;
+    protected final AtomicLong _servedByteCount = new AtomicLong(0L);
+
+    protected long _lastIdleCheckTimestamp = 0L;
+
+    protected void _reject(final Connection connection, final byte[] response) {
+        this.write(connection, ByteBuffer.wrap(response));
+        this.closeAfterFlush(connection);
+    }
+
+    /**
+     * Serves the request and returns true if the connection should remain open for subsequent requests.
+     *  Runs on the selector thread; only the file's metadata is read before its transfer is queued.
+     */
+    protected Boolean _serve(final Connection connection, final String request) {
+        final String[] lines = request.split("\r\n");
+
+        // Request-Line: GET <path> HTTP/1.1
+        final String[] requestLineParts = lines[0].split(" ");
+        if (requestLineParts.length != 3) {
+            _reject(connection, BAD_REQUEST_RESPONSE);
+            return false;
+        }
+
+        final String method = requestLineParts[0];
+        final boolean isHeadRequest = method.equals("HEAD");
+        if ( (! isHeadRequest) && (! method.equals("GET")) ) {
+            _reject(connection, BAD_REQUEST_RESPONSE);
+            return false;
+        }
+
+        String rangeHeaderValue = null;
+        String grantId = null;
+        String cookieHeaderValue = null;
+        boolean keepAlive = requestLineParts[2].equals("HTTP/1.1");
+        for (int i = 1; i < lines.length; ++i) {
+            final String line = lines[i];
+            final int separatorIndex = line.indexOf(':');
+            if (separatorIndex < 1) { continue; }
+
+            final String headerName = line.substring(0, separatorIndex).trim().toLowerCase(Locale.ROOT);
+            final String headerValue = line.substring(separatorIndex + 1).trim();
+            if (headerName.equals("range")) {
+                rangeHeaderValue = headerValue;
+            }
+            else if (headerName.equals("monetization-grant")) {
+                grantId = headerValue;
+            }
+            else if (headerName.equals("cookie")) {
+                cookieHeaderValue = headerValue;
+            }
+            else if (headerName.equals("connection")) {
+                keepAlive = (! headerValue.equalsIgnoreCase("close"));
+            }
+            else if ( headerName.equals("content-length") && (! headerValue.equals("0")) ) { // Request bodies are not supported...
+                _reject(connection, BAD_REQUEST_RESPONSE);
+                return false;
+            }
+        }
+
+        final String target = requestLineParts[1];
+        final int queryIndex = target.indexOf('?');
+        final String path = _decodePath(queryIndex < 0 ? target : target.substring(0, queryIndex));
+        final String query = (queryIndex < 0 ? null : target.substring(queryIndex + 1));
+        if (grantId == null) {
+            grantId = _getQueryParameter(query, ByteBudgetLedger.HEADER_NAME);
+        }
+        if (grantId == null) {
+            grantId = _getCookieValue(cookieHeaderValue, ByteBudgetLedger.COOKIE_NAME);
+        }
+
+        final Path file = ((path != null) ? _contentCache.resolveFile(path) : null);
+        if (file == null) {
+            _reject(connection, NOT_FOUND_RESPONSE);
+            return false;
+        }
+
+        FileChannel fileChannel = null;
+        final long fileByteCount;
+        try {
+            fileChannel = FileChannel.open(file, StandardOpenOption.READ);
+            fileByteCount = fileChannel.size();
+        }
+        catch (final IOException exception) {
+            _closeFileChannel(fileChannel);
+            _reject(connection, NOT_FOUND_RESPONSE);
+            return false;
+        }
+
+        ByteRange byteRange = ByteRange.parse(rangeHeaderValue, fileByteCount);
+        if (byteRange == ByteRange.UNSATISFIABLE) {
+            _closeFileChannel(fileChannel);
+
+            final String response = ("HTTP/1.1 416 Range Not Satisfiable\r\nContent-Range: " + ByteRange.toUnsatisfiableContentRange(fileByteCount) + "\r\nContent-Length: 0\r\n" + (keepAlive ? "" : "Connection: close\r\n") + "\r\n");
+            this.write(connection, ByteBuffer.wrap(StringUtil.stringToBytes(response)));
+            return keepAlive;
+        }
+
+        final boolean isPartialAllowed = (byteRange != null);
+        final long requestedByteCount = (isPartialAllowed ? byteRange.getByteCount() : fileByteCount);
+        if ( (! isHeadRequest) && (requestedByteCount > 0L) ) {
+            final Long spentByteCount = _byteBudgetLedger.spend(grantId, file.toString(), requestedByteCount, isPartialAllowed);
+            if (spentByteCount < 1L) {
+                _closeFileChannel(fileChannel);
+                _reject(connection, PAYMENT_REQUIRED_RESPONSE);
+                return false;
+            }
+
+            if (isPartialAllowed) {
+                byteRange = byteRange.limit(spentByteCount);
+            }
+        }
+
+        final long firstByteIndex = (isPartialAllowed ? byteRange.getFirstByteIndex() : 0L);
+        final long byteCount = (isPartialAllowed ? byteRange.getByteCount() : fileByteCount);
+
+        final StringBuilder stringBuilder = new StringBuilder();
+        stringBuilder.append(isPartialAllowed ? "HTTP/1.1 206 Partial Content\r\n" : "HTTP/1.1 200 OK\r\n");
+        stringBuilder.append("Content-Type: ").append(ContentCache._getContentType(file)).append("\r\n");
+        stringBuilder.append("Content-Length: ").append(byteCount).append("\r\n");
+        if (isPartialAllowed) {
+            stringBuilder.append("Content-Range: ").append(byteRange.toContentRange(fileByteCount)).append("\r\n");
+        }
+        stringBuilder.append("Accept-Ranges: bytes\r\n");
+        stringBuilder.append("Cache-Control: private\r\n");
+        stringBuilder.append(keepAlive ? "Connection: keep-alive\r\n" : "Connection: close\r\n");
+        stringBuilder.append("\r\n");
+        this.write(connection, ByteBuffer.wrap(StringUtil.stringToBytes(stringBuilder.toString())));
+
+        if ( isHeadRequest || (byteCount < 1L) ) {
+            _closeFileChannel(fileChannel);
+        }
+        else {
+            this.writeFile(connection, fileChannel, firstByteIndex, byteCount);
+            _servedByteCount.addAndGet(byteCount);
+        }
+
+        if (! keepAlive) {
+            this.closeAfterFlush(connection);
+        }
+        return keepAlive;
+    }
+
+    @Override
+    protected void _onConnect(final Connection connection) {
+        connection.setState(new Session(System.currentTimeMillis()));
+    }
+
+    @Override
+    protected void _onData(final Connection connection, final ByteBuffer buffer) {
+        final Session session = (Session) connection.getState();
+        while (true) {
+            final int headerTerminatorIndex = _indexOfHeaderTerminator(buffer);
+            if (headerTerminatorIndex < 0) { return; } // Wait for the rest of the request...
+
+            final byte[] requestBytes = new byte[headerTerminatorIndex - buffer.position()];
+            buffer.get(requestBytes);
+            buffer.position(headerTerminatorIndex + 4);
+            session.lastRequestTimestamp = System.currentTimeMillis();
+
+            final String request = new String(requestBytes, StandardCharsets.ISO_8859_1);
+            if (! _serve(connection, request)) { // The connection is closing; discard any pipelined requests...
+                buffer.position(buffer.limit());
+                return;
+            }
+        }
+    }
+
+    @Override
+    protected void _onDisconnect(final Connection connection) { }
+
+    @Override
+    protected void _onTick(final long now) {
+        if ((now - _lastIdleCheckTimestamp) < SELECT_TIMEOUT_MS) { return; }
+        _lastIdleCheckTimestamp = now;
+
+        for (final Connection connection : _connections) {
+            final Session session = (Session) connection.getState();
+            if (session == null) { continue; }
+
+            final boolean isIdle = ( (! connection.hasPendingWrites()) && ((now - session.lastRequestTimestamp) > KEEP_ALIVE_TIMEOUT_MS) );
+            if (isIdle) {
+                this.closeAfterFlush(connection);
+            }
+        }
+    }
+
+    public ContentStreamServer(final Integer port, final Integer maxConnectionCount, final ContentCache contentCache, final ByteBudgetLedger byteBudgetLedger) {
+        super(port, maxConnectionCount, READ_BUFFER_BYTE_COUNT, MAX_PENDING_WRITE_BYTE_COUNT);
+        _contentCache = contentCache;
+        _byteBudgetLedger = byteBudgetLedger;
+    }
+
+    /**
+     * Returns the total number of file bytes queued for transfer.
+     */
+    public Long getServedByteCount() {
+        return _servedByteCount.get();
+    }
+}
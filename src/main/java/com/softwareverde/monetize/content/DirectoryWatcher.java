@@ -0,0 +1,197 @@
+package com.softwareverde.monetize.content;
+
+import com.softwareverde.logging.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches a directory tree via a WatchService and notifies its listeners of changed files.
+ *  Events are debounced so that a burst of changes (e.g. a deployment) results in a single notification.
+ */
+public class DirectoryWatcher {
+    public interface Listener {
+        /**
+         * Invoked on the watcher thread with the absolute paths that were created, modified, or deleted.
+         *  If events were lost (i.e. the WatchService overflowed), changedFiles is null and everything should be assumed
+         *  to have changed.
+         */
+        void onFilesChanged(Set<Path> changedFiles);
+    }
+
+    public static final Long DEFAULT_DEBOUNCE_MS = 250L;
+    public static final Long DEFAULT_MAX_DEBOUNCE_MS = 2000L;
+
+    protected final Path _rootDirectory;
+    protected final Long _debounceMs;
+    protected final Long _maxDebounceMs;
+    protected final ConcurrentLinkedQueue<Listener> _listeners = new ConcurrentLinkedQueue<>();
+    protected final HashMap<WatchKey, Path> _watchedDirectories = new HashMap<>();
+
+    protected WatchService _watchService;
+    protected Thread _thread;
+
+    protected void _registerRecursively(final Path directory) throws IOException {
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(final Path path, final BasicFileAttributes attributes) throws IOException {
+                final WatchKey watchKey = path.register(_watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+                _watchedDirectories.put(watchKey, path);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    protected void _notifyListeners(final Set<Path> changedFiles) {
+        for (final Listener listener : _listeners) {
+            try {
+                listener.onFilesChanged(changedFiles);
+            }
+            catch (final Exception exception) {
+                Logger.warn("Error notifying directory listener.", exception);
+            }
+        }
+    }
+
+    /**
+     * Drains the events of the watchKey into changedFiles.
+     *  Returns false if events were lost.
+     */
+    protected boolean _collectEvents(final WatchKey watchKey, final Set<Path> changedFiles) {
+        final Path directory = _watchedDirectories.get(watchKey);
+        boolean eventsWereLost = false;
+
+        for (final WatchEvent<?> watchEvent : watchKey.pollEvents()) {
+            final WatchEvent.Kind<?> kind = watchEvent.kind();
+            if (kind == StandardWatchEventKinds.OVERFLOW) {
+                eventsWereLost = true;
+                continue;
+            }
+            if (directory == null) { continue; }
+
+            final Path path = directory.resolve((Path) watchEvent.context());
+            changedFiles.add(path);
+
+            if ( (kind == StandardWatchEventKinds.ENTRY_CREATE) && Files.isDirectory(path) ) {
+                try {
+                    _registerRecursively(path);
+                }
+                catch (final IOException exception) {
+                    Logger.warn("Unable to watch directory: " + path, exception);
+                }
+                eventsWereLost = true; // Files may have been created within the new directory before it was registered.
+            }
+        }
+
+        if (! watchKey.reset()) {
+            _watchedDirectories.remove(watchKey);
+        }
+
+        return (! eventsWereLost);
+    }
+
+    protected void _run() {
+        final Thread thread = Thread.currentThread();
+        final HashSet<Path> changedFiles = new HashSet<>();
+        boolean eventsWereLost = false;
+        long firstEventTimestamp = 0L;
+
+        try {
+            while (! thread.isInterrupted()) {
+                final boolean hasPendingEvents = ( (! changedFiles.isEmpty()) || eventsWereLost );
+                final WatchKey watchKey = (hasPendingEvents ? _watchService.poll(_debounceMs, TimeUnit.MILLISECONDS) : _watchService.take());
+
+                if (watchKey != null) {
+                    if (! hasPendingEvents) {
+                        firstEventTimestamp = System.currentTimeMillis();
+                    }
+                    if (! _collectEvents(watchKey, changedFiles)) {
+                        eventsWereLost = true;
+                    }
+
+                    final long elapsed = (System.currentTimeMillis() - firstEventTimestamp);
+                    if (elapsed < _maxDebounceMs) { continue; }
+                }
+
+                if ( changedFiles.isEmpty() && (! eventsWereLost) ) { continue; }
+
+                _notifyListeners(eventsWereLost ? null : new HashSet<>(changedFiles));
+                changedFiles.clear();
+                eventsWereLost = false;
+            }
+        }
+        catch (final InterruptedException | ClosedWatchServiceException exception) {
+            // Shutting down...
+        }
+    }
+
+    public DirectoryWatcher(final File rootDirectory) {
+        this(rootDirectory, DEFAULT_DEBOUNCE_MS, DEFAULT_MAX_DEBOUNCE_MS);
+    }
+
+    public DirectoryWatcher(final File rootDirectory, final Long debounceMs, final Long maxDebounceMs) {
+        _rootDirectory = rootDirectory.toPath().toAbsolutePath().normalize();
+        _debounceMs = debounceMs;
+        _maxDebounceMs = maxDebounceMs;
+    }
+
+    public Path getRootDirectory() {
+        return _rootDirectory;
+    }
+
+    public void addListener(final Listener listener) {
+        _listeners.add(listener);
+    }
+
+    public synchronized void start() {
+        if (_thread != null) { return; }
+
+        try {
+            _watchService = FileSystems.getDefault().newWatchService();
+            _registerRecursively(_rootDirectory);
+        }
+        catch (final IOException exception) {
+            Logger.warn("Unable to watch directory: " + _rootDirectory, exception);
+            return;
+        }
+
+        _thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                _run();
+            }
+        });
+        _thread.setName("Directory Watcher");
+        _thread.setDaemon(true);
+        _thread.start();
+    }
+
+    public synchronized void stop() {
+        if (_thread == null) { return; }
+
+        _thread.interrupt();
+        try {
+            _watchService.close();
+            _thread.join(5000L);
+        }
+        catch (final Exception exception) { }
+
+        _thread = null;
+    }
+}
@@ -0,0 +1,103 @@
+package com.softwareverde.monetize.credit;
+
+import com.softwareverde.monetize.share.ShareUtil;
+import com.softwareverde.util.HexUtil;
+import com.softwareverde.util.StringUtil;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+
+/**
+ * Issues and verifies short-lived access tokens that identify the miner whose credit pays for a request.
+ *  Tokens are of the form "<epoch>.<minerId>.<expirationTimestamp>.<signature>" (all hex), where the signature is the
+ *  first 16 bytes of HMAC-SHA256(secret, "<epoch>.<minerId>.<expirationTimestamp>").  Verification requires no state
+ *  beyond the secret, so a token may be checked without consulting the stratum server.
+ *  Miner ids and credit balances only exist within a single run of the server, so the secret and epoch are generated
+ *  per instance: a token is only accepted by the authority that issued it, and never on behalf of a miner that was
+ *  assigned the same id by another run or node.
+ */
+public class AccessTokenAuthority {
+    public static final String COOKIE_NAME = "MonetizationToken";
+    public static final String HEADER_NAME = "Monetization-Token";
+
+    protected static final String MAC_ALGORITHM = "HmacSHA256";
+    protected static final int SIGNATURE_BYTE_COUNT = 16;
+    protected static final int SECRET_BYTE_COUNT = 32;
+    protected static final int MAX_TOKEN_CHARACTER_COUNT = 96;
+
+    protected final SecretKeySpec _secretKey;
+    protected final long _epoch;
+    protected final Long _tokenTtlMs;
+    protected final ThreadLocal<Mac> _macs;
+
+    protected byte[] _sign(final String payload) {
+        final Mac mac = _macs.get();
+        final byte[] macBytes = mac.doFinal(StringUtil.stringToBytes(payload));
+
+        final byte[] signature = new byte[SIGNATURE_BYTE_COUNT];
+        System.arraycopy(macBytes, 0, signature, 0, SIGNATURE_BYTE_COUNT);
+        return signature;
+    }
+
+    public AccessTokenAuthority(final Long tokenTtlMs) {
+        final SecureRandom secureRandom = new SecureRandom();
+        final byte[] secret = new byte[SECRET_BYTE_COUNT];
+        secureRandom.nextBytes(secret);
+
+        _secretKey = new SecretKeySpec(secret, MAC_ALGORITHM);
+        _epoch = secureRandom.nextLong();
+        _tokenTtlMs = tokenTtlMs;
+        _macs = ThreadLocal.withInitial(() -> {
+            try {
+                final Mac mac = Mac.getInstance(MAC_ALGORITHM);
+                mac.init(_secretKey);
+                return mac;
+            }
+            catch (final Exception exception) {
+                throw new RuntimeException(exception);
+            }
+        });
+    }
+
+    public String createToken(final Long minerId) {
+        final long expirationTimestamp = (System.currentTimeMillis() + _tokenTtlMs);
+        final String payload = (Long.toHexString(_epoch) + "." + Long.toHexString(minerId) + "." + Long.toHexString(expirationTimestamp));
+        return (payload + "." + HexUtil.toHexString(_sign(payload)));
+    }
+
+    /**
+     * Returns the minerId the token was issued to, or null if the token is malformed, forged, expired, or was issued by
+     *  another authority (i.e. by another run of the server or by another node).
+     */
+    public Long verifyToken(final String token) {
+        if ( (token == null) || (token.length() > MAX_TOKEN_CHARACTER_COUNT) ) { return null; }
+
+        final int epochEndIndex = token.indexOf('.');
+        final int minerIdEndIndex = ((epochEndIndex < 0) ? -1 : token.indexOf('.', (epochEndIndex + 1)));
+        final int payloadEndIndex = token.lastIndexOf('.');
+        if ( (epochEndIndex < 1) || (minerIdEndIndex <= (epochEndIndex + 1)) || (payloadEndIndex <= (minerIdEndIndex + 1)) ) { return null; }
+        if ( (epochEndIndex > 16) || ((minerIdEndIndex - epochEndIndex - 1) > 16) || ((payloadEndIndex - minerIdEndIndex - 1) > 16) ) { return null; }
+
+        final String signatureHex = token.substring(payloadEndIndex + 1);
+        if (! ShareUtil.isHexString(signatureHex, (SIGNATURE_BYTE_COUNT * 2), (SIGNATURE_BYTE_COUNT * 2))) { return null; }
+
+        // The payload is only known to be hex once its signature is verified; a malformed epoch or expiration is harmless
+        //  here since the token is rejected by the signature check regardless.
+        if (ShareUtil.parseHexLong(token, 0, epochEndIndex) != _epoch) { return null; }
+        final long expirationTimestamp = ShareUtil.parseHexLong(token, (minerIdEndIndex + 1), payloadEndIndex);
+        if (expirationTimestamp < System.currentTimeMillis()) { return null; }
+
+        final String payload = token.substring(0, payloadEndIndex);
+        final byte[] expectedSignature = _sign(payload);
+        final byte[] signature = HexUtil.hexStringToByteArray(signatureHex);
+        if (! MessageDigest.isEqual(expectedSignature, signature)) { return null; } // Constant-time comparison...
+
+        return ShareUtil.parseHexLong(token, (epochEndIndex + 1), minerIdEndIndex);
+    }
+
+    public Long getTokenTtlMs() {
+        return _tokenTtlMs;
+    }
+}
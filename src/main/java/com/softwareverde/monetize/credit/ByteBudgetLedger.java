@@ -0,0 +1,133 @@
+package com.softwareverde.monetize.credit;
+
+import com.softwareverde.monetize.share.ShareUtil;
+import com.softwareverde.util.HexUtil;
+
+import java.security.SecureRandom;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks grants of bytes of a single file that have been paid for but not yet served.
+ *  A paid request for a streamable file creates a grant, identified by a random bearer id, so that the many range
+ *  requests a media player makes while seeking and buffering are paid for by a single share.
+ *  Grants expire after grantTtlMs; at most maxGrantCount are held, and the soonest to expire are evicted first.
+ */
+public class ByteBudgetLedger {
+    public static final String COOKIE_NAME = "MonetizationGrant";
+    public static final String HEADER_NAME = "Monetization-Grant";
+
+    protected static final int GRANT_ID_BYTE_COUNT = 16;
+
+    protected static class Grant {
+        public final String file;
+        public final Long expirationTimestamp;
+        public final AtomicLong remainingByteCount;
+
+        public Grant(final String file, final Long byteCount, final Long expirationTimestamp) {
+            this.file = file;
+            this.expirationTimestamp = expirationTimestamp;
+            this.remainingByteCount = new AtomicLong(byteCount);
+        }
+    }
+
+    protected final Long _grantByteCount;
+    protected final Long _grantTtlMs;
+    protected final Integer _maxGrantCount;
+    protected final SecureRandom _secureRandom = new SecureRandom();
+    protected final ConcurrentHashMap<String, Grant> _grants = new ConcurrentHashMap<>();
+    protected final AtomicLong _spentByteCount = new AtomicLong(0L);
+
+    /**
+     * Removes expired grants and, if the ledger is still full, the grant closest to expiring.
+     */
+    protected void _evictGrants(final long now) {
+        _grants.values().removeIf(grant -> (grant.expirationTimestamp < now));
+        if (_grants.size() < _maxGrantCount) { return; }
+
+        Map.Entry<String, Grant> oldestEntry = null;
+        final Iterator<Map.Entry<String, Grant>> iterator = _grants.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<String, Grant> entry = iterator.next();
+            if ( (oldestEntry == null) || (entry.getValue().expirationTimestamp < oldestEntry.getValue().expirationTimestamp) ) {
+                oldestEntry = entry;
+            }
+        }
+        if (oldestEntry != null) {
+            _grants.remove(oldestEntry.getKey(), oldestEntry.getValue());
+        }
+    }
+
+    public ByteBudgetLedger(final Long grantByteCount, final Long grantTtlMs, final Integer maxGrantCount) {
+        _grantByteCount = grantByteCount;
+        _grantTtlMs = grantTtlMs;
+        _maxGrantCount = maxGrantCount;
+    }
+
+    /**
+     * Grants grantByteCount bytes of the file (an absolute, normalized path) and returns the grant's id.
+     */
+    public String createGrant(final String file) {
+        final long now = System.currentTimeMillis();
+        if (_grants.size() >= _maxGrantCount) {
+            _evictGrants(now);
+        }
+
+        final byte[] grantIdBytes = new byte[GRANT_ID_BYTE_COUNT];
+        _secureRandom.nextBytes(grantIdBytes);
+        final String grantId = HexUtil.toHexString(grantIdBytes).toLowerCase(Locale.ROOT);
+
+        _grants.put(grantId, new Grant(file, _grantByteCount, (now + _grantTtlMs)));
+        return grantId;
+    }
+
+    /**
+     * Deducts up to byteCount bytes from the grant and returns the number of bytes deducted.
+     *  If isPartialAllowed is false, either all of byteCount or nothing is deducted.  Returns zero if the grant does not
+     *  exist, has expired, was issued for a different file, or is exhausted.
+     */
+    public Long spend(final String grantId, final String file, final Long byteCount, final Boolean isPartialAllowed) {
+        if ( (grantId == null) || (! ShareUtil.isHexString(grantId, (GRANT_ID_BYTE_COUNT * 2), (GRANT_ID_BYTE_COUNT * 2))) ) { return 0L; }
+
+        final Grant grant = _grants.get(grantId.toLowerCase(Locale.ROOT));
+        if (grant == null) { return 0L; }
+        if (! grant.file.equals(file)) { return 0L; }
+        if (grant.expirationTimestamp < System.currentTimeMillis()) {
+            _grants.remove(grantId.toLowerCase(Locale.ROOT), grant);
+            return 0L;
+        }
+
+        while (true) {
+            final long remainingByteCount = grant.remainingByteCount.get();
+            final long spentByteCount = Math.min(remainingByteCount, byteCount);
+            if ( (spentByteCount < 1L) || ((! isPartialAllowed) && (spentByteCount < byteCount)) ) { return 0L; }
+
+            if (grant.remainingByteCount.compareAndSet(remainingByteCount, (remainingByteCount - spentByteCount))) {
+                _spentByteCount.addAndGet(spentByteCount);
+                return spentByteCount;
+            }
+        }
+    }
+
+    public Long getGrantByteCount() {
+        return _grantByteCount;
+    }
+
+    public Long getGrantTtlMs() {
+        return _grantTtlMs;
+    }
+
+    public Integer getGrantCount() {
+        return _grants.size();
+    }
+
+    /**
+     * Returns the total number of bytes served against grants.
+     */
+    public Long getSpentByteCount() {
+        return _spentByteCount.get();
+    }
+}
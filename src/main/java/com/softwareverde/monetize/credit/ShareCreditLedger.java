@@ -0,0 +1,56 @@
+package com.softwareverde.monetize.credit;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks the amount of work each miner has paid for but not yet spent.
+ *  Work is measured in expected hashes (i.e. a share at work exponent N credits 2^N), so shares of any difficulty may
+ *  be exchanged for resources at a fixed price.  Balances are capped so that miners cannot bank unbounded credit.
+ */
+public class ShareCreditLedger {
+    protected final Long _maxBalance;
+    protected final ConcurrentHashMap<Long, AtomicLong> _balances = new ConcurrentHashMap<>();
+
+    public ShareCreditLedger(final Long maxBalance) {
+        _maxBalance = maxBalance;
+    }
+
+    /**
+     * Credits the miner with the provided work and returns its new balance.
+     */
+    public Long credit(final Long minerId, final Long work) {
+        final AtomicLong balance = _balances.computeIfAbsent(minerId, (key) -> new AtomicLong(0L));
+        return balance.accumulateAndGet(work, (currentBalance, creditedWork) -> Math.min(_maxBalance, (currentBalance + creditedWork)));
+    }
+
+    /**
+     * Deducts the work from the miner's balance and returns true, or returns false (and deducts nothing) if the miner's
+     *  balance is insufficient.
+     */
+    public Boolean spend(final Long minerId, final Long work) {
+        final AtomicLong balance = _balances.get(minerId);
+        if (balance == null) { return false; }
+
+        while (true) {
+            final long currentBalance = balance.get();
+            if (currentBalance < work) { return false; }
+            if (balance.compareAndSet(currentBalance, (currentBalance - work))) { return true; }
+        }
+    }
+
+    public Long getBalance(final Long minerId) {
+        final AtomicLong balance = _balances.get(minerId);
+        if (balance == null) { return 0L; }
+
+        return balance.get();
+    }
+
+    public void removeMiner(final Long minerId) {
+        _balances.remove(minerId);
+    }
+
+    public Integer getAccountCount() {
+        return _balances.size();
+    }
+}
@@ -0,0 +1,232 @@
+package com.softwareverde.monetize.difficulty;
+
+import com.softwareverde.bitcoin.block.header.difficulty.Difficulty;
+import com.softwareverde.util.HexUtil;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Assigns each miner its own share difficulty, retargeted from the miner's share submission rate so that every miner
+ *  submits approximately one share per targetShareIntervalMs regardless of its hash power.
+ *  Difficulties are expressed as "work exponents": a share at work exponent N requires approximately 2^N hashes.
+ *  Restricting difficulties to powers of two allows every share target to be rendered once, ahead of time.
+ *  The difficulty issued with each job is remembered per miner so that shares are validated against the difficulty
+ *  they were mined at, even after the miner has been retargeted.
+ */
+public class VariableDifficultyEngine {
+    public static final Integer DEFAULT_MIN_WORK_EXPONENT = 10;
+    public static final Integer DEFAULT_MAX_WORK_EXPONENT = 24;
+    public static final Integer DEFAULT_INITIAL_WORK_EXPONENT = 14;
+    public static final Long DEFAULT_TARGET_SHARE_INTERVAL_MS = 5000L;
+    public static final Long DEFAULT_RETARGET_INTERVAL_MS = 30000L;
+
+    protected static final int DIFFICULTY_ONE_WORK_EXPONENT = 32; // A share at the base difficulty requires ~2^32 hashes.
+    protected static final int RETARGET_SHARE_COUNT = 8; // Miners submitting shares rapidly are retargeted before the interval elapses.
+    protected static final int MAX_WORK_EXPONENT_STEP = 2;
+    protected static final int ISSUED_JOB_COUNT = 8;
+
+    protected static class MinerDifficulty {
+        protected final long[] _issuedJobIds = new long[ISSUED_JOB_COUNT];
+        protected final int[] _issuedWorkExponents = new int[ISSUED_JOB_COUNT];
+        protected int _issuedJobCount = 0;
+        protected int _nextIssuedJobIndex = 0;
+
+        protected int _workExponent;
+        protected long _windowStartTimestamp;
+        protected int _windowShareCount = 0;
+
+        protected int _indexOfJob(final long jobId) {
+            for (int i = 0; i < _issuedJobCount; ++i) {
+                if (_issuedJobIds[i] == jobId) { return i; }
+            }
+            return -1;
+        }
+
+        public MinerDifficulty(final int workExponent, final long timestamp) {
+            _workExponent = workExponent;
+            _windowStartTimestamp = timestamp;
+        }
+
+        /**
+         * Records that the miner was issued the job at its current difficulty.
+         *  If the job was already issued at a different difficulty, the easier of the two is retained since the miner
+         *  may still be submitting shares mined at the original difficulty.
+         */
+        public synchronized int issueJob(final long jobId) {
+            final int index = _indexOfJob(jobId);
+            if (index >= 0) {
+                _issuedWorkExponents[index] = Math.min(_issuedWorkExponents[index], _workExponent);
+                return _workExponent;
+            }
+
+            _issuedJobIds[_nextIssuedJobIndex] = jobId;
+            _issuedWorkExponents[_nextIssuedJobIndex] = _workExponent;
+            _nextIssuedJobIndex = ((_nextIssuedJobIndex + 1) % ISSUED_JOB_COUNT);
+            _issuedJobCount = Math.min(ISSUED_JOB_COUNT, (_issuedJobCount + 1));
+            return _workExponent;
+        }
+
+        /**
+         * Returns the work exponent the job was issued at, or -1 if the job was not issued to the miner.
+         */
+        public synchronized int getIssuedWorkExponent(final long jobId) {
+            final int index = _indexOfJob(jobId);
+            if (index < 0) { return -1; }
+
+            return _issuedWorkExponents[index];
+        }
+
+        public synchronized void recordShare() {
+            _windowShareCount += 1;
+        }
+
+        public synchronized int getWorkExponent() {
+            return _workExponent;
+        }
+    }
+
+    protected final int _minWorkExponent;
+    protected final int _maxWorkExponent;
+    protected final int _initialWorkExponent;
+    protected final long _targetShareIntervalMs;
+    protected final long _retargetIntervalMs;
+
+    protected final byte[][] _shareTargets;
+    protected final String[] _shareTargetHexStrings;
+    protected final ConcurrentHashMap<Long, MinerDifficulty> _minerDifficulties = new ConcurrentHashMap<>();
+
+    protected int _clampWorkExponent(final int workExponent) {
+        return Math.max(_minWorkExponent, Math.min(_maxWorkExponent, workExponent));
+    }
+
+    /**
+     * Retargets the miner if its window has collected enough shares or has lasted at least the retarget interval.
+     *  A miner that submitted no shares within the interval has its difficulty lowered.
+     */
+    protected void _retarget(final MinerDifficulty minerDifficulty, final long now) {
+        synchronized (minerDifficulty) {
+            final long elapsedMs = Math.max(1L, (now - minerDifficulty._windowStartTimestamp));
+            final int shareCount = minerDifficulty._windowShareCount;
+            if ( (shareCount < RETARGET_SHARE_COUNT) && (elapsedMs < _retargetIntervalMs) ) { return; }
+
+            final double observedShareIntervalMs = (elapsedMs / (double) Math.max(1, shareCount));
+            final double exponentChange = (Math.log(_targetShareIntervalMs / observedShareIntervalMs) / Math.log(2D));
+            final int workExponentStep = (int) Math.max(-MAX_WORK_EXPONENT_STEP, Math.min(MAX_WORK_EXPONENT_STEP, Math.round(exponentChange)));
+
+            minerDifficulty._workExponent = _clampWorkExponent(minerDifficulty._workExponent + workExponentStep);
+            minerDifficulty._windowStartTimestamp = now;
+            minerDifficulty._windowShareCount = 0;
+        }
+    }
+
+    public VariableDifficultyEngine() {
+        this(DEFAULT_MIN_WORK_EXPONENT, DEFAULT_MAX_WORK_EXPONENT, DEFAULT_INITIAL_WORK_EXPONENT, DEFAULT_TARGET_SHARE_INTERVAL_MS, DEFAULT_RETARGET_INTERVAL_MS);
+    }
+
+    public VariableDifficultyEngine(final Integer minWorkExponent, final Integer maxWorkExponent, final Integer initialWorkExponent, final Long targetShareIntervalMs, final Long retargetIntervalMs) {
+        if ( (minWorkExponent < 1) || (maxWorkExponent > DIFFICULTY_ONE_WORK_EXPONENT) || (minWorkExponent > maxWorkExponent) ) {
+            throw new IllegalArgumentException("Invalid work exponent range: " + minWorkExponent + " - " + maxWorkExponent);
+        }
+
+        _minWorkExponent = minWorkExponent;
+        _maxWorkExponent = maxWorkExponent;
+        _initialWorkExponent = _clampWorkExponent(initialWorkExponent);
+        _targetShareIntervalMs = targetShareIntervalMs;
+        _retargetIntervalMs = retargetIntervalMs;
+
+        final int workExponentCount = (_maxWorkExponent - _minWorkExponent + 1);
+        _shareTargets = new byte[workExponentCount][];
+        _shareTargetHexStrings = new String[workExponentCount];
+        for (int i = 0; i < workExponentCount; ++i) {
+            final int workExponent = (_minWorkExponent + i);
+            final Difficulty shareDifficulty = Difficulty.BASE_DIFFICULTY.multiplyBy(this.getShareDifficultyMultiplier(workExponent));
+            _shareTargets[i] = shareDifficulty.getBytes().getBytes();
+            _shareTargetHexStrings[i] = HexUtil.toHexString(_shareTargets[i]);
+        }
+    }
+
+    /**
+     * Records that the job is being issued to the miner and returns the work exponent it is issued at.
+     */
+    public Integer issueJob(final Long minerId, final Long jobId) {
+        final long now = System.currentTimeMillis();
+        MinerDifficulty minerDifficulty = _minerDifficulties.get(minerId);
+        if (minerDifficulty == null) {
+            final MinerDifficulty newMinerDifficulty = new MinerDifficulty(_initialWorkExponent, now);
+            final MinerDifficulty racedMinerDifficulty = _minerDifficulties.putIfAbsent(minerId, newMinerDifficulty);
+            minerDifficulty = ((racedMinerDifficulty != null) ? racedMinerDifficulty : newMinerDifficulty);
+        }
+        else {
+            _retarget(minerDifficulty, now);
+        }
+
+        return minerDifficulty.issueJob(jobId);
+    }
+
+    /**
+     * Returns the work exponent the job was issued to the miner at, or null if it was not issued to the miner.
+     */
+    public Integer getIssuedWorkExponent(final Long minerId, final Long jobId) {
+        final MinerDifficulty minerDifficulty = _minerDifficulties.get(minerId);
+        if (minerDifficulty == null) { return null; }
+
+        final int workExponent = minerDifficulty.getIssuedWorkExponent(jobId);
+        return ((workExponent < 0) ? null : workExponent);
+    }
+
+    /**
+     * Records an accepted share for the miner, retargeting its difficulty if necessary.
+     */
+    public void recordShare(final Long minerId) {
+        final MinerDifficulty minerDifficulty = _minerDifficulties.get(minerId);
+        if (minerDifficulty == null) { return; }
+
+        minerDifficulty.recordShare();
+        _retarget(minerDifficulty, System.currentTimeMillis());
+    }
+
+    public void removeMiner(final Long minerId) {
+        _minerDifficulties.remove(minerId);
+    }
+
+    /**
+     * Returns the miner's current work exponent, or null if the miner has not been issued any work.
+     */
+    public Integer getWorkExponent(final Long minerId) {
+        final MinerDifficulty minerDifficulty = _minerDifficulties.get(minerId);
+        if (minerDifficulty == null) { return null; }
+
+        return minerDifficulty.getWorkExponent();
+    }
+
+    /**
+     * Returns the multiplier applied to the base difficulty's target to produce the share target for the work exponent.
+     *  (e.g. a work exponent of 14 is a multiplier of 2^18.)
+     */
+    public Long getShareDifficultyMultiplier(final Integer workExponent) {
+        return (1L << (DIFFICULTY_ONE_WORK_EXPONENT - workExponent));
+    }
+
+    /**
+     * Returns the 32-byte big-endian share target for the work exponent; the returned array must not be modified.
+     */
+    public byte[] getShareTarget(final Integer workExponent) {
+        return _shareTargets[_clampWorkExponent(workExponent) - _minWorkExponent];
+    }
+
+    public String getShareTargetHex(final Integer workExponent) {
+        return _shareTargetHexStrings[_clampWorkExponent(workExponent) - _minWorkExponent];
+    }
+
+    public Integer getMinWorkExponent() {
+        return _minWorkExponent;
+    }
+
+    public Integer getMaxWorkExponent() {
+        return _maxWorkExponent;
+    }
+
+    public Integer getMinerCount() {
+        return _minerDifficulties.size();
+    }
+}
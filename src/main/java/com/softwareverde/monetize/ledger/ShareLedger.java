@@ -0,0 +1,424 @@
+package com.softwareverde.monetize.ledger;
+
+import com.softwareverde.database.DatabaseException;
+import com.softwareverde.database.mysql.MysqlDatabaseConnection;
+import com.softwareverde.database.mysql.MysqlDatabaseConnectionFactory;
+import com.softwareverde.database.query.Query;
+import com.softwareverde.database.row.Row;
+import com.softwareverde.database.util.TransactionUtil;
+import com.softwareverde.logging.Logger;
+import com.softwareverde.monetize.share.ShareReplayCache;
+
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Persists accepted shares, per-subscription totals, and served (paid) resources to MySQL/MariaDB.
+ *  Records are queued in memory and written by a single background thread that groups them into multi-row INSERTs
+ *  committed within one transaction, flushed once a batch is full or once its oldest record has waited for the flush
+ *  interval; request threads never wait on the database.  If the queue is full, records are dropped and counted.
+ *  Since the connection is configured by host/port, the ledger runs unchanged against an embedded MariaDB instance.
+ *  Miner ids are only unique within a single run of the server, so totals are keyed by subscription id.
+ *  Likewise, stratum job ids restart with the stratum server, so accepted_shares.job_id holds the share's job key (see
+ *  WorkResponseCache::getJobKey).
+ */
+public class ShareLedger {
+    public static final Integer DEFAULT_BATCH_SIZE = 512;
+    public static final Long DEFAULT_FLUSH_INTERVAL_MS = 250L;
+    public static final Integer DEFAULT_QUEUE_DEPTH = 65536;
+
+    public enum PaymentType {
+        SHARE, CREDIT
+    }
+
+    protected static final String[] SCHEMA = {
+        "CREATE TABLE IF NOT EXISTS accepted_shares (" +
+            "id BIGINT UNSIGNED NOT NULL AUTO_INCREMENT, " +
+            "subscription_id VARCHAR(64) NOT NULL, " +
+            "job_id BIGINT NOT NULL, " +
+            "share_fingerprint BIGINT NOT NULL, " +
+            "work BIGINT UNSIGNED NOT NULL, " +
+            "batch_id BIGINT NOT NULL, " +
+            "timestamp BIGINT UNSIGNED NOT NULL, " +
+            "PRIMARY KEY (id), " +
+            "UNIQUE KEY accepted_shares_uq (job_id, share_fingerprint), " +
+            "INDEX accepted_shares_batch_id_ix (batch_id), " +
+            "INDEX accepted_shares_timestamp_ix (timestamp)" +
+        ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4",
+
+        "CREATE TABLE IF NOT EXISTS subscription_totals (" +
+            "subscription_id VARCHAR(64) NOT NULL, " +
+            "share_count BIGINT UNSIGNED NOT NULL DEFAULT 0, " +
+            "work BIGINT UNSIGNED NOT NULL DEFAULT 0, " +
+            "first_share_timestamp BIGINT UNSIGNED NOT NULL, " +
+            "last_share_timestamp BIGINT UNSIGNED NOT NULL, " +
+            "PRIMARY KEY (subscription_id)" +
+        ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4",
+
+        "CREATE TABLE IF NOT EXISTS served_resources (" +
+            "id BIGINT UNSIGNED NOT NULL AUTO_INCREMENT, " +
+            "path VARCHAR(255) NOT NULL, " +
+            "payment_type ENUM('SHARE', 'CREDIT') NOT NULL, " +
+            "subscription_id VARCHAR(64) NULL, " +
+            "timestamp BIGINT UNSIGNED NOT NULL, " +
+            "PRIMARY KEY (id), " +
+            "INDEX served_resources_timestamp_ix (timestamp)" +
+        ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4"
+    };
+
+    protected static final int MAX_SUBSCRIPTION_ID_CHARACTER_COUNT = 64;
+    protected static final int MAX_PATH_CHARACTER_COUNT = 255;
+
+    protected static abstract class Record {
+        public final long timestamp;
+
+        protected Record(final long timestamp) {
+            this.timestamp = timestamp;
+        }
+    }
+
+    protected static class AcceptedShare extends Record {
+        public final String subscriptionId;
+        public final long jobKey;
+        public final long shareFingerprint;
+        public final long work;
+
+        public AcceptedShare(final String subscriptionId, final long jobKey, final long shareFingerprint, final long work, final long timestamp) {
+            super(timestamp);
+            this.subscriptionId = subscriptionId;
+            this.jobKey = jobKey;
+            this.shareFingerprint = shareFingerprint;
+            this.work = work;
+        }
+    }
+
+    protected static class ServedResource extends Record {
+        public final String path;
+        public final PaymentType paymentType;
+        public final String subscriptionId;
+
+        public ServedResource(final String path, final PaymentType paymentType, final String subscriptionId, final long timestamp) {
+            super(timestamp);
+            this.path = path;
+            this.paymentType = paymentType;
+            this.subscriptionId = subscriptionId;
+        }
+    }
+
+    protected static String _truncate(final String value, final int maxCharacterCount) {
+        if (value == null) { return null; }
+        if (value.length() <= maxCharacterCount) { return value; }
+        return value.substring(0, maxCharacterCount);
+    }
+
+    /**
+     * Returns a query of the form "<prefix> VALUES (?, ...), (?, ...)<suffix>" with rowCount parameter groups.
+     */
+    protected static Query _createMultiRowInsertQuery(final String prefix, final int columnCount, final int rowCount, final String suffix) {
+        final StringBuilder stringBuilder = new StringBuilder(prefix.length() + suffix.length() + (rowCount * ((columnCount * 3) + 2)));
+        stringBuilder.append(prefix);
+        stringBuilder.append(" VALUES ");
+        for (int i = 0; i < rowCount; ++i) {
+            if (i > 0) { stringBuilder.append(", "); }
+
+            stringBuilder.append('(');
+            for (int j = 0; j < columnCount; ++j) {
+                if (j > 0) { stringBuilder.append(", "); }
+                stringBuilder.append('?');
+            }
+            stringBuilder.append(')');
+        }
+        stringBuilder.append(suffix);
+        return new Query(stringBuilder.toString());
+    }
+
+    protected final MysqlDatabaseConnectionFactory _databaseConnectionFactory;
+    protected final Integer _batchSize;
+    protected final Long _flushIntervalMs;
+    protected final ArrayBlockingQueue<Record> _queue;
+    protected final SecureRandom _secureRandom = new SecureRandom();
+
+    protected final AtomicLong _writtenShareCount = new AtomicLong(0L);
+    protected final AtomicLong _writtenResourceCount = new AtomicLong(0L);
+    protected final AtomicLong _droppedRecordCount = new AtomicLong(0L);
+    protected final AtomicLong _failedBatchCount = new AtomicLong(0L);
+
+    protected Thread _thread;
+
+    protected Boolean _enqueue(final Record record) {
+        if (_queue.offer(record)) { return true; }
+
+        _droppedRecordCount.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Writes the accepted shares and adds the shares that were actually inserted to their subscriptions' totals.
+     *  Returns the number of shares inserted.
+     */
+    protected long _writeAcceptedShares(final MysqlDatabaseConnection databaseConnection, final List<AcceptedShare> acceptedShares) throws DatabaseException {
+        if (acceptedShares.isEmpty()) { return 0L; }
+
+        // IGNORE tolerates shares re-admitted after a restart whose replay state had not yet been written; the ignored
+        //  rows carry another batch's id, so they are excluded from the totals...
+        final long batchId = _secureRandom.nextLong();
+        final Query insertSharesQuery = _createMultiRowInsertQuery("INSERT IGNORE INTO accepted_shares (subscription_id, job_id, share_fingerprint, work, batch_id, timestamp)", 6, acceptedShares.size(), "");
+        for (final AcceptedShare acceptedShare : acceptedShares) {
+            insertSharesQuery.setParameter(acceptedShare.subscriptionId);
+            insertSharesQuery.setParameter(acceptedShare.jobKey);
+            insertSharesQuery.setParameter(acceptedShare.shareFingerprint);
+            insertSharesQuery.setParameter(acceptedShare.work);
+            insertSharesQuery.setParameter(batchId);
+            insertSharesQuery.setParameter(acceptedShare.timestamp);
+        }
+        databaseConnection.executeSql(insertSharesQuery);
+
+        final List<Row> rows = databaseConnection.query(
+            new Query("SELECT subscription_id, COUNT(*) AS share_count, CAST(SUM(work) AS UNSIGNED) AS work, MIN(timestamp) AS first_share_timestamp, MAX(timestamp) AS last_share_timestamp FROM accepted_shares WHERE batch_id = ? GROUP BY subscription_id")
+                .setParameter(batchId)
+        );
+        if (rows.isEmpty()) { return 0L; }
+
+        long insertedShareCount = 0L;
+        final Query upsertTotalsQuery = _createMultiRowInsertQuery(
+            "INSERT INTO subscription_totals (subscription_id, share_count, work, first_share_timestamp, last_share_timestamp)", 5, rows.size(),
+            " ON DUPLICATE KEY UPDATE share_count = share_count + VALUES(share_count), work = work + VALUES(work), last_share_timestamp = GREATEST(last_share_timestamp, VALUES(last_share_timestamp))"
+        );
+        for (final Row row : rows) {
+            final Long shareCount = row.getLong("share_count");
+            upsertTotalsQuery.setParameter(row.getString("subscription_id"));
+            upsertTotalsQuery.setParameter(shareCount);
+            upsertTotalsQuery.setParameter(row.getLong("work"));
+            upsertTotalsQuery.setParameter(row.getLong("first_share_timestamp"));
+            upsertTotalsQuery.setParameter(row.getLong("last_share_timestamp"));
+            insertedShareCount += shareCount;
+        }
+        databaseConnection.executeSql(upsertTotalsQuery);
+        return insertedShareCount;
+    }
+
+    protected void _writeServedResources(final MysqlDatabaseConnection databaseConnection, final List<ServedResource> servedResources) throws DatabaseException {
+        if (servedResources.isEmpty()) { return; }
+
+        final Query insertResourcesQuery = _createMultiRowInsertQuery("INSERT INTO served_resources (path, payment_type, subscription_id, timestamp)", 4, servedResources.size(), "");
+        for (final ServedResource servedResource : servedResources) {
+            insertResourcesQuery.setParameter(servedResource.path);
+            insertResourcesQuery.setParameter(servedResource.paymentType.name());
+            if (servedResource.subscriptionId != null) {
+                insertResourcesQuery.setParameter(servedResource.subscriptionId);
+            }
+            else {
+                insertResourcesQuery.setNullParameter();
+            }
+            insertResourcesQuery.setParameter(servedResource.timestamp);
+        }
+        databaseConnection.executeSql(insertResourcesQuery);
+    }
+
+    /**
+     * Writes the batch within a single transaction.  A failed batch is logged and discarded rather than retried, so
+     *  that an unavailable database cannot grow the backlog without bound.
+     */
+    protected void _flush(final List<Record> batch) {
+        if (batch.isEmpty()) { return; }
+
+        final ArrayList<AcceptedShare> acceptedShares = new ArrayList<>(batch.size());
+        final ArrayList<ServedResource> servedResources = new ArrayList<>();
+        for (final Record record : batch) {
+            if (record instanceof AcceptedShare) {
+                acceptedShares.add((AcceptedShare) record);
+            }
+            else {
+                servedResources.add((ServedResource) record);
+            }
+        }
+
+        try (final MysqlDatabaseConnection databaseConnection = _databaseConnectionFactory.newConnection()) {
+            final long insertedShareCount;
+            TransactionUtil.startTransaction(databaseConnection);
+            try {
+                insertedShareCount = _writeAcceptedShares(databaseConnection, acceptedShares);
+                _writeServedResources(databaseConnection, servedResources);
+                TransactionUtil.commitTransaction(databaseConnection);
+            }
+            catch (final DatabaseException exception) {
+                TransactionUtil.rollbackTransaction(databaseConnection);
+                throw exception;
+            }
+
+            _writtenShareCount.addAndGet(insertedShareCount);
+            _writtenResourceCount.addAndGet(servedResources.size());
+        }
+        catch (final DatabaseException exception) {
+            _failedBatchCount.incrementAndGet();
+            _droppedRecordCount.addAndGet(batch.size());
+            Logger.warn("Unable to write " + batch.size() + " share ledger records.", exception);
+        }
+    }
+
+    protected void _run() {
+        final Thread thread = Thread.currentThread();
+        final ArrayList<Record> batch = new ArrayList<>(_batchSize);
+
+        boolean isRunning = true;
+        while (isRunning) {
+            try {
+                final Record firstRecord = _queue.poll(_flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (firstRecord == null) {
+                    isRunning = (! thread.isInterrupted());
+                    continue;
+                }
+                batch.add(firstRecord);
+
+                // Group records that arrive while the batch is open; the oldest record waits at most one flush interval...
+                final long flushDeadline = (System.currentTimeMillis() + _flushIntervalMs);
+                while (batch.size() < _batchSize) {
+                    _queue.drainTo(batch, (_batchSize - batch.size()));
+                    if (batch.size() >= _batchSize) { break; }
+
+                    final long remainingMs = (flushDeadline - System.currentTimeMillis());
+                    if (remainingMs <= 0L) { break; }
+
+                    final Record record = _queue.poll(remainingMs, TimeUnit.MILLISECONDS);
+                    if (record == null) { break; }
+                    batch.add(record);
+                }
+            }
+            catch (final InterruptedException exception) {
+                isRunning = false;
+            }
+
+            _flush(batch);
+            batch.clear();
+        }
+
+        // Write whatever was queued before shutdown...
+        while (! _queue.isEmpty()) {
+            _queue.drainTo(batch, _batchSize);
+            _flush(batch);
+            batch.clear();
+        }
+    }
+
+    public ShareLedger(final MysqlDatabaseConnectionFactory databaseConnectionFactory) {
+        this(databaseConnectionFactory, DEFAULT_BATCH_SIZE, DEFAULT_FLUSH_INTERVAL_MS, DEFAULT_QUEUE_DEPTH);
+    }
+
+    public ShareLedger(final MysqlDatabaseConnectionFactory databaseConnectionFactory, final Integer batchSize, final Long flushIntervalMs, final Integer queueDepth) {
+        _databaseConnectionFactory = databaseConnectionFactory;
+        _batchSize = batchSize;
+        _flushIntervalMs = flushIntervalMs;
+        _queue = new ArrayBlockingQueue<>(queueDepth);
+    }
+
+    /**
+     * Creates the ledger's tables if they do not exist.
+     */
+    public void initializeSchema() throws DatabaseException {
+        try (final MysqlDatabaseConnection databaseConnection = _databaseConnectionFactory.newConnection()) {
+            for (final String ddl : SCHEMA) {
+                databaseConnection.executeDdl(ddl);
+            }
+        }
+    }
+
+    /**
+     * Re-records the shares accepted within the last windowMs into the ShareReplayCache so that shares spent before a
+     *  restart cannot be spent again.  Each share is restored with the time it was accepted, so its job keeps its age.
+     *  Returns the number of shares restored.
+     */
+    public Integer restoreReplayCache(final ShareReplayCache shareReplayCache, final Long windowMs) throws DatabaseException {
+        final long sinceTimestamp = (System.currentTimeMillis() - windowMs);
+
+        final List<Row> rows;
+        try (final MysqlDatabaseConnection databaseConnection = _databaseConnectionFactory.newConnection()) {
+            rows = databaseConnection.query(
+                new Query("SELECT job_id, share_fingerprint, timestamp FROM accepted_shares WHERE timestamp >= ? ORDER BY id ASC")
+                    .setParameter(sinceTimestamp)
+            );
+        }
+
+        int restoredShareCount = 0;
+        for (final Row row : rows) {
+            final Long jobKey = row.getLong("job_id");
+            final Long shareFingerprint = row.getLong("share_fingerprint");
+            final Long timestamp = row.getLong("timestamp");
+            if (shareReplayCache.restore(jobKey, shareFingerprint, timestamp)) {
+                restoredShareCount += 1;
+            }
+        }
+        return restoredShareCount;
+    }
+
+    /**
+     * Queues the accepted share (and its contribution to the subscription's totals) to be written.
+     *  Returns false if the queue is full and the record was dropped.
+     */
+    public Boolean recordAcceptedShare(final String subscriptionIdHex, final Long jobKey, final Long shareFingerprint, final Long work) {
+        final String subscriptionId = _truncate(subscriptionIdHex, MAX_SUBSCRIPTION_ID_CHARACTER_COUNT);
+        return _enqueue(new AcceptedShare(subscriptionId, jobKey, shareFingerprint, work, System.currentTimeMillis()));
+    }
+
+    /**
+     * Queues a record of a paid resource having been served.  The subscriptionIdHex may be null if it is not known
+     *  (e.g. when the resource was paid for with credit).
+     *  Returns false if the queue is full and the record was dropped.
+     */
+    public Boolean recordServedResource(final String path, final PaymentType paymentType, final String subscriptionIdHex) {
+        final String subscriptionId = _truncate(subscriptionIdHex, MAX_SUBSCRIPTION_ID_CHARACTER_COUNT);
+        return _enqueue(new ServedResource(_truncate(path, MAX_PATH_CHARACTER_COUNT), paymentType, subscriptionId, System.currentTimeMillis()));
+    }
+
+    public synchronized void start() {
+        if (_thread != null) { return; }
+
+        _thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                _run();
+            }
+        });
+        _thread.setName("Share Ledger Writer");
+        _thread.setDaemon(true);
+        _thread.start();
+    }
+
+    /**
+     * Stops the writer after flushing the records queued so far.
+     */
+    public synchronized void stop() {
+        if (_thread == null) { return; }
+
+        _thread.interrupt();
+        try {
+            _thread.join(30000L);
+        }
+        catch (final InterruptedException exception) { }
+
+        _thread = null;
+    }
+
+    public Integer getQueuedRecordCount() {
+        return _queue.size();
+    }
+
+    public Long getWrittenShareCount() {
+        return _writtenShareCount.get();
+    }
+
+    public Long getWrittenResourceCount() {
+        return _writtenResourceCount.get();
+    }
+
+    public Long getDroppedRecordCount() {
+        return _droppedRecordCount.get();
+    }
+
+    public Long getFailedBatchCount() {
+        return _failedBatchCount.get();
+    }
+}
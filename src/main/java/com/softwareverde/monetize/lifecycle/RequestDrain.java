@@ -0,0 +1,63 @@
+package com.softwareverde.monetize.lifecycle;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tracks in-flight requests so that shutdown can wait for them to complete.
+ *  Once draining has begun, new requests are refused while those already admitted are allowed to finish.
+ */
+public class RequestDrain {
+    protected static final long POLL_INTERVAL_MS = 10L;
+
+    protected final AtomicInteger _inFlightRequestCount = new AtomicInteger(0);
+    protected volatile boolean _isDraining = false;
+
+    /**
+     * Admits a request and returns true, or returns false if the server is draining.
+     *  Every admitted request must be followed by a call to RequestDrain::exit.
+     */
+    public Boolean tryEnter() {
+        if (_isDraining) { return false; }
+
+        _inFlightRequestCount.incrementAndGet();
+        if (_isDraining) { // Draining began concurrently; the drain may not have observed this request...
+            this.exit();
+            return false;
+        }
+        return true;
+    }
+
+    public void exit() {
+        _inFlightRequestCount.decrementAndGet();
+    }
+
+    /**
+     * Refuses new requests and waits up to timeoutMs for in-flight requests to complete.
+     *  Returns true if every in-flight request completed before the deadline.
+     */
+    public Boolean drain(final Long timeoutMs) {
+        _isDraining = true;
+
+        final long deadline = (System.currentTimeMillis() + timeoutMs);
+        while (_inFlightRequestCount.get() > 0) {
+            if (System.currentTimeMillis() >= deadline) { return false; }
+
+            try {
+                Thread.sleep(POLL_INTERVAL_MS);
+            }
+            catch (final InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public Boolean isDraining() {
+        return _isDraining;
+    }
+
+    public Integer getInFlightRequestCount() {
+        return _inFlightRequestCount.get();
+    }
+}
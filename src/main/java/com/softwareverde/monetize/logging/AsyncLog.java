@@ -0,0 +1,311 @@
+package com.softwareverde.monetize.logging;
+
+import com.softwareverde.logging.Log;
+import com.softwareverde.logging.LogLevel;
+
+import java.io.PrintStream;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A Log that hands events to a dedicated writer thread through a bounded, lock-free ring buffer, so that logging
+ *  threads neither format nor write their messages and never block.  If the buffer is full, the event is dropped and
+ *  counted; the writer reports the number of dropped events.
+ *  Resolving the caller's line number requires walking the caller's stack, so it is only done for the classes within
+ *  the packages added via AsyncLog::addLineNumberPackage; other events are annotated with their class only.
+ */
+public class AsyncLog implements Log {
+    protected static final Long IDLE_PARK_NANOS = 100_000_000L;
+    protected static final Long FLUSH_TIMEOUT_MS = 5000L;
+    protected static final Integer MAX_BATCH_CHARACTER_COUNT = (64 * 1024);
+
+    protected static class Event {
+        public long timestamp;
+        public String threadName;
+        public Class<?> callingClass;
+        public int lineNumber;
+        public LogLevel logLevel;
+        public String message;
+        public Throwable exception;
+
+        public void clear() {
+            this.threadName = null;
+            this.callingClass = null;
+            this.message = null;
+            this.exception = null;
+        }
+    }
+
+    protected static int _toPowerOfTwo(final int value) {
+        final int highestOneBit = Integer.highestOneBit(Math.max(2, value));
+        return ((highestOneBit == value) ? value : (highestOneBit << 1));
+    }
+
+    /**
+     * Returns the line of the innermost stack frame within callingClass, or -1 if it is not on the stack.
+     */
+    protected static int _getLineNumber(final Class<?> callingClass) {
+        final String className = callingClass.getName();
+        for (final StackTraceElement stackTraceElement : new Throwable().getStackTrace()) {
+            if (className.equals(stackTraceElement.getClassName())) {
+                return stackTraceElement.getLineNumber();
+            }
+        }
+        return -1;
+    }
+
+    protected final PrintStream _printStream;
+    protected final Event[] _events;
+    protected final AtomicLongArray _sequences; // The sequence each slot was last published with; a slot holding sequence s is readable once _sequences[s & _mask] == s + 1.
+    protected final int _mask;
+    protected final AtomicLong _writeSequence = new AtomicLong(0L);
+    protected final CopyOnWriteArrayList<String> _lineNumberPackages = new CopyOnWriteArrayList<>();
+    protected final SimpleDateFormat _dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS"); // Only used by the writer thread.
+    protected final StringBuilder _stringBuilder = new StringBuilder(); // The batch of formatted events not yet printed; only used by the writer thread.
+    protected final LongAdder _droppedEventCount = new LongAdder();
+
+    protected volatile long _readSequence = 0L;
+    protected volatile boolean _isWriterParked = false;
+    protected long _reportedDroppedEventCount = 0L;
+    protected long _formattedTimestamp = -1L;
+    protected String _formattedDate = null;
+    protected volatile Thread _thread;
+
+    protected boolean _isLineNumberAnnotated(final Class<?> callingClass) {
+        if (_lineNumberPackages.isEmpty()) { return false; }
+
+        final String className = callingClass.getName();
+        for (final String packageName : _lineNumberPackages) {
+            if (className.startsWith(packageName)) { return true; }
+        }
+        return false;
+    }
+
+    protected String _formatTimestamp(final long timestamp) {
+        if (timestamp != _formattedTimestamp) {
+            _formattedDate = _dateFormat.format(new Date(timestamp));
+            _formattedTimestamp = timestamp;
+        }
+        return _formattedDate;
+    }
+
+    protected void _printBatch() {
+        if (_stringBuilder.length() == 0) { return; }
+
+        _printStream.append(_stringBuilder);
+        _stringBuilder.setLength(0);
+    }
+
+    protected void _writeEvent(final Event event) {
+        final StringBuilder stringBuilder = _stringBuilder;
+        stringBuilder.append('[').append(_formatTimestamp(event.timestamp)).append("] [");
+        stringBuilder.append(event.logLevel).append("] [");
+        stringBuilder.append(event.threadName).append("] [");
+        stringBuilder.append((event.callingClass != null) ? event.callingClass.getSimpleName() : "?");
+        if (event.lineNumber >= 0) {
+            stringBuilder.append(':').append(event.lineNumber);
+        }
+        stringBuilder.append("] ");
+        if (event.message != null) {
+            stringBuilder.append(event.message);
+        }
+        stringBuilder.append(System.lineSeparator());
+
+        if (event.exception != null) {
+            _printBatch();
+            event.exception.printStackTrace(_printStream);
+        }
+        else if (stringBuilder.length() >= MAX_BATCH_CHARACTER_COUNT) {
+            _printBatch();
+        }
+    }
+
+    /**
+     * Writes every published event and returns the number written.
+     */
+    protected int _drain() {
+        int eventCount = 0;
+        long readSequence = _readSequence;
+        while (true) {
+            final int index = (int) (readSequence & _mask);
+            if (_sequences.get(index) != (readSequence + 1L)) { break; } // Not yet published...
+
+            final Event event = _events[index];
+            try {
+                _writeEvent(event);
+            }
+            catch (final Exception exception) { }
+            event.clear();
+
+            readSequence += 1L;
+            _readSequence = readSequence; // Releases the slot to writers...
+            eventCount += 1;
+        }
+
+        final long droppedEventCount = _droppedEventCount.sum();
+        if (droppedEventCount != _reportedDroppedEventCount) {
+            _stringBuilder.append('[').append(_formatTimestamp(System.currentTimeMillis())).append("] [WARN] [AsyncLog] ");
+            _stringBuilder.append(droppedEventCount - _reportedDroppedEventCount).append(" log events dropped; the log buffer was full.").append(System.lineSeparator());
+            _reportedDroppedEventCount = droppedEventCount;
+        }
+
+        _printBatch();
+        if (eventCount > 0) {
+            _printStream.flush();
+        }
+        return eventCount;
+    }
+
+    protected void _run() {
+        final Thread thread = Thread.currentThread();
+        while (! thread.isInterrupted()) {
+            if (_drain() > 0) { continue; }
+
+            _isWriterParked = true;
+            if (_sequences.get((int) (_readSequence & _mask)) == (_readSequence + 1L)) { // Published while parking...
+                _isWriterParked = false;
+                continue;
+            }
+            LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            _isWriterParked = false;
+        }
+        _drain();
+    }
+
+    public AsyncLog(final PrintStream printStream, final Integer capacity) {
+        _printStream = printStream;
+
+        final int slotCount = _toPowerOfTwo(capacity);
+        _events = new Event[slotCount];
+        for (int i = 0; i < slotCount; ++i) {
+            _events[i] = new Event();
+        }
+        _sequences = new AtomicLongArray(slotCount);
+        _mask = (slotCount - 1);
+    }
+
+    /**
+     * Annotates events logged by classes within the package (or any class whose name starts with packageName) with
+     *  the caller's line number.
+     */
+    public void addLineNumberPackage(final String packageName) {
+        _lineNumberPackages.add(packageName);
+    }
+
+    @Override
+    public void write(final Class<?> callingClass, final LogLevel logLevel, final String nullableMessage, final Throwable nullableException) {
+        final int lineNumber = ( ((callingClass != null) && _isLineNumberAnnotated(callingClass)) ? _getLineNumber(callingClass) : -1 );
+
+        final long sequence;
+        while (true) { // Claim the next slot, unless the writer has not yet released it...
+            final long writeSequence = _writeSequence.get();
+            if ((writeSequence - _readSequence) >= _events.length) {
+                _droppedEventCount.increment();
+                return;
+            }
+            if (_writeSequence.compareAndSet(writeSequence, (writeSequence + 1L))) {
+                sequence = writeSequence;
+                break;
+            }
+        }
+
+        final int index = (int) (sequence & _mask);
+        final Event event = _events[index];
+        event.timestamp = System.currentTimeMillis();
+        event.threadName = Thread.currentThread().getName();
+        event.callingClass = callingClass;
+        event.lineNumber = lineNumber;
+        event.logLevel = logLevel;
+        event.message = nullableMessage;
+        event.exception = nullableException;
+        _sequences.set(index, (sequence + 1L)); // Publishes the event...
+
+        if (_isWriterParked) {
+            final Thread thread = _thread;
+            if (thread != null) {
+                LockSupport.unpark(thread);
+            }
+        }
+    }
+
+    /**
+     * Waits (up to FLUSH_TIMEOUT_MS) for the events logged before the invocation to be written.
+     *  If the writer is not running, the events are written on the calling thread.
+     */
+    @Override
+    public void flush() {
+        final long writeSequence = _writeSequence.get();
+        final long deadline = (System.currentTimeMillis() + FLUSH_TIMEOUT_MS);
+        while ( (_readSequence < writeSequence) && (System.currentTimeMillis() < deadline) ) {
+            final Thread thread = _thread;
+            if (thread == null) {
+                synchronized (this) {
+                    if (_thread == null) {
+                        _drain();
+                        break;
+                    }
+                }
+                continue;
+            }
+
+            LockSupport.unpark(thread);
+            try {
+                Thread.sleep(1L);
+            }
+            catch (final InterruptedException exception) {
+                break;
+            }
+        }
+        _printStream.flush();
+    }
+
+    /**
+     * Returns the number of events dropped because the buffer was full.
+     */
+    public Long getDroppedEventCount() {
+        return _droppedEventCount.sum();
+    }
+
+    /**
+     * Returns the number of events waiting to be written.
+     */
+    public Long getQueuedEventCount() {
+        return Math.max(0L, (_writeSequence.get() - _readSequence));
+    }
+
+    public synchronized void start() {
+        if (_thread != null) { return; }
+
+        final Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                _run();
+            }
+        });
+        thread.setName("Log Writer");
+        thread.setDaemon(true);
+        _thread = thread;
+        thread.start();
+    }
+
+    /**
+     * Stops the writer thread once the published events have been written.
+     */
+    public synchronized void stop() {
+        final Thread thread = _thread;
+        if (thread == null) { return; }
+
+        thread.interrupt();
+        try {
+            thread.join(FLUSH_TIMEOUT_MS);
+        }
+        catch (final InterruptedException exception) { }
+
+        _thread = null;
+    }
+}
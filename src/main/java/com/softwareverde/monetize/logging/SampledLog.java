@@ -0,0 +1,92 @@
+package com.softwareverde.monetize.logging;
+
+import com.softwareverde.logging.Logger;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Logs a frequent event (e.g. a rejected request) at a bounded rate: every sampleRate-th occurrence is logged, at most
+ *  maxSampleCount times per interval, and the number of occurrences is aggregated and logged once per interval.  The
+ *  summary of an interval is logged by the first occurrence after it ends.
+ *  Occurrences that are not sampled cost a few atomic increments; their detail is never formatted into a message.
+ */
+public class SampledLog {
+    public static final Integer DEFAULT_SAMPLE_RATE = 100;
+    public static final Integer DEFAULT_MAX_SAMPLE_COUNT = 10;
+    public static final Long DEFAULT_INTERVAL_MS = 10000L;
+
+    /**
+     * Defers formatting "<eventName>: <detail>" until the message is written.
+     */
+    protected static class SampledMessage {
+        protected final String _eventName;
+        protected final Object _detail;
+
+        public SampledMessage(final String eventName, final Object detail) {
+            _eventName = eventName;
+            _detail = detail;
+        }
+
+        @Override
+        public String toString() {
+            return (_eventName + ": " + _detail);
+        }
+    }
+
+    protected final String _eventName;
+    protected final Integer _sampleRate;
+    protected final Integer _maxSampleCount;
+    protected final Long _intervalMs;
+    protected final AtomicLong _intervalStartTimestamp;
+    protected final AtomicLong _intervalEventCount = new AtomicLong(0L);
+    protected final AtomicLong _intervalSampleCount = new AtomicLong(0L);
+
+    /**
+     * Ends the interval that began at intervalStartTimestamp, unless another thread already has, and logs its summary.
+     */
+    protected void _endInterval(final long intervalStartTimestamp, final long now) {
+        if (! _intervalStartTimestamp.compareAndSet(intervalStartTimestamp, now)) { return; }
+
+        final long eventCount = _intervalEventCount.getAndSet(0L);
+        final long sampleCount = _intervalSampleCount.getAndSet(0L);
+        if (eventCount > sampleCount) {
+            Logger.info(_eventName + ": " + eventCount + " occurrences in the last " + (now - intervalStartTimestamp) + "ms (" + sampleCount + " logged).");
+        }
+    }
+
+    public SampledLog(final String eventName) {
+        this(eventName, DEFAULT_SAMPLE_RATE, DEFAULT_MAX_SAMPLE_COUNT, DEFAULT_INTERVAL_MS);
+    }
+
+    /**
+     * A sampleRate of one samples every occurrence (subject to maxSampleCount); a maxSampleCount of zero only logs
+     *  the summaries.
+     */
+    public SampledLog(final String eventName, final Integer sampleRate, final Integer maxSampleCount, final Long intervalMs) {
+        _eventName = eventName;
+        _sampleRate = Math.max(1, sampleRate);
+        _maxSampleCount = maxSampleCount;
+        _intervalMs = intervalMs;
+        _intervalStartTimestamp = new AtomicLong(System.currentTimeMillis());
+    }
+
+    /**
+     * Records an occurrence of the event, logging it at the debug level if it is sampled.
+     */
+    public void record(final Object detail) {
+        final long now = System.currentTimeMillis();
+        final long intervalStartTimestamp = _intervalStartTimestamp.get();
+        if ((now - intervalStartTimestamp) >= _intervalMs) {
+            _endInterval(intervalStartTimestamp, now);
+        }
+
+        final long eventIndex = _intervalEventCount.getAndIncrement();
+        if ((eventIndex % _sampleRate) != 0L) { return; }
+        if (_intervalSampleCount.incrementAndGet() > _maxSampleCount) {
+            _intervalSampleCount.decrementAndGet();
+            return;
+        }
+
+        Logger.debug(new SampledMessage(_eventName, detail));
+    }
+}
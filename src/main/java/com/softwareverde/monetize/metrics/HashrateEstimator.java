@@ -0,0 +1,61 @@
+package com.softwareverde.monetize.metrics;
+
+import com.softwareverde.monetize.share.ShareAdmissionStatistics;
+
+import java.util.ArrayDeque;
+
+/**
+ * Estimates the aggregate hashrate of all clients from the work of their accepted shares (2^N hashes for a share at
+ *  work exponent N).  The accepted work is sampled each time the estimate is requested (i.e. per scrape), so that the
+ *  share path only pays for a LongAdder increment; the estimate is the work accepted over the most recent window.
+ */
+public class HashrateEstimator {
+    public static final Long DEFAULT_WINDOW_MS = 60000L;
+
+    protected static class Sample {
+        public final long timestamp;
+        public final long acceptedWork;
+
+        public Sample(final long timestamp, final long acceptedWork) {
+            this.timestamp = timestamp;
+            this.acceptedWork = acceptedWork;
+        }
+    }
+
+    protected final ShareAdmissionStatistics _shareAdmissionStatistics;
+    protected final Long _windowMs;
+    protected final ArrayDeque<Sample> _samples = new ArrayDeque<>();
+
+    public HashrateEstimator(final ShareAdmissionStatistics shareAdmissionStatistics) {
+        this(shareAdmissionStatistics, DEFAULT_WINDOW_MS);
+    }
+
+    public HashrateEstimator(final ShareAdmissionStatistics shareAdmissionStatistics, final Long windowMs) {
+        _shareAdmissionStatistics = shareAdmissionStatistics;
+        _windowMs = windowMs;
+    }
+
+    /**
+     * Returns the estimated hashes per second, or zero until a second sample has been taken.
+     */
+    public synchronized Double getHashesPerSecond() {
+        final Sample sample = new Sample(System.currentTimeMillis(), _shareAdmissionStatistics.getAcceptedWork());
+        _samples.addLast(sample);
+
+        // Retain the newest sample older than the window, so the estimate always spans at least the window once warm...
+        while (_samples.size() > 2) {
+            final Sample oldestSample = _samples.removeFirst();
+            final Sample nextSample = _samples.peekFirst();
+            if ((sample.timestamp - nextSample.timestamp) < _windowMs) {
+                _samples.addFirst(oldestSample);
+                break;
+            }
+        }
+
+        final Sample oldestSample = _samples.peekFirst();
+        final long elapsedMs = (sample.timestamp - oldestSample.timestamp);
+        if (elapsedMs <= 0L) { return 0D; }
+
+        return ((sample.acceptedWork - oldestSample.acceptedWork) * 1000D / elapsedMs);
+    }
+}
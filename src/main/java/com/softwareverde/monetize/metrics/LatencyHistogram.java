@@ -0,0 +1,65 @@
+package com.softwareverde.monetize.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed-bucket latency histogram whose recorders never contend: each bucket, the sum, and the count are LongAdders.
+ *  Buckets are stored non-cumulatively and accumulated when rendered, so a recording touches exactly one bucket.
+ */
+public class LatencyHistogram {
+    protected static final long[] BUCKET_UPPER_BOUNDS_NANOS = {
+        100_000L, 250_000L, 500_000L,
+        1_000_000L, 2_500_000L, 5_000_000L,
+        10_000_000L, 25_000_000L, 50_000_000L,
+        100_000_000L, 250_000_000L, 500_000_000L,
+        1_000_000_000L, 2_500_000_000L, 5_000_000_000L, 10_000_000_000L
+    };
+    protected static final double NANOS_PER_SECOND = 1_000_000_000D;
+
+    protected final LongAdder[] _buckets = new LongAdder[BUCKET_UPPER_BOUNDS_NANOS.length + 1]; // The last bucket is +Inf.
+    protected final LongAdder _sumNanos = new LongAdder();
+
+    public LatencyHistogram() {
+        for (int i = 0; i < _buckets.length; ++i) {
+            _buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(final long durationNanos) {
+        int bucketIndex = 0;
+        while ( (bucketIndex < BUCKET_UPPER_BOUNDS_NANOS.length) && (durationNanos > BUCKET_UPPER_BOUNDS_NANOS[bucketIndex]) ) {
+            bucketIndex += 1;
+        }
+
+        _buckets[bucketIndex].increment();
+        _sumNanos.add(durationNanos);
+    }
+
+    public Long getCount() {
+        long count = 0L;
+        for (final LongAdder bucket : _buckets) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    /**
+     * Appends the histogram's samples in the Prometheus text format.  labels must be empty or of the form
+     *  "name=\"value\"" (without braces).
+     */
+    public void render(final StringBuilder stringBuilder, final String name, final String labels) {
+        final String labelPrefix = (labels.isEmpty() ? "" : (labels + ","));
+
+        long cumulativeCount = 0L;
+        for (int i = 0; i < _buckets.length; ++i) {
+            cumulativeCount += _buckets[i].sum();
+
+            final String upperBound = ((i < BUCKET_UPPER_BOUNDS_NANOS.length) ? String.valueOf(BUCKET_UPPER_BOUNDS_NANOS[i] / NANOS_PER_SECOND) : "+Inf");
+            MetricsRegistry.appendSample(stringBuilder, (name + "_bucket"), (labelPrefix + "le=\"" + upperBound + "\""), cumulativeCount);
+        }
+
+        // The sum is read after the buckets, so it may include recordings the buckets do not; Prometheus tolerates the skew.
+        MetricsRegistry.appendSample(stringBuilder, (name + "_sum"), labels, (_sumNanos.sum() / NANOS_PER_SECOND));
+        MetricsRegistry.appendSample(stringBuilder, (name + "_count"), labels, cumulativeCount);
+    }
+}
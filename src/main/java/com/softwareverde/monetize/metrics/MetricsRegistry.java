@@ -0,0 +1,85 @@
+package com.softwareverde.monetize.metrics;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Collects metrics for the /metrics endpoint and renders them in the Prometheus text exposition format.
+ *  Values are read only when rendered; recording a metric never involves the registry.
+ */
+public class MetricsRegistry {
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    public interface Collector {
+        void collect(StringBuilder stringBuilder);
+    }
+
+    public static void appendHeader(final StringBuilder stringBuilder, final String name, final String help, final String type) {
+        stringBuilder.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        stringBuilder.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    /**
+     * Appends a sample; labels must be empty or of the form "name=\"value\",..." (without braces).
+     */
+    public static void appendSample(final StringBuilder stringBuilder, final String name, final String labels, final long value) {
+        stringBuilder.append(name);
+        if (! labels.isEmpty()) {
+            stringBuilder.append('{').append(labels).append('}');
+        }
+        stringBuilder.append(' ').append(value).append('\n');
+    }
+
+    public static void appendSample(final StringBuilder stringBuilder, final String name, final String labels, final double value) {
+        stringBuilder.append(name);
+        if (! labels.isEmpty()) {
+            stringBuilder.append('{').append(labels).append('}');
+        }
+        stringBuilder.append(' ').append(value).append('\n');
+    }
+
+    protected final CopyOnWriteArrayList<Collector> _collectors = new CopyOnWriteArrayList<>();
+
+    public void addCollector(final Collector collector) {
+        _collectors.add(collector);
+    }
+
+    public void addCounter(final String name, final String help, final LongSupplier value) {
+        _collectors.add(new Collector() {
+            @Override
+            public void collect(final StringBuilder stringBuilder) {
+                MetricsRegistry.appendHeader(stringBuilder, name, help, "counter");
+                MetricsRegistry.appendSample(stringBuilder, name, "", value.getAsLong());
+            }
+        });
+    }
+
+    public void addGauge(final String name, final String help, final LongSupplier value) {
+        _collectors.add(new Collector() {
+            @Override
+            public void collect(final StringBuilder stringBuilder) {
+                MetricsRegistry.appendHeader(stringBuilder, name, help, "gauge");
+                MetricsRegistry.appendSample(stringBuilder, name, "", value.getAsLong());
+            }
+        });
+    }
+
+    public void addGauge(final String name, final String help, final DoubleSupplier value) {
+        _collectors.add(new Collector() {
+            @Override
+            public void collect(final StringBuilder stringBuilder) {
+                MetricsRegistry.appendHeader(stringBuilder, name, help, "gauge");
+                MetricsRegistry.appendSample(stringBuilder, name, "", value.getAsDouble());
+            }
+        });
+    }
+
+    public String render() {
+        final StringBuilder stringBuilder = new StringBuilder(8192);
+        for (final Collector collector : _collectors) {
+            collector.collect(stringBuilder);
+        }
+        return stringBuilder.toString();
+    }
+}
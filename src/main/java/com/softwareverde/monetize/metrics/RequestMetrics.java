@@ -0,0 +1,79 @@
+package com.softwareverde.monetize.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records the latency (and therefore the count) of requests by endpoint, and the bytes allocated while serving them.
+ *  Allocation is measured on the serving thread, so work handed off to other threads (e.g. share validation) is not
+ *  included.
+ */
+public class RequestMetrics implements MetricsRegistry.Collector {
+    public enum RequestType {
+        SUBSCRIBE, GET_WORK, SUBMIT_SHARES, PAID, FREE
+    }
+
+    public static final String NAME = "monetize_request_duration_seconds";
+    public static final String ALLOCATED_BYTES_NAME = "monetize_request_allocated_bytes_total";
+
+    protected static final com.sun.management.ThreadMXBean THREAD_MX_BEAN;
+    static {
+        final ThreadMXBean threadMxBean = ManagementFactory.getThreadMXBean();
+        final boolean isSupported = ( (threadMxBean instanceof com.sun.management.ThreadMXBean) && ((com.sun.management.ThreadMXBean) threadMxBean).isThreadAllocatedMemorySupported() );
+        THREAD_MX_BEAN = (isSupported ? ((com.sun.management.ThreadMXBean) threadMxBean) : null);
+    }
+
+    /**
+     * Returns the number of bytes allocated by the current thread so far, or 0 if the JVM does not measure allocation.
+     */
+    public static long getCurrentThreadAllocatedBytes() {
+        if (THREAD_MX_BEAN == null) { return 0L; }
+
+        return Math.max(0L, THREAD_MX_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId()));
+    }
+
+    protected final EnumMap<RequestType, LatencyHistogram> _histograms = new EnumMap<>(RequestType.class);
+    protected final EnumMap<RequestType, LongAdder> _allocatedBytes = new EnumMap<>(RequestType.class);
+
+    public RequestMetrics() {
+        for (final RequestType requestType : RequestType.values()) {
+            _histograms.put(requestType, new LatencyHistogram());
+            _allocatedBytes.put(requestType, new LongAdder());
+        }
+    }
+
+    /**
+     * Records a request; allocatedBytes is the difference between RequestMetrics::getCurrentThreadAllocatedBytes taken
+     *  before and after serving it.
+     */
+    public void record(final RequestType requestType, final long durationNanos, final long allocatedBytes) {
+        final LatencyHistogram latencyHistogram = _histograms.get(requestType);
+        latencyHistogram.record(durationNanos);
+        _allocatedBytes.get(requestType).add(allocatedBytes);
+    }
+
+    public Long getRequestCount(final RequestType requestType) {
+        return _histograms.get(requestType).getCount();
+    }
+
+    public Long getAllocatedBytes(final RequestType requestType) {
+        return _allocatedBytes.get(requestType).sum();
+    }
+
+    @Override
+    public void collect(final StringBuilder stringBuilder) {
+        MetricsRegistry.appendHeader(stringBuilder, NAME, "Request latency by endpoint.", "histogram");
+        for (final RequestType requestType : RequestType.values()) {
+            final LatencyHistogram latencyHistogram = _histograms.get(requestType);
+            latencyHistogram.render(stringBuilder, NAME, ("endpoint=\"" + requestType.name().toLowerCase(Locale.ROOT) + "\""));
+        }
+
+        MetricsRegistry.appendHeader(stringBuilder, ALLOCATED_BYTES_NAME, "Bytes allocated by the serving thread, by endpoint.", "counter");
+        for (final RequestType requestType : RequestType.values()) {
+            MetricsRegistry.appendSample(stringBuilder, ALLOCATED_BYTES_NAME, ("endpoint=\"" + requestType.name().toLowerCase(Locale.ROOT) + "\""), _allocatedBytes.get(requestType).sum());
+        }
+    }
+}
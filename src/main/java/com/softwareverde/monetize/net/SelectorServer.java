@@ -0,0 +1,415 @@
+package com.softwareverde.monetize.net;
+
+import com.softwareverde.logging.Logger;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A single-threaded, non-blocking TCP server.
+ *  Idle connections cost only their buffers; no thread is held per connection.
+ *  Writes may be queued from any thread and are flushed by the selector thread; connections whose unflushed output
+ *  exceeds maxPendingWriteByteCount are closed so that slow clients cannot exhaust memory.
+ */
+public abstract class SelectorServer {
+    protected static final long SELECT_TIMEOUT_MS = 1000L;
+
+    /**
+     * Output queued for a connection: either a buffer, or a region of a file.
+     */
+    protected static class PendingWrite {
+        public final ByteBuffer byteBuffer;
+        public final FileChannel fileChannel;
+        public final long endPosition;
+        public long position;
+
+        public PendingWrite(final ByteBuffer byteBuffer) {
+            this.byteBuffer = byteBuffer;
+            this.fileChannel = null;
+            this.position = 0L;
+            this.endPosition = 0L;
+        }
+
+        public PendingWrite(final FileChannel fileChannel, final long position, final long byteCount) {
+            this.byteBuffer = null;
+            this.fileChannel = fileChannel;
+            this.position = position;
+            this.endPosition = (position + byteCount);
+        }
+
+        public void release() {
+            if (this.fileChannel == null) { return; }
+
+            try {
+                this.fileChannel.close();
+            }
+            catch (final IOException exception) { }
+        }
+    }
+
+    public static class Connection {
+        protected final SocketChannel _socketChannel;
+        protected final ByteBuffer _readBuffer;
+        protected final ConcurrentLinkedQueue<PendingWrite> _pendingWrites = new ConcurrentLinkedQueue<>();
+        protected final AtomicLong _pendingWriteByteCount = new AtomicLong(0L);
+        protected final String _remoteAddress;
+        protected SelectionKey _selectionKey;
+        protected volatile boolean _shouldCloseAfterFlush = false;
+        protected volatile boolean _isClosed = false;
+        protected volatile Object _state;
+
+        protected Connection(final SocketChannel socketChannel, final Integer readBufferByteCount) {
+            _socketChannel = socketChannel;
+            _readBuffer = ByteBuffer.allocate(readBufferByteCount);
+
+            String remoteAddress = null;
+            try {
+                final InetSocketAddress socketAddress = (InetSocketAddress) socketChannel.getRemoteAddress();
+                remoteAddress = socketAddress.getAddress().getHostAddress();
+            }
+            catch (final Exception exception) { }
+            _remoteAddress = remoteAddress;
+        }
+
+        public String getRemoteAddress() {
+            return _remoteAddress;
+        }
+
+        /**
+         * Returns the protocol-specific state attached to the connection.
+         */
+        public Object getState() {
+            return _state;
+        }
+
+        public void setState(final Object state) {
+            _state = state;
+        }
+
+        public Boolean isClosed() {
+            return _isClosed;
+        }
+
+        /**
+         * Returns true if output (including file regions) is queued but not yet written.
+         */
+        public Boolean hasPendingWrites() {
+            return (! _pendingWrites.isEmpty());
+        }
+    }
+
+    protected final Integer _port;
+    protected final Integer _maxConnectionCount;
+    protected final Integer _readBufferByteCount;
+    protected final Long _maxPendingWriteByteCount;
+
+    protected final Set<Connection> _connections = ConcurrentHashMap.newKeySet();
+    protected final ConcurrentLinkedQueue<Connection> _connectionsPendingFlush = new ConcurrentLinkedQueue<>();
+
+    protected Selector _selector;
+    protected ServerSocketChannel _serverSocketChannel;
+    protected Thread _thread;
+
+    /**
+     * Invoked on the selector thread once a connection has been accepted.
+     */
+    protected abstract void _onConnect(Connection connection);
+
+    /**
+     * Invoked on the selector thread when data has been received.
+     *  The buffer is in read mode; implementations consume as many complete messages as are available by advancing its
+     *  position.  Unconsumed bytes are retained for the next invocation.
+     */
+    protected abstract void _onData(Connection connection, ByteBuffer buffer);
+
+    /**
+     * Invoked once when a connection has been closed, by either side.
+     */
+    protected abstract void _onDisconnect(Connection connection);
+
+    /**
+     * Invoked on the selector thread at least once every SELECT_TIMEOUT_MS.
+     */
+    protected void _onTick(final long now) { }
+
+    protected void _accept() {
+        try {
+            final SocketChannel socketChannel = _serverSocketChannel.accept();
+            if (socketChannel == null) { return; }
+
+            if (_connections.size() >= _maxConnectionCount) {
+                socketChannel.close();
+                return;
+            }
+
+            socketChannel.configureBlocking(false);
+            socketChannel.setOption(java.net.StandardSocketOptions.TCP_NODELAY, true);
+
+            final Connection connection = new Connection(socketChannel, _readBufferByteCount);
+            connection._selectionKey = socketChannel.register(_selector, SelectionKey.OP_READ, connection);
+            _connections.add(connection);
+            _onConnect(connection);
+        }
+        catch (final IOException exception) {
+            Logger.debug("Unable to accept connection: " + exception.getMessage());
+        }
+    }
+
+    protected void _read(final Connection connection) {
+        final ByteBuffer readBuffer = connection._readBuffer;
+        try {
+            final int byteCount = connection._socketChannel.read(readBuffer);
+            if (byteCount < 0) {
+                _close(connection);
+                return;
+            }
+        }
+        catch (final IOException exception) {
+            _close(connection);
+            return;
+        }
+
+        readBuffer.flip();
+        _onData(connection, readBuffer);
+        final boolean bufferWasFull = (readBuffer.position() == 0) && (readBuffer.limit() == readBuffer.capacity());
+        readBuffer.compact();
+
+        if (bufferWasFull) { // The message is larger than the read buffer and can never be consumed...
+            _close(connection);
+        }
+    }
+
+    protected void _flush(final Connection connection) {
+        if (connection._isClosed) { return; }
+
+        try {
+            while (true) {
+                final PendingWrite pendingWrite = connection._pendingWrites.peek();
+                if (pendingWrite == null) { break; }
+
+                final ByteBuffer byteBuffer = pendingWrite.byteBuffer;
+                if (byteBuffer != null) {
+                    final int byteCount = connection._socketChannel.write(byteBuffer);
+                    connection._pendingWriteByteCount.addAndGet(-byteCount);
+                    if (byteBuffer.hasRemaining()) { break; } // The socket's send buffer is full.
+                }
+                else {
+                    final long byteCount = pendingWrite.fileChannel.transferTo(pendingWrite.position, (pendingWrite.endPosition - pendingWrite.position), connection._socketChannel);
+                    pendingWrite.position += byteCount;
+                    if (pendingWrite.position < pendingWrite.endPosition) {
+                        if ( (byteCount == 0L) && (pendingWrite.position >= pendingWrite.fileChannel.size()) ) { // The file was truncated...
+                            _close(connection);
+                            return;
+                        }
+                        break; // The socket's send buffer is full.
+                    }
+                }
+
+                connection._pendingWrites.poll();
+                pendingWrite.release();
+            }
+        }
+        catch (final IOException exception) {
+            _close(connection);
+            return;
+        }
+
+        final boolean hasPendingWrites = (! connection._pendingWrites.isEmpty());
+        if ( (! hasPendingWrites) && connection._shouldCloseAfterFlush ) {
+            _close(connection);
+            return;
+        }
+
+        final SelectionKey selectionKey = connection._selectionKey;
+        if (selectionKey.isValid()) {
+            selectionKey.interestOps(hasPendingWrites ? (SelectionKey.OP_READ | SelectionKey.OP_WRITE) : SelectionKey.OP_READ);
+        }
+    }
+
+    protected void _close(final Connection connection) {
+        if (connection._isClosed) { return; }
+        connection._isClosed = true;
+
+        _connections.remove(connection);
+        try {
+            connection._socketChannel.close();
+        }
+        catch (final IOException exception) { }
+
+        _clearPendingWrites(connection);
+        _onDisconnect(connection);
+    }
+
+    protected void _clearPendingWrites(final Connection connection) {
+        while (true) {
+            final PendingWrite pendingWrite = connection._pendingWrites.poll();
+            if (pendingWrite == null) { break; }
+
+            pendingWrite.release();
+        }
+    }
+
+    protected void _run() {
+        final Thread thread = Thread.currentThread();
+        try {
+            while (! thread.isInterrupted()) {
+                _selector.select(SELECT_TIMEOUT_MS);
+
+                while (true) {
+                    final Connection connection = _connectionsPendingFlush.poll();
+                    if (connection == null) { break; }
+                    _flush(connection);
+                }
+
+                final Iterator<SelectionKey> iterator = _selector.selectedKeys().iterator();
+                while (iterator.hasNext()) {
+                    final SelectionKey selectionKey = iterator.next();
+                    iterator.remove();
+                    if (! selectionKey.isValid()) { continue; }
+
+                    if (selectionKey.isAcceptable()) {
+                        _accept();
+                        continue;
+                    }
+
+                    final Connection connection = (Connection) selectionKey.attachment();
+                    if (selectionKey.isReadable()) {
+                        _read(connection);
+                    }
+                    if (selectionKey.isValid() && selectionKey.isWritable()) {
+                        _flush(connection);
+                    }
+                }
+
+                _onTick(System.currentTimeMillis());
+            }
+        }
+        catch (final IOException | ClosedSelectorException exception) {
+            if (! thread.isInterrupted()) {
+                Logger.warn("Selector server failed.", exception);
+            }
+        }
+        finally {
+            for (final Connection connection : _connections) {
+                _close(connection);
+            }
+        }
+    }
+
+    protected SelectorServer(final Integer port, final Integer maxConnectionCount, final Integer readBufferByteCount, final Long maxPendingWriteByteCount) {
+        _port = port;
+        _maxConnectionCount = maxConnectionCount;
+        _readBufferByteCount = readBufferByteCount;
+        _maxPendingWriteByteCount = maxPendingWriteByteCount;
+    }
+
+    /**
+     * Queues the bytes to be written to the connection; may be called from any thread.
+     *  Returns false if the connection is closed or has been closed due to too much unflushed output.
+     */
+    public Boolean write(final Connection connection, final ByteBuffer byteBuffer) {
+        if (connection._isClosed) { return false; }
+
+        final long pendingByteCount = connection._pendingWriteByteCount.addAndGet(byteBuffer.remaining());
+        if (pendingByteCount > _maxPendingWriteByteCount) {
+            connection._shouldCloseAfterFlush = true;
+            _clearPendingWrites(connection);
+            _connectionsPendingFlush.add(connection);
+            _selector.wakeup();
+            return false;
+        }
+
+        connection._pendingWrites.add(new PendingWrite(byteBuffer));
+        _connectionsPendingFlush.add(connection);
+        _selector.wakeup();
+        return true;
+    }
+
+    /**
+     * Queues byteCount bytes of the file, starting at position, to be written to the connection after any previously
+     *  queued output; may be called from any thread.  The file is transferred directly from the page cache to the socket.
+     *  Ownership of the fileChannel is taken: it is closed once the region has been written or the connection closes.
+     *  Returns false (and closes the fileChannel) if the connection is closed.
+     */
+    public Boolean writeFile(final Connection connection, final FileChannel fileChannel, final Long position, final Long byteCount) {
+        final PendingWrite pendingWrite = new PendingWrite(fileChannel, position, byteCount);
+        if (connection._isClosed) {
+            pendingWrite.release();
+            return false;
+        }
+
+        connection._pendingWrites.add(pendingWrite);
+        if (connection._isClosed) { // The connection was closed concurrently; its queue may have already been released...
+            _clearPendingWrites(connection);
+            return false;
+        }
+
+        _connectionsPendingFlush.add(connection);
+        _selector.wakeup();
+        return true;
+    }
+
+    /**
+     * Closes the connection once all of its queued output has been written.
+     */
+    public void closeAfterFlush(final Connection connection) {
+        connection._shouldCloseAfterFlush = true;
+        _connectionsPendingFlush.add(connection);
+        _selector.wakeup();
+    }
+
+    public Integer getConnectionCount() {
+        return _connections.size();
+    }
+
+    public Integer getPort() {
+        return _port;
+    }
+
+    public synchronized void start() throws IOException {
+        if (_thread != null) { return; }
+
+        _selector = Selector.open();
+        _serverSocketChannel = ServerSocketChannel.open();
+        _serverSocketChannel.configureBlocking(false);
+        _serverSocketChannel.bind(new InetSocketAddress(_port), 1024);
+        _serverSocketChannel.register(_selector, SelectionKey.OP_ACCEPT);
+
+        _thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                _run();
+            }
+        });
+        _thread.setName(this.getClass().getSimpleName());
+        _thread.setDaemon(true);
+        _thread.start();
+    }
+
+    public synchronized void stop() {
+        if (_thread == null) { return; }
+
+        _thread.interrupt();
+        _selector.wakeup();
+        try {
+            _thread.join(5000L);
+            _serverSocketChannel.close();
+            _selector.close();
+        }
+        catch (final Exception exception) { }
+
+        _thread = null;
+    }
+}
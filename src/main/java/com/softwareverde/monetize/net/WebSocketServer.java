@@ -0,0 +1,296 @@
+package com.softwareverde.monetize.net;
+
+import com.softwareverde.util.StringUtil;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A minimal RFC 6455 server for binary messages, built on the SelectorServer.
+ *  Clients upgrade via "GET <path>"; afterwards only unfragmented binary frames are delivered.  Pings are answered,
+ *  close frames are echoed, and text, fragmented, or oversized frames close the connection.
+ *  The server does not negotiate extensions or subprotocols.
+ */
+public abstract class WebSocketServer extends SelectorServer {
+    protected static final String ACCEPT_KEY_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+
+    protected static final int OPCODE_CONTINUATION = 0x00;
+    protected static final int OPCODE_BINARY = 0x02;
+    protected static final int OPCODE_CLOSE = 0x08;
+    protected static final int OPCODE_PING = 0x09;
+    protected static final int OPCODE_PONG = 0x0A;
+
+    protected static final byte[] BAD_REQUEST_RESPONSE = StringUtil.stringToBytes("HTTP/1.1 400 Bad Request\r\nContent-Length: 0\r\nConnection: close\r\n\r\n");
+    protected static final byte[] NOT_FOUND_RESPONSE = StringUtil.stringToBytes("HTTP/1.1 404 Not Found\r\nContent-Length: 0\r\nConnection: close\r\n\r\n");
+    protected static final byte[] PING_FRAME = WebSocketServer.createFrame(OPCODE_PING, new byte[0]);
+    protected static final byte[] CLOSE_FRAME = WebSocketServer.createFrame(OPCODE_CLOSE, new byte[0]);
+
+    protected static byte[] createFrame(final int opcode, final byte[] payload) {
+        final int headerByteCount = (payload.length < 126 ? 2 : (payload.length <= 0xFFFF ? 4 : 10));
+        final byte[] frame = new byte[headerByteCount + payload.length];
+        frame[0] = (byte) (0x80 | opcode); // FIN
+        if (payload.length < 126) {
+            frame[1] = (byte) payload.length;
+        }
+        else if (payload.length <= 0xFFFF) {
+            frame[1] = 126;
+            frame[2] = (byte) (payload.length >>> 8);
+            frame[3] = (byte) payload.length;
+        }
+        else {
+            frame[1] = 127;
+            for (int i = 0; i < 8; ++i) {
+                frame[2 + i] = (byte) (((long) payload.length) >>> (56 - (8 * i)));
+            }
+        }
+        System.arraycopy(payload, 0, frame, headerByteCount, payload.length);
+        return frame;
+    }
+
+    /**
+     * Returns an (unmasked) server-to-client binary frame containing the payload.
+     *  Frames may be rendered once and written to many connections.
+     */
+    public static byte[] createBinaryFrame(final byte[] payload) {
+        return WebSocketServer.createFrame(OPCODE_BINARY, payload);
+    }
+
+    protected static String _createAcceptKey(final String webSocketKey) {
+        try {
+            final MessageDigest messageDigest = MessageDigest.getInstance("SHA-1");
+            final byte[] digest = messageDigest.digest(StringUtil.stringToBytes(webSocketKey + ACCEPT_KEY_GUID));
+            return Base64.getEncoder().encodeToString(digest);
+        }
+        catch (final Exception exception) {
+            throw new RuntimeException(exception);
+        }
+    }
+
+    protected static int _indexOfHeaderTerminator(final ByteBuffer buffer) {
+        final int limit = buffer.limit();
+        for (int i = buffer.position(); (i + 3) < limit; ++i) {
+            if ( (buffer.get(i) == '\r') && (buffer.get(i + 1) == '\n') && (buffer.get(i + 2) == '\r') && (buffer.get(i + 3) == '\n') ) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    protected final String _path;
+    protected final Integer _maxMessageByteCount;
+    protected final Set<Connection> _openConnections = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Invoked on the selector thread once the connection has been upgraded.
+     */
+    protected abstract void _onOpen(Connection connection);
+
+    /**
+     * Invoked on the selector thread for each binary message; the payload has already been unmasked.
+     */
+    protected abstract void _onMessage(Connection connection, byte[] payload);
+
+    /**
+     * Invoked once when an upgraded connection has been closed, by either side.
+     */
+    protected abstract void _onClose(Connection connection);
+
+    protected void _reject(final Connection connection, final byte[] response) {
+        this.write(connection, ByteBuffer.wrap(response));
+        this.closeAfterFlush(connection);
+    }
+
+    protected void _upgrade(final Connection connection, final String request) {
+        final String[] lines = request.split("\r\n");
+
+        // Request-Line: GET <path> HTTP/1.1
+        final String[] requestLineParts = lines[0].split(" ");
+        if ( (requestLineParts.length < 2) || (! requestLineParts[0].equals("GET")) ) {
+            _reject(connection, BAD_REQUEST_RESPONSE);
+            return;
+        }
+
+        final String target = requestLineParts[1];
+        final int queryIndex = target.indexOf('?');
+        final String path = (queryIndex < 0 ? target : target.substring(0, queryIndex));
+        if (! path.equals(_path)) {
+            _reject(connection, NOT_FOUND_RESPONSE);
+            return;
+        }
+
+        String upgrade = null;
+        String webSocketKey = null;
+        for (int i = 1; i < lines.length; ++i) {
+            final String line = lines[i];
+            final int separatorIndex = line.indexOf(':');
+            if (separatorIndex < 0) { continue; }
+
+            final String headerName = line.substring(0, separatorIndex).trim().toLowerCase(Locale.ROOT);
+            final String headerValue = line.substring(separatorIndex + 1).trim();
+            if (headerName.equals("upgrade")) {
+                upgrade = headerValue;
+            }
+            else if (headerName.equals("sec-websocket-key")) {
+                webSocketKey = headerValue;
+            }
+        }
+
+        if ( (upgrade == null) || (! upgrade.equalsIgnoreCase("websocket")) || (webSocketKey == null) || webSocketKey.isEmpty() ) {
+            _reject(connection, BAD_REQUEST_RESPONSE);
+            return;
+        }
+
+        final String response = (
+            "HTTP/1.1 101 Switching Protocols\r\n" +
+            "Upgrade: websocket\r\n" +
+            "Connection: Upgrade\r\n" +
+            "Sec-WebSocket-Accept: " + _createAcceptKey(webSocketKey) + "\r\n" +
+            "\r\n"
+        );
+        this.write(connection, ByteBuffer.wrap(StringUtil.stringToBytes(response)));
+        _openConnections.add(connection);
+        _onOpen(connection);
+    }
+
+    /**
+     * Consumes one complete frame from the buffer; returns false if the frame is incomplete (and nothing was consumed)
+     *  or if the connection was closed.
+     */
+    protected boolean _readFrame(final Connection connection, final ByteBuffer buffer) {
+        final int startPosition = buffer.position();
+        if (buffer.remaining() < 2) { return false; }
+
+        final int byte0 = (buffer.get(startPosition) & 0xFF);
+        final int byte1 = (buffer.get(startPosition + 1) & 0xFF);
+        final boolean isFinal = ((byte0 & 0x80) != 0);
+        final int opcode = (byte0 & 0x0F);
+        final boolean isMasked = ((byte1 & 0x80) != 0);
+        final int lengthIndicator = (byte1 & 0x7F);
+
+        if ( (! isMasked) || (! isFinal) || (opcode == OPCODE_CONTINUATION) || (lengthIndicator == 127) ) { // Clients must mask; messages may not be fragmented or huge...
+            _close(connection);
+            return false;
+        }
+
+        int headerByteCount = 2;
+        final int payloadByteCount;
+        if (lengthIndicator == 126) {
+            if (buffer.remaining() < 4) { return false; }
+            payloadByteCount = (((buffer.get(startPosition + 2) & 0xFF) << 8) | (buffer.get(startPosition + 3) & 0xFF));
+            headerByteCount += 2;
+        }
+        else {
+            payloadByteCount = lengthIndicator;
+        }
+
+        if (payloadByteCount > _maxMessageByteCount) {
+            _close(connection);
+            return false;
+        }
+
+        final int maskOffset = (startPosition + headerByteCount);
+        headerByteCount += 4;
+        if (buffer.remaining() < (headerByteCount + payloadByteCount)) { return false; }
+
+        final byte[] payload = new byte[payloadByteCount];
+        for (int i = 0; i < payloadByteCount; ++i) {
+            payload[i] = (byte) (buffer.get(startPosition + headerByteCount + i) ^ buffer.get(maskOffset + (i % 4)));
+        }
+        buffer.position(startPosition + headerByteCount + payloadByteCount);
+
+        switch (opcode) {
+            case OPCODE_BINARY: {
+                _onMessage(connection, payload);
+            } break;
+
+            case OPCODE_PING: {
+                this.write(connection, ByteBuffer.wrap(WebSocketServer.createFrame(OPCODE_PONG, payload)));
+            } break;
+
+            case OPCODE_PONG: { } break;
+
+            case OPCODE_CLOSE: {
+                this.write(connection, ByteBuffer.wrap(CLOSE_FRAME));
+                this.closeAfterFlush(connection);
+                return false;
+            }
+
+            default: { // Text frames are not supported...
+                _close(connection);
+                return false;
+            }
+        }
+
+        return (! connection.isClosed());
+    }
+
+    @Override
+    protected void _onConnect(final Connection connection) { }
+
+    @Override
+    protected void _onData(final Connection connection, final ByteBuffer buffer) {
+        if (! _openConnections.contains(connection)) {
+            final int headerTerminatorIndex = _indexOfHeaderTerminator(buffer);
+            if (headerTerminatorIndex < 0) { return; } // Wait for the rest of the request...
+
+            final int requestByteCount = (headerTerminatorIndex - buffer.position());
+            final byte[] requestBytes = new byte[requestByteCount];
+            buffer.get(requestBytes);
+            buffer.position(headerTerminatorIndex + 4);
+
+            _upgrade(connection, new String(requestBytes, StandardCharsets.ISO_8859_1));
+            if (! _openConnections.contains(connection)) {
+                buffer.position(buffer.limit());
+                return;
+            }
+        }
+
+        while (_readFrame(connection, buffer)) { }
+    }
+
+    @Override
+    protected void _onDisconnect(final Connection connection) {
+        if (_openConnections.remove(connection)) {
+            _onClose(connection);
+        }
+    }
+
+    /**
+     * Sends a ping to every open connection; clients that have gone away are eventually closed by their failed writes.
+     */
+    protected void _pingAll() {
+        for (final Connection connection : _openConnections) {
+            this.write(connection, ByteBuffer.wrap(PING_FRAME));
+        }
+    }
+
+    protected WebSocketServer(final Integer port, final Integer maxConnectionCount, final Integer readBufferByteCount, final Long maxPendingWriteByteCount, final String path, final Integer maxMessageByteCount) {
+        super(port, maxConnectionCount, readBufferByteCount, maxPendingWriteByteCount);
+        _path = path;
+        _maxMessageByteCount = maxMessageByteCount;
+    }
+
+    /**
+     * Queues the binary message to be written to the connection; may be called from any thread.
+     */
+    public Boolean send(final Connection connection, final byte[] payload) {
+        return this.write(connection, ByteBuffer.wrap(WebSocketServer.createBinaryFrame(payload)));
+    }
+
+    /**
+     * Sends a close frame and closes the connection once its queued output has been written.
+     */
+    public void close(final Connection connection) {
+        this.write(connection, ByteBuffer.wrap(CLOSE_FRAME));
+        this.closeAfterFlush(connection);
+    }
+
+    public Integer getOpenConnectionCount() {
+        return _openConnections.size();
+    }
+}
@@ -0,0 +1,98 @@
+package com.softwareverde.monetize.ratelimit;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free token-bucket rate limiter keyed by an arbitrary string (e.g. a client address or subscription id).
+ *  Each bucket is stored as a single AtomicLong holding its "theoretical arrival time" (the generic cell rate
+ *  algorithm), which is equivalent to a token bucket of size burst refilled at requestsPerMinute, but is updated with
+ *  a single compare-and-set and requires no refill bookkeeping.
+ *  The table holds at most maxBucketCount buckets; when full, a full (idle) bucket is evicted to make room.  Buckets
+ *  that are still refilling are never evicted, since that would forgive a throttled key's debt; if none of the scanned
+ *  buckets are full, the new key shares a single overflow bucket instead, so memory remains bounded under key churn.
+ */
+public class TokenBucketRateLimiter {
+    public static final Integer DEFAULT_MAX_BUCKET_COUNT = 65536;
+    protected static final int MAX_EVICTION_SCAN_COUNT = 8;
+    protected static final long NANOS_PER_MINUTE = (60L * 1000L * 1000L * 1000L);
+
+    protected final long _emissionIntervalNanos;
+    protected final long _burstToleranceNanos;
+    protected final Integer _maxBucketCount;
+    protected final ConcurrentHashMap<String, AtomicLong> _buckets = new ConcurrentHashMap<>();
+    protected final AtomicLong _overflowBucket = new AtomicLong(System.nanoTime());
+    protected final LongAdder _rejectedCount = new LongAdder();
+
+    /**
+     * Returns true if the table has room for another bucket, evicting a full bucket if necessary.
+     *  nanoTime values may overflow, so they are only compared via their difference.
+     */
+    protected boolean _makeRoom(final long now) {
+        if (_buckets.size() < _maxBucketCount) { return true; }
+
+        final Iterator<Map.Entry<String, AtomicLong>> iterator = _buckets.entrySet().iterator();
+        for (int i = 0; (i < MAX_EVICTION_SCAN_COUNT) && iterator.hasNext(); ++i) {
+            final Map.Entry<String, AtomicLong> entry = iterator.next();
+            if ((entry.getValue().get() - now) <= 0L) { // The bucket is full; forgetting it changes nothing...
+                iterator.remove();
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    public TokenBucketRateLimiter(final Long requestsPerMinute, final Integer burst) {
+        this(requestsPerMinute, burst, DEFAULT_MAX_BUCKET_COUNT);
+    }
+
+    public TokenBucketRateLimiter(final Long requestsPerMinute, final Integer burst, final Integer maxBucketCount) {
+        _emissionIntervalNanos = Math.max(1L, (NANOS_PER_MINUTE / requestsPerMinute));
+        _burstToleranceNanos = (_emissionIntervalNanos * Math.max(1, burst));
+        _maxBucketCount = maxBucketCount;
+    }
+
+    /**
+     * Consumes a token from the key's bucket and returns true, or returns false if the bucket is empty.
+     *  A null key (e.g. an unknown client address) shares a single bucket, as do new keys while the table is full.
+     */
+    public Boolean tryAcquire(final String key) {
+        final String bucketKey = ((key != null) ? key : "");
+        final long now = System.nanoTime();
+
+        AtomicLong theoreticalArrivalTime = _buckets.get(bucketKey);
+        if (theoreticalArrivalTime == null) {
+            if (_makeRoom(now)) {
+                theoreticalArrivalTime = _buckets.computeIfAbsent(bucketKey, (newKey) -> new AtomicLong(now));
+            }
+            else { // Every scanned bucket is still refilling...
+                theoreticalArrivalTime = _overflowBucket;
+            }
+        }
+
+        while (true) {
+            final long currentArrivalTime = theoreticalArrivalTime.get();
+            final long newArrivalTime = ((((currentArrivalTime - now) > 0L) ? currentArrivalTime : now) + _emissionIntervalNanos);
+            if ((newArrivalTime - now) > _burstToleranceNanos) {
+                _rejectedCount.increment();
+                return false;
+            }
+
+            if (theoreticalArrivalTime.compareAndSet(currentArrivalTime, newArrivalTime)) {
+                return true;
+            }
+        }
+    }
+
+    public Long getRejectedCount() {
+        return _rejectedCount.sum();
+    }
+
+    public Integer getBucketCount() {
+        return _buckets.size();
+    }
+}
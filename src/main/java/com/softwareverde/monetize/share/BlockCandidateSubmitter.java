@@ -0,0 +1,254 @@
+package com.softwareverde.monetize.share;
+
+import com.softwareverde.bitcoin.server.module.stratum.BitcoinCoreStratumServer;
+import com.softwareverde.json.Json;
+import com.softwareverde.logging.Logger;
+import com.softwareverde.monetize.metrics.LatencyHistogram;
+import com.softwareverde.monetize.work.WorkPublisher;
+import com.softwareverde.monetize.work.WorkResponseCache;
+import com.softwareverde.util.HexUtil;
+
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Submits block candidates (shares whose hash satisfies the job's network target) to the stratum server from a
+ *  dedicated maximum-priority thread, so that a found block is never queued behind ordinary share validation.
+ *  Failed submissions are retried until maxAttemptCount is reached or the candidate's parent is no longer the tip.
+ *  Once submitted, each candidate is watched until a new job confirms it (builds upon it) or orphans it (builds upon a
+ *  different block at the same height).
+ *  Block hashes are compared in the byte order of the (swabbed) previousBlockHash served to browser miners.
+ */
+public class BlockCandidateSubmitter implements WorkPublisher.Listener {
+    public enum Outcome {
+        SUBMITTED,  // Accepted by the stratum server.
+        REJECTED,   // Not accepted by the stratum server after every attempt.
+        STALE,      // The tip changed before the candidate could be submitted.
+        CONFIRMED,  // A subsequent job builds upon the candidate.
+        ORPHANED    // A subsequent job builds upon a different block.
+    }
+
+    public static final Integer DEFAULT_MAX_ATTEMPT_COUNT = 3;
+    public static final Long DEFAULT_RETRY_DELAY_MS = 25L;
+    protected static final Integer MAX_WATCHED_CANDIDATE_COUNT = 16;
+
+    protected static class Candidate {
+        public final Long jobId;
+        public final Json workerSubmitMessage;
+        public final String blockHashHex;
+        public final String previousBlockHashHex;
+        public final Long detectedNanos;
+        public final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+        public Candidate(final Long jobId, final Json workerSubmitMessage, final String blockHashHex, final String previousBlockHashHex, final Long detectedNanos) {
+            this.jobId = jobId;
+            this.workerSubmitMessage = workerSubmitMessage;
+            this.blockHashHex = blockHashHex;
+            this.previousBlockHashHex = previousBlockHashHex;
+            this.detectedNanos = detectedNanos;
+        }
+    }
+
+    protected final BitcoinCoreStratumServer _stratumServer;
+    protected final WorkResponseCache _workResponseCache;
+    protected final Integer _maxAttemptCount;
+    protected final Long _retryDelayMs;
+    protected final LinkedBlockingQueue<Candidate> _queuedCandidates = new LinkedBlockingQueue<>();
+    protected final ConcurrentLinkedQueue<Candidate> _watchedCandidates = new ConcurrentLinkedQueue<>();
+    protected final EnumMap<Outcome, LongAdder> _outcomeCounts = new EnumMap<>(Outcome.class);
+    protected final LatencyHistogram _submitLatency = new LatencyHistogram();
+    protected final LongAdder _retryCount = new LongAdder();
+
+    protected volatile String _tipBlockHashHex = null;
+    protected Thread _thread;
+
+    protected void _recordOutcome(final Candidate candidate, final Outcome outcome) {
+        _outcomeCounts.get(outcome).increment();
+        Logger.info("Block candidate " + candidate.blockHashHex + " (job " + candidate.jobId + "): " + outcome);
+    }
+
+    /**
+     * Returns true if the tip is known to have moved beyond the candidate's parent (without the candidate).
+     */
+    protected Boolean _isStale(final Candidate candidate) {
+        final String tipBlockHashHex = _tipBlockHashHex;
+        if (tipBlockHashHex == null) { return false; }
+
+        return ( (! tipBlockHashHex.equalsIgnoreCase(candidate.previousBlockHashHex)) && (! tipBlockHashHex.equalsIgnoreCase(candidate.blockHashHex)) );
+    }
+
+    protected void _submit(final Candidate candidate) {
+        for (int attempt = 1; attempt <= _maxAttemptCount; ++attempt) {
+            if ( (attempt > 1) && _isStale(candidate) ) {
+                _recordOutcome(candidate, Outcome.STALE);
+                candidate.result.complete(false);
+                return;
+            }
+
+            try {
+                final Boolean wasAccepted = _stratumServer.submitShare(candidate.workerSubmitMessage);
+                if (wasAccepted) {
+                    _submitLatency.record(System.nanoTime() - candidate.detectedNanos);
+                    _recordOutcome(candidate, Outcome.SUBMITTED);
+                    candidate.result.complete(true);
+
+                    _watchedCandidates.add(candidate);
+                    while (_watchedCandidates.size() > MAX_WATCHED_CANDIDATE_COUNT) {
+                        _watchedCandidates.poll();
+                    }
+                    return;
+                }
+            }
+            catch (final Exception exception) {
+                Logger.warn("Unable to submit block candidate " + candidate.blockHashHex + ".", exception);
+            }
+
+            if (attempt < _maxAttemptCount) {
+                _retryCount.increment();
+                try {
+                    Thread.sleep(_retryDelayMs << (attempt - 1));
+                }
+                catch (final InterruptedException exception) {
+                    Thread.currentThread().interrupt(); // Finish the remaining attempts without delay; stop() is waiting...
+                }
+            }
+        }
+
+        _recordOutcome(candidate, Outcome.REJECTED);
+        candidate.result.complete(false);
+    }
+
+    protected void _run() {
+        while (true) {
+            final Candidate candidate;
+            try {
+                candidate = _queuedCandidates.take();
+            }
+            catch (final InterruptedException exception) {
+                break;
+            }
+
+            _submit(candidate);
+            if (Thread.currentThread().isInterrupted()) { break; }
+        }
+    }
+
+    public BlockCandidateSubmitter(final BitcoinCoreStratumServer stratumServer, final WorkResponseCache workResponseCache, final Integer maxAttemptCount, final Long retryDelayMs) {
+        _stratumServer = stratumServer;
+        _workResponseCache = workResponseCache;
+        _maxAttemptCount = Math.max(1, maxAttemptCount);
+        _retryDelayMs = retryDelayMs;
+
+        for (final Outcome outcome : Outcome.values()) {
+            _outcomeCounts.put(outcome, new LongAdder());
+        }
+    }
+
+    /**
+     * Hands the block candidate to the submission thread and returns without waiting for the stratum server; the
+     *  returned future completes with true once the stratum server accepts the share, or false if every attempt failed.
+     *  blockHash is the candidate's little-endian hash and previousBlockHashHex is the job's (swabbed) previousBlockHash.
+     *  If the submitter is not running, the candidate is submitted on the calling thread.
+     */
+    public CompletableFuture<Boolean> submit(final Long jobId, final Json workerSubmitMessage, final byte[] blockHash, final String previousBlockHashHex) {
+        final Candidate candidate = new Candidate(jobId, workerSubmitMessage, HexUtil.toHexString(blockHash), previousBlockHashHex, System.nanoTime());
+
+        final boolean isRunning;
+        synchronized (this) {
+            isRunning = (_thread != null);
+            if (isRunning) {
+                _queuedCandidates.add(candidate);
+            }
+        }
+        if (! isRunning) {
+            _submit(candidate);
+        }
+
+        return candidate.result;
+    }
+
+    /**
+     * Confirms or orphans the submitted candidates using the new job's previousBlockHash.
+     */
+    @Override
+    public void onNewJob(final Long jobId) {
+        final Json notifyParameters = _workResponseCache.getJobParameters(jobId);
+        if (notifyParameters == null) { return; }
+
+        final String tipBlockHashHex = notifyParameters.getString(1);
+        _tipBlockHashHex = tipBlockHashHex;
+
+        final Iterator<Candidate> iterator = _watchedCandidates.iterator();
+        while (iterator.hasNext()) {
+            final Candidate candidate = iterator.next();
+            if (tipBlockHashHex.equalsIgnoreCase(candidate.blockHashHex)) {
+                iterator.remove();
+                _recordOutcome(candidate, Outcome.CONFIRMED);
+            }
+            else if (! tipBlockHashHex.equalsIgnoreCase(candidate.previousBlockHashHex)) { // Otherwise the job is a new template for the same tip...
+                iterator.remove();
+                _recordOutcome(candidate, Outcome.ORPHANED);
+            }
+        }
+    }
+
+    public Long getOutcomeCount(final Outcome outcome) {
+        return _outcomeCounts.get(outcome).sum();
+    }
+
+    /**
+     * Returns the number of failed submission attempts that were retried.
+     */
+    public Long getRetryCount() {
+        return _retryCount.sum();
+    }
+
+    /**
+     * Returns the histogram of the time from detecting a candidate until the stratum server accepted it.
+     */
+    public LatencyHistogram getSubmitLatency() {
+        return _submitLatency;
+    }
+
+    public synchronized void start() {
+        if (_thread != null) { return; }
+
+        _thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                _run();
+            }
+        });
+        _thread.setName("Block Candidate Submitter");
+        _thread.setPriority(Thread.MAX_PRIORITY);
+        _thread.setDaemon(true);
+        _thread.start();
+    }
+
+    /**
+     * Stops the submission thread; candidates that were still queued are submitted on the calling thread.
+     */
+    public void stop() {
+        final Thread thread;
+        synchronized (this) {
+            thread = _thread;
+            _thread = null;
+        }
+        if (thread == null) { return; }
+
+        thread.interrupt();
+        try {
+            thread.join(5000L);
+        }
+        catch (final InterruptedException exception) { }
+
+        Candidate candidate;
+        while ((candidate = _queuedCandidates.poll()) != null) {
+            _submit(candidate);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.softwareverde.monetize.share;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks the stratum job (task) ids that have been handed out to miners so that shares for unknown jobs can be rejected
+ *  before their proof of work is validated.
+ */
+public class JobRegistry {
+    public static final Integer DEFAULT_MAX_JOB_COUNT = 1024;
+    public static final Long DEFAULT_MAX_JOB_AGE_MS = ShareReplayCache.DEFAULT_MAX_JOB_IDLE_MS;
+
+    protected final Integer _maxJobCount;
+    protected final Long _maxJobAgeMs;
+    protected final ConcurrentHashMap<Long, Long> _jobIssueTimestamps = new ConcurrentHashMap<>();
+
+    protected void _removeOldestJobs(final long now) {
+        Long oldestJobId = null;
+        long oldestTimestamp = Long.MAX_VALUE;
+        for (final Map.Entry<Long, Long> entry : _jobIssueTimestamps.entrySet()) {
+            final long timestamp = entry.getValue();
+            if ((now - timestamp) > _maxJobAgeMs) {
+                _jobIssueTimestamps.remove(entry.getKey(), timestamp);
+                continue;
+            }
+
+            if (timestamp < oldestTimestamp) {
+                oldestTimestamp = timestamp;
+                oldestJobId = entry.getKey();
+            }
+        }
+
+        if ( (oldestJobId != null) && (_jobIssueTimestamps.size() > _maxJobCount) ) {
+            _jobIssueTimestamps.remove(oldestJobId);
+        }
+    }
+
+    public JobRegistry() {
+        this(DEFAULT_MAX_JOB_COUNT, DEFAULT_MAX_JOB_AGE_MS);
+    }
+
+    public JobRegistry(final Integer maxJobCount, final Long maxJobAgeMs) {
+        _maxJobCount = maxJobCount;
+        _maxJobAgeMs = maxJobAgeMs;
+    }
+
+    /**
+     * Records that the job was issued to a miner.
+     *  Returns true if the job had not been issued before.
+     */
+    public boolean recordJob(final long jobId) {
+        final long now = System.currentTimeMillis();
+        final Long previousTimestamp = _jobIssueTimestamps.put(jobId, now);
+        if (previousTimestamp != null) { return false; }
+
+        if (_jobIssueTimestamps.size() > _maxJobCount) {
+            _removeOldestJobs(now);
+        }
+        return true;
+    }
+
+    public boolean isKnownJob(final long jobId) {
+        final Long timestamp = _jobIssueTimestamps.get(jobId);
+        if (timestamp == null) { return false; }
+
+        return ((System.currentTimeMillis() - timestamp) <= _maxJobAgeMs);
+    }
+
+    public Integer getJobCount() {
+        return _jobIssueTimestamps.size();
+    }
+}
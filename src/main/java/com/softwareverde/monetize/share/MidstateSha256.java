@@ -0,0 +1,157 @@
+package com.softwareverde.monetize.share;
+
+/**
+ * SHA-256 exposed at the level of its compression function, so that a hash may be resumed from a saved midstate (the
+ *  state after the leading 64-byte blocks of a message) instead of re-hashing a constant prefix.
+ *  Instances hold a message schedule and scratch block and are not thread-safe; no method allocates.
+ */
+public class MidstateSha256 {
+    public static final int STATE_INT_COUNT = 8;
+    public static final int BLOCK_BYTE_COUNT = 64;
+    public static final int HASH_BYTE_COUNT = 32;
+
+    protected static final int[] INITIAL_STATE = {
+        0x6A09E667, 0xBB67AE85, 0x3C6EF372, 0xA54FF53A, 0x510E527F, 0x9B05688C, 0x1F83D9AB, 0x5BE0CD19
+    };
+
+    protected static final int[] K = {
+        0x428A2F98, 0x71374491, 0xB5C0FBCF, 0xE9B5DBA5, 0x3956C25B, 0x59F111F1, 0x923F82A4, 0xAB1C5ED5,
+        0xD807AA98, 0x12835B01, 0x243185BE, 0x550C7DC3, 0x72BE5D74, 0x80DEB1FE, 0x9BDC06A7, 0xC19BF174,
+        0xE49B69C1, 0xEFBE4786, 0x0FC19DC6, 0x240CA1CC, 0x2DE92C6F, 0x4A7484AA, 0x5CB0A9DC, 0x76F988DA,
+        0x983E5152, 0xA831C66D, 0xB00327C8, 0xBF597FC7, 0xC6E00BF3, 0xD5A79147, 0x06CA6351, 0x14292967,
+        0x27B70A85, 0x2E1B2138, 0x4D2C6DFC, 0x53380D13, 0x650A7354, 0x766A0ABB, 0x81C2C92E, 0x92722C85,
+        0xA2BFE8A1, 0xA81A664B, 0xC24B8B70, 0xC76C51A3, 0xD192E819, 0xD6990624, 0xF40E3585, 0x106AA070,
+        0x19A4C116, 0x1E376C08, 0x2748774C, 0x34B0BCB5, 0x391C0CB3, 0x4ED8AA4A, 0x5B9CCA4F, 0x682E6FF3,
+        0x748F82EE, 0x78A5636F, 0x84C87814, 0x8CC70208, 0x90BEFFFA, 0xA4506CEB, 0xBEF9A3F7, 0xC67178F2
+    };
+
+    /**
+     * Copies the initial SHA-256 state into state.
+     */
+    public static void initialize(final int[] state) {
+        System.arraycopy(INITIAL_STATE, 0, state, 0, STATE_INT_COUNT);
+    }
+
+    protected final int[] _schedule = new int[64];
+    protected final int[] _state = new int[STATE_INT_COUNT];
+    protected final byte[] _block = new byte[BLOCK_BYTE_COUNT];
+
+    /**
+     * Compresses the 64-byte block at bytes[offset] into state.
+     */
+    public void compress(final int[] state, final byte[] bytes, final int offset) {
+        final int[] w = _schedule;
+        for (int i = 0; i < 16; ++i) {
+            final int index = (offset + (i * 4));
+            w[i] = (((bytes[index] & 0xFF) << 24) | ((bytes[index + 1] & 0xFF) << 16) | ((bytes[index + 2] & 0xFF) << 8) | (bytes[index + 3] & 0xFF));
+        }
+        for (int i = 16; i < 64; ++i) {
+            final int w15 = w[i - 15];
+            final int w2 = w[i - 2];
+            final int s0 = (Integer.rotateRight(w15, 7) ^ Integer.rotateRight(w15, 18) ^ (w15 >>> 3));
+            final int s1 = (Integer.rotateRight(w2, 17) ^ Integer.rotateRight(w2, 19) ^ (w2 >>> 10));
+            w[i] = (w[i - 16] + s0 + w[i - 7] + s1);
+        }
+
+        int a = state[0];
+        int b = state[1];
+        int c = state[2];
+        int d = state[3];
+        int e = state[4];
+        int f = state[5];
+        int g = state[6];
+        int h = state[7];
+        for (int i = 0; i < 64; ++i) {
+            final int s1 = (Integer.rotateRight(e, 6) ^ Integer.rotateRight(e, 11) ^ Integer.rotateRight(e, 25));
+            final int ch = ((e & f) ^ ((~ e) & g));
+            final int temp1 = (h + s1 + ch + K[i] + w[i]);
+            final int s0 = (Integer.rotateRight(a, 2) ^ Integer.rotateRight(a, 13) ^ Integer.rotateRight(a, 22));
+            final int maj = ((a & b) ^ (a & c) ^ (b & c));
+            final int temp2 = (s0 + maj);
+
+            h = g;
+            g = f;
+            f = e;
+            e = (d + temp1);
+            d = c;
+            c = b;
+            b = a;
+            a = (temp1 + temp2);
+        }
+
+        state[0] += a;
+        state[1] += b;
+        state[2] += c;
+        state[3] += d;
+        state[4] += e;
+        state[5] += f;
+        state[6] += g;
+        state[7] += h;
+    }
+
+    /**
+     * Compresses every complete block of bytes[offset, offset + byteCount) into state and returns the number of bytes
+     *  consumed (a multiple of 64).
+     */
+    public int compressBlocks(final int[] state, final byte[] bytes, final int offset, final int byteCount) {
+        final int blockByteCount = (byteCount - (byteCount % BLOCK_BYTE_COUNT));
+        for (int i = 0; i < blockByteCount; i += BLOCK_BYTE_COUNT) {
+            this.compress(state, bytes, (offset + i));
+        }
+        return blockByteCount;
+    }
+
+    /**
+     * Completes the hash of a message whose first prefixByteCount bytes (a multiple of 64) produced midstate, and whose
+     *  remaining bytes are bytes[offset, offset + byteCount).  The 32-byte digest is written to output[outputOffset];
+     *  midstate is not modified, and output may overlap the input.
+     */
+    public void finish(final int[] midstate, final long prefixByteCount, final byte[] bytes, final int offset, final int byteCount, final byte[] output, final int outputOffset) {
+        final int[] state = _state;
+        System.arraycopy(midstate, 0, state, 0, STATE_INT_COUNT);
+
+        final int consumedByteCount = this.compressBlocks(state, bytes, offset, byteCount);
+        final int remainingByteCount = (byteCount - consumedByteCount);
+
+        final byte[] block = _block;
+        System.arraycopy(bytes, (offset + consumedByteCount), block, 0, remainingByteCount);
+        block[remainingByteCount] = (byte) 0x80;
+        if (remainingByteCount >= (BLOCK_BYTE_COUNT - 8)) { // The length does not fit; pad into an additional block...
+            for (int i = (remainingByteCount + 1); i < BLOCK_BYTE_COUNT; ++i) {
+                block[i] = 0;
+            }
+            this.compress(state, block, 0);
+            for (int i = 0; i < (BLOCK_BYTE_COUNT - 8); ++i) {
+                block[i] = 0;
+            }
+        }
+        else {
+            for (int i = (remainingByteCount + 1); i < (BLOCK_BYTE_COUNT - 8); ++i) {
+                block[i] = 0;
+            }
+        }
+
+        final long bitCount = ((prefixByteCount + byteCount) * 8L);
+        for (int i = 0; i < 8; ++i) {
+            block[(BLOCK_BYTE_COUNT - 1) - i] = (byte) (bitCount >>> (8 * i));
+        }
+        this.compress(state, block, 0);
+
+        for (int i = 0; i < STATE_INT_COUNT; ++i) {
+            final int value = state[i];
+            final int index = (outputOffset + (i * 4));
+            output[index] = (byte) (value >>> 24);
+            output[index + 1] = (byte) (value >>> 16);
+            output[index + 2] = (byte) (value >>> 8);
+            output[index + 3] = (byte) value;
+        }
+    }
+
+    /**
+     * Writes SHA256(SHA256(bytes[offset, offset + byteCount))) to output[outputOffset]; output may overlap the input.
+     */
+    public void doubleHash(final byte[] bytes, final int offset, final int byteCount, final byte[] output, final int outputOffset) {
+        this.finish(INITIAL_STATE, 0L, bytes, offset, byteCount, output, outputOffset);
+        this.finish(INITIAL_STATE, 0L, output, outputOffset, HASH_BYTE_COUNT, output, outputOffset);
+    }
+}
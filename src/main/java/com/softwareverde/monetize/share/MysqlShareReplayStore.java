@@ -0,0 +1,503 @@
+package com.softwareverde.monetize.share;
+
+import com.softwareverde.database.DatabaseException;
+import com.softwareverde.database.mysql.MysqlDatabaseConnection;
+import com.softwareverde.database.mysql.MysqlDatabaseConnectionFactory;
+import com.softwareverde.database.query.Query;
+import com.softwareverde.database.row.Row;
+import com.softwareverde.logging.Logger;
+
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A ShareReplayStore shared by every server connected to the same MySQL/MariaDB database, so that a share spent on one
+ *  node cannot be spent again on another.
+ *  Spent shares are claimed by a single background thread that groups concurrent claims into one multi-row
+ *  INSERT IGNORE tagged with a random batch id; the rows that carry the batch id afterwards are the claims this node won.
+ *  Since the (job_id, share_fingerprint) primary key admits only one row, each share is accepted at most once across
+ *  the cluster.  Claims that cannot be written in time are rejected, so an unavailable database fails closed.
+ *  Shares claimed or observed by this node are remembered in a local Bloom filter; ShareReplayStore::contains only
+ *  queries the database when the filter reports a possible match, so new shares cost no additional round trip.
+ *  Rows are purged once older than the retention period, which must exceed the age at which jobs are forgotten
+ *  (JobRegistry.DEFAULT_MAX_JOB_AGE_MS).
+ *  Since the connection is configured by host/port, the store runs unchanged against an embedded MariaDB instance.
+ */
+public class MysqlShareReplayStore implements ShareReplayStore {
+    public static final Integer DEFAULT_BATCH_SIZE = 256;
+    public static final Long DEFAULT_BATCH_INTERVAL_MS = 2L;
+    public static final Integer DEFAULT_QUEUE_DEPTH = 8192;
+    public static final Long DEFAULT_BLOOM_FILTER_SHARE_COUNT = ShareReplayCache.DEFAULT_MAX_SHARE_COUNT;
+    public static final Long DEFAULT_RETENTION_MS = (2L * JobRegistry.DEFAULT_MAX_JOB_AGE_MS);
+    public static final Integer DEFAULT_MAX_RETIRED_JOB_COUNT = ShareReplayCache.DEFAULT_MAX_RETIRED_JOB_COUNT;
+
+    protected static final String[] SCHEMA = {
+        "CREATE TABLE IF NOT EXISTS spent_shares (" +
+            "job_id BIGINT NOT NULL, " +
+            "share_fingerprint BIGINT NOT NULL, " +
+            "batch_id BIGINT NOT NULL, " +
+            "timestamp BIGINT UNSIGNED NOT NULL, " +
+            "PRIMARY KEY (job_id, share_fingerprint), " +
+            "INDEX spent_shares_batch_id_ix (batch_id), " +
+            "INDEX spent_shares_timestamp_ix (timestamp)" +
+        ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4"
+    };
+
+    protected static final int PURGE_ROW_LIMIT = 10000;
+    protected static final int BLOOM_FILTER_BITS_PER_SHARE = 10;
+    protected static final int BLOOM_FILTER_HASH_COUNT = 7;
+
+    protected static long _mix(final long value) {
+        long mixed = (value ^ (value >>> 33));
+        mixed *= 0xFF51AFD7ED558CCDL;
+        mixed ^= (mixed >>> 33);
+        mixed *= 0xC4CEB9FE1A85EC53L;
+        mixed ^= (mixed >>> 33);
+        return mixed;
+    }
+
+    /**
+     * Returns a query of the form "<prefix> VALUES (?, ...), (?, ...)" with rowCount parameter groups.
+     */
+    protected static Query _createMultiRowInsertQuery(final String prefix, final int columnCount, final int rowCount) {
+        final StringBuilder stringBuilder = new StringBuilder(prefix.length() + (rowCount * ((columnCount * 3) + 2)));
+        stringBuilder.append(prefix);
+        stringBuilder.append(" VALUES ");
+        for (int i = 0; i < rowCount; ++i) {
+            if (i > 0) { stringBuilder.append(", "); }
+
+            stringBuilder.append('(');
+            for (int j = 0; j < columnCount; ++j) {
+                if (j > 0) { stringBuilder.append(", "); }
+                stringBuilder.append('?');
+            }
+            stringBuilder.append(')');
+        }
+        return new Query(stringBuilder.toString());
+    }
+
+    /**
+     * A fixed-size Bloom filter of (jobId, shareFingerprint) pairs, using double hashing over a lock-free bit array.
+     */
+    protected static class BloomFilter {
+        protected final AtomicLongArray _words;
+        protected final long _bitCount;
+        protected final LongAdder _itemCount = new LongAdder();
+
+        public BloomFilter(final long expectedItemCount) {
+            final long wordCount = Math.max(1L, ((expectedItemCount * BLOOM_FILTER_BITS_PER_SHARE) + 63L) / 64L);
+            _words = new AtomicLongArray((int) Math.min(wordCount, Integer.MAX_VALUE));
+            _bitCount = (_words.length() * 64L);
+        }
+
+        public void add(final long jobId, final long shareFingerprint) {
+            final long hash0 = _mix(shareFingerprint ^ _mix(jobId));
+            final long hash1 = (_mix(hash0) | 1L);
+            for (int i = 0; i < BLOOM_FILTER_HASH_COUNT; ++i) {
+                final long bitIndex = Long.remainderUnsigned(hash0 + (i * hash1), _bitCount);
+                final int wordIndex = (int) (bitIndex >>> 6);
+                final long bit = (1L << bitIndex);
+                long word = _words.get(wordIndex);
+                while ((word & bit) == 0L) {
+                    if (_words.compareAndSet(wordIndex, word, (word | bit))) { break; }
+                    word = _words.get(wordIndex);
+                }
+            }
+            _itemCount.increment();
+        }
+
+        public boolean mightContain(final long jobId, final long shareFingerprint) {
+            final long hash0 = _mix(shareFingerprint ^ _mix(jobId));
+            final long hash1 = (_mix(hash0) | 1L);
+            for (int i = 0; i < BLOOM_FILTER_HASH_COUNT; ++i) {
+                final long bitIndex = Long.remainderUnsigned(hash0 + (i * hash1), _bitCount);
+                if ((_words.get((int) (bitIndex >>> 6)) & (1L << bitIndex)) == 0L) { return false; }
+            }
+            return true;
+        }
+
+        public long getItemCount() {
+            return _itemCount.sum();
+        }
+    }
+
+    protected static class PendingShare {
+        public final long jobId;
+        public final long shareFingerprint;
+        public final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+        public PendingShare(final long jobId, final long shareFingerprint) {
+            this.jobId = jobId;
+            this.shareFingerprint = shareFingerprint;
+        }
+    }
+
+    protected final MysqlDatabaseConnectionFactory _databaseConnectionFactory;
+    protected final Integer _batchSize;
+    protected final Long _batchIntervalMs;
+    protected final Long _timeoutMs;
+    protected final Long _bloomFilterShareCount;
+    protected final Long _retentionMs;
+    protected final Integer _maxRetiredJobCount;
+    protected final ArrayBlockingQueue<PendingShare> _queue;
+    protected final SecureRandom _secureRandom = new SecureRandom();
+    protected final Set<Long> _retiredJobIds = ConcurrentHashMap.newKeySet();
+    protected final ConcurrentLinkedQueue<Long> _retiredJobIdsByAge = new ConcurrentLinkedQueue<>();
+    protected final AtomicInteger _retiredJobCount = new AtomicInteger(0); // ConcurrentLinkedQueue::size is O(n)...
+
+    protected final LongAdder _acceptedShareCount = new LongAdder();
+    protected final LongAdder _rejectedShareCount = new LongAdder();
+    protected final LongAdder _failedShareCount = new LongAdder();
+    protected final LongAdder _exactLookupCount = new LongAdder();
+    protected final LongAdder _skippedLookupCount = new LongAdder();
+
+    // The filter is replaced by a new generation once full; the previous generation is still consulted until replaced...
+    protected volatile BloomFilter _bloomFilter;
+    protected volatile BloomFilter _previousBloomFilter;
+
+    protected Thread _thread;
+    protected long _lastPurgeTimestamp = 0L;
+
+    protected void _rememberShare(final long jobId, final long shareFingerprint) {
+        BloomFilter bloomFilter = _bloomFilter;
+        if (bloomFilter.getItemCount() >= _bloomFilterShareCount) {
+            synchronized (this) {
+                if (_bloomFilter == bloomFilter) {
+                    _previousBloomFilter = bloomFilter;
+                    _bloomFilter = new BloomFilter(_bloomFilterShareCount);
+                }
+                bloomFilter = _bloomFilter;
+            }
+        }
+        bloomFilter.add(jobId, shareFingerprint);
+    }
+
+    protected boolean _mightContain(final long jobId, final long shareFingerprint) {
+        if (_bloomFilter.mightContain(jobId, shareFingerprint)) { return true; }
+
+        final BloomFilter previousBloomFilter = _previousBloomFilter;
+        return ( (previousBloomFilter != null) && previousBloomFilter.mightContain(jobId, shareFingerprint) );
+    }
+
+    protected void _complete(final PendingShare pendingShare, final boolean isAccepted) {
+        if (isAccepted) {
+            _acceptedShareCount.increment();
+        }
+        else {
+            _rejectedShareCount.increment();
+        }
+        pendingShare.result.complete(isAccepted);
+    }
+
+    /**
+     * Claims the batch's shares and completes each with whether this node's claim won.
+     *  Claims within the batch for the same share are rejected locally; a failed batch rejects all of its claims.
+     */
+    protected void _flush(final List<PendingShare> batch) {
+        if (batch.isEmpty()) { return; }
+
+        final ArrayList<PendingShare> claims = new ArrayList<>(batch.size());
+        final HashMap<Long, Set<Long>> claimedFingerprints = new HashMap<>();
+        for (final PendingShare pendingShare : batch) {
+            Set<Long> fingerprints = claimedFingerprints.get(pendingShare.jobId);
+            if (fingerprints == null) {
+                fingerprints = new HashSet<>();
+                claimedFingerprints.put(pendingShare.jobId, fingerprints);
+            }
+
+            if (fingerprints.add(pendingShare.shareFingerprint)) {
+                claims.add(pendingShare);
+            }
+            else {
+                _complete(pendingShare, false);
+            }
+        }
+
+        final long batchId = _secureRandom.nextLong();
+        final long now = System.currentTimeMillis();
+        final Query insertQuery = _createMultiRowInsertQuery("INSERT IGNORE INTO spent_shares (job_id, share_fingerprint, batch_id, timestamp)", 4, claims.size());
+        for (final PendingShare pendingShare : claims) {
+            insertQuery.setParameter(pendingShare.jobId);
+            insertQuery.setParameter(pendingShare.shareFingerprint);
+            insertQuery.setParameter(batchId);
+            insertQuery.setParameter(now);
+        }
+
+        final HashMap<Long, Set<Long>> wonFingerprints = new HashMap<>();
+        try (final MysqlDatabaseConnection databaseConnection = _databaseConnectionFactory.newConnection()) {
+            databaseConnection.executeSql(insertQuery);
+
+            final List<Row> rows = databaseConnection.query(
+                new Query("SELECT job_id, share_fingerprint FROM spent_shares WHERE batch_id = ?")
+                    .setParameter(batchId)
+            );
+            for (final Row row : rows) {
+                final Long jobId = row.getLong("job_id");
+                Set<Long> fingerprints = wonFingerprints.get(jobId);
+                if (fingerprints == null) {
+                    fingerprints = new HashSet<>();
+                    wonFingerprints.put(jobId, fingerprints);
+                }
+                fingerprints.add(row.getLong("share_fingerprint"));
+            }
+        }
+        catch (final DatabaseException exception) {
+            Logger.warn("Unable to claim " + claims.size() + " shares.", exception);
+            for (final PendingShare pendingShare : claims) {
+                _failedShareCount.increment();
+                pendingShare.result.complete(false);
+            }
+            return;
+        }
+
+        for (final PendingShare pendingShare : claims) {
+            final Set<Long> fingerprints = wonFingerprints.get(pendingShare.jobId);
+            final boolean isAccepted = ( (fingerprints != null) && fingerprints.contains(pendingShare.shareFingerprint) );
+
+            // Shares claimed by other nodes are remembered too, so that their replays are rejected at ShareReplayStore::contains...
+            _rememberShare(pendingShare.jobId, pendingShare.shareFingerprint);
+            _complete(pendingShare, isAccepted);
+        }
+    }
+
+    protected void _purgeExpiredShares() {
+        final long now = System.currentTimeMillis();
+        if ((now - _lastPurgeTimestamp) < (_retentionMs / 4L)) { return; }
+        _lastPurgeTimestamp = now;
+
+        try (final MysqlDatabaseConnection databaseConnection = _databaseConnectionFactory.newConnection()) {
+            databaseConnection.executeSql(
+                new Query("DELETE FROM spent_shares WHERE timestamp < ? LIMIT " + PURGE_ROW_LIMIT)
+                    .setParameter(now - _retentionMs)
+            );
+        }
+        catch (final DatabaseException exception) {
+            Logger.debug("Unable to purge spent shares.", exception);
+        }
+    }
+
+    protected void _run() {
+        final Thread thread = Thread.currentThread();
+        final ArrayList<PendingShare> batch = new ArrayList<>(_batchSize);
+
+        boolean isRunning = true;
+        while (isRunning) {
+            try {
+                final PendingShare firstPendingShare = _queue.poll(1000L, TimeUnit.MILLISECONDS);
+                if (firstPendingShare == null) {
+                    _purgeExpiredShares();
+                    isRunning = (! thread.isInterrupted());
+                    continue;
+                }
+                batch.add(firstPendingShare);
+
+                // Group claims that arrive while the batch is open; the oldest claim waits at most one batch interval...
+                final long flushDeadline = (System.currentTimeMillis() + _batchIntervalMs);
+                while (batch.size() < _batchSize) {
+                    _queue.drainTo(batch, (_batchSize - batch.size()));
+                    if (batch.size() >= _batchSize) { break; }
+
+                    final long remainingMs = (flushDeadline - System.currentTimeMillis());
+                    if (remainingMs <= 0L) { break; }
+
+                    final PendingShare pendingShare = _queue.poll(remainingMs, TimeUnit.MILLISECONDS);
+                    if (pendingShare == null) { break; }
+                    batch.add(pendingShare);
+                }
+            }
+            catch (final InterruptedException exception) {
+                isRunning = false;
+            }
+
+            _flush(batch);
+            batch.clear();
+
+            _purgeExpiredShares();
+        }
+
+        // Resolve whatever was queued before shutdown...
+        while (! _queue.isEmpty()) {
+            _queue.drainTo(batch, _batchSize);
+            _flush(batch);
+            batch.clear();
+        }
+    }
+
+    public MysqlShareReplayStore(final MysqlDatabaseConnectionFactory databaseConnectionFactory, final Long timeoutMs) {
+        this(databaseConnectionFactory, DEFAULT_BATCH_SIZE, DEFAULT_BATCH_INTERVAL_MS, DEFAULT_QUEUE_DEPTH, timeoutMs, DEFAULT_BLOOM_FILTER_SHARE_COUNT, DEFAULT_RETENTION_MS);
+    }
+
+    /**
+     * Claims wait up to timeoutMs to be written before they are rejected.
+     *  Each Bloom filter generation holds bloomFilterShareCount shares at a ~1% false positive rate.
+     */
+    public MysqlShareReplayStore(final MysqlDatabaseConnectionFactory databaseConnectionFactory, final Integer batchSize, final Long batchIntervalMs, final Integer queueDepth, final Long timeoutMs, final Long bloomFilterShareCount, final Long retentionMs) {
+        _databaseConnectionFactory = databaseConnectionFactory;
+        _batchSize = batchSize;
+        _batchIntervalMs = batchIntervalMs;
+        _timeoutMs = timeoutMs;
+        _bloomFilterShareCount = bloomFilterShareCount;
+        _retentionMs = retentionMs;
+        _maxRetiredJobCount = DEFAULT_MAX_RETIRED_JOB_COUNT;
+        _queue = new ArrayBlockingQueue<>(queueDepth);
+        _bloomFilter = new BloomFilter(bloomFilterShareCount);
+    }
+
+    /**
+     * Creates the store's table if it does not exist.
+     */
+    public void initializeSchema() throws DatabaseException {
+        try (final MysqlDatabaseConnection databaseConnection = _databaseConnectionFactory.newConnection()) {
+            for (final String ddl : SCHEMA) {
+                databaseConnection.executeDdl(ddl);
+            }
+        }
+    }
+
+    @Override
+    public boolean isJobRetired(final long jobId) {
+        return _retiredJobIds.contains(jobId);
+    }
+
+    /**
+     * Returns true if the share is known to have been spent.  Shares this node has never seen are not looked up, and are
+     *  instead rejected by ShareReplayStore::add if another node has spent them.
+     */
+    @Override
+    public boolean contains(final long jobId, final long shareFingerprint) {
+        if (! _mightContain(jobId, shareFingerprint)) {
+            _skippedLookupCount.increment();
+            return false;
+        }
+
+        _exactLookupCount.increment();
+        try (final MysqlDatabaseConnection databaseConnection = _databaseConnectionFactory.newConnection()) {
+            final List<Row> rows = databaseConnection.query(
+                new Query("SELECT 1 FROM spent_shares WHERE job_id = ? AND share_fingerprint = ?")
+                    .setParameter(jobId)
+                    .setParameter(shareFingerprint)
+            );
+            return (! rows.isEmpty());
+        }
+        catch (final DatabaseException exception) {
+            Logger.debug("Unable to look up spent share.", exception);
+            return false; // ShareReplayStore::add remains authoritative...
+        }
+    }
+
+    /**
+     * Claims the share and waits for the claim to be written.
+     *  Returns false if the share was already spent (by any node), if its job has been retired, or if the claim could not
+     *  be written within the timeout.
+     */
+    @Override
+    public boolean add(final long jobId, final long shareFingerprint) {
+        if (_retiredJobIds.contains(jobId)) { return false; }
+
+        final PendingShare pendingShare = new PendingShare(jobId, shareFingerprint);
+        if (! _queue.offer(pendingShare)) {
+            _failedShareCount.increment();
+            return false;
+        }
+
+        try {
+            return pendingShare.result.get(_timeoutMs, TimeUnit.MILLISECONDS);
+        }
+        catch (final InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+        catch (final Exception exception) { } // The claim may still be written, in which case the share is forfeit...
+
+        _failedShareCount.increment();
+        return false;
+    }
+
+    @Override
+    public void retireJob(final long jobId) {
+        if (! _retiredJobIds.add(jobId)) { return; }
+
+        _retiredJobIdsByAge.add(jobId);
+        _retiredJobCount.incrementAndGet();
+        while (_retiredJobCount.get() > _maxRetiredJobCount) {
+            final Long oldestJobId = _retiredJobIdsByAge.poll();
+            if (oldestJobId == null) { break; }
+            _retiredJobCount.decrementAndGet();
+            _retiredJobIds.remove(oldestJobId);
+        }
+    }
+
+    public synchronized void start() {
+        if (_thread != null) { return; }
+
+        _thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                _run();
+            }
+        });
+        _thread.setName("Share Replay Store Writer");
+        _thread.setDaemon(true);
+        _thread.start();
+    }
+
+    /**
+     * Stops the writer after resolving the claims queued so far.
+     */
+    public synchronized void stop() {
+        if (_thread == null) { return; }
+
+        _thread.interrupt();
+        try {
+            _thread.join(30000L);
+        }
+        catch (final InterruptedException exception) { }
+
+        _thread = null;
+    }
+
+    /**
+     * Returns the number of shares accepted by this node.
+     */
+    @Override
+    public Long getShareCount() {
+        return _acceptedShareCount.sum();
+    }
+
+    /**
+     * Returns the number of claims rejected because the share had already been spent.
+     */
+    public Long getRejectedShareCount() {
+        return _rejectedShareCount.sum();
+    }
+
+    /**
+     * Returns the number of claims rejected because they could not be written.
+     */
+    public Long getFailedShareCount() {
+        return _failedShareCount.sum();
+    }
+
+    public Long getExactLookupCount() {
+        return _exactLookupCount.sum();
+    }
+
+    public Long getSkippedLookupCount() {
+        return _skippedLookupCount.sum();
+    }
+
+    public Integer getQueuedShareCount() {
+        return _queue.size();
+    }
+}
@@ -0,0 +1,244 @@
+package com.softwareverde.monetize.share;
+
+import com.softwareverde.bitcoin.server.module.stratum.BitcoinCoreStratumServer;
+import com.softwareverde.constable.bytearray.ByteArray;
+import com.softwareverde.json.Json;
+import com.softwareverde.monetize.difficulty.VariableDifficultyEngine;
+import com.softwareverde.monetize.subscription.SubscriptionRegistry;
+import com.softwareverde.monetize.work.WorkResponseCache;
+
+/**
+ * Admits submitted shares in order of increasing cost, so that replayed or malformed shares are rejected before the
+ *  stratum server reconstructs the block header and validates its proof of work:
+ *  1. structural/hex validation of the mining.submit parameters,
+ *  2. canonical share identifier and duplicate check,
+ *  3. known-job/stale-job and subscription check, and the extraNonce2 length and timestamp window for the job,
+ *  4. proof of work validation against the difficulty issued to the miner with the job.
+ *  The block header is reconstructed and hashed locally, so ordinary shares are never sent to the stratum server.
+ *  Shares whose hash also satisfies the job's network target are block candidates and are submitted to the stratum
+ *  server; if a BlockCandidateSubmitter is set, they are handed to its dedicated thread and admitted without waiting
+ *  for the stratum server, since their proof of work has already been verified against the (stricter) network target.
+ */
+public class ShareAdmissionPipeline {
+    public interface AcceptedShareCallback {
+        /**
+         * Invoked on the admitting thread after a share is accepted; implementations must not block.
+         *  jobKey is the key the share was recorded under within the ShareReplayStore (see WorkResponseCache::getJobKey).
+         */
+        void onShareAccepted(String subscriptionIdHex, Long minerId, Long jobKey, Long shareFingerprint, Integer workExponent);
+    }
+
+    public static final Integer PARAMETER_COUNT = 5;
+    protected static final int MAX_TASK_ID_CHARACTER_COUNT = 16;
+    protected static final int MAX_EXTRA_NONCE_2_CHARACTER_COUNT = 64;
+    protected static final int TIMESTAMP_CHARACTER_COUNT = 8;
+    protected static final int NONCE_CHARACTER_COUNT = 8;
+    protected static final long MAX_TIMESTAMP_ROLL_SECONDS = 7200L; // Matches the consensus limit on block timestamps in the future...
+
+    protected final BitcoinCoreStratumServer _stratumServer;
+    protected final ShareReplayStore _shareReplayStore;
+    protected final JobRegistry _jobRegistry;
+    protected final ShareIdentifierCalculator _shareIdentifierCalculator;
+    protected final SubscriptionRegistry _subscriptionRegistry;
+    protected final WorkResponseCache _workResponseCache;
+    protected final VariableDifficultyEngine _difficultyEngine;
+    protected final ShareHashCalculator _shareHashCalculator = new ShareHashCalculator();
+    protected final ShareAdmissionStatistics _statistics = new ShareAdmissionStatistics();
+    protected volatile AcceptedShareCallback _acceptedShareCallback;
+    protected volatile BlockCandidateSubmitter _blockCandidateSubmitter;
+
+    protected ShareAdmissionResult _reject(final ShareAdmissionResult shareAdmissionResult) {
+        _statistics.record(shareAdmissionResult);
+        return shareAdmissionResult;
+    }
+
+    protected Boolean _isWellFormed(final Json workerSubmitMessage) {
+        if (! workerSubmitMessage.isArray()) { return false; }
+        if (workerSubmitMessage.length() < PARAMETER_COUNT) { return false; }
+
+        final String taskIdHex = workerSubmitMessage.getString(1);
+        final String extraNonce2Hex = workerSubmitMessage.getString(2);
+        final String timestampHex = workerSubmitMessage.getString(3);
+        final String nonceHex = workerSubmitMessage.getString(4);
+
+        if (! ShareUtil.isHexString(taskIdHex, 2, MAX_TASK_ID_CHARACTER_COUNT)) { return false; }
+        if (! ShareUtil.isHexString(extraNonce2Hex, 2, MAX_EXTRA_NONCE_2_CHARACTER_COUNT)) { return false; }
+        if (! ShareUtil.isHexString(timestampHex, TIMESTAMP_CHARACTER_COUNT, TIMESTAMP_CHARACTER_COUNT)) { return false; }
+        if (! ShareUtil.isHexString(nonceHex, NONCE_CHARACTER_COUNT, NONCE_CHARACTER_COUNT)) { return false; }
+
+        return true;
+    }
+
+    /**
+     * Returns true if the share's extraNonce2 has exactly the length assigned to its subscription.
+     */
+    protected Boolean _isExtraNonce2LengthValid(final String extraNonce2Hex, final Integer extraNonce2ByteCount) {
+        if (extraNonce2ByteCount == null) { return false; }
+        return (extraNonce2Hex.length() == (extraNonce2ByteCount * 2));
+    }
+
+    /**
+     * Returns true if the share's timestamp is no earlier than the job's timestamp, and no more than
+     *  MAX_TIMESTAMP_ROLL_SECONDS after it.
+     */
+    protected Boolean _isTimestampWithinJobWindow(final String timestampHex, final Json notifyParameters) {
+        final String jobTimestampHex = notifyParameters.getString(7);
+        if (! ShareUtil.isHexString(jobTimestampHex, TIMESTAMP_CHARACTER_COUNT, TIMESTAMP_CHARACTER_COUNT)) { return false; }
+
+        final long jobTimestamp = ShareUtil.parseHexLong(jobTimestampHex);
+        final long timestamp = ShareUtil.parseHexLong(timestampHex);
+        return ( (timestamp >= jobTimestamp) && ((timestamp - jobTimestamp) <= MAX_TIMESTAMP_ROLL_SECONDS) );
+    }
+
+    public ShareAdmissionPipeline(final BitcoinCoreStratumServer stratumServer, final ShareReplayStore shareReplayStore, final JobRegistry jobRegistry, final ShareIdentifierCalculator shareIdentifierCalculator, final SubscriptionRegistry subscriptionRegistry, final WorkResponseCache workResponseCache, final VariableDifficultyEngine difficultyEngine) {
+        _stratumServer = stratumServer;
+        _shareReplayStore = shareReplayStore;
+        _jobRegistry = jobRegistry;
+        _shareIdentifierCalculator = shareIdentifierCalculator;
+        _subscriptionRegistry = subscriptionRegistry;
+        _workResponseCache = workResponseCache;
+        _difficultyEngine = difficultyEngine;
+    }
+
+    public void setAcceptedShareCallback(final AcceptedShareCallback acceptedShareCallback) {
+        _acceptedShareCallback = acceptedShareCallback;
+    }
+
+    public void setBlockCandidateSubmitter(final BlockCandidateSubmitter blockCandidateSubmitter) {
+        _blockCandidateSubmitter = blockCandidateSubmitter;
+    }
+
+    /**
+     * Returns a 64-bit key identifying the share (its job and canonical fingerprint), or null if the share is missing or
+     *  malformed.  Equivalent submissions of the same share have the same key.
+     */
+    public Long calculateShareKey(final Json workerSubmitMessage) {
+        if (workerSubmitMessage == null) { return null; }
+        if (! _isWellFormed(workerSubmitMessage)) { return null; }
+
+        final String taskIdHex = workerSubmitMessage.getString(1);
+        final long taskId = ShareUtil.parseHexLong(taskIdHex);
+        final long shareFingerprint = _shareIdentifierCalculator.calculateFingerprint(taskIdHex, workerSubmitMessage.getString(2), workerSubmitMessage.getString(3), workerSubmitMessage.getString(4));
+        return (shareFingerprint ^ (taskId * 0x9E3779B97F4A7C15L));
+    }
+
+    /**
+     * Returns true if the share is well-formed, belongs to a known job and subscription, and its hash satisfies the
+     *  job's network target.  Only in-memory state is consulted and the share is not recorded, so this check is cheap
+     *  enough to run before a share is rejected for overload.
+     */
+    public Boolean isBlockCandidate(final Json workerSubmitMessage) {
+        if (workerSubmitMessage == null) { return false; }
+        if (! _isWellFormed(workerSubmitMessage)) { return false; }
+
+        final long taskId = ShareUtil.parseHexLong(workerSubmitMessage.getString(1));
+        final Json notifyParameters = _workResponseCache.getJobParameters(taskId);
+        final ByteArray extraNonce1 = _subscriptionRegistry.getExtraNonce1(workerSubmitMessage.getString(0));
+        if ( (notifyParameters == null) || (extraNonce1 == null) ) { return false; }
+        if (! _isExtraNonce2LengthValid(workerSubmitMessage.getString(2), _subscriptionRegistry.getExtraNonce2ByteCount(workerSubmitMessage.getString(0)))) { return false; }
+        if (! _isTimestampWithinJobWindow(workerSubmitMessage.getString(3), notifyParameters)) { return false; }
+
+        final ShareHashCalculator.WorkResult workResult = _shareHashCalculator.checkWork(taskId, notifyParameters, extraNonce1.getBytes(), workerSubmitMessage.getString(2), workerSubmitMessage.getString(3), workerSubmitMessage.getString(4), null);
+        return (workResult == ShareHashCalculator.WorkResult.BLOCK_CANDIDATE);
+    }
+
+    /**
+     * Validates the mining.submit parameters and, if the share is valid and unique, records it as spent.
+     *  A null workerSubmitMessage is counted as a missing share.
+     */
+    public ShareAdmissionResult admit(final Json workerSubmitMessage) {
+        if (workerSubmitMessage == null) {
+            return _reject(ShareAdmissionResult.MISSING);
+        }
+
+        // Stage 1: Structural/hex validation...
+        if (! _isWellFormed(workerSubmitMessage)) {
+            return _reject(ShareAdmissionResult.MALFORMED);
+        }
+
+        // Stage 2: Canonical identifier and duplicate check...
+        final String subscriptionIdHex = workerSubmitMessage.getString(0);
+        final String taskIdHex = workerSubmitMessage.getString(1);
+        final String extraNonce2Hex = workerSubmitMessage.getString(2);
+        final String timestampHex = workerSubmitMessage.getString(3);
+        final String nonceHex = workerSubmitMessage.getString(4);
+        final long taskId = ShareUtil.parseHexLong(taskIdHex);
+        final Long jobKey = _workResponseCache.getJobKey(taskId); // Shares are recorded by job key, since job ids restart with the stratum server...
+        if (jobKey == null) {
+            return _reject(_jobRegistry.isKnownJob(taskId) ? ShareAdmissionResult.STALE_JOB : ShareAdmissionResult.UNKNOWN_JOB);
+        }
+
+        final long shareFingerprint = _shareIdentifierCalculator.calculateFingerprint(taskIdHex, extraNonce2Hex, timestampHex, nonceHex);
+        if (_shareReplayStore.contains(jobKey, shareFingerprint)) {
+            return _reject(ShareAdmissionResult.DUPLICATE);
+        }
+
+        // Stage 3: Known-job/stale-job check...
+        if (_shareReplayStore.isJobRetired(jobKey)) {
+            return _reject(ShareAdmissionResult.STALE_JOB);
+        }
+        if (! _jobRegistry.isKnownJob(taskId)) {
+            return _reject(ShareAdmissionResult.UNKNOWN_JOB);
+        }
+
+        final Long minerId = _subscriptionRegistry.touchSubscription(subscriptionIdHex);
+        final ByteArray extraNonce1 = _subscriptionRegistry.getExtraNonce1(subscriptionIdHex);
+        if ( (minerId == null) || (extraNonce1 == null) ) {
+            return _reject(ShareAdmissionResult.UNKNOWN_SUBSCRIPTION);
+        }
+        if (! _isExtraNonce2LengthValid(extraNonce2Hex, _subscriptionRegistry.getExtraNonce2ByteCount(subscriptionIdHex))) {
+            return _reject(ShareAdmissionResult.MALFORMED);
+        }
+
+        final Integer workExponent = _difficultyEngine.getIssuedWorkExponent(minerId, taskId);
+        if (workExponent == null) { // The job was never issued to this miner...
+            return _reject(ShareAdmissionResult.UNKNOWN_JOB);
+        }
+
+        final Json notifyParameters = _workResponseCache.getJobParameters(taskId);
+        if (notifyParameters == null) {
+            return _reject(ShareAdmissionResult.STALE_JOB);
+        }
+        if (! _isTimestampWithinJobWindow(timestampHex, notifyParameters)) {
+            return _reject(ShareAdmissionResult.MALFORMED);
+        }
+
+        // Stage 4: Proof of work...
+        final byte[] shareTarget = _difficultyEngine.getShareTarget(workExponent);
+        final ShareHashCalculator.WorkResult workResult = _shareHashCalculator.checkWork(taskId, notifyParameters, extraNonce1.getBytes(), extraNonce2Hex, timestampHex, nonceHex, shareTarget);
+        if (workResult == ShareHashCalculator.WorkResult.INVALID) {
+            return _reject(ShareAdmissionResult.INVALID_WORK);
+        }
+
+        if (workResult == ShareHashCalculator.WorkResult.BLOCK_CANDIDATE) { // Only blocks are submitted to the stratum server; ordinary shares were fully validated above...
+            final BlockCandidateSubmitter blockCandidateSubmitter = _blockCandidateSubmitter;
+            if (blockCandidateSubmitter != null) { // Submit the block via the fast lane...
+                final byte[] blockHash = _shareHashCalculator.calculateHash(taskId, notifyParameters, extraNonce1.getBytes(), extraNonce2Hex, timestampHex, nonceHex);
+                blockCandidateSubmitter.submit(taskId, workerSubmitMessage, blockHash, notifyParameters.getString(1));
+            }
+            else if (! _stratumServer.submitShare(workerSubmitMessage)) {
+                return _reject(ShareAdmissionResult.INVALID_WORK);
+            }
+        }
+
+        // Record the share; a concurrent submission of the same share may have won the race...
+        final boolean isUnique = _shareReplayStore.add(jobKey, shareFingerprint);
+        if (! isUnique) {
+            return _reject(_shareReplayStore.isJobRetired(jobKey) ? ShareAdmissionResult.STALE_JOB : ShareAdmissionResult.DUPLICATE);
+        }
+
+        _difficultyEngine.recordShare(minerId);
+        _statistics.record(ShareAdmissionResult.ACCEPTED);
+        _statistics.recordAcceptedWork(1L << workExponent);
+
+        final AcceptedShareCallback acceptedShareCallback = _acceptedShareCallback;
+        if (acceptedShareCallback != null) {
+            acceptedShareCallback.onShareAccepted(subscriptionIdHex, minerId, jobKey, shareFingerprint, workExponent);
+        }
+        return ShareAdmissionResult.ACCEPTED;
+    }
+
+    public ShareAdmissionStatistics getStatistics() {
+        return _statistics;
+    }
+}
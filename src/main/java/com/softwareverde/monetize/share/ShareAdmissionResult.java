@@ -0,0 +1,9 @@
+package com.softwareverde.monetize.share;
+
+public enum ShareAdmissionResult {
+    ACCEPTED, MISSING, MALFORMED, DUPLICATE, STALE_JOB, UNKNOWN_JOB, UNKNOWN_SUBSCRIPTION, INVALID_WORK, OVERLOADED;
+
+    public Boolean isAccepted() {
+        return (this == ACCEPTED);
+    }
+}
@@ -0,0 +1,54 @@
+package com.softwareverde.monetize.share;
+
+import java.util.EnumMap;
+import java.util.concurrent.atomic.LongAdder;
+
+public class ShareAdmissionStatistics {
+    protected final EnumMap<ShareAdmissionResult, LongAdder> _counts = new EnumMap<>(ShareAdmissionResult.class);
+    protected final LongAdder _acceptedWork = new LongAdder();
+    protected final LongAdder _timeoutCount = new LongAdder();
+
+    public ShareAdmissionStatistics() {
+        for (final ShareAdmissionResult shareAdmissionResult : ShareAdmissionResult.values()) {
+            _counts.put(shareAdmissionResult, new LongAdder());
+        }
+    }
+
+    public void record(final ShareAdmissionResult shareAdmissionResult) {
+        final LongAdder count = _counts.get(shareAdmissionResult);
+        count.increment();
+    }
+
+    /**
+     * Records the work (in expected hashes) of an accepted share.
+     */
+    public void recordAcceptedWork(final Long work) {
+        _acceptedWork.add(work);
+    }
+
+    /**
+     * Records a share whose submitter stopped waiting for its validation; the share is also reported as OVERLOADED.
+     */
+    public void recordTimeout() {
+        _timeoutCount.increment();
+    }
+
+    public Long getCount(final ShareAdmissionResult shareAdmissionResult) {
+        final LongAdder count = _counts.get(shareAdmissionResult);
+        return count.sum();
+    }
+
+    /**
+     * Returns the total work (in expected hashes) of all accepted shares.
+     */
+    public Long getAcceptedWork() {
+        return _acceptedWork.sum();
+    }
+
+    /**
+     * Returns the number of shares whose submitter stopped waiting for their validation.
+     */
+    public Long getTimeoutCount() {
+        return _timeoutCount.sum();
+    }
+}
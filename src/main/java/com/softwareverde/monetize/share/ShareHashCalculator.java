@@ -0,0 +1,345 @@
+package com.softwareverde.monetize.share;
+
+import com.softwareverde.json.Json;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Reconstructs the block header described by a share and its (browser-formatted) mining.notify parameters, and
+ *  compares its hash against a share target.
+ *  The header is assembled exactly as monetize.js assembles it, so the previousBlockHash must be the swabbed value
+ *  served to browser miners.
+ *  Everything but the extraNonces, timestamp, and nonce is constant for a job, so each job's parameters are parsed once
+ *  and cached by job id: the coinbase head is reduced to a SHA-256 midstate and the merkle branches and header prefix
+ *  are kept as bytes.  Each thread also remembers the header midstate of the last (job, extraNonce1, extraNonce2) it
+ *  verified, so that further shares of the same miner and extraNonce2 cost two compressions.
+ *  The job's network target is expanded from its nBits, so that shares which are also valid blocks are identified by
+ *  the same hash.
+ */
+public class ShareHashCalculator {
+    public enum WorkResult {
+        INVALID,        // The hash does not satisfy the share target (or the job is malformed).
+        SHARE,          // The hash satisfies the share target.
+        BLOCK_CANDIDATE // The hash satisfies the job's network target; the share is (probably) a valid block.
+    }
+
+    public static final Integer DEFAULT_MAX_JOB_COUNT = 64;
+
+    protected static final int HASH_BYTE_COUNT = 32;
+    protected static final int BLOCK_HEADER_BYTE_COUNT = 80;
+    protected static final int HEADER_PREFIX_BYTE_COUNT = (4 + HASH_BYTE_COUNT); // version | previousBlockHash
+    protected static final int MAX_COINBASE_CHARACTER_COUNT = (2 * 1024 * 1024);
+
+    /**
+     * The constant parts of a job, parsed from its notify parameters.
+     */
+    protected static class ParsedJob {
+        public final Json notifyParameters;
+        public final int[] coinbaseMidstate = new int[MidstateSha256.STATE_INT_COUNT];
+        public final long coinbaseMidstateByteCount;
+        public final byte[] coinbaseHeadRemainder;
+        public final byte[] coinbaseTail;
+        public final byte[][] merkleBranches;
+        public final byte[] headerPrefix = new byte[HEADER_PREFIX_BYTE_COUNT];
+        public final byte[] difficulty = new byte[4];
+        public final byte[] networkTarget;
+
+        /**
+         * The notify parameters must already have been validated by ShareHashCalculator::_isWellFormed.
+         */
+        public ParsedJob(final Json notifyParameters, final MidstateSha256 sha256) {
+            this.notifyParameters = notifyParameters;
+
+            final String coinbaseHeadHex = notifyParameters.getString(2);
+            final byte[] coinbaseHead = new byte[coinbaseHeadHex.length() / 2];
+            _writeHexBytes(coinbaseHeadHex, coinbaseHead, 0);
+            MidstateSha256.initialize(this.coinbaseMidstate);
+            final int consumedByteCount = sha256.compressBlocks(this.coinbaseMidstate, coinbaseHead, 0, coinbaseHead.length);
+            this.coinbaseMidstateByteCount = consumedByteCount;
+            this.coinbaseHeadRemainder = new byte[coinbaseHead.length - consumedByteCount];
+            System.arraycopy(coinbaseHead, consumedByteCount, this.coinbaseHeadRemainder, 0, this.coinbaseHeadRemainder.length);
+
+            final String coinbaseTailHex = notifyParameters.getString(3);
+            this.coinbaseTail = new byte[coinbaseTailHex.length() / 2];
+            _writeHexBytes(coinbaseTailHex, this.coinbaseTail, 0);
+
+            final Json merkleBranchesJson = notifyParameters.get(4);
+            final int merkleBranchCount = ((merkleBranchesJson != null) ? merkleBranchesJson.length() : 0);
+            this.merkleBranches = new byte[merkleBranchCount][];
+            for (int i = 0; i < merkleBranchCount; ++i) {
+                this.merkleBranches[i] = new byte[HASH_BYTE_COUNT];
+                _writeHexBytes(merkleBranchesJson.getString(i), this.merkleBranches[i], 0);
+            }
+
+            final int offset = _writeReversedHexBytes(notifyParameters.getString(5), this.headerPrefix, 0);
+            _writeHexBytes(notifyParameters.getString(1), this.headerPrefix, offset);
+            _writeReversedHexBytes(notifyParameters.getString(6), this.difficulty, 0);
+            this.networkTarget = ShareHashCalculator.expandCompactTarget(ShareUtil.parseHexLong(notifyParameters.getString(6)));
+        }
+    }
+
+    protected static class Buffers {
+        public final MidstateSha256 sha256 = new MidstateSha256();
+        public final byte[] headerBytes = new byte[BLOCK_HEADER_BYTE_COUNT];
+        public final byte[] merkleBytes = new byte[HASH_BYTE_COUNT * 2];
+        public final int[] headerMidstate = new int[MidstateSha256.STATE_INT_COUNT];
+        public byte[] coinbaseBytes = new byte[256];
+
+        // The (job, extraNonce1, extraNonce2) whose merkle root and header midstate are held by headerBytes/headerMidstate...
+        public ParsedJob headerJob;
+        public final byte[] headerExtraNonce1 = new byte[64];
+        public int headerExtraNonce1ByteCount = -1;
+        public String headerExtraNonce2Hex;
+
+        public boolean isHeaderCached(final ParsedJob parsedJob, final byte[] extraNonce1, final String extraNonce2Hex) {
+            if (this.headerJob != parsedJob) { return false; }
+            if (this.headerExtraNonce1ByteCount != extraNonce1.length) { return false; }
+            for (int i = 0; i < extraNonce1.length; ++i) {
+                if (this.headerExtraNonce1[i] != extraNonce1[i]) { return false; }
+            }
+            return extraNonce2Hex.equals(this.headerExtraNonce2Hex);
+        }
+
+        public void setHeaderCached(final ParsedJob parsedJob, final byte[] extraNonce1, final String extraNonce2Hex) {
+            final boolean isCacheable = (extraNonce1.length <= this.headerExtraNonce1.length);
+            this.headerJob = (isCacheable ? parsedJob : null);
+            if (isCacheable) {
+                System.arraycopy(extraNonce1, 0, this.headerExtraNonce1, 0, extraNonce1.length);
+            }
+            this.headerExtraNonce1ByteCount = extraNonce1.length;
+            this.headerExtraNonce2Hex = extraNonce2Hex;
+        }
+    }
+
+    protected static final ThreadLocal<Buffers> BUFFERS = ThreadLocal.withInitial(Buffers::new);
+
+    protected static int _writeHexBytes(final String hexString, final byte[] buffer, final int offset) {
+        final int byteCount = (hexString.length() / 2);
+        for (int i = 0; i < byteCount; ++i) {
+            final int highNibble = ShareUtil._getHexValue(hexString.charAt(i * 2));
+            final int lowNibble = ShareUtil._getHexValue(hexString.charAt((i * 2) + 1));
+            buffer[offset + i] = (byte) ((highNibble << 4) | lowNibble);
+        }
+        return (offset + byteCount);
+    }
+
+    protected static int _writeReversedHexBytes(final String hexString, final byte[] buffer, final int offset) {
+        final int byteCount = (hexString.length() / 2);
+        for (int i = 0; i < byteCount; ++i) {
+            final int highNibble = ShareUtil._getHexValue(hexString.charAt(i * 2));
+            final int lowNibble = ShareUtil._getHexValue(hexString.charAt((i * 2) + 1));
+            buffer[offset + byteCount - i - 1] = (byte) ((highNibble << 4) | lowNibble);
+        }
+        return (offset + byteCount);
+    }
+
+    protected static boolean _isWellFormed(final Json notifyParameters) {
+        if (! ShareUtil.isHexString(notifyParameters.getString(1), (HASH_BYTE_COUNT * 2), (HASH_BYTE_COUNT * 2))) { return false; }
+        if (! ShareUtil.isHexString(notifyParameters.getString(2), 0, MAX_COINBASE_CHARACTER_COUNT)) { return false; }
+        if (! ShareUtil.isHexString(notifyParameters.getString(3), 0, MAX_COINBASE_CHARACTER_COUNT)) { return false; }
+        if (! ShareUtil.isHexString(notifyParameters.getString(5), 8, 8)) { return false; }
+        if (! ShareUtil.isHexString(notifyParameters.getString(6), 8, 8)) { return false; }
+
+        final Json merkleBranches = notifyParameters.get(4);
+        final int merkleBranchCount = ((merkleBranches != null) ? merkleBranches.length() : 0);
+        for (int i = 0; i < merkleBranchCount; ++i) {
+            if (! ShareUtil.isHexString(merkleBranches.getString(i), (HASH_BYTE_COUNT * 2), (HASH_BYTE_COUNT * 2))) { return false; }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the merkle root for the coinbase completed by the extraNonces into buffers.headerBytes, after the header
+     *  prefix, and stores the midstate of the header's first block into buffers.headerMidstate.
+     */
+    protected static void _calculateHeaderMidstate(final Buffers buffers, final ParsedJob parsedJob, final byte[] extraNonce1, final String extraNonce2Hex) {
+        final MidstateSha256 sha256 = buffers.sha256;
+        final byte[] headerBytes = buffers.headerBytes;
+
+        { // Hash the remainder of the coinbase transaction: coinbaseHead (remainder) | extraNonce1 | extraNonce2 | coinbaseTail
+            final int coinbaseByteCount = (parsedJob.coinbaseHeadRemainder.length + extraNonce1.length + (extraNonce2Hex.length() / 2) + parsedJob.coinbaseTail.length);
+            if (buffers.coinbaseBytes.length < coinbaseByteCount) {
+                buffers.coinbaseBytes = new byte[Integer.highestOneBit(coinbaseByteCount) << 1];
+            }
+
+            final byte[] coinbaseBytes = buffers.coinbaseBytes;
+            System.arraycopy(parsedJob.coinbaseHeadRemainder, 0, coinbaseBytes, 0, parsedJob.coinbaseHeadRemainder.length);
+            int offset = parsedJob.coinbaseHeadRemainder.length;
+            System.arraycopy(extraNonce1, 0, coinbaseBytes, offset, extraNonce1.length);
+            offset = _writeHexBytes(extraNonce2Hex, coinbaseBytes, (offset + extraNonce1.length));
+            System.arraycopy(parsedJob.coinbaseTail, 0, coinbaseBytes, offset, parsedJob.coinbaseTail.length);
+            offset += parsedJob.coinbaseTail.length;
+
+            final byte[] merkleBytes = buffers.merkleBytes;
+            sha256.finish(parsedJob.coinbaseMidstate, parsedJob.coinbaseMidstateByteCount, coinbaseBytes, 0, offset, merkleBytes, 0);
+            sha256.finish(MidstateSha256.INITIAL_STATE, 0L, merkleBytes, 0, HASH_BYTE_COUNT, merkleBytes, 0);
+        }
+
+        { // Walk the merkle branches to the merkle root...
+            final byte[] merkleBytes = buffers.merkleBytes;
+            for (final byte[] merkleBranch : parsedJob.merkleBranches) {
+                System.arraycopy(merkleBranch, 0, merkleBytes, HASH_BYTE_COUNT, HASH_BYTE_COUNT);
+                sha256.doubleHash(merkleBytes, 0, merkleBytes.length, merkleBytes, 0);
+            }
+            System.arraycopy(merkleBytes, 0, headerBytes, HEADER_PREFIX_BYTE_COUNT, HASH_BYTE_COUNT);
+        }
+
+        System.arraycopy(parsedJob.headerPrefix, 0, headerBytes, 0, HEADER_PREFIX_BYTE_COUNT);
+        MidstateSha256.initialize(buffers.headerMidstate);
+        sha256.compress(buffers.headerMidstate, headerBytes, 0);
+    }
+
+    protected final Integer _maxJobCount;
+    protected final ConcurrentHashMap<Long, ParsedJob> _parsedJobs = new ConcurrentHashMap<>();
+    protected final ConcurrentLinkedQueue<Long> _parsedJobIds = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Returns the parsed job, parsing (and caching) it if the job is not cached or its parameters have been replaced.
+     *  Returns null if the notify parameters are malformed.
+     */
+    protected ParsedJob _getParsedJob(final Long jobId, final Json notifyParameters, final MidstateSha256 sha256) {
+        final ParsedJob cachedParsedJob = ((jobId != null) ? _parsedJobs.get(jobId) : null);
+        if ( (cachedParsedJob != null) && (cachedParsedJob.notifyParameters == notifyParameters) ) { return cachedParsedJob; }
+
+        if (! _isWellFormed(notifyParameters)) { return null; }
+        final ParsedJob parsedJob = new ParsedJob(notifyParameters, sha256);
+        if (jobId == null) { return parsedJob; }
+
+        if (_parsedJobs.put(jobId, parsedJob) == null) {
+            _parsedJobIds.add(jobId);
+            while (_parsedJobs.size() > _maxJobCount) {
+                final Long oldestJobId = _parsedJobIds.poll();
+                if (oldestJobId == null) { break; }
+                _parsedJobs.remove(oldestJobId);
+            }
+        }
+        return parsedJob;
+    }
+
+    /**
+     * Writes the share's (little-endian) block hash to buffers.merkleBytes and returns the job's parsed parameters, or
+     *  returns null if the notify parameters are malformed.
+     */
+    protected ParsedJob _calculateHash(final Buffers buffers, final Long jobId, final Json notifyParameters, final byte[] extraNonce1, final String extraNonce2Hex, final String timestampHex, final String nonceHex) {
+        final ParsedJob parsedJob = _getParsedJob(jobId, notifyParameters, buffers.sha256);
+        if (parsedJob == null) { return null; }
+
+        if (! buffers.isHeaderCached(parsedJob, extraNonce1, extraNonce2Hex)) {
+            _calculateHeaderMidstate(buffers, parsedJob, extraNonce1, extraNonce2Hex);
+            buffers.setHeaderCached(parsedJob, extraNonce1, extraNonce2Hex);
+        }
+
+        // Complete the header's second block: merkleRoot (last 4 bytes) | timestamp | difficulty | nonce
+        final byte[] headerBytes = buffers.headerBytes;
+        int offset = _writeReversedHexBytes(timestampHex, headerBytes, (HEADER_PREFIX_BYTE_COUNT + HASH_BYTE_COUNT));
+        System.arraycopy(parsedJob.difficulty, 0, headerBytes, offset, 4);
+        offset = _writeReversedHexBytes(nonceHex, headerBytes, (offset + 4));
+
+        final MidstateSha256 sha256 = buffers.sha256;
+        final byte[] hashBytes = buffers.merkleBytes;
+        sha256.finish(buffers.headerMidstate, MidstateSha256.BLOCK_BYTE_COUNT, headerBytes, MidstateSha256.BLOCK_BYTE_COUNT, (offset - MidstateSha256.BLOCK_BYTE_COUNT), hashBytes, 0);
+        sha256.finish(MidstateSha256.INITIAL_STATE, 0L, hashBytes, 0, HASH_BYTE_COUNT, hashBytes, 0);
+        return parsedJob;
+    }
+
+    public ShareHashCalculator() {
+        this(DEFAULT_MAX_JOB_COUNT);
+    }
+
+    public ShareHashCalculator(final Integer maxJobCount) {
+        _maxJobCount = maxJobCount;
+    }
+
+    /**
+     * Returns true if the little-endian hash is less than or equal to the big-endian target.
+     */
+    public static boolean isTargetSatisfied(final byte[] littleEndianHash, final byte[] target) {
+        for (int i = 0; i < HASH_BYTE_COUNT; ++i) {
+            final int hashByte = (littleEndianHash[HASH_BYTE_COUNT - i - 1] & 0xFF);
+            final int targetByte = (target[i] & 0xFF);
+            if (hashByte < targetByte) { return true; }
+            if (hashByte > targetByte) { return false; }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the big-endian target encoded by the compact ("nBits") representation: mantissa * 256^(exponent - 3).
+     *  A negative target is returned as zero, and a target that overflows 256 bits is returned as the maximum.
+     */
+    public static byte[] expandCompactTarget(final long compactTarget) {
+        final byte[] target = new byte[HASH_BYTE_COUNT];
+        final int exponent = (int) ((compactTarget >>> 24) & 0xFF);
+        final long mantissa = (compactTarget & 0x007FFFFFL);
+        final boolean isNegative = ((compactTarget & 0x00800000L) != 0L);
+        if ( isNegative || (mantissa == 0L) ) { return target; }
+
+        for (int i = 0; i < 3; ++i) {
+            final int index = (HASH_BYTE_COUNT - exponent + i);
+            final int value = (int) ((mantissa >>> (8 * (2 - i))) & 0xFF);
+            if (index < 0) {
+                if (value != 0) { // Overflow...
+                    Arrays.fill(target, (byte) 0xFF);
+                    return target;
+                }
+                continue;
+            }
+            if (index >= HASH_BYTE_COUNT) { break; } // Bytes below 2^0 are truncated...
+            target[index] = (byte) value;
+        }
+        return target;
+    }
+
+    /**
+     * Returns true if the share's block hash satisfies the target.
+     *  jobId identifies the job whose notifyParameters (the "params" of the browser-formatted mining.notify message) are
+     *  provided; the parsed parameters are cached for as long as the same Json instance is provided for the job.  If
+     *  jobId is null, nothing is cached.  extraNonce1 is the miner's subscription extraNonce, and the remaining (already
+     *  validated) hex parameters are those of the mining.submit.
+     *  Returns false if the notify parameters are malformed.
+     */
+    public boolean isTargetSatisfied(final Long jobId, final Json notifyParameters, final byte[] extraNonce1, final String extraNonce2Hex, final String timestampHex, final String nonceHex, final byte[] target) {
+        final Buffers buffers = BUFFERS.get();
+        final ParsedJob parsedJob = _calculateHash(buffers, jobId, notifyParameters, extraNonce1, extraNonce2Hex, timestampHex, nonceHex);
+        if (parsedJob == null) { return false; }
+
+        return ShareHashCalculator.isTargetSatisfied(buffers.merkleBytes, target);
+    }
+
+    /**
+     * Compares the share's block hash against the share target and the job's network target; the parameters are those
+     *  of ShareHashCalculator::isTargetSatisfied.
+     *  The network target is compared first so that a block is never discarded, even if the share target were harder.
+     *  A null shareTarget only checks the network target.
+     */
+    public WorkResult checkWork(final Long jobId, final Json notifyParameters, final byte[] extraNonce1, final String extraNonce2Hex, final String timestampHex, final String nonceHex, final byte[] shareTarget) {
+        final Buffers buffers = BUFFERS.get();
+        final ParsedJob parsedJob = _calculateHash(buffers, jobId, notifyParameters, extraNonce1, extraNonce2Hex, timestampHex, nonceHex);
+        if (parsedJob == null) { return WorkResult.INVALID; }
+
+        if (ShareHashCalculator.isTargetSatisfied(buffers.merkleBytes, parsedJob.networkTarget)) { return WorkResult.BLOCK_CANDIDATE; }
+        if ( (shareTarget != null) && ShareHashCalculator.isTargetSatisfied(buffers.merkleBytes, shareTarget) ) { return WorkResult.SHARE; }
+        return WorkResult.INVALID;
+    }
+
+    /**
+     * Returns a copy of the share's (little-endian) block hash, or null if the notify parameters are malformed; the
+     *  parameters are those of ShareHashCalculator::isTargetSatisfied.
+     */
+    public byte[] calculateHash(final Long jobId, final Json notifyParameters, final byte[] extraNonce1, final String extraNonce2Hex, final String timestampHex, final String nonceHex) {
+        final Buffers buffers = BUFFERS.get();
+        final ParsedJob parsedJob = _calculateHash(buffers, jobId, notifyParameters, extraNonce1, extraNonce2Hex, timestampHex, nonceHex);
+        if (parsedJob == null) { return null; }
+
+        return Arrays.copyOf(buffers.merkleBytes, HASH_BYTE_COUNT);
+    }
+
+    /**
+     * Returns true if the share's block hash satisfies the target, without caching the job's parsed parameters.
+     */
+    public boolean isTargetSatisfied(final Json notifyParameters, final byte[] extraNonce1, final String extraNonce2Hex, final String timestampHex, final String nonceHex, final byte[] target) {
+        return this.isTargetSatisfied(null, notifyParameters, extraNonce1, extraNonce2Hex, timestampHex, nonceHex, target);
+    }
+}
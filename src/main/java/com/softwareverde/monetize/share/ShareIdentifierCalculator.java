@@ -0,0 +1,144 @@
+package com.softwareverde.monetize.share;
+
+import com.softwareverde.constable.bytearray.ByteArray;
+import com.softwareverde.cryptography.hash.sha256.Sha256Hash;
+import com.softwareverde.cryptography.util.HashUtil;
+import com.softwareverde.json.Json;
+import com.softwareverde.util.ByteUtil;
+import com.softwareverde.util.HexUtil;
+import com.softwareverde.util.StringUtil;
+
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Calculates the 64-bit fingerprint used to detect replayed shares.
+ *  Shares are first put into a canonical form (taskId, extraNonce2, nonce, timestamp) so that malleable encodings of
+ *  the same share (e.g. differing hex case) map to the same fingerprint.
+ *  By default the canonical form is a fixed-width binary encoding written into a reusable per-thread buffer, which
+ *  requires no allocations; the legacy mode hashes the original JSON serialization instead.
+ */
+public class ShareIdentifierCalculator {
+    public enum Mode {
+        BINARY, LEGACY_JSON
+    }
+
+    protected static final int MAX_EXTRA_NONCE_2_BYTE_COUNT = 32;
+    protected static final int MAX_ENCODED_BYTE_COUNT = (8 + 1 + MAX_EXTRA_NONCE_2_BYTE_COUNT + 8 + 8);
+
+    protected static class Buffers {
+        public final byte[] encodedBytes = new byte[MAX_ENCODED_BYTE_COUNT];
+        public final byte[] digestBytes = new byte[32];
+        public final MessageDigest messageDigest;
+
+        public Buffers() {
+            try {
+                this.messageDigest = MessageDigest.getInstance("SHA-256");
+            }
+            catch (final NoSuchAlgorithmException exception) {
+                throw new RuntimeException(exception);
+            }
+        }
+    }
+
+    protected static final ThreadLocal<Buffers> BUFFERS = ThreadLocal.withInitial(Buffers::new);
+
+    protected static int _writeLong(final long value, final byte[] buffer, final int offset) {
+        for (int i = 0; i < 8; ++i) {
+            buffer[offset + i] = (byte) (value >>> (56 - (i * 8)));
+        }
+        return (offset + 8);
+    }
+
+    protected static int _writeHexBytes(final String hexString, final byte[] buffer, final int offset) {
+        final int byteCount = (hexString.length() / 2);
+        for (int i = 0; i < byteCount; ++i) {
+            final int highNibble = ShareUtil._getHexValue(hexString.charAt(i * 2));
+            final int lowNibble = ShareUtil._getHexValue(hexString.charAt((i * 2) + 1));
+            buffer[offset + i] = (byte) ((highNibble << 4) | lowNibble);
+        }
+        return (offset + byteCount);
+    }
+
+    /**
+     * Returns the first 8 bytes of the hash as a big-endian long.
+     */
+    protected static long _toFingerprint(final byte[] hashBytes) {
+        long fingerprint = 0L;
+        for (int i = 0; i < 8; ++i) {
+            fingerprint = ((fingerprint << 8) | (hashBytes[i] & 0xFFL));
+        }
+        return fingerprint;
+    }
+
+    protected final Mode _mode;
+
+    protected long _calculateBinaryFingerprint(final String taskIdHex, final String extraNonce2Hex, final String timestampHex, final String nonceHex) {
+        final Buffers buffers = BUFFERS.get();
+        final byte[] encodedBytes = buffers.encodedBytes;
+
+        int offset = _writeLong(ShareUtil.parseHexLong(taskIdHex), encodedBytes, 0);
+        encodedBytes[offset] = (byte) (extraNonce2Hex.length() / 2);
+        offset = _writeHexBytes(extraNonce2Hex, encodedBytes, (offset + 1));
+        offset = _writeLong(ShareUtil.parseHexLong(nonceHex), encodedBytes, offset);
+        offset = _writeLong(ShareUtil.parseHexLong(timestampHex), encodedBytes, offset);
+
+        final MessageDigest messageDigest = buffers.messageDigest;
+        messageDigest.update(encodedBytes, 0, offset);
+        try {
+            messageDigest.digest(buffers.digestBytes, 0, buffers.digestBytes.length);
+        }
+        catch (final DigestException exception) {
+            throw new RuntimeException(exception);
+        }
+
+        return _toFingerprint(buffers.digestBytes);
+    }
+
+    protected Sha256Hash _calculateLegacyShareIdentifier(final String taskIdHex, final String extraNonce2Hex, final String timestampHex, final String nonceHex) {
+        // Put the parameters into their canonical form to prevent reusing malleable shares...
+        final Long taskId = ByteUtil.bytesToLong(HexUtil.hexStringToByteArray(taskIdHex));
+        final ByteArray extraNonce2 = ByteArray.wrap(HexUtil.hexStringToByteArray(extraNonce2Hex));
+        final Long nonce = ByteUtil.bytesToLong(HexUtil.hexStringToByteArray(nonceHex));
+        final Long timestamp = ByteUtil.bytesToLong(HexUtil.hexStringToByteArray(timestampHex));
+
+        final String canonicalMessage;
+        {
+            final Json canonicalMessageJson = new Json(true);
+            canonicalMessageJson.add(taskId);
+            canonicalMessageJson.add(extraNonce2);
+            canonicalMessageJson.add(nonce);
+            canonicalMessageJson.add(timestamp);
+            canonicalMessage = canonicalMessageJson.toString();
+        }
+
+        final ByteArray canonicalMessageBytes = ByteArray.wrap(StringUtil.stringToBytes(canonicalMessage));
+        return HashUtil.sha256(canonicalMessageBytes);
+    }
+
+    public ShareIdentifierCalculator() {
+        this(Mode.BINARY);
+    }
+
+    public ShareIdentifierCalculator(final Mode mode) {
+        _mode = mode;
+    }
+
+    /**
+     * Returns the fingerprint of the share described by the mining.submit hex parameters.
+     *  The parameters must have already been validated as hex strings, and extraNonce2Hex may be at most 32 bytes.
+     */
+    public long calculateFingerprint(final String taskIdHex, final String extraNonce2Hex, final String timestampHex, final String nonceHex) {
+        if (_mode == Mode.LEGACY_JSON) {
+            final Sha256Hash shareIdentifier = _calculateLegacyShareIdentifier(taskIdHex, extraNonce2Hex, timestampHex, nonceHex);
+            return _toFingerprint(shareIdentifier.getBytes());
+        }
+
+        return _calculateBinaryFingerprint(taskIdHex, extraNonce2Hex, timestampHex, nonceHex);
+    }
+
+    public Mode getMode() {
+        return _mode;
+    }
+}
@@ -0,0 +1,389 @@
+package com.softwareverde.monetize.share;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records the fingerprints of accepted shares, grouped by the key of the stratum job (task) they were mined against.
+ *  Each job's fingerprints are stored within a striped open-addressing table of primitive longs (~11 bytes per share).
+ *  Jobs are retired one at a time once they become idle or once the cache reaches its capacity; shares for retired jobs
+ *  are rejected rather than forgotten, so evicting history never re-opens a replay window.
+ */
+public class ShareReplayCache implements ShareReplayStore {
+    public static final Long DEFAULT_MAX_SHARE_COUNT = 1048576L;
+    public static final Long DEFAULT_MAX_JOB_IDLE_MS = (30L * 60L * 1000L);
+    public static final Integer DEFAULT_MAX_RETIRED_JOB_COUNT = 4096;
+
+    protected static final long EMPTY_SLOT = 0L;
+    protected static final int STRIPE_COUNT = 16; // Must be a power of two.
+    protected static final int INITIAL_STRIPE_CAPACITY = 64; // Must be a power of two.
+
+    protected static int _getSlotIndex(final long fingerprint, final int mask) {
+        final long mixed = (fingerprint * 0x9E3779B97F4A7C15L);
+        return (((int) (mixed >>> 32)) & mask);
+    }
+
+    /**
+     * An open-addressing (linear probing) set of non-zero longs.
+     */
+    protected static class Stripe {
+        protected long[] _slots = new long[INITIAL_STRIPE_CAPACITY];
+        protected int _count = 0;
+
+        protected void _resize() {
+            final long[] oldSlots = _slots;
+            final long[] newSlots = new long[oldSlots.length * 2];
+            final int mask = (newSlots.length - 1);
+            for (final long fingerprint : oldSlots) {
+                if (fingerprint == EMPTY_SLOT) { continue; }
+
+                int index = _getSlotIndex(fingerprint, mask);
+                while (newSlots[index] != EMPTY_SLOT) {
+                    index = ((index + 1) & mask);
+                }
+                newSlots[index] = fingerprint;
+            }
+            _slots = newSlots;
+        }
+
+        public synchronized boolean contains(final long fingerprint) {
+            final long[] slots = _slots;
+            final int mask = (slots.length - 1);
+            int index = _getSlotIndex(fingerprint, mask);
+            while (true) {
+                final long value = slots[index];
+                if (value == EMPTY_SLOT) { return false; }
+                if (value == fingerprint) { return true; }
+                index = ((index + 1) & mask);
+            }
+        }
+
+        public synchronized boolean add(final long fingerprint) {
+            if ((_count + 1) * 4L > (_slots.length * 3L)) { // Maintain a load factor at or below 75%...
+                _resize();
+            }
+
+            final long[] slots = _slots;
+            final int mask = (slots.length - 1);
+            int index = _getSlotIndex(fingerprint, mask);
+            while (true) {
+                final long value = slots[index];
+                if (value == fingerprint) { return false; }
+                if (value == EMPTY_SLOT) {
+                    slots[index] = fingerprint;
+                    _count += 1;
+                    return true;
+                }
+                index = ((index + 1) & mask);
+            }
+        }
+
+        public synchronized int getCount() {
+            return _count;
+        }
+
+        /**
+         * Copies the stripe's fingerprints into the array at the offset and returns the offset after the last copied value.
+         *  The array must have room for the stripe's count.
+         */
+        public synchronized int copyTo(final long[] fingerprints, final int offset) {
+            int index = offset;
+            for (final long fingerprint : _slots) {
+                if (fingerprint == EMPTY_SLOT) { continue; }
+                fingerprints[index] = fingerprint;
+                index += 1;
+            }
+            return index;
+        }
+    }
+
+    protected static class JobShares {
+        protected static final long RETIRED_SHARE_COUNT = Long.MIN_VALUE;
+
+        public final long jobId;
+        public final long sequenceNumber;
+        protected final Stripe[] _stripes = new Stripe[STRIPE_COUNT];
+        protected final AtomicLong _shareCount = new AtomicLong(0L);
+        protected volatile long _lastShareTimestamp;
+
+        protected Stripe _getStripe(final long fingerprint) {
+            return _stripes[(int) (fingerprint >>> 60) & (STRIPE_COUNT - 1)];
+        }
+
+        public JobShares(final long jobId, final long sequenceNumber, final long timestamp) {
+            this.jobId = jobId;
+            this.sequenceNumber = sequenceNumber;
+            _lastShareTimestamp = timestamp;
+            for (int i = 0; i < STRIPE_COUNT; ++i) {
+                _stripes[i] = new Stripe();
+            }
+        }
+
+        public boolean contains(final long fingerprint) {
+            return _getStripe(fingerprint).contains(fingerprint);
+        }
+
+        /**
+         * Records the share and returns true if it had not been seen before and the job has not been retired.
+         */
+        public boolean add(final long fingerprint, final long timestamp) {
+            if (! _getStripe(fingerprint).add(fingerprint)) { return false; }
+
+            while (true) {
+                final long shareCount = _shareCount.get();
+                if (shareCount == RETIRED_SHARE_COUNT) { return false; } // Counted by neither the job nor the cache...
+                if (_shareCount.compareAndSet(shareCount, (shareCount + 1L))) { break; }
+            }
+            if (timestamp > _lastShareTimestamp) { // Restored shares may be recorded out of order...
+                _lastShareTimestamp = timestamp;
+            }
+            return true;
+        }
+
+        /**
+         * Marks the job as retired and returns the number of shares it holds; shares added afterwards are not counted.
+         */
+        public long retire() {
+            final long shareCount = _shareCount.getAndSet(RETIRED_SHARE_COUNT);
+            return ((shareCount == RETIRED_SHARE_COUNT) ? 0L : shareCount);
+        }
+
+        public long getShareCount() {
+            return Math.max(0L, _shareCount.get());
+        }
+
+        public long[] getFingerprints() {
+            final ArrayList<long[]> stripeFingerprints = new ArrayList<>(STRIPE_COUNT);
+            int fingerprintCount = 0;
+            for (final Stripe stripe : _stripes) {
+                final long[] fingerprints;
+                synchronized (stripe) { // The count and slots must be read atomically...
+                    fingerprints = new long[stripe.getCount()];
+                    stripe.copyTo(fingerprints, 0);
+                }
+                stripeFingerprints.add(fingerprints);
+                fingerprintCount += fingerprints.length;
+            }
+
+            final long[] fingerprints = new long[fingerprintCount];
+            int offset = 0;
+            for (final long[] stripeFingerprint : stripeFingerprints) {
+                System.arraycopy(stripeFingerprint, 0, fingerprints, offset, stripeFingerprint.length);
+                offset += stripeFingerprint.length;
+            }
+            return fingerprints;
+        }
+
+        public long getLastShareTimestamp() {
+            return _lastShareTimestamp;
+        }
+    }
+
+    protected static long _normalizeFingerprint(final long fingerprint) {
+        // Zero is reserved as the empty-slot marker; folding it into 1 only merges two of 2^64 values.
+        return ((fingerprint == EMPTY_SLOT) ? 1L : fingerprint);
+    }
+
+    protected final long _maxShareCount;
+    protected final long _maxJobIdleMs;
+    protected final int _maxRetiredJobCount;
+
+    protected final ConcurrentHashMap<Long, JobShares> _jobs = new ConcurrentHashMap<>();
+    protected final ConcurrentSkipListMap<Long, JobShares> _jobsByAge = new ConcurrentSkipListMap<>(); // Keyed by JobShares::sequenceNumber, so jobs are removed by key rather than by scanning...
+    protected final AtomicLong _nextJobSequenceNumber = new AtomicLong(0L);
+    protected final AtomicLong _shareCount = new AtomicLong(0L);
+
+    protected final Set<Long> _retiredJobIds = ConcurrentHashMap.newKeySet();
+    protected final ConcurrentLinkedQueue<Long> _retiredJobIdsByAge = new ConcurrentLinkedQueue<>();
+    protected final AtomicInteger _retiredJobCount = new AtomicInteger(0); // ConcurrentLinkedQueue::size is O(n)...
+
+    protected void _addRetiredJobId(final long jobId) {
+        if (! _retiredJobIds.add(jobId)) { return; }
+        _retiredJobIdsByAge.add(jobId);
+        _retiredJobCount.incrementAndGet();
+
+        while (_retiredJobCount.get() > _maxRetiredJobCount) {
+            final Long oldestRetiredJobId = _retiredJobIdsByAge.poll();
+            if (oldestRetiredJobId == null) { break; }
+            _retiredJobCount.decrementAndGet();
+            _retiredJobIds.remove(oldestRetiredJobId);
+        }
+    }
+
+    protected void _retireJob(final JobShares jobShares) {
+        // The job is rejected before its shares are forgotten; otherwise a replay could be recorded by a new instance of the job...
+        _addRetiredJobId(jobShares.jobId);
+
+        if (! _jobs.remove(jobShares.jobId, jobShares)) { return; }
+        _jobsByAge.remove(jobShares.sequenceNumber, jobShares);
+
+        _shareCount.addAndGet(-jobShares.retire());
+    }
+
+    /**
+     * Retires at most one job per invocation so that eviction cost is spread across requests.
+     *  The oldest job is retired if it has been idle for too long, or if the cache is at capacity and the job is not
+     *  the only one remaining.
+     */
+    protected void _evictGradually(final long now) {
+        final Map.Entry<Long, JobShares> oldestJobEntry = _jobsByAge.firstEntry();
+        if (oldestJobEntry == null) { return; }
+
+        final JobShares oldestJob = oldestJobEntry.getValue();
+
+        final boolean isIdle = ((now - oldestJob.getLastShareTimestamp()) > _maxJobIdleMs);
+        final boolean isOverCapacity = ((_shareCount.get() >= _maxShareCount) && (_jobs.size() > 1));
+        if (isIdle || isOverCapacity) {
+            _retireJob(oldestJob);
+        }
+    }
+
+    protected JobShares _getOrCreateJobShares(final long jobId, final long now) {
+        final JobShares existingJobShares = _jobs.get(jobId);
+        if (existingJobShares != null) { return existingJobShares; }
+
+        final JobShares newJobShares = new JobShares(jobId, _nextJobSequenceNumber.getAndIncrement(), now);
+        final JobShares racedJobShares = _jobs.putIfAbsent(jobId, newJobShares);
+        if (racedJobShares != null) { return racedJobShares; }
+
+        _jobsByAge.put(newJobShares.sequenceNumber, newJobShares);
+        if (_retiredJobIds.contains(jobId)) { // The job was retired after the caller checked...
+            _retireJob(newJobShares);
+        }
+        return newJobShares;
+    }
+
+    protected boolean _add(final long jobId, final long shareFingerprint, final long now) {
+        if (_retiredJobIds.contains(jobId)) { return false; }
+
+        _evictGradually(now);
+
+        final JobShares jobShares = _getOrCreateJobShares(jobId, now);
+        if (_shareCount.get() >= _maxShareCount) {
+            _evictGradually(now);
+            if (_shareCount.get() >= _maxShareCount) { return false; }
+        }
+
+        final boolean wasAdded = jobShares.add(_normalizeFingerprint(shareFingerprint), now);
+        if (! wasAdded) { return false; }
+
+        _shareCount.incrementAndGet();
+        if (_retiredJobIds.contains(jobId)) { return false; } // The job was retired concurrently.
+
+        return true;
+    }
+
+    public ShareReplayCache() {
+        this(DEFAULT_MAX_SHARE_COUNT, DEFAULT_MAX_JOB_IDLE_MS, DEFAULT_MAX_RETIRED_JOB_COUNT);
+    }
+
+    public ShareReplayCache(final Long maxShareCount, final Long maxJobIdleMs, final Integer maxRetiredJobCount) {
+        _maxShareCount = maxShareCount;
+        _maxJobIdleMs = maxJobIdleMs;
+        _maxRetiredJobCount = maxRetiredJobCount;
+    }
+
+    @Override
+    public boolean isJobRetired(final long jobId) {
+        return _retiredJobIds.contains(jobId);
+    }
+
+    /**
+     * Returns true if the share has already been recorded for the job.
+     *  Shares for retired jobs are not reported; use ShareReplayCache::isJobRetired to detect those.
+     */
+    @Override
+    public boolean contains(final long jobId, final long shareFingerprint) {
+        final JobShares jobShares = _jobs.get(jobId);
+        if (jobShares == null) { return false; }
+
+        return jobShares.contains(_normalizeFingerprint(shareFingerprint));
+    }
+
+    /**
+     * Records the share and returns true if it had not been seen before.
+     *  Returns false if the share is a duplicate, if its job has been retired, or if the cache is full and the share's
+     *  job is the only job remaining (in which case the share cannot be remembered without risking a replay).
+     */
+    @Override
+    public boolean add(final long jobId, final long shareFingerprint) {
+        return _add(jobId, shareFingerprint, System.currentTimeMillis());
+    }
+
+    /**
+     * Records a share that was accepted at the provided timestamp (i.e. by a previous process), as per
+     *  ShareReplayCache::add.  The share's job ages from its most recent restored share rather than from now, so restored
+     *  jobs are retired when they would have been had the process not restarted.
+     */
+    public boolean restore(final long jobId, final long shareFingerprint, final long timestamp) {
+        return _add(jobId, shareFingerprint, timestamp);
+    }
+
+    /**
+     * Forgets the shares of the provided job and rejects any future shares for it.
+     */
+    @Override
+    public void retireJob(final long jobId) {
+        final JobShares jobShares = _jobs.get(jobId);
+        if (jobShares != null) {
+            _retireJob(jobShares);
+        }
+        else {
+            _addRetiredJobId(jobId);
+        }
+    }
+
+    /**
+     * Returns the ids of the jobs whose shares are recorded, oldest first.
+     */
+    public List<Long> getJobIds() {
+        final ArrayList<Long> jobIds = new ArrayList<>();
+        for (final JobShares jobShares : _jobsByAge.values()) {
+            jobIds.add(jobShares.jobId);
+        }
+        return jobIds;
+    }
+
+    /**
+     * Returns the fingerprints of the shares recorded for the job, or null if the job is not tracked.
+     */
+    public long[] getShareFingerprints(final long jobId) {
+        final JobShares jobShares = _jobs.get(jobId);
+        if (jobShares == null) { return null; }
+
+        return jobShares.getFingerprints();
+    }
+
+    /**
+     * Returns the time at which the job's most recent share was recorded, or null if the job is not tracked.
+     */
+    public Long getLastShareTimestamp(final long jobId) {
+        final JobShares jobShares = _jobs.get(jobId);
+        if (jobShares == null) { return null; }
+
+        return jobShares.getLastShareTimestamp();
+    }
+
+    /**
+     * Returns the ids of the retired jobs, oldest first.
+     */
+    public List<Long> getRetiredJobIds() {
+        return new ArrayList<>(_retiredJobIdsByAge);
+    }
+
+    @Override
+    public Long getShareCount() {
+        return _shareCount.get();
+    }
+
+    public Integer getJobCount() {
+        return _jobs.size();
+    }
+}
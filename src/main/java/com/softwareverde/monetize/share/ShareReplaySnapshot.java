@@ -0,0 +1,146 @@
+package com.softwareverde.monetize.share;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Persists the ShareReplayCache to a compact binary file so that a restarted server rejects the shares spent before it
+ *  stopped.  The snapshot is written via a memory-mapped temporary file which atomically replaces the previous snapshot.
+ *  Jobs are identified by their job keys (see WorkResponseCache::getJobKey), which unlike stratum job ids are not reused
+ *  by the restarted stratum server for different jobs.
+ *  Format (big-endian): [u32 magic][u32 version][u64 createdTimestamp]
+ *   [u32 jobCount]{[u64 jobKey][u64 lastShareTimestamp][u32 shareCount][u64 fingerprint * shareCount]}
+ *   [u32 retiredJobCount][u64 retiredJobKey * retiredJobCount]
+ */
+public class ShareReplaySnapshot {
+    protected static final int MAGIC = 0x4D525043; // "MRPC"
+    protected static final int VERSION = 2; // Version 1 recorded stratum job ids and is not restored...
+    protected static final int HEADER_BYTE_COUNT = (4 + 4 + 8);
+
+    protected final File _file;
+
+    public ShareReplaySnapshot(final File file) {
+        _file = file;
+    }
+
+    /**
+     * Writes the cache's shares and retired jobs to the snapshot file, replacing any previous snapshot.
+     *  Returns the number of shares written.  Shares must no longer be admitted, or they may be missing from the snapshot.
+     */
+    public Long save(final ShareReplayCache shareReplayCache) throws IOException {
+        final List<Long> jobIds = new ArrayList<>();
+        final List<Long> jobTimestamps = new ArrayList<>();
+        final List<long[]> jobFingerprints = new ArrayList<>();
+        long byteCount = (HEADER_BYTE_COUNT + 4L);
+        long shareCount = 0L;
+        for (final Long jobId : shareReplayCache.getJobIds()) {
+            final Long lastShareTimestamp = shareReplayCache.getLastShareTimestamp(jobId);
+            final long[] fingerprints = shareReplayCache.getShareFingerprints(jobId);
+            if ( (lastShareTimestamp == null) || (fingerprints == null) ) { continue; } // Retired concurrently...
+
+            jobIds.add(jobId);
+            jobTimestamps.add(lastShareTimestamp);
+            jobFingerprints.add(fingerprints);
+            byteCount += (8L + 8L + 4L + (8L * fingerprints.length));
+            shareCount += fingerprints.length;
+        }
+
+        final List<Long> retiredJobIds = shareReplayCache.getRetiredJobIds();
+        byteCount += (4L + (8L * retiredJobIds.size()));
+        if (byteCount > Integer.MAX_VALUE) {
+            throw new IOException("Snapshot exceeds the maximum mappable size.");
+        }
+
+        final Path path = _file.toPath();
+        final Path temporaryPath = path.resolveSibling(path.getFileName() + ".tmp");
+        final File parentDirectory = _file.getAbsoluteFile().getParentFile();
+        if (parentDirectory != null) {
+            Files.createDirectories(parentDirectory.toPath());
+        }
+
+        try (final FileChannel fileChannel = FileChannel.open(temporaryPath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            final MappedByteBuffer byteBuffer = fileChannel.map(FileChannel.MapMode.READ_WRITE, 0L, byteCount);
+            byteBuffer.putInt(MAGIC);
+            byteBuffer.putInt(VERSION);
+            byteBuffer.putLong(System.currentTimeMillis());
+
+            byteBuffer.putInt(jobIds.size());
+            for (int i = 0; i < jobIds.size(); ++i) {
+                final long[] fingerprints = jobFingerprints.get(i);
+                byteBuffer.putLong(jobIds.get(i));
+                byteBuffer.putLong(jobTimestamps.get(i));
+                byteBuffer.putInt(fingerprints.length);
+                for (final long fingerprint : fingerprints) {
+                    byteBuffer.putLong(fingerprint);
+                }
+            }
+
+            byteBuffer.putInt(retiredJobIds.size());
+            for (final Long retiredJobId : retiredJobIds) {
+                byteBuffer.putLong(retiredJobId);
+            }
+
+            byteBuffer.force();
+        }
+
+        Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return shareCount;
+    }
+
+    /**
+     * Restores the snapshot's shares and retired jobs into the cache and returns the number of shares restored.
+     *  Each job keeps the age it had when the snapshot was saved.
+     *  Nothing is restored if the snapshot does not exist or is older than maxAgeMs.
+     */
+    public Long restore(final ShareReplayCache shareReplayCache, final Long maxAgeMs) throws IOException {
+        if (! _file.isFile()) { return 0L; }
+
+        try (final FileChannel fileChannel = FileChannel.open(_file.toPath(), StandardOpenOption.READ)) {
+            final long byteCount = fileChannel.size();
+            if ( (byteCount < HEADER_BYTE_COUNT) || (byteCount > Integer.MAX_VALUE) ) {
+                throw new IOException("Invalid snapshot size: " + byteCount);
+            }
+
+            final MappedByteBuffer byteBuffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0L, byteCount);
+            if ( (byteBuffer.getInt() != MAGIC) || (byteBuffer.getInt() != VERSION) ) {
+                throw new IOException("Unsupported snapshot format.");
+            }
+
+            final long createdTimestamp = byteBuffer.getLong();
+            if ((System.currentTimeMillis() - createdTimestamp) > maxAgeMs) { return 0L; }
+
+            try {
+                long shareCount = 0L;
+                final int jobCount = byteBuffer.getInt();
+                for (int i = 0; i < jobCount; ++i) {
+                    final long jobId = byteBuffer.getLong();
+                    final long lastShareTimestamp = byteBuffer.getLong();
+                    final int fingerprintCount = byteBuffer.getInt();
+                    for (int j = 0; j < fingerprintCount; ++j) {
+                        if (shareReplayCache.restore(jobId, byteBuffer.getLong(), lastShareTimestamp)) {
+                            shareCount += 1L;
+                        }
+                    }
+                }
+
+                final int retiredJobCount = byteBuffer.getInt();
+                for (int i = 0; i < retiredJobCount; ++i) {
+                    shareReplayCache.retireJob(byteBuffer.getLong());
+                }
+
+                return shareCount;
+            }
+            catch (final RuntimeException exception) { // BufferUnderflowException...
+                throw new IOException("Truncated snapshot.", exception);
+            }
+        }
+    }
+}
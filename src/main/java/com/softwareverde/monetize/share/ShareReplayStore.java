@@ -0,0 +1,32 @@
+package com.softwareverde.monetize.share;
+
+/**
+ * Records which shares have been spent so that each share is accepted at most once.
+ *  ShareReplayStore::add is authoritative; ShareReplayStore::contains and ShareReplayStore::isJobRetired are inexpensive
+ *  early rejections and may report false for a share that ShareReplayStore::add would then reject.
+ *  Jobs are identified by their job keys (see WorkResponseCache::getJobKey) rather than by their stratum job ids, which
+ *  restart with the stratum server.
+ */
+public interface ShareReplayStore {
+    boolean isJobRetired(long jobId);
+
+    /**
+     * Returns true if the share is known to have been spent.
+     */
+    boolean contains(long jobId, long shareFingerprint);
+
+    /**
+     * Records the share and returns true if it had not been spent before.
+     */
+    boolean add(long jobId, long shareFingerprint);
+
+    /**
+     * Rejects any future shares for the job.
+     */
+    void retireJob(long jobId);
+
+    /**
+     * Returns the number of shares recorded by this process.
+     */
+    Long getShareCount();
+}
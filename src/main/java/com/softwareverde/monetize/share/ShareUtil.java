@@ -0,0 +1,50 @@
+package com.softwareverde.monetize.share;
+
+public class ShareUtil {
+    protected static int _getHexValue(final char character) {
+        if (character >= '0' && character <= '9') { return (character - '0'); }
+        if (character >= 'a' && character <= 'f') { return (character - 'a' + 10); }
+        if (character >= 'A' && character <= 'F') { return (character - 'A' + 10); }
+        return -1;
+    }
+
+    /**
+     * Returns true if the string is non-null, contains only hex characters, has an even length, and its length is within
+     *  the provided (inclusive) bounds.
+     */
+    public static boolean isHexString(final String string, final int minCharacterCount, final int maxCharacterCount) {
+        if (string == null) { return false; }
+
+        final int characterCount = string.length();
+        if ( (characterCount < minCharacterCount) || (characterCount > maxCharacterCount) ) { return false; }
+        if ((characterCount % 2) != 0) { return false; }
+
+        for (int i = 0; i < characterCount; ++i) {
+            if (_getHexValue(string.charAt(i)) < 0) { return false; }
+        }
+        return true;
+    }
+
+    /**
+     * Parses up to 16 hex characters as a big-endian unsigned long without allocating.
+     *  Equivalent to ByteUtil.bytesToLong(HexUtil.hexStringToByteArray(hexString)) for valid input.
+     *  The hexString must have already been validated via ShareUtil::isHexString.
+     */
+    public static long parseHexLong(final String hexString) {
+        return ShareUtil.parseHexLong(hexString, 0, hexString.length());
+    }
+
+    /**
+     * Parses the hex characters within [startIndex, endIndex) as a big-endian unsigned long without allocating.
+     *  At most 16 characters may be parsed.
+     */
+    public static long parseHexLong(final String hexString, final int startIndex, final int endIndex) {
+        long value = 0L;
+        for (int i = startIndex; i < endIndex; ++i) {
+            value = ((value << 4) | _getHexValue(hexString.charAt(i)));
+        }
+        return value;
+    }
+
+    protected ShareUtil() { }
+}
@@ -0,0 +1,229 @@
+package com.softwareverde.monetize.share;
+
+import com.softwareverde.json.Json;
+import com.softwareverde.logging.Logger;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs the ShareAdmissionPipeline on a fixed number of threads with a bounded queue, so that bursts of paid requests
+ *  cannot create unbounded validation work.  When the queue is full, shares are immediately rejected as OVERLOADED
+ *  so that callers can respond with a Retry-After instead of waiting; block candidates are the exception, and are
+ *  admitted on the calling thread instead.
+ *  Concurrent submissions of the same share are coalesced: only the first is validated, and the others receive its
+ *  result (with an acceptance reported as a duplicate, since a share may only be spent once).
+ *  A submitter that stops waiting (see ShareValidationExecutor::getResult) cancels the share's validation if it has not
+ *  begun; if the share is accepted after its submitter stopped waiting, the acceptance is handed to the first retry of
+ *  the share by the same subscription instead of being reported as a duplicate.
+ */
+public class ShareValidationExecutor {
+    public static final Integer DEFAULT_QUEUE_DEPTH = 1024;
+    public static final Long DEFAULT_TIMEOUT_MS = 5000L;
+    public static final Integer DEFAULT_RETRY_AFTER_SECONDS = 1;
+    protected static final Integer MAX_ABANDONED_ACCEPTANCE_COUNT = 1024;
+
+    protected final ShareAdmissionPipeline _shareAdmissionPipeline;
+    protected final ThreadPoolExecutor _executor;
+    protected final Long _timeoutMs;
+    protected final Integer _retryAfterSeconds;
+    protected final ConcurrentHashMap<Long, CompletableFuture<ShareAdmissionResult>> _inFlightShares = new ConcurrentHashMap<>();
+    protected final LongAdder _coalescedShareCount = new LongAdder();
+    protected final ConcurrentHashMap<Long, String> _abandonedAcceptances = new ConcurrentHashMap<>(); // The subscription of each share accepted after its submitter stopped waiting, by share key.
+    protected final ConcurrentLinkedQueue<Long> _abandonedAcceptanceKeys = new ConcurrentLinkedQueue<>();
+
+    protected ShareAdmissionResult _reportCoalescedResult(final ShareAdmissionResult shareAdmissionResult) {
+        final ShareAdmissionResult coalescedResult = (shareAdmissionResult.isAccepted() ? ShareAdmissionResult.DUPLICATE : shareAdmissionResult);
+        _shareAdmissionPipeline.getStatistics().record(coalescedResult);
+        return coalescedResult;
+    }
+
+    protected void _recordAbandonedAcceptance(final Long shareKey, final String subscriptionIdHex) {
+        if (_abandonedAcceptances.put(shareKey, subscriptionIdHex) != null) { return; }
+
+        _abandonedAcceptanceKeys.add(shareKey);
+        while (_abandonedAcceptanceKeys.size() > MAX_ABANDONED_ACCEPTANCE_COUNT) {
+            final Long oldestShareKey = _abandonedAcceptanceKeys.poll();
+            if (oldestShareKey == null) { break; }
+            _abandonedAcceptances.remove(oldestShareKey);
+        }
+    }
+
+    /**
+     * Returns true if the share was accepted after its submitter, of the same subscription, stopped waiting for it.
+     *  Each such acceptance is only claimed once.
+     */
+    protected Boolean _claimAbandonedAcceptance(final Long shareKey, final String subscriptionIdHex) {
+        if (_abandonedAcceptances.isEmpty()) { return false; }
+
+        final String abandonedSubscriptionIdHex = _abandonedAcceptances.get(shareKey);
+        if ( (abandonedSubscriptionIdHex == null) || (! abandonedSubscriptionIdHex.equalsIgnoreCase(subscriptionIdHex)) ) { return false; }
+        return _abandonedAcceptances.remove(shareKey, abandonedSubscriptionIdHex);
+    }
+
+    protected void _admit(final Json workerSubmitMessage, final Long shareKey, final CompletableFuture<ShareAdmissionResult> future) {
+        if (future.isDone()) { return; } // The submitter stopped waiting before the share was validated...
+
+        final String subscriptionIdHex = workerSubmitMessage.getString(0);
+        try {
+            final ShareAdmissionResult admissionResult = _shareAdmissionPipeline.admit(workerSubmitMessage);
+            final ShareAdmissionResult shareAdmissionResult = ( ((admissionResult == ShareAdmissionResult.DUPLICATE) && _claimAbandonedAcceptance(shareKey, subscriptionIdHex)) ? ShareAdmissionResult.ACCEPTED : admissionResult );
+            if ( (! future.complete(shareAdmissionResult)) && shareAdmissionResult.isAccepted() ) { // The submitter stopped waiting during validation...
+                _recordAbandonedAcceptance(shareKey, subscriptionIdHex);
+            }
+        }
+        catch (final Exception exception) {
+            future.completeExceptionally(exception);
+        }
+    }
+
+    /**
+     * Creates an executor with threadCount threads; a threadCount less than 1 uses one thread per available processor.
+     */
+    public ShareValidationExecutor(final ShareAdmissionPipeline shareAdmissionPipeline, final Integer threadCount, final Integer queueDepth, final Long timeoutMs, final Integer retryAfterSeconds) {
+        _shareAdmissionPipeline = shareAdmissionPipeline;
+        _timeoutMs = timeoutMs;
+        _retryAfterSeconds = retryAfterSeconds;
+
+        final int resolvedThreadCount = ((threadCount > 0) ? threadCount : Runtime.getRuntime().availableProcessors());
+        final AtomicInteger threadIndex = new AtomicInteger(0);
+        final ThreadFactory threadFactory = (runnable) -> {
+            final Thread thread = new Thread(runnable, "ShareValidation-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        _executor = new ThreadPoolExecutor(resolvedThreadCount, resolvedThreadCount, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueDepth), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Queues the share for admission and returns its pending result.
+     *  Missing and malformed shares are rejected immediately on the calling thread; if the queue is full, the returned
+     *  result is OVERLOADED, unless the share is a block candidate, which is then admitted on the calling thread.
+     *  Callers that block on the result should do so via ShareValidationExecutor::getResult so that its timeout applies.
+     */
+    public CompletableFuture<ShareAdmissionResult> submit(final Json workerSubmitMessage) {
+        final Long shareKey = _shareAdmissionPipeline.calculateShareKey(workerSubmitMessage);
+        if (shareKey == null) {
+            return CompletableFuture.completedFuture(_shareAdmissionPipeline.admit(workerSubmitMessage));
+        }
+
+        if (_claimAbandonedAcceptance(shareKey, workerSubmitMessage.getString(0))) {
+            return CompletableFuture.completedFuture(ShareAdmissionResult.ACCEPTED);
+        }
+
+        final CompletableFuture<ShareAdmissionResult> future = new CompletableFuture<>();
+        final CompletableFuture<ShareAdmissionResult> inFlightFuture = _inFlightShares.putIfAbsent(shareKey, future);
+        if (inFlightFuture != null) {
+            _coalescedShareCount.increment();
+            return inFlightFuture.handle((shareAdmissionResult, exception) -> {
+                if (exception == null) { return _reportCoalescedResult(shareAdmissionResult); }
+                if (inFlightFuture.isCancelled()) { return ShareAdmissionResult.OVERLOADED; } // The first submitter stopped waiting; the share may be retried...
+                throw new CompletionException(exception);
+            });
+        }
+        future.whenComplete((shareAdmissionResult, exception) -> _inFlightShares.remove(shareKey, future)); // Includes cancellation...
+
+        try {
+            _executor.execute(() -> _admit(workerSubmitMessage, shareKey, future));
+        }
+        catch (final RejectedExecutionException exception) {
+            if (_shareAdmissionPipeline.isBlockCandidate(workerSubmitMessage)) { // Never turn away a block; admit it on the calling thread...
+                _admit(workerSubmitMessage, shareKey, future);
+            }
+            else {
+                _shareAdmissionPipeline.getStatistics().record(ShareAdmissionResult.OVERLOADED);
+                future.complete(ShareAdmissionResult.OVERLOADED);
+            }
+        }
+
+        return future;
+    }
+
+    /**
+     * Admits the share and waits for its result.
+     *  Returns OVERLOADED if the queue is full or if validation does not complete within the configured timeout.
+     */
+    public ShareAdmissionResult admit(final Json workerSubmitMessage) {
+        return this.getResult(this.submit(workerSubmitMessage));
+    }
+
+    /**
+     * Waits for the result of a share returned by ShareValidationExecutor::submit.
+     *  If validation does not complete within the configured timeout, the share is cancelled (it is not recorded if its
+     *  validation has not yet begun), the timeout is counted, and OVERLOADED is returned so that the share is retried.
+     */
+    public ShareAdmissionResult getResult(final Future<ShareAdmissionResult> pendingResult) {
+        try {
+            return pendingResult.get(_timeoutMs, TimeUnit.MILLISECONDS);
+        }
+        catch (final TimeoutException exception) {
+            pendingResult.cancel(false);
+            _shareAdmissionPipeline.getStatistics().recordTimeout();
+            return ShareAdmissionResult.OVERLOADED;
+        }
+        catch (final InterruptedException exception) {
+            pendingResult.cancel(false);
+            Thread.currentThread().interrupt();
+            return ShareAdmissionResult.OVERLOADED;
+        }
+        catch (final CancellationException exception) {
+            return ShareAdmissionResult.OVERLOADED;
+        }
+        catch (final Exception exception) {
+            Logger.debug("Unable to validate share.", exception);
+            return ShareAdmissionResult.INVALID_WORK;
+        }
+    }
+
+    /**
+     * Returns the number of seconds overloaded clients should wait before retrying.
+     */
+    public Integer getRetryAfterSeconds() {
+        return _retryAfterSeconds;
+    }
+
+    public Integer getQueuedShareCount() {
+        return _executor.getQueue().size();
+    }
+
+    public Integer getActiveThreadCount() {
+        return _executor.getActiveCount();
+    }
+
+    public Long getCoalescedShareCount() {
+        return _coalescedShareCount.sum();
+    }
+
+    /**
+     * Stops accepting shares; shares already queued are still validated.
+     */
+    public void shutdown() {
+        _executor.shutdown();
+    }
+
+    /**
+     * Waits up to timeoutMs for queued shares to be validated after ShareValidationExecutor::shutdown.
+     *  Returns true if every queued share was validated.
+     */
+    public Boolean awaitTermination(final Long timeoutMs) {
+        try {
+            return _executor.awaitTermination(timeoutMs, TimeUnit.MILLISECONDS);
+        }
+        catch (final InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.softwareverde.monetize.subscription;
+
+import com.softwareverde.bitcoin.server.module.stratum.BitcoinCoreStratumServer;
+import com.softwareverde.bitcoin.server.stratum.message.server.MinerSubscribeResponseMessage;
+import com.softwareverde.constable.bytearray.ByteArray;
+import com.softwareverde.json.Json;
+import com.softwareverde.monetize.share.ShareUtil;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Subscribes new miners to the stratum server and registers their subscriptions.
+ *  Shared by every front-end (the subscribe API and the binary work socket) so that miner ids are unique across them.
+ */
+public class MinerSubscriber {
+    public enum Status {
+        SUBSCRIBED, CLIENT_AT_CAPACITY, FAILED
+    }
+
+    public static class Subscription {
+        public final Status status;
+        public final Long minerId;
+        public final ByteArray subscriptionId;
+        public final ByteArray extraNonce1;
+        public final Integer extraNonce2ByteCount;
+        public final Json subscribeResponseJson;
+
+        protected Subscription(final Status status) {
+            this(status, null, null, null, null, null);
+        }
+
+        protected Subscription(final Status status, final Long minerId, final ByteArray subscriptionId, final ByteArray extraNonce1, final Integer extraNonce2ByteCount, final Json subscribeResponseJson) {
+            this.status = status;
+            this.minerId = minerId;
+            this.subscriptionId = subscriptionId;
+            this.extraNonce1 = extraNonce1;
+            this.extraNonce2ByteCount = extraNonce2ByteCount;
+            this.subscribeResponseJson = subscribeResponseJson;
+        }
+    }
+
+    protected static final Subscription CLIENT_AT_CAPACITY = new Subscription(Status.CLIENT_AT_CAPACITY);
+    protected static final Subscription FAILED = new Subscription(Status.FAILED);
+
+    protected final BitcoinCoreStratumServer _stratumServer;
+    protected final SubscriptionRegistry _subscriptionRegistry;
+    protected final AtomicLong _minerIdGenerator = new AtomicLong(0L);
+
+    public MinerSubscriber(final BitcoinCoreStratumServer stratumServer, final SubscriptionRegistry subscriptionRegistry) {
+        _stratumServer = stratumServer;
+        _subscriptionRegistry = subscriptionRegistry;
+    }
+
+    /**
+     * Subscribes a new miner on behalf of the client.
+     *  The returned Subscription's status is CLIENT_AT_CAPACITY if the client has reached its subscription cap, or FAILED
+     *  if the stratum server could not subscribe the miner; its other fields are only set once SUBSCRIBED.
+     */
+    public Subscription subscribe(final String clientAddress) {
+        if (_subscriptionRegistry.isClientAtCapacity(clientAddress)) {
+            return CLIENT_AT_CAPACITY;
+        }
+
+        final Long minerId = _minerIdGenerator.incrementAndGet();
+        final MinerSubscribeResponseMessage minerSubscribeResponseMessage = _stratumServer.subscribeMiner(minerId);
+        if (minerSubscribeResponseMessage == null) {
+            return FAILED;
+        }
+
+        final Json json = minerSubscribeResponseMessage.toJson();
+
+        final ByteArray extraNonce1;
+        final Integer extraNonce2ByteCount;
+        { // result: [subscriptions, extraNonce1, extraNonce2ByteCount]
+            final Json resultJson = json.get("result");
+            final String extraNonce1Hex = ((resultJson != null) ? resultJson.getString(1) : null);
+            extraNonce1 = (ShareUtil.isHexString(extraNonce1Hex, 0, 64) ? ByteArray.fromHexString(extraNonce1Hex) : null);
+            extraNonce2ByteCount = ((resultJson != null) ? resultJson.getInteger(2) : null);
+        }
+        if ( (extraNonce1 == null) || (extraNonce2ByteCount == null) || (extraNonce2ByteCount < 1) ) {
+            _stratumServer.unsubscribeMiner(minerId);
+            return FAILED;
+        }
+
+        final ByteArray subscriptionId = minerSubscribeResponseMessage.getSubscriptionId();
+        final Boolean wasAdded = _subscriptionRegistry.addSubscription(subscriptionId, minerId, extraNonce1, extraNonce2ByteCount, clientAddress);
+        if (! wasAdded) {
+            _stratumServer.unsubscribeMiner(minerId);
+            return CLIENT_AT_CAPACITY;
+        }
+
+        return new Subscription(Status.SUBSCRIBED, minerId, subscriptionId, extraNonce1, extraNonce2ByteCount, json);
+    }
+}
@@ -0,0 +1,287 @@
+package com.softwareverde.monetize.subscription;
+
+import com.softwareverde.constable.bytearray.ByteArray;
+import com.softwareverde.monetize.share.ShareUtil;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Maps stratum subscription ids to the miner ids they were created for.
+ *  Subscriptions expire once idle, and the registry is bounded both in total size (evicting approximately least-recently
+ *  used subscriptions via a second-chance queue) and per client address.
+ *  A bounded number of idle subscriptions are expired from the front of the queue whenever a subscription is added;
+ *  SubscriptionRegistry::expireIdleSubscriptions should also be run periodically to expire the rest.
+ *  Lookups and touches are lock-free.
+ */
+public class SubscriptionRegistry {
+    public interface RemovalCallback {
+        /**
+         * Invoked whenever a subscription is expired or evicted, so that its miner's state can be released.
+         */
+        void onSubscriptionRemoved(Long minerId);
+    }
+
+    public static final Integer DEFAULT_MAX_SUBSCRIPTION_COUNT = 65536;
+    public static final Long DEFAULT_MAX_IDLE_MS = (10L * 60L * 1000L);
+    public static final Integer DEFAULT_MAX_SUBSCRIPTIONS_PER_CLIENT = 16;
+
+    protected static final int MAX_EXPIRATION_SCAN_COUNT_PER_ADD = 16;
+    protected static final int MAX_SECOND_CHANCES_PER_EVICTION = 64;
+
+    protected static class Subscription {
+        public final long subscriptionKey;
+        public final long minerId;
+        public final ByteArray extraNonce1;
+        public final int extraNonce2ByteCount;
+        public final String clientAddress;
+        public volatile long lastUsedTimestamp;
+        public volatile boolean wasReferenced = false;
+
+        public Subscription(final long subscriptionKey, final long minerId, final ByteArray extraNonce1, final int extraNonce2ByteCount, final String clientAddress, final long timestamp) {
+            this.subscriptionKey = subscriptionKey;
+            this.minerId = minerId;
+            this.extraNonce1 = extraNonce1;
+            this.extraNonce2ByteCount = extraNonce2ByteCount;
+            this.clientAddress = clientAddress;
+            this.lastUsedTimestamp = timestamp;
+        }
+    }
+
+    /**
+     * Folds the subscription id into a long by XOR-ing its 8-byte big-endian chunks.
+     *  Subscription ids of up to 8 bytes map to distinct keys.
+     */
+    public static long toSubscriptionKey(final ByteArray subscriptionId) {
+        long subscriptionKey = 0L;
+        long chunk = 0L;
+        final int byteCount = subscriptionId.getByteCount();
+        for (int i = 0; i < byteCount; ++i) {
+            chunk = ((chunk << 8) | (subscriptionId.getByte(i) & 0xFFL));
+            if ((i % 8) == 7) {
+                subscriptionKey ^= chunk;
+                chunk = 0L;
+            }
+        }
+        if ((byteCount % 8) != 0) {
+            subscriptionKey ^= chunk;
+        }
+        return subscriptionKey;
+    }
+
+    /**
+     * Returns the subscription key for the hex-encoded subscription id, or null if the string is not valid hex.
+     *  Equivalent to SubscriptionRegistry::toSubscriptionKey(ByteArray.fromHexString(subscriptionIdHex)).
+     */
+    public static Long toSubscriptionKey(final String subscriptionIdHex) {
+        if (! ShareUtil.isHexString(subscriptionIdHex, 2, 256)) { return null; }
+
+        long subscriptionKey = 0L;
+        final int characterCount = subscriptionIdHex.length();
+        for (int i = 0; i < characterCount; i += 16) {
+            final int endIndex = Math.min(characterCount, (i + 16));
+            subscriptionKey ^= ShareUtil.parseHexLong(subscriptionIdHex, i, endIndex);
+        }
+        return subscriptionKey;
+    }
+
+    protected final Integer _maxSubscriptionCount;
+    protected final Long _maxIdleMs;
+    protected final Integer _maxSubscriptionsPerClient;
+    protected final RemovalCallback _removalCallback;
+
+    protected final ConcurrentHashMap<Long, Subscription> _subscriptions = new ConcurrentHashMap<>();
+    protected final ConcurrentLinkedQueue<Subscription> _evictionQueue = new ConcurrentLinkedQueue<>();
+    protected final ConcurrentHashMap<String, AtomicInteger> _clientSubscriptionCounts = new ConcurrentHashMap<>();
+
+    protected void _remove(final Subscription subscription) {
+        if (! _subscriptions.remove(subscription.subscriptionKey, subscription)) { return; }
+
+        if (subscription.clientAddress != null) {
+            _clientSubscriptionCounts.computeIfPresent(subscription.clientAddress, (clientAddress, count) -> (count.decrementAndGet() > 0 ? count : null));
+        }
+
+        if (_removalCallback != null) {
+            _removalCallback.onSubscriptionRemoved(subscription.minerId);
+        }
+    }
+
+    protected Boolean _isCurrent(final Subscription subscription) {
+        return (_subscriptions.get(subscription.subscriptionKey) == subscription);
+    }
+
+    /**
+     * Removes the idle subscriptions (and replaced entries) among the first maxScanCount entries of the eviction queue,
+     *  skipping past live subscriptions without reordering them.  Returns the number of subscriptions expired.
+     */
+    protected int _expireIdleSubscriptions(final long now, final int maxScanCount) {
+        int expiredCount = 0;
+        final Iterator<Subscription> iterator = _evictionQueue.iterator();
+        for (int i = 0; (i < maxScanCount) && iterator.hasNext(); ++i) {
+            final Subscription subscription = iterator.next();
+            final boolean isCurrent = _isCurrent(subscription);
+            final boolean isIdle = ((now - subscription.lastUsedTimestamp) > _maxIdleMs);
+            if ( isCurrent && (! isIdle) ) { continue; }
+
+            iterator.remove();
+            if (isCurrent) {
+                _remove(subscription);
+                expiredCount += 1;
+            }
+        }
+        return expiredCount;
+    }
+
+    protected void _evictLeastRecentlyUsedSubscription() {
+        int secondChanceCount = 0;
+        while (true) {
+            final Subscription subscription = _evictionQueue.poll();
+            if (subscription == null) { return; }
+            if (! _isCurrent(subscription)) { continue; }
+
+            if ( subscription.wasReferenced && (secondChanceCount < MAX_SECOND_CHANCES_PER_EVICTION) ) {
+                subscription.wasReferenced = false;
+                _evictionQueue.add(subscription);
+                secondChanceCount += 1;
+                continue;
+            }
+
+            _remove(subscription);
+            return;
+        }
+    }
+
+    public SubscriptionRegistry(final RemovalCallback removalCallback) {
+        this(DEFAULT_MAX_SUBSCRIPTION_COUNT, DEFAULT_MAX_IDLE_MS, DEFAULT_MAX_SUBSCRIPTIONS_PER_CLIENT, removalCallback);
+    }
+
+    public SubscriptionRegistry(final Integer maxSubscriptionCount, final Long maxIdleMs, final Integer maxSubscriptionsPerClient, final RemovalCallback removalCallback) {
+        _maxSubscriptionCount = maxSubscriptionCount;
+        _maxIdleMs = maxIdleMs;
+        _maxSubscriptionsPerClient = maxSubscriptionsPerClient;
+        _removalCallback = removalCallback;
+    }
+
+    /**
+     * Returns true if the client may not create any more subscriptions.
+     */
+    public Boolean isClientAtCapacity(final String clientAddress) {
+        if (clientAddress == null) { return false; }
+
+        final AtomicInteger count = _clientSubscriptionCounts.get(clientAddress);
+        if (count == null) { return false; }
+
+        return (count.get() >= _maxSubscriptionsPerClient);
+    }
+
+    /**
+     * Registers the subscription; the least recently used subscription is evicted if the registry is full.
+     *  extraNonce1 is the extraNonce assigned to the subscription by the stratum server, and extraNonce2ByteCount is the
+     *  exact length of the extraNonce2 its shares must be submitted with.
+     *  Returns false (and does not register the subscription) if the client has reached its subscription cap.
+     */
+    public Boolean addSubscription(final ByteArray subscriptionId, final Long minerId, final ByteArray extraNonce1, final Integer extraNonce2ByteCount, final String clientAddress) {
+        final long now = System.currentTimeMillis();
+        _expireIdleSubscriptions(now, MAX_EXPIRATION_SCAN_COUNT_PER_ADD);
+
+        if (clientAddress != null) {
+            final AtomicInteger count = _clientSubscriptionCounts.computeIfAbsent(clientAddress, (key) -> new AtomicInteger(0));
+            if (count.incrementAndGet() > _maxSubscriptionsPerClient) {
+                _clientSubscriptionCounts.computeIfPresent(clientAddress, (key, value) -> (value.decrementAndGet() > 0 ? value : null));
+                return false;
+            }
+        }
+
+        while (_subscriptions.size() >= _maxSubscriptionCount) {
+            final int subscriptionCount = _subscriptions.size();
+            _evictLeastRecentlyUsedSubscription();
+            if (_subscriptions.size() >= subscriptionCount) { break; } // Nothing left to evict.
+        }
+
+        final long subscriptionKey = SubscriptionRegistry.toSubscriptionKey(subscriptionId);
+        final Subscription subscription = new Subscription(subscriptionKey, minerId, extraNonce1, extraNonce2ByteCount, clientAddress, now);
+        final Subscription replacedSubscription = _subscriptions.put(subscriptionKey, subscription);
+        _evictionQueue.add(subscription);
+
+        if (replacedSubscription != null) {
+            if (replacedSubscription.clientAddress != null) {
+                _clientSubscriptionCounts.computeIfPresent(replacedSubscription.clientAddress, (key, value) -> (value.decrementAndGet() > 0 ? value : null));
+            }
+            if ( (_removalCallback != null) && (replacedSubscription.minerId != minerId) ) {
+                _removalCallback.onSubscriptionRemoved(replacedSubscription.minerId);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the minerId of the subscription and marks the subscription as recently used.
+     *  Returns null if the subscription does not exist or has expired.
+     */
+    public Long touchSubscription(final String subscriptionIdHex) {
+        final Long subscriptionKey = SubscriptionRegistry.toSubscriptionKey(subscriptionIdHex);
+        if (subscriptionKey == null) { return null; }
+
+        final Subscription subscription = _subscriptions.get(subscriptionKey);
+        if (subscription == null) { return null; }
+
+        final long now = System.currentTimeMillis();
+        if ((now - subscription.lastUsedTimestamp) > _maxIdleMs) { return null; }
+
+        subscription.lastUsedTimestamp = now;
+        subscription.wasReferenced = true;
+        return subscription.minerId;
+    }
+
+    /**
+     * Returns true if the subscription exists and has not expired.  The subscription is not marked as recently used.
+     */
+    public Boolean hasSubscription(final Long subscriptionKey) {
+        final Subscription subscription = _subscriptions.get(subscriptionKey);
+        if (subscription == null) { return false; }
+
+        return ((System.currentTimeMillis() - subscription.lastUsedTimestamp) <= _maxIdleMs);
+    }
+
+    /**
+     * Returns the extraNonce assigned to the subscription, or null if the subscription does not exist.
+     *  The subscription is not marked as recently used.
+     */
+    public ByteArray getExtraNonce1(final String subscriptionIdHex) {
+        final Long subscriptionKey = SubscriptionRegistry.toSubscriptionKey(subscriptionIdHex);
+        if (subscriptionKey == null) { return null; }
+
+        final Subscription subscription = _subscriptions.get(subscriptionKey);
+        if (subscription == null) { return null; }
+
+        return subscription.extraNonce1;
+    }
+
+    /**
+     * Returns the extraNonce2 byte count assigned to the subscription, or null if the subscription does not exist.
+     *  The subscription is not marked as recently used.
+     */
+    public Integer getExtraNonce2ByteCount(final String subscriptionIdHex) {
+        final Long subscriptionKey = SubscriptionRegistry.toSubscriptionKey(subscriptionIdHex);
+        if (subscriptionKey == null) { return null; }
+
+        final Subscription subscription = _subscriptions.get(subscriptionKey);
+        if (subscription == null) { return null; }
+
+        return subscription.extraNonce2ByteCount;
+    }
+
+    /**
+     * Removes every idle subscription and returns the number removed.
+     */
+    public Integer expireIdleSubscriptions() {
+        return _expireIdleSubscriptions(System.currentTimeMillis(), Integer.MAX_VALUE);
+    }
+
+    public Integer getSubscriptionCount() {
+        return _subscriptions.size();
+    }
+}
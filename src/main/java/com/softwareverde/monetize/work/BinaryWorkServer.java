@@ -0,0 +1,445 @@
+package com.softwareverde.monetize.work;
+
+import com.softwareverde.constable.bytearray.ByteArray;
+import com.softwareverde.json.Json;
+import com.softwareverde.monetize.credit.AccessTokenAuthority;
+import com.softwareverde.monetize.credit.ShareCreditLedger;
+import com.softwareverde.monetize.difficulty.VariableDifficultyEngine;
+import com.softwareverde.monetize.net.WebSocketServer;
+import com.softwareverde.monetize.share.ShareAdmissionResult;
+import com.softwareverde.monetize.share.ShareUtil;
+import com.softwareverde.monetize.share.ShareValidationExecutor;
+import com.softwareverde.monetize.subscription.MinerSubscriber;
+import com.softwareverde.monetize.subscription.SubscriptionRegistry;
+import com.softwareverde.util.HexUtil;
+import com.softwareverde.util.StringUtil;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Serves subscribe, work, and share submission over a persistent WebSocket with fixed-layout binary messages, so that
+ *  job pushes and share submissions require neither per-request HTTP overhead nor hex/JSON encoding on the wire.
+ *  Clients connect to "ws://host:port/api/v1/monetize/socket".  Each message's first byte is its type; all integers
+ *  are unsigned and big-endian, and byte strings are the raw bytes of the hex strings used by the JSON API.
+ *
+ *  Client to server:
+ *   0x01 SUBSCRIBE:     [u8 subscriptionIdLength][subscriptionId]
+ *                        A zero length creates a new subscription; otherwise the HTTP subscription is resumed.
+ *   0x02 SUBMIT:        [u32 sequenceNumber][u8 jobIdLength][jobId][u8 extraNonce2Length][extraNonce2][4 timestamp][4 nonce]
+ *
+ *  Server to client:
+ *   0x81 SUBSCRIBED:    [u8 subscriptionIdLength][subscriptionId][u8 extraNonce1Length][extraNonce1][u8 extraNonce2ByteCount][u64 resourcePrice]
+ *                        extraNonce2ByteCount is zero when a subscription is resumed; its original count applies.
+ *   0x82 NOTIFY:        [u8 workExponent][32 shareTarget][u8 jobIdLength][jobId][32 previousBlockHash][4 version][4 nBits]
+ *                        [4 timestamp][u8 cleanJobs][u16 coinbaseHeadLength][coinbaseHead][u16 coinbaseTailLength][coinbaseTail]
+ *                        [u8 merkleBranchCount][32 * merkleBranchCount merkleBranches]
+ *   0x83 SUBMIT_RESULT: [u32 sequenceNumber][u8 resultCode][u64 balance][u8 accessTokenLength][accessToken (ASCII)]
+ *   0x8F ERROR:         [u8 errorCode]
+ *
+ *  The socket is served over plain HTTP; TLS must be terminated in front of the server if pages are served via HTTPS.
+ */
+public class BinaryWorkServer extends WebSocketServer implements WorkPublisher.Listener {
+    public static final String PATH = "/api/v1/monetize/socket";
+    public static final Long HEARTBEAT_INTERVAL_MS = 15000L;
+    public static final Integer MAX_PENDING_SHARE_COUNT = 64;
+
+    public static final byte SUBSCRIBE = 0x01;
+    public static final byte SUBMIT = 0x02;
+    public static final byte SUBSCRIBED = (byte) 0x81;
+    public static final byte NOTIFY = (byte) 0x82;
+    public static final byte SUBMIT_RESULT = (byte) 0x83;
+    public static final byte ERROR = (byte) 0x8F;
+
+    public static final byte ERROR_BAD_MESSAGE = 0x01;
+    public static final byte ERROR_NOT_SUBSCRIBED = 0x02;
+    public static final byte ERROR_UNKNOWN_SUBSCRIPTION = 0x03;
+    public static final byte ERROR_TOO_MANY_SUBSCRIPTIONS = 0x04;
+    public static final byte ERROR_SUBSCRIBE_FAILED = 0x05;
+
+    protected static final Integer READ_BUFFER_BYTE_COUNT = 8192;
+    protected static final Long MAX_PENDING_WRITE_BYTE_COUNT = (256L * 1024L);
+    protected static final Integer MAX_MESSAGE_BYTE_COUNT = 256;
+    protected static final int HASH_BYTE_COUNT = 32;
+
+    protected static class Session {
+        public final long openedTimestamp;
+        public final AtomicInteger pendingShareCount = new AtomicInteger(0);
+        public volatile String subscriptionIdHex;
+        public volatile Long minerId;
+
+        public Session(final long openedTimestamp) {
+            this.openedTimestamp = openedTimestamp;
+        }
+    }
+
+    protected static class JobPayload {
+        public final Long jobId;
+        public final byte[] bytes;
+
+        public JobPayload(final Long jobId, final byte[] bytes) {
+            this.jobId = jobId;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * Returns the result code sent for the admission result; codes are fixed by the protocol and do not follow the enum's order.
+     */
+    protected static byte _getResultCode(final ShareAdmissionResult shareAdmissionResult) {
+        switch (shareAdmissionResult) {
+            case ACCEPTED: return 0x00;
+            case MISSING: return 0x01;
+            case MALFORMED: return 0x02;
+            case DUPLICATE: return 0x03;
+            case STALE_JOB: return 0x04;
+            case UNKNOWN_JOB: return 0x05;
+            case UNKNOWN_SUBSCRIPTION: return 0x06;
+            case INVALID_WORK: return 0x07;
+            case OVERLOADED: return 0x08;
+            default: return 0x7F;
+        }
+    }
+
+    protected static byte[] _decodeHex(final String hexString, final int minByteCount, final int maxByteCount) {
+        if (! ShareUtil.isHexString(hexString, (minByteCount * 2), (maxByteCount * 2))) { return null; }
+        return HexUtil.hexStringToByteArray(hexString);
+    }
+
+    protected final MinerSubscriber _minerSubscriber;
+    protected final SubscriptionRegistry _subscriptionRegistry;
+    protected final WorkResponseCache _workResponseCache;
+    protected final WorkPublisher _workPublisher;
+    protected final VariableDifficultyEngine _difficultyEngine;
+    protected final ShareValidationExecutor _shareValidationExecutor;
+    protected final ShareCreditLedger _shareCreditLedger;
+    protected final AccessTokenAuthority _accessTokenAuthority;
+    protected final Long _resourcePrice;
+
+    protected volatile JobPayload _jobPayload;
+    protected long _lastHeartbeatTimestamp = 0L;
+
+    /**
+     * Returns the job's portion of the NOTIFY message (everything after the share target), or null if the job is not
+     *  cached or its notify parameters are malformed.  The most recent job's payload is retained so that it is only
+     *  rendered once.
+     */
+    protected byte[] _getJobPayload(final Long jobId) {
+        final JobPayload jobPayload = _jobPayload;
+        if ( (jobPayload != null) && jobPayload.jobId.equals(jobId) ) { return jobPayload.bytes; }
+
+        // params: [jobId, previousBlockHash, coinbaseHead, coinbaseTail, [merkleBranches], version, nBits, timestamp, cleanJobs]
+        final Json notifyParameters = _workResponseCache.getJobParameters(jobId);
+        if (notifyParameters == null) { return null; }
+
+        final byte[] jobIdBytes = _decodeHex(notifyParameters.getString(0), 1, 8);
+        final byte[] previousBlockHash = _decodeHex(notifyParameters.getString(1), HASH_BYTE_COUNT, HASH_BYTE_COUNT);
+        final byte[] coinbaseHead = _decodeHex(notifyParameters.getString(2), 0, 0xFFFF);
+        final byte[] coinbaseTail = _decodeHex(notifyParameters.getString(3), 0, 0xFFFF);
+        final byte[] version = _decodeHex(notifyParameters.getString(5), 4, 4);
+        final byte[] nBits = _decodeHex(notifyParameters.getString(6), 4, 4);
+        final byte[] timestamp = _decodeHex(notifyParameters.getString(7), 4, 4);
+        final Boolean cleanJobs = notifyParameters.getBoolean(8);
+        if ( (jobIdBytes == null) || (previousBlockHash == null) || (coinbaseHead == null) || (coinbaseTail == null) || (version == null) || (nBits == null) || (timestamp == null) ) { return null; }
+
+        final Json merkleBranchesJson = notifyParameters.get(4);
+        final int merkleBranchCount = ((merkleBranchesJson != null) ? merkleBranchesJson.length() : 0);
+        if (merkleBranchCount > 0xFF) { return null; }
+
+        final ByteBuffer byteBuffer = ByteBuffer.allocate(1 + jobIdBytes.length + HASH_BYTE_COUNT + 12 + 1 + 2 + coinbaseHead.length + 2 + coinbaseTail.length + 1 + (merkleBranchCount * HASH_BYTE_COUNT));
+        byteBuffer.put((byte) jobIdBytes.length);
+        byteBuffer.put(jobIdBytes);
+        byteBuffer.put(previousBlockHash);
+        byteBuffer.put(version);
+        byteBuffer.put(nBits);
+        byteBuffer.put(timestamp);
+        byteBuffer.put((byte) ((cleanJobs != null) && cleanJobs ? 1 : 0));
+        byteBuffer.putShort((short) coinbaseHead.length);
+        byteBuffer.put(coinbaseHead);
+        byteBuffer.putShort((short) coinbaseTail.length);
+        byteBuffer.put(coinbaseTail);
+        byteBuffer.put((byte) merkleBranchCount);
+        for (int i = 0; i < merkleBranchCount; ++i) {
+            final byte[] merkleBranch = _decodeHex(merkleBranchesJson.getString(i), HASH_BYTE_COUNT, HASH_BYTE_COUNT);
+            if (merkleBranch == null) { return null; }
+            byteBuffer.put(merkleBranch);
+        }
+
+        final byte[] bytes = byteBuffer.array();
+        _jobPayload = new JobPayload(jobId, bytes);
+        return bytes;
+    }
+
+    /**
+     * Returns the rendered NOTIFY frame for the job and share difficulty, or null if the job is not cached.
+     */
+    protected byte[] _createNotifyFrame(final Long jobId, final Integer workExponent) {
+        final byte[] jobPayload = _getJobPayload(jobId);
+        if (jobPayload == null) { return null; }
+
+        final byte[] shareTarget = _difficultyEngine.getShareTarget(workExponent);
+        final ByteBuffer byteBuffer = ByteBuffer.allocate(2 + shareTarget.length + jobPayload.length);
+        byteBuffer.put(NOTIFY);
+        byteBuffer.put((byte) workExponent.intValue());
+        byteBuffer.put(shareTarget);
+        byteBuffer.put(jobPayload);
+        return WebSocketServer.createBinaryFrame(byteBuffer.array());
+    }
+
+    protected void _sendError(final Connection connection, final byte errorCode) {
+        this.send(connection, new byte[] { ERROR, errorCode });
+    }
+
+    protected void _sendCurrentJob(final Connection connection, final Long minerId) {
+        final Long currentJobId = _workPublisher.getCurrentJobId();
+        if (currentJobId == null) { return; }
+
+        final Integer workExponent = _difficultyEngine.issueJob(minerId, currentJobId);
+        final byte[] notifyFrame = _createNotifyFrame(currentJobId, workExponent);
+        if (notifyFrame != null) {
+            this.write(connection, ByteBuffer.wrap(notifyFrame));
+        }
+    }
+
+    protected void _sendSubmitResult(final Connection connection, final Session session, final int sequenceNumber, final Long jobId, final ShareAdmissionResult shareAdmissionResult) {
+        final Long minerId = session.minerId;
+
+        final Long balance;
+        if (shareAdmissionResult.isAccepted()) {
+            final Integer workExponent = _difficultyEngine.getIssuedWorkExponent(minerId, jobId);
+            balance = ((workExponent != null) ? _shareCreditLedger.credit(minerId, (1L << workExponent)) : _shareCreditLedger.getBalance(minerId));
+        }
+        else {
+            balance = _shareCreditLedger.getBalance(minerId);
+        }
+
+        final byte[] accessToken = StringUtil.stringToBytes(_accessTokenAuthority.createToken(minerId));
+        final ByteBuffer byteBuffer = ByteBuffer.allocate(1 + 4 + 1 + 8 + 1 + accessToken.length);
+        byteBuffer.put(SUBMIT_RESULT);
+        byteBuffer.putInt(sequenceNumber);
+        byteBuffer.put(_getResultCode(shareAdmissionResult));
+        byteBuffer.putLong(balance);
+        byteBuffer.put((byte) accessToken.length);
+        byteBuffer.put(accessToken);
+        this.send(connection, byteBuffer.array());
+    }
+
+    protected void _onSubscribe(final Connection connection, final Session session, final ByteBuffer message) {
+        final int subscriptionIdByteCount = (message.get() & 0xFF);
+        if (message.remaining() != subscriptionIdByteCount) {
+            _sendError(connection, ERROR_BAD_MESSAGE);
+            this.close(connection);
+            return;
+        }
+
+        final byte[] subscriptionId;
+        final byte[] extraNonce1;
+        final int extraNonce2ByteCount;
+        final Long minerId;
+        if (subscriptionIdByteCount == 0) {
+            final MinerSubscriber.Subscription subscription = _minerSubscriber.subscribe(connection.getRemoteAddress());
+            if (subscription.status != MinerSubscriber.Status.SUBSCRIBED) {
+                _sendError(connection, (subscription.status == MinerSubscriber.Status.CLIENT_AT_CAPACITY ? ERROR_TOO_MANY_SUBSCRIPTIONS : ERROR_SUBSCRIBE_FAILED));
+                return;
+            }
+
+            subscriptionId = subscription.subscriptionId.getBytes();
+            extraNonce1 = subscription.extraNonce1.getBytes();
+            extraNonce2ByteCount = ((subscription.extraNonce2ByteCount != null) ? subscription.extraNonce2ByteCount : 0);
+            minerId = subscription.minerId;
+        }
+        else {
+            subscriptionId = new byte[subscriptionIdByteCount];
+            message.get(subscriptionId);
+
+            final String subscriptionIdHex = HexUtil.toHexString(subscriptionId);
+            minerId = _subscriptionRegistry.touchSubscription(subscriptionIdHex);
+            final ByteArray registeredExtraNonce1 = _subscriptionRegistry.getExtraNonce1(subscriptionIdHex);
+            if ( (minerId == null) || (registeredExtraNonce1 == null) ) {
+                _sendError(connection, ERROR_UNKNOWN_SUBSCRIPTION);
+                return;
+            }
+
+            extraNonce1 = registeredExtraNonce1.getBytes();
+            extraNonce2ByteCount = 0;
+        }
+
+        session.subscriptionIdHex = HexUtil.toHexString(subscriptionId);
+        session.minerId = minerId;
+
+        final ByteBuffer byteBuffer = ByteBuffer.allocate(1 + 1 + subscriptionId.length + 1 + extraNonce1.length + 1 + 8);
+        byteBuffer.put(SUBSCRIBED);
+        byteBuffer.put((byte) subscriptionId.length);
+        byteBuffer.put(subscriptionId);
+        byteBuffer.put((byte) extraNonce1.length);
+        byteBuffer.put(extraNonce1);
+        byteBuffer.put((byte) extraNonce2ByteCount);
+        byteBuffer.putLong(_resourcePrice);
+        this.send(connection, byteBuffer.array());
+
+        _sendCurrentJob(connection, minerId);
+    }
+
+    protected void _onSubmit(final Connection connection, final Session session, final ByteBuffer message) {
+        if (session.minerId == null) {
+            _sendError(connection, ERROR_NOT_SUBSCRIBED);
+            return;
+        }
+
+        final int sequenceNumber;
+        final byte[] jobIdBytes;
+        final byte[] extraNonce2;
+        final byte[] timestamp = new byte[4];
+        final byte[] nonce = new byte[4];
+        { // [u32 sequenceNumber][u8 jobIdLength][jobId][u8 extraNonce2Length][extraNonce2][4 timestamp][4 nonce]
+            if (message.remaining() < 5) {
+                _sendError(connection, ERROR_BAD_MESSAGE);
+                return;
+            }
+            sequenceNumber = message.getInt();
+
+            final int jobIdByteCount = (message.get() & 0xFF);
+            if ( (jobIdByteCount < 1) || (jobIdByteCount > 8) || (message.remaining() < (jobIdByteCount + 1)) ) {
+                _sendError(connection, ERROR_BAD_MESSAGE);
+                return;
+            }
+            jobIdBytes = new byte[jobIdByteCount];
+            message.get(jobIdBytes);
+
+            final int extraNonce2ByteCount = (message.get() & 0xFF);
+            if ( (extraNonce2ByteCount < 1) || (message.remaining() != (extraNonce2ByteCount + timestamp.length + nonce.length)) ) {
+                _sendError(connection, ERROR_BAD_MESSAGE);
+                return;
+            }
+            extraNonce2 = new byte[extraNonce2ByteCount];
+            message.get(extraNonce2);
+            message.get(timestamp);
+            message.get(nonce);
+        }
+
+        long jobId = 0L;
+        for (final byte jobIdByte : jobIdBytes) {
+            jobId = ((jobId << 8) | (jobIdByte & 0xFF));
+        }
+
+        // The stratum server expects the job id exactly as it was issued, so the cached job's id is used rather than re-encoding it.
+        final Json notifyParameters = _workResponseCache.getJobParameters(jobId);
+        if (notifyParameters == null) {
+            _sendSubmitResult(connection, session, sequenceNumber, jobId, ShareAdmissionResult.STALE_JOB);
+            return;
+        }
+
+        if (session.pendingShareCount.incrementAndGet() > MAX_PENDING_SHARE_COUNT) {
+            session.pendingShareCount.decrementAndGet();
+            _sendSubmitResult(connection, session, sequenceNumber, jobId, ShareAdmissionResult.OVERLOADED);
+            return;
+        }
+
+        // The admission pipeline (and the stratum server) operate on mining.submit parameters...
+        final Json workerSubmitMessage = new Json(true);
+        workerSubmitMessage.add(session.subscriptionIdHex);
+        workerSubmitMessage.add(notifyParameters.getString(0));
+        workerSubmitMessage.add(HexUtil.toHexString(extraNonce2));
+        workerSubmitMessage.add(HexUtil.toHexString(timestamp));
+        workerSubmitMessage.add(HexUtil.toHexString(nonce));
+
+        final long submittedJobId = jobId;
+        _shareValidationExecutor.submit(workerSubmitMessage).whenComplete((shareAdmissionResult, exception) -> {
+            session.pendingShareCount.decrementAndGet();
+            _sendSubmitResult(connection, session, sequenceNumber, submittedJobId, ((shareAdmissionResult != null) ? shareAdmissionResult : ShareAdmissionResult.INVALID_WORK));
+        });
+    }
+
+    @Override
+    protected void _onOpen(final Connection connection) {
+        connection.setState(new Session(System.currentTimeMillis()));
+    }
+
+    @Override
+    protected void _onMessage(final Connection connection, final byte[] payload) {
+        final Session session = (Session) connection.getState();
+        if (payload.length < 1) {
+            _sendError(connection, ERROR_BAD_MESSAGE);
+            return;
+        }
+
+        final ByteBuffer message = ByteBuffer.wrap(payload);
+        final byte messageType = message.get();
+        if ( (messageType == SUBSCRIBE) && (payload.length >= 2) ) {
+            _onSubscribe(connection, session, message);
+        }
+        else if (messageType == SUBMIT) {
+            _onSubmit(connection, session, message);
+        }
+        else {
+            _sendError(connection, ERROR_BAD_MESSAGE);
+        }
+    }
+
+    @Override
+    protected void _onClose(final Connection connection) { }
+
+    @Override
+    protected void _onTick(final long now) {
+        if ((now - _lastHeartbeatTimestamp) < HEARTBEAT_INTERVAL_MS) { return; }
+        _lastHeartbeatTimestamp = now;
+
+        for (final Connection connection : _openConnections) {
+            final Session session = (Session) connection.getState();
+
+            if (session.subscriptionIdHex == null) { // Connections must subscribe promptly...
+                if ((now - session.openedTimestamp) > HEARTBEAT_INTERVAL_MS) {
+                    this.close(connection);
+                }
+                continue;
+            }
+
+            // An open socket keeps its subscription alive; sockets for expired subscriptions are closed.
+            final Long minerId = _subscriptionRegistry.touchSubscription(session.subscriptionIdHex);
+            if (minerId == null) {
+                _sendError(connection, ERROR_UNKNOWN_SUBSCRIPTION);
+                this.close(connection);
+            }
+        }
+
+        _pingAll();
+    }
+
+    public BinaryWorkServer(final Integer port, final Integer maxConnectionCount, final MinerSubscriber minerSubscriber, final SubscriptionRegistry subscriptionRegistry, final WorkResponseCache workResponseCache, final WorkPublisher workPublisher, final VariableDifficultyEngine difficultyEngine, final ShareValidationExecutor shareValidationExecutor, final ShareCreditLedger shareCreditLedger, final AccessTokenAuthority accessTokenAuthority, final Long resourcePrice) {
+        super(port, maxConnectionCount, READ_BUFFER_BYTE_COUNT, MAX_PENDING_WRITE_BYTE_COUNT, PATH, MAX_MESSAGE_BYTE_COUNT);
+        _minerSubscriber = minerSubscriber;
+        _subscriptionRegistry = subscriptionRegistry;
+        _workResponseCache = workResponseCache;
+        _workPublisher = workPublisher;
+        _difficultyEngine = difficultyEngine;
+        _shareValidationExecutor = shareValidationExecutor;
+        _shareCreditLedger = shareCreditLedger;
+        _accessTokenAuthority = accessTokenAuthority;
+        _resourcePrice = resourcePrice;
+    }
+
+    @Override
+    public void onNewJob(final Long jobId) {
+        if (! _workResponseCache.isJobCached(jobId)) { return; }
+
+        // Each frame is rendered once per difficulty and its bytes are shared by every socket at that difficulty.
+        final HashMap<Integer, byte[]> notifyFrames = new HashMap<>();
+        for (final Connection connection : _openConnections) {
+            final Session session = (Session) connection.getState();
+            final Long minerId = session.minerId;
+            if (minerId == null) { continue; }
+
+            final Integer workExponent = _difficultyEngine.issueJob(minerId, jobId);
+
+            byte[] notifyFrame = notifyFrames.get(workExponent);
+            if (notifyFrame == null) {
+                notifyFrame = _createNotifyFrame(jobId, workExponent);
+                if (notifyFrame == null) { return; } // The job was evicted from the cache.
+                notifyFrames.put(workExponent, notifyFrame);
+            }
+
+            this.write(connection, ByteBuffer.wrap(notifyFrame));
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.softwareverde.monetize.work;
+
+import com.softwareverde.bitcoin.server.module.stratum.BitcoinCoreStratumServer;
+import com.softwareverde.bitcoin.server.stratum.message.server.MinerNotifyMessage;
+import com.softwareverde.logging.Logger;
+import com.softwareverde.monetize.share.JobRegistry;
+import com.softwareverde.util.Util;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Watches the stratum server for new jobs and notifies its listeners as soon as one is available.
+ *  BitcoinCoreStratumServer does not announce new jobs, so the publisher requests work for its own (reserved) miner
+ *  on a short interval and publishes whenever the job id changes.
+ */
+public class WorkPublisher {
+    public interface Listener {
+        void onNewJob(Long jobId);
+    }
+
+    public static final Long PUBLISHER_MINER_ID = 0L; // Miner ids issued by the SubscribeApiServlet start at 1.
+    public static final Long DEFAULT_POLL_INTERVAL_MS = 1000L;
+
+    protected final BitcoinCoreStratumServer _stratumServer;
+    protected final WorkResponseCache _workResponseCache;
+    protected final JobRegistry _jobRegistry;
+    protected final Long _pollIntervalMs;
+    protected final ConcurrentLinkedQueue<Listener> _listeners = new ConcurrentLinkedQueue<>();
+
+    protected volatile Long _currentJobId = null;
+    protected Thread _thread;
+
+    protected void _publish(final Long jobId) {
+        _currentJobId = jobId;
+        for (final Listener listener : _listeners) {
+            try {
+                listener.onNewJob(jobId);
+            }
+            catch (final Exception exception) {
+                Logger.warn("Error publishing work.", exception);
+            }
+        }
+    }
+
+    protected void _pollForWork() {
+        final MinerNotifyMessage minerNotifyMessage = _stratumServer.getMinerWork(PUBLISHER_MINER_ID, true);
+        if (minerNotifyMessage == null) { return; }
+
+        final Long jobId = _workResponseCache.cacheWork(minerNotifyMessage);
+        if (jobId == null) { return; }
+
+        _jobRegistry.recordJob(jobId);
+        if (! Util.areEqual(jobId, _currentJobId)) {
+            _publish(jobId);
+        }
+    }
+
+    protected void _run() {
+        final Thread thread = Thread.currentThread();
+        _stratumServer.subscribeMiner(PUBLISHER_MINER_ID);
+
+        while (! thread.isInterrupted()) {
+            try {
+                _pollForWork();
+            }
+            catch (final Exception exception) {
+                Logger.debug("Unable to poll for work: " + exception.getMessage());
+            }
+
+            try {
+                Thread.sleep(_pollIntervalMs);
+            }
+            catch (final InterruptedException exception) {
+                break;
+            }
+        }
+    }
+
+    public WorkPublisher(final BitcoinCoreStratumServer stratumServer, final WorkResponseCache workResponseCache, final JobRegistry jobRegistry, final Long pollIntervalMs) {
+        _stratumServer = stratumServer;
+        _workResponseCache = workResponseCache;
+        _jobRegistry = jobRegistry;
+        _pollIntervalMs = pollIntervalMs;
+    }
+
+    public void addListener(final Listener listener) {
+        _listeners.add(listener);
+    }
+
+    /**
+     * Returns the most recently published job id, or null if no work has been published yet.
+     */
+    public Long getCurrentJobId() {
+        return _currentJobId;
+    }
+
+    public synchronized void start() {
+        if (_thread != null) { return; }
+
+        _thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                _run();
+            }
+        });
+        _thread.setName("Work Publisher");
+        _thread.setDaemon(true);
+        _thread.start();
+    }
+
+    public synchronized void stop() {
+        if (_thread == null) { return; }
+
+        _thread.interrupt();
+        try {
+            _thread.join(5000L);
+        }
+        catch (final InterruptedException exception) { }
+
+        _thread = null;
+    }
+}
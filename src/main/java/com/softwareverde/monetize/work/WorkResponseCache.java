@@ -0,0 +1,166 @@
+package com.softwareverde.monetize.work;
+
+import com.softwareverde.bitcoin.server.stratum.message.server.MinerNotifyMessage;
+import com.softwareverde.bitcoin.server.stratum.task.StratumUtil;
+import com.softwareverde.constable.bytearray.ByteArray;
+import com.softwareverde.cryptography.hash.sha256.Sha256Hash;
+import com.softwareverde.json.Json;
+import com.softwareverde.monetize.share.ShareUtil;
+import com.softwareverde.util.StringUtil;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Caches the rendered get-work response for each stratum job so that a poll only requires concatenating the job's
+ *  pre-rendered bytes with the miner's share-difficulty fragment.
+ *  The job's notify parameters are also retained so that shares mined against it can be verified, along with a job key
+ *  derived from the job's contents which identifies the job's shares across restarts (see WorkResponseCache::getJobKey).
+ *  Only the most recent jobs are retained; a job is evicted once maxJobCount newer jobs have been cached.
+ */
+public class WorkResponseCache {
+    public static final Integer DEFAULT_MAX_JOB_COUNT = 32;
+
+    protected static final byte[] RESPONSE_PREFIX = StringUtil.stringToBytes("{\"wasSuccess\":1,\"errorCode\":null,\"errorMessage\":null,\"result\":");
+    protected static final byte[] RESPONSE_SUFFIX = StringUtil.stringToBytes("}}");
+
+    /**
+     * Returns the first 8 bytes of the SHA-256 hash of the rendered mining.notify message, as a big-endian long.
+     */
+    protected static long _calculateJobKey(final byte[] messageBytes) {
+        final MessageDigest messageDigest;
+        try {
+            messageDigest = MessageDigest.getInstance("SHA-256");
+        }
+        catch (final NoSuchAlgorithmException exception) {
+            throw new RuntimeException(exception);
+        }
+
+        final byte[] digestBytes = messageDigest.digest(messageBytes);
+        long jobKey = 0L;
+        for (int i = 0; i < 8; ++i) {
+            jobKey = ((jobKey << 8) | (digestBytes[i] & 0xFFL));
+        }
+        return jobKey;
+    }
+
+    protected final Integer _maxJobCount;
+    protected final ConcurrentHashMap<Long, byte[]> _jobResponsePrefixes = new ConcurrentHashMap<>();
+    protected final ConcurrentHashMap<Long, Json> _jobParameters = new ConcurrentHashMap<>();
+    protected final ConcurrentHashMap<Long, Long> _jobKeys = new ConcurrentHashMap<>();
+    protected final ConcurrentLinkedQueue<Long> _jobIds = new ConcurrentLinkedQueue<>();
+    protected final ConcurrentHashMap<String, byte[]> _shareDifficultyFragments = new ConcurrentHashMap<>();
+
+    public WorkResponseCache() {
+        this(DEFAULT_MAX_JOB_COUNT);
+    }
+
+    public WorkResponseCache(final Integer maxJobCount) {
+        _maxJobCount = maxJobCount;
+    }
+
+    /**
+     * Returns the job id of the mining.notify message, or null if it is not a valid hex-encoded id.
+     */
+    public static Long getJobId(final Json minerNotifyMessageJson) {
+        final Json parametersJson = minerNotifyMessageJson.get("params");
+        final String jobIdHex = parametersJson.getString(0);
+        if (! ShareUtil.isHexString(jobIdHex, 2, 16)) { return null; }
+
+        return ShareUtil.parseHexLong(jobIdHex);
+    }
+
+    /**
+     * Caches the work provided by the stratum server, if its job is not already cached, and returns its job id.
+     *  The message's previousBlockHash is swabbed into the byte order expected by browser miners.
+     *  Returns null if the message does not have a valid job id.
+     */
+    public Long cacheWork(final MinerNotifyMessage minerNotifyMessage) {
+        final Long jobId = WorkResponseCache.getJobId(minerNotifyMessage.toJson());
+        if (jobId == null) { return null; }
+        if (_jobResponsePrefixes.containsKey(jobId)) { return jobId; }
+
+        { // Un-swab the previousBlockHash...
+            final Sha256Hash unSwabbedBlockHash = minerNotifyMessage.getLittleEndianPreviousBlockHash();
+            final ByteArray swabbedBytes = StratumUtil.swabBytes(unSwabbedBlockHash);
+            final Sha256Hash swabbedBlockHash = Sha256Hash.wrap(swabbedBytes.getBytes());
+            minerNotifyMessage.setLittleEndianPreviousBlockHash(swabbedBlockHash);
+        }
+
+        this.cacheJob(jobId, minerNotifyMessage.toJson());
+        return jobId;
+    }
+
+    /**
+     * Caches the (already swabbed) mining.notify message for the job.
+     *  The message must not contain the shareDifficulty, which is appended per miner.
+     */
+    public void cacheJob(final Long jobId, final Json minerNotifyMessageJson) {
+        final byte[] messageBytes = StringUtil.stringToBytes(minerNotifyMessageJson.toString());
+        final int messageByteCount = (messageBytes.length - 1); // Exclude the message's closing brace...
+
+        final byte[] responsePrefix = new byte[RESPONSE_PREFIX.length + messageByteCount + 1];
+        System.arraycopy(RESPONSE_PREFIX, 0, responsePrefix, 0, RESPONSE_PREFIX.length);
+        System.arraycopy(messageBytes, 0, responsePrefix, RESPONSE_PREFIX.length, messageByteCount);
+        responsePrefix[responsePrefix.length - 1] = ',';
+
+        _jobParameters.put(jobId, minerNotifyMessageJson.get("params"));
+        _jobKeys.put(jobId, _calculateJobKey(messageBytes));
+        if (_jobResponsePrefixes.put(jobId, responsePrefix) == null) {
+            _jobIds.add(jobId);
+        }
+
+        while (_jobResponsePrefixes.size() > _maxJobCount) {
+            final Long oldestJobId = _jobIds.poll();
+            if (oldestJobId == null) { break; }
+            _jobResponsePrefixes.remove(oldestJobId);
+            _jobParameters.remove(oldestJobId);
+            _jobKeys.remove(oldestJobId);
+        }
+    }
+
+    /**
+     * Returns the rendered get-work response for the job and share difficulty, or null if the job is not cached.
+     *  shareDifficultyHex is the hex-encoded share difficulty sent to the miner.
+     */
+    public byte[] getResponse(final Long jobId, final String shareDifficultyHex) {
+        final byte[] responsePrefix = _jobResponsePrefixes.get(jobId);
+        if (responsePrefix == null) { return null; }
+
+        byte[] shareDifficultyFragment = _shareDifficultyFragments.get(shareDifficultyHex);
+        if (shareDifficultyFragment == null) {
+            shareDifficultyFragment = StringUtil.stringToBytes("\"shareDifficulty\":\"" + shareDifficultyHex + "\"");
+            _shareDifficultyFragments.putIfAbsent(shareDifficultyHex, shareDifficultyFragment);
+        }
+
+        final byte[] response = new byte[responsePrefix.length + shareDifficultyFragment.length + RESPONSE_SUFFIX.length];
+        System.arraycopy(responsePrefix, 0, response, 0, responsePrefix.length);
+        System.arraycopy(shareDifficultyFragment, 0, response, responsePrefix.length, shareDifficultyFragment.length);
+        System.arraycopy(RESPONSE_SUFFIX, 0, response, (responsePrefix.length + shareDifficultyFragment.length), RESPONSE_SUFFIX.length);
+        return response;
+    }
+
+    /**
+     * Returns the (swabbed) mining.notify "params" of the job, or null if the job is not cached.
+     *  The returned Json must not be modified.
+     */
+    public Json getJobParameters(final Long jobId) {
+        return _jobParameters.get(jobId);
+    }
+
+    /**
+     * Returns the key under which the job's shares are recorded as spent, or null if the job is not cached.
+     *  Stratum job ids restart with the stratum server, so the key is derived from the job's entire mining.notify message:
+     *  a job re-issued with identical contents (whose shares would therefore hash identically) has the same key after a
+     *  restart, whereas a different job that reuses the id does not.
+     */
+    public Long getJobKey(final Long jobId) {
+        return _jobKeys.get(jobId);
+    }
+
+    public Boolean isJobCached(final Long jobId) {
+        return _jobResponsePrefixes.containsKey(jobId);
+    }
+}
@@ -0,0 +1,227 @@
+package com.softwareverde.monetize.work;
+
+import com.softwareverde.monetize.difficulty.VariableDifficultyEngine;
+import com.softwareverde.monetize.net.SelectorServer;
+import com.softwareverde.monetize.subscription.SubscriptionRegistry;
+import com.softwareverde.util.StringUtil;
+
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pushes new stratum jobs to browser miners via Server-Sent Events.
+ *  Clients connect with "GET /api/v1/monetize/work-stream?subscriptionId=..."; each "work" event's data is identical to
+ *  the get-work API's response.  Connections are served by a single selector thread, so idle streams hold no threads.
+ *  The stream is served over plain HTTP; TLS must be terminated in front of the server if pages are served via HTTPS.
+ */
+public class WorkStreamServer extends SelectorServer implements WorkPublisher.Listener {
+    public static final String PATH = "/api/v1/monetize/work-stream";
+    public static final Long HEARTBEAT_INTERVAL_MS = 15000L;
+
+    protected static final Integer READ_BUFFER_BYTE_COUNT = 2048;
+    protected static final Long MAX_PENDING_WRITE_BYTE_COUNT = (256L * 1024L);
+
+    protected static final byte[] STREAM_HEADERS = StringUtil.stringToBytes(
+        "HTTP/1.1 200 OK\r\n" +
+        "Content-Type: text/event-stream\r\n" +
+        "Cache-Control: no-cache\r\n" +
+        "Connection: keep-alive\r\n" +
+        "Access-Control-Allow-Origin: *\r\n" +
+        "X-Accel-Buffering: no\r\n" +
+        "\r\n"
+    );
+    protected static final byte[] BAD_REQUEST_RESPONSE = StringUtil.stringToBytes("HTTP/1.1 400 Bad Request\r\nContent-Length: 0\r\nConnection: close\r\nAccess-Control-Allow-Origin: *\r\n\r\n");
+    protected static final byte[] NOT_FOUND_RESPONSE = StringUtil.stringToBytes("HTTP/1.1 404 Not Found\r\nContent-Length: 0\r\nConnection: close\r\n\r\n");
+    protected static final byte[] HEARTBEAT = StringUtil.stringToBytes(": heartbeat\n\n");
+    protected static final byte[] EVENT_PREFIX = StringUtil.stringToBytes("event: work\ndata: ");
+    protected static final byte[] EVENT_SUFFIX = StringUtil.stringToBytes("\n\n");
+
+    protected static class Stream {
+        public final String subscriptionIdHex;
+        public final Long minerId;
+
+        public Stream(final String subscriptionIdHex, final Long minerId) {
+            this.subscriptionIdHex = subscriptionIdHex;
+            this.minerId = minerId;
+        }
+    }
+
+    protected static int _indexOfHeaderTerminator(final ByteBuffer buffer) {
+        final int limit = buffer.limit();
+        for (int i = buffer.position(); (i + 3) < limit; ++i) {
+            if ( (buffer.get(i) == '\r') && (buffer.get(i + 1) == '\n') && (buffer.get(i + 2) == '\r') && (buffer.get(i + 3) == '\n') ) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    protected static String _getQueryParameter(final String query, final String parameterName) {
+        if (query == null) { return null; }
+
+        for (final String parameter : query.split("&")) {
+            final int separatorIndex = parameter.indexOf('=');
+            if (separatorIndex < 0) { continue; }
+
+            final String key = parameter.substring(0, separatorIndex);
+            if (! key.equals(parameterName)) { continue; }
+
+            try {
+                return URLDecoder.decode(parameter.substring(separatorIndex + 1), "UTF-8");
+            }
+            catch (final Exception exception) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    protected final SubscriptionRegistry _subscriptionRegistry;
+    protected final WorkResponseCache _workResponseCache;
+    protected final WorkPublisher _workPublisher;
+    protected final VariableDifficultyEngine _difficultyEngine;
+    protected final Set<Connection> _streams = ConcurrentHashMap.newKeySet();
+
+    protected long _lastHeartbeatTimestamp = 0L;
+
+    /**
+     * Returns the rendered "work" event for the job and share difficulty, or null if the job is not cached.
+     */
+    protected byte[] _createWorkEvent(final Long jobId, final Integer workExponent) {
+        final byte[] response = _workResponseCache.getResponse(jobId, _difficultyEngine.getShareTargetHex(workExponent));
+        if (response == null) { return null; }
+
+        final byte[] event = new byte[EVENT_PREFIX.length + response.length + EVENT_SUFFIX.length];
+        System.arraycopy(EVENT_PREFIX, 0, event, 0, EVENT_PREFIX.length);
+        System.arraycopy(response, 0, event, EVENT_PREFIX.length, response.length);
+        System.arraycopy(EVENT_SUFFIX, 0, event, (EVENT_PREFIX.length + response.length), EVENT_SUFFIX.length);
+        return event;
+    }
+
+    protected void _openStream(final Connection connection, final String requestLine) {
+        // Request-Line: GET /api/v1/monetize/work-stream?subscriptionId=... HTTP/1.1
+        final String[] requestLineParts = requestLine.split(" ");
+        if ( (requestLineParts.length < 2) || (! requestLineParts[0].equals("GET")) ) {
+            this.write(connection, ByteBuffer.wrap(BAD_REQUEST_RESPONSE));
+            this.closeAfterFlush(connection);
+            return;
+        }
+
+        final String target = requestLineParts[1];
+        final int queryIndex = target.indexOf('?');
+        final String path = (queryIndex < 0 ? target : target.substring(0, queryIndex));
+        final String query = (queryIndex < 0 ? null : target.substring(queryIndex + 1));
+        if (! path.equals(PATH)) {
+            this.write(connection, ByteBuffer.wrap(NOT_FOUND_RESPONSE));
+            this.closeAfterFlush(connection);
+            return;
+        }
+
+        final String subscriptionIdHex = _getQueryParameter(query, "subscriptionId");
+        final Long minerId = _subscriptionRegistry.touchSubscription(subscriptionIdHex);
+        if (minerId == null) {
+            this.write(connection, ByteBuffer.wrap(BAD_REQUEST_RESPONSE));
+            this.closeAfterFlush(connection);
+            return;
+        }
+
+        connection.setState(new Stream(subscriptionIdHex, minerId));
+        this.write(connection, ByteBuffer.wrap(STREAM_HEADERS));
+        _streams.add(connection);
+
+        final Long currentJobId = _workPublisher.getCurrentJobId();
+        if (currentJobId != null) {
+            final Integer workExponent = _difficultyEngine.issueJob(minerId, currentJobId);
+            final byte[] workEvent = _createWorkEvent(currentJobId, workExponent);
+            if (workEvent != null) {
+                this.write(connection, ByteBuffer.wrap(workEvent));
+            }
+        }
+    }
+
+    @Override
+    protected void _onConnect(final Connection connection) { }
+
+    @Override
+    protected void _onData(final Connection connection, final ByteBuffer buffer) {
+        if (connection.getState() != null) { // Streams do not accept further input...
+            buffer.position(buffer.limit());
+            return;
+        }
+
+        final int headerTerminatorIndex = _indexOfHeaderTerminator(buffer);
+        if (headerTerminatorIndex < 0) { return; } // Wait for the rest of the request...
+
+        final int requestByteCount = (headerTerminatorIndex - buffer.position());
+        final byte[] requestBytes = new byte[requestByteCount];
+        buffer.get(requestBytes);
+        buffer.position(buffer.limit());
+
+        final String request = new String(requestBytes, StandardCharsets.ISO_8859_1);
+        final int requestLineEndIndex = request.indexOf("\r\n");
+        final String requestLine = (requestLineEndIndex < 0 ? request : request.substring(0, requestLineEndIndex));
+        _openStream(connection, requestLine);
+    }
+
+    @Override
+    protected void _onDisconnect(final Connection connection) {
+        _streams.remove(connection);
+    }
+
+    @Override
+    protected void _onTick(final long now) {
+        if ((now - _lastHeartbeatTimestamp) < HEARTBEAT_INTERVAL_MS) { return; }
+        _lastHeartbeatTimestamp = now;
+
+        for (final Connection connection : _streams) {
+            final Stream stream = (Stream) connection.getState();
+
+            // An open stream keeps its subscription alive; streams for expired subscriptions are closed.
+            final Long minerId = _subscriptionRegistry.touchSubscription(stream.subscriptionIdHex);
+            if (minerId == null) {
+                _streams.remove(connection);
+                this.closeAfterFlush(connection);
+                continue;
+            }
+
+            this.write(connection, ByteBuffer.wrap(HEARTBEAT));
+        }
+    }
+
+    public WorkStreamServer(final Integer port, final Integer maxConnectionCount, final SubscriptionRegistry subscriptionRegistry, final WorkResponseCache workResponseCache, final WorkPublisher workPublisher, final VariableDifficultyEngine difficultyEngine) {
+        super(port, maxConnectionCount, READ_BUFFER_BYTE_COUNT, MAX_PENDING_WRITE_BYTE_COUNT);
+        _subscriptionRegistry = subscriptionRegistry;
+        _workResponseCache = workResponseCache;
+        _workPublisher = workPublisher;
+        _difficultyEngine = difficultyEngine;
+    }
+
+    @Override
+    public void onNewJob(final Long jobId) {
+        if (! _workResponseCache.isJobCached(jobId)) { return; }
+
+        // Each event is rendered once per difficulty and its bytes are shared by every stream at that difficulty.
+        final HashMap<Integer, byte[]> workEvents = new HashMap<>();
+        for (final Connection connection : _streams) {
+            final Stream stream = (Stream) connection.getState();
+            final Integer workExponent = _difficultyEngine.issueJob(stream.minerId, jobId);
+
+            byte[] workEvent = workEvents.get(workExponent);
+            if (workEvent == null) {
+                workEvent = _createWorkEvent(jobId, workExponent);
+                if (workEvent == null) { return; } // The job was evicted from the cache.
+                workEvents.put(workExponent, workEvent);
+            }
+
+            this.write(connection, ByteBuffer.wrap(workEvent));
+        }
+    }
+
+    public Integer getStreamCount() {
+        return _streams.size();
+    }
+}
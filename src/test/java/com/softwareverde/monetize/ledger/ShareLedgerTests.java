@@ -0,0 +1,153 @@
+package com.softwareverde.monetize.ledger;
+
+import com.softwareverde.database.mysql.MysqlDatabaseConnection;
+import com.softwareverde.database.query.Query;
+import com.softwareverde.database.row.Row;
+import com.softwareverde.monetize.share.ShareReplayCache;
+import com.softwareverde.monetize.test.IntegrationTest;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ShareLedgerTests extends IntegrationTest {
+    protected static final String SUBSCRIPTION_ID_0 = "0000000000000001";
+    protected static final String SUBSCRIPTION_ID_1 = "0000000000000002";
+
+    protected ShareLedger _shareLedger;
+
+    protected Row _getSubscriptionTotal(final String subscriptionId) throws Exception {
+        final List<Row> rows = _query(
+            new Query("SELECT share_count, work, first_share_timestamp, last_share_timestamp FROM subscription_totals WHERE subscription_id = ?")
+                .setParameter(subscriptionId)
+        );
+        return (rows.isEmpty() ? null : rows.get(0));
+    }
+
+    @Before
+    public void before() throws Exception {
+        super.before();
+        _shareLedger = new ShareLedger(_databaseConnectionFactory);
+        _shareLedger.initializeSchema();
+    }
+
+    @Test
+    public void should_write_shares_and_accumulate_subscription_totals() throws Exception {
+        // Setup
+        final ArrayList<ShareLedger.Record> batch0 = new ArrayList<>();
+        batch0.add(new ShareLedger.AcceptedShare(SUBSCRIPTION_ID_0, 1L, 10L, 256L, 2000L));
+        batch0.add(new ShareLedger.AcceptedShare(SUBSCRIPTION_ID_0, 1L, 11L, 512L, 1000L));
+        batch0.add(new ShareLedger.AcceptedShare(SUBSCRIPTION_ID_1, 1L, 12L, 1024L, 1500L));
+        batch0.add(new ShareLedger.ServedResource("/paid/0", ShareLedger.PaymentType.SHARE, SUBSCRIPTION_ID_0, 2000L));
+
+        final ArrayList<ShareLedger.Record> batch1 = new ArrayList<>();
+        batch1.add(new ShareLedger.AcceptedShare(SUBSCRIPTION_ID_0, 2L, 10L, 256L, 3000L));
+        batch1.add(new ShareLedger.ServedResource("/paid/1", ShareLedger.PaymentType.CREDIT, null, 3000L));
+
+        // Action
+        _shareLedger._flush(batch0);
+        _shareLedger._flush(batch1);
+
+        // Assert
+        Assert.assertEquals(Long.valueOf(4L), _queryCount("accepted_shares"));
+        Assert.assertEquals(Long.valueOf(2L), _queryCount("served_resources"));
+        Assert.assertEquals(Long.valueOf(4L), _shareLedger.getWrittenShareCount());
+        Assert.assertEquals(Long.valueOf(2L), _shareLedger.getWrittenResourceCount());
+        Assert.assertEquals(Long.valueOf(0L), _shareLedger.getFailedBatchCount());
+
+        final Row subscriptionTotal0 = _getSubscriptionTotal(SUBSCRIPTION_ID_0);
+        Assert.assertEquals(Long.valueOf(3L), subscriptionTotal0.getLong("share_count"));
+        Assert.assertEquals(Long.valueOf(1024L), subscriptionTotal0.getLong("work"));
+        Assert.assertEquals(Long.valueOf(1000L), subscriptionTotal0.getLong("first_share_timestamp"));
+        Assert.assertEquals(Long.valueOf(3000L), subscriptionTotal0.getLong("last_share_timestamp"));
+
+        final Row subscriptionTotal1 = _getSubscriptionTotal(SUBSCRIPTION_ID_1);
+        Assert.assertEquals(Long.valueOf(1L), subscriptionTotal1.getLong("share_count"));
+        Assert.assertEquals(Long.valueOf(1024L), subscriptionTotal1.getLong("work"));
+        Assert.assertEquals(Long.valueOf(1500L), subscriptionTotal1.getLong("first_share_timestamp"));
+        Assert.assertEquals(Long.valueOf(1500L), subscriptionTotal1.getLong("last_share_timestamp"));
+    }
+
+    @Test
+    public void should_ignore_share_already_written() throws Exception {
+        // Setup
+        final ArrayList<ShareLedger.Record> batch0 = new ArrayList<>();
+        batch0.add(new ShareLedger.AcceptedShare(SUBSCRIPTION_ID_0, 1L, 10L, 256L, 1000L));
+
+        final ArrayList<ShareLedger.Record> batch1 = new ArrayList<>();
+        batch1.add(new ShareLedger.AcceptedShare(SUBSCRIPTION_ID_1, 1L, 10L, 256L, 2000L)); // Re-admitted after a restart...
+        batch1.add(new ShareLedger.AcceptedShare(SUBSCRIPTION_ID_1, 1L, 11L, 256L, 2000L));
+
+        // Action
+        _shareLedger._flush(batch0);
+        _shareLedger._flush(batch1);
+
+        // Assert
+        Assert.assertEquals(Long.valueOf(0L), _shareLedger.getFailedBatchCount());
+        Assert.assertEquals(Long.valueOf(2L), _queryCount("accepted_shares"));
+
+        final List<Row> rows = _query(
+            new Query("SELECT subscription_id FROM accepted_shares WHERE job_id = ? AND share_fingerprint = ?")
+                .setParameter(1L)
+                .setParameter(10L)
+        );
+        Assert.assertEquals(1, rows.size());
+        Assert.assertEquals(SUBSCRIPTION_ID_0, rows.get(0).getString("subscription_id"));
+
+        final Row subscriptionTotal1 = _getSubscriptionTotal(SUBSCRIPTION_ID_1); // Only the share that was actually written is counted...
+        Assert.assertEquals(Long.valueOf(1L), subscriptionTotal1.getLong("share_count"));
+        Assert.assertEquals(Long.valueOf(256L), subscriptionTotal1.getLong("work"));
+        Assert.assertEquals(Long.valueOf(2L), _shareLedger.getWrittenShareCount());
+    }
+
+    @Test
+    public void should_roll_back_entire_batch_when_a_write_fails() throws Exception {
+        // Setup
+        try (final MysqlDatabaseConnection databaseConnection = _databaseConnectionFactory.newConnection()) {
+            databaseConnection.executeDdl("DROP TABLE served_resources"); // Fails the batch after its shares are written...
+        }
+
+        final ArrayList<ShareLedger.Record> batch = new ArrayList<>();
+        batch.add(new ShareLedger.AcceptedShare(SUBSCRIPTION_ID_0, 1L, 10L, 256L, 1000L));
+        batch.add(new ShareLedger.ServedResource("/paid/0", ShareLedger.PaymentType.SHARE, SUBSCRIPTION_ID_0, 1000L));
+
+        // Action
+        _shareLedger._flush(batch);
+
+        // Assert
+        Assert.assertEquals(Long.valueOf(1L), _shareLedger.getFailedBatchCount());
+        Assert.assertEquals(Long.valueOf(2L), _shareLedger.getDroppedRecordCount());
+        Assert.assertEquals(Long.valueOf(0L), _shareLedger.getWrittenShareCount());
+        Assert.assertEquals(Long.valueOf(0L), _queryCount("accepted_shares"));
+        Assert.assertNull(_getSubscriptionTotal(SUBSCRIPTION_ID_0));
+    }
+
+    @Test
+    public void should_restore_shares_accepted_within_window() throws Exception {
+        // Setup
+        final long now = System.currentTimeMillis();
+        final Long windowMs = (10L * 60L * 1000L);
+
+        final ArrayList<ShareLedger.Record> batch = new ArrayList<>();
+        batch.add(new ShareLedger.AcceptedShare(SUBSCRIPTION_ID_0, 1L, 10L, 256L, (now - (2L * windowMs))));
+        batch.add(new ShareLedger.AcceptedShare(SUBSCRIPTION_ID_0, 2L, 20L, 256L, (now - 1000L)));
+        batch.add(new ShareLedger.AcceptedShare(SUBSCRIPTION_ID_1, 2L, 21L, 256L, now));
+        _shareLedger._flush(batch);
+
+        final ShareReplayCache shareReplayCache = new ShareReplayCache();
+
+        // Action
+        final Integer restoredShareCount = _shareLedger.restoreReplayCache(shareReplayCache, windowMs);
+
+        // Assert
+        Assert.assertEquals(Integer.valueOf(2), restoredShareCount);
+        Assert.assertEquals(Long.valueOf(2L), shareReplayCache.getShareCount());
+        Assert.assertFalse(shareReplayCache.contains(1L, 10L));
+        Assert.assertTrue(shareReplayCache.contains(2L, 20L));
+        Assert.assertTrue(shareReplayCache.contains(2L, 21L));
+        Assert.assertFalse(shareReplayCache.add(2L, 20L));
+        Assert.assertEquals(Long.valueOf(now), shareReplayCache.getLastShareTimestamp(2L)); // The job keeps the age of its last accepted share...
+    }
+}
@@ -0,0 +1,60 @@
+package com.softwareverde.monetize.ratelimit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TokenBucketRateLimiterTests {
+    @Test
+    public void should_reject_request_once_burst_is_spent() {
+        // Setup
+        final TokenBucketRateLimiter rateLimiter = new TokenBucketRateLimiter(1L, 2, 16);
+
+        // Action
+        final boolean wasFirstAcquired = rateLimiter.tryAcquire("a");
+        final boolean wasSecondAcquired = rateLimiter.tryAcquire("a");
+        final boolean wasThirdAcquired = rateLimiter.tryAcquire("a");
+        final boolean wasOtherKeyAcquired = rateLimiter.tryAcquire("b");
+
+        // Assert
+        Assert.assertTrue(wasFirstAcquired);
+        Assert.assertTrue(wasSecondAcquired);
+        Assert.assertFalse(wasThirdAcquired);
+        Assert.assertTrue(wasOtherKeyAcquired);
+        Assert.assertEquals(Long.valueOf(1L), rateLimiter.getRejectedCount());
+    }
+
+    @Test
+    public void should_not_forgive_debt_of_throttled_keys_when_full() {
+        // Setup
+        final TokenBucketRateLimiter rateLimiter = new TokenBucketRateLimiter(1L, 1, 2);
+        Assert.assertTrue(rateLimiter.tryAcquire("a"));
+        Assert.assertTrue(rateLimiter.tryAcquire("b"));
+
+        // Action
+        final boolean wasNewKeyAcquired = rateLimiter.tryAcquire("c");
+        final boolean wasOtherNewKeyAcquired = rateLimiter.tryAcquire("d");
+        final boolean wasThrottledKeyAcquired = rateLimiter.tryAcquire("a");
+
+        // Assert
+        Assert.assertTrue(wasNewKeyAcquired); // Served by the overflow bucket...
+        Assert.assertFalse(wasOtherNewKeyAcquired); // ...which is shared by every new key while the table is full.
+        Assert.assertFalse(wasThrottledKeyAcquired);
+        Assert.assertEquals(Integer.valueOf(2), rateLimiter.getBucketCount());
+    }
+
+    @Test
+    public void should_evict_full_bucket_to_make_room_for_new_key() throws Exception {
+        // Setup
+        final TokenBucketRateLimiter rateLimiter = new TokenBucketRateLimiter(60000L, 1, 1); // Refills every millisecond...
+        Assert.assertTrue(rateLimiter.tryAcquire("a"));
+        Thread.sleep(10L);
+
+        // Action
+        final boolean wasNewKeyAcquired = rateLimiter.tryAcquire("b");
+
+        // Assert
+        Assert.assertTrue(wasNewKeyAcquired);
+        Assert.assertTrue(rateLimiter._buckets.containsKey("b")); // Its own bucket rather than the overflow bucket...
+        Assert.assertFalse(rateLimiter._buckets.containsKey("a"));
+    }
+}
@@ -0,0 +1,109 @@
+package com.softwareverde.monetize.share;
+
+import com.softwareverde.util.HexUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+
+public class MidstateSha256Tests {
+    protected static byte[] _sha256(final byte[] bytes) throws Exception {
+        return MessageDigest.getInstance("SHA-256").digest(bytes);
+    }
+
+    protected static byte[] _hash(final MidstateSha256 sha256, final byte[] bytes) {
+        final int[] state = new int[MidstateSha256.STATE_INT_COUNT];
+        MidstateSha256.initialize(state);
+
+        final byte[] output = new byte[MidstateSha256.HASH_BYTE_COUNT];
+        sha256.finish(state, 0L, bytes, 0, bytes.length, output, 0);
+        return output;
+    }
+
+    @Test
+    public void should_match_fips_180_test_vectors() {
+        // Setup
+        final MidstateSha256 sha256 = new MidstateSha256();
+        final byte[] millionAs = new byte[1000000];
+        Arrays.fill(millionAs, (byte) 'a');
+
+        // Action
+        final byte[] emptyHash = _hash(sha256, new byte[0]);
+        final byte[] abcHash = _hash(sha256, "abc".getBytes(StandardCharsets.US_ASCII));
+        final byte[] twoBlockHash = _hash(sha256, "abcdbcdecdefdefgefghfghighijhijkijkljklmklmnlmnomnopnopq".getBytes(StandardCharsets.US_ASCII));
+        final byte[] millionAsHash = _hash(sha256, millionAs);
+
+        // Assert
+        Assert.assertArrayEquals(HexUtil.hexStringToByteArray("E3B0C44298FC1C149AFBF4C8996FB92427AE41E4649B934CA495991B7852B855"), emptyHash);
+        Assert.assertArrayEquals(HexUtil.hexStringToByteArray("BA7816BF8F01CFEA414140DE5DAE2223B00361A396177A9CB410FF61F20015AD"), abcHash);
+        Assert.assertArrayEquals(HexUtil.hexStringToByteArray("248D6A61D20638B8E5C026930C3E6039A33CE45964FF2167F6ECEDD419DB06C1"), twoBlockHash);
+        Assert.assertArrayEquals(HexUtil.hexStringToByteArray("CDC76E5C9914FB9281A1C7E284D73E67F1809A48A497200E046D39CCC7112CD0"), millionAsHash);
+    }
+
+    @Test
+    public void should_match_message_digest_for_random_inputs() throws Exception {
+        // Setup
+        final MidstateSha256 sha256 = new MidstateSha256();
+        final Random random = new Random(0L);
+
+        for (int byteCount = 0; byteCount <= 300; ++byteCount) { // Covers every padding boundary of the first few blocks...
+            final byte[] bytes = new byte[byteCount];
+            random.nextBytes(bytes);
+
+            // Action
+            final byte[] hash = _hash(sha256, bytes);
+
+            // Assert
+            Assert.assertArrayEquals(_sha256(bytes), hash);
+        }
+    }
+
+    @Test
+    public void should_resume_hash_from_midstate() throws Exception {
+        // Setup
+        final MidstateSha256 sha256 = new MidstateSha256();
+        final Random random = new Random(1L);
+
+        for (int byteCount = 0; byteCount <= 300; ++byteCount) {
+            final byte[] bytes = new byte[byteCount];
+            random.nextBytes(bytes);
+
+            final int prefixByteCount = random.nextInt(byteCount + 1);
+            final int[] midstate = new int[MidstateSha256.STATE_INT_COUNT];
+            MidstateSha256.initialize(midstate);
+
+            // Action
+            final int consumedByteCount = sha256.compressBlocks(midstate, bytes, 0, prefixByteCount);
+            final int[] savedMidstate = Arrays.copyOf(midstate, midstate.length);
+            final byte[] hash = new byte[MidstateSha256.HASH_BYTE_COUNT];
+            sha256.finish(midstate, consumedByteCount, bytes, consumedByteCount, (byteCount - consumedByteCount), hash, 0);
+
+            // Assert
+            Assert.assertEquals(0, (consumedByteCount % MidstateSha256.BLOCK_BYTE_COUNT));
+            Assert.assertArrayEquals(savedMidstate, midstate);
+            Assert.assertArrayEquals(_sha256(bytes), hash);
+        }
+    }
+
+    @Test
+    public void should_double_hash_in_place() throws Exception {
+        // Setup
+        final MidstateSha256 sha256 = new MidstateSha256();
+        final Random random = new Random(2L);
+
+        for (int byteCount = 32; byteCount <= 160; ++byteCount) {
+            final byte[] bytes = new byte[byteCount];
+            random.nextBytes(bytes);
+            final byte[] expectedHash = _sha256(_sha256(bytes));
+
+            // Action
+            sha256.doubleHash(bytes, 0, byteCount, bytes, 0);
+
+            // Assert
+            Assert.assertArrayEquals(expectedHash, Arrays.copyOf(bytes, MidstateSha256.HASH_BYTE_COUNT));
+        }
+    }
+}
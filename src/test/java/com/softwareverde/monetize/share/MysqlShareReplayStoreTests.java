@@ -0,0 +1,204 @@
+package com.softwareverde.monetize.share;
+
+import com.softwareverde.database.mysql.MysqlDatabaseConnectionFactory;
+import com.softwareverde.database.query.Query;
+import com.softwareverde.monetize.test.IntegrationTest;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class MysqlShareReplayStoreTests extends IntegrationTest {
+    protected static final Long TIMEOUT_MS = 5000L;
+    protected static final Long JOB_ID = 7L;
+
+    protected final ArrayList<MysqlShareReplayStore> _shareReplayStores = new ArrayList<>();
+    protected ExecutorService _executorService;
+
+    protected MysqlShareReplayStore _startShareReplayStore(final MysqlDatabaseConnectionFactory databaseConnectionFactory, final Long batchIntervalMs, final Long retentionMs) throws Exception {
+        final MysqlShareReplayStore shareReplayStore = new MysqlShareReplayStore(databaseConnectionFactory, MysqlShareReplayStore.DEFAULT_BATCH_SIZE, batchIntervalMs, MysqlShareReplayStore.DEFAULT_QUEUE_DEPTH, TIMEOUT_MS, MysqlShareReplayStore.DEFAULT_BLOOM_FILTER_SHARE_COUNT, retentionMs);
+        _shareReplayStores.add(shareReplayStore);
+        shareReplayStore.start();
+        return shareReplayStore;
+    }
+
+    protected Future<Boolean> _addAsync(final MysqlShareReplayStore shareReplayStore, final long jobId, final long shareFingerprint) {
+        return _executorService.submit(() -> shareReplayStore.add(jobId, shareFingerprint));
+    }
+
+    protected void _insertSpentShare(final Long jobId, final Long shareFingerprint, final Long batchId, final Long timestamp) throws Exception {
+        _executeSql(
+            new Query("INSERT INTO spent_shares (job_id, share_fingerprint, batch_id, timestamp) VALUES (?, ?, ?, ?)")
+                .setParameter(jobId)
+                .setParameter(shareFingerprint)
+                .setParameter(batchId)
+                .setParameter(timestamp)
+        );
+    }
+
+    protected Boolean _isShareStored(final Long jobId, final Long shareFingerprint) throws Exception {
+        return (! _query(
+            new Query("SELECT 1 FROM spent_shares WHERE job_id = ? AND share_fingerprint = ?")
+                .setParameter(jobId)
+                .setParameter(shareFingerprint)
+        ).isEmpty());
+    }
+
+    @Before
+    public void before() throws Exception {
+        super.before();
+        new MysqlShareReplayStore(_databaseConnectionFactory, TIMEOUT_MS).initializeSchema();
+        _executorService = Executors.newFixedThreadPool(16);
+    }
+
+    @After
+    public void after() {
+        for (final MysqlShareReplayStore shareReplayStore : _shareReplayStores) {
+            shareReplayStore.stop();
+        }
+        _shareReplayStores.clear();
+        _executorService.shutdownNow();
+    }
+
+    @Test
+    public void should_accept_each_share_on_exactly_one_of_two_stores() throws Exception {
+        // Setup
+        final MysqlShareReplayStore shareReplayStore0 = _startShareReplayStore(_databaseConnectionFactory, MysqlShareReplayStore.DEFAULT_BATCH_INTERVAL_MS, MysqlShareReplayStore.DEFAULT_RETENTION_MS);
+        final MysqlShareReplayStore shareReplayStore1 = _startShareReplayStore(_databaseConnectionFactory, MysqlShareReplayStore.DEFAULT_BATCH_INTERVAL_MS, MysqlShareReplayStore.DEFAULT_RETENTION_MS);
+        final int shareCount = 200;
+
+        // Action
+        final List<Future<Boolean>> results0 = new ArrayList<>(shareCount);
+        final List<Future<Boolean>> results1 = new ArrayList<>(shareCount);
+        for (int i = 0; i < shareCount; ++i) {
+            results0.add(_addAsync(shareReplayStore0, JOB_ID, i));
+            results1.add(_addAsync(shareReplayStore1, JOB_ID, i));
+        }
+
+        // Assert
+        for (int i = 0; i < shareCount; ++i) {
+            final boolean isAccepted0 = results0.get(i).get();
+            final boolean isAccepted1 = results1.get(i).get();
+            Assert.assertTrue("Share " + i + " was not accepted exactly once.", (isAccepted0 != isAccepted1));
+        }
+        Assert.assertEquals(Long.valueOf(shareCount), Long.valueOf(shareReplayStore0.getShareCount() + shareReplayStore1.getShareCount()));
+        Assert.assertEquals(Long.valueOf(shareCount), _queryCount("spent_shares"));
+        Assert.assertEquals(Long.valueOf(0L), Long.valueOf(shareReplayStore0.getFailedShareCount() + shareReplayStore1.getFailedShareCount()));
+    }
+
+    @Test
+    public void should_only_accept_shares_won_by_own_batch() throws Exception {
+        // Setup
+        final MysqlShareReplayStore shareReplayStore = _startShareReplayStore(_databaseConnectionFactory, 200L, MysqlShareReplayStore.DEFAULT_RETENTION_MS); // Groups the concurrent claims into one batch...
+        final long foreignShareFingerprint = 999L;
+        _insertSpentShare(JOB_ID, foreignShareFingerprint, 12345L, System.currentTimeMillis()); // Spent by another node...
+        final int shareCount = 50;
+
+        // Action
+        final List<Future<Boolean>> results = new ArrayList<>(shareCount);
+        for (int i = 0; i < shareCount; ++i) {
+            results.add(_addAsync(shareReplayStore, JOB_ID, i));
+        }
+        final Future<Boolean> duplicateResult = _addAsync(shareReplayStore, JOB_ID, 0L);
+        final Future<Boolean> foreignResult = _addAsync(shareReplayStore, JOB_ID, foreignShareFingerprint);
+
+        // Assert
+        int acceptedCount = 0;
+        for (final Future<Boolean> result : results) {
+            if (result.get()) { acceptedCount += 1; }
+        }
+        final boolean isDuplicateAccepted = duplicateResult.get();
+        Assert.assertEquals(shareCount - (isDuplicateAccepted ? 1 : 0), acceptedCount); // Exactly one of the claims of share 0 wins...
+        Assert.assertFalse(foreignResult.get());
+        Assert.assertTrue(shareReplayStore.contains(JOB_ID, foreignShareFingerprint));
+        Assert.assertTrue(shareReplayStore.contains(JOB_ID, 0L));
+        Assert.assertFalse(shareReplayStore.contains(JOB_ID, shareCount));
+        Assert.assertEquals(Long.valueOf(shareCount), shareReplayStore.getShareCount());
+        Assert.assertEquals(Long.valueOf(2L), shareReplayStore.getRejectedShareCount());
+        Assert.assertEquals(Long.valueOf(shareCount + 1L), _queryCount("spent_shares"));
+    }
+
+    @Test
+    public void should_only_look_up_shares_seen_by_own_node() throws Exception {
+        // Setup
+        final MysqlShareReplayStore shareReplayStore = _startShareReplayStore(_databaseConnectionFactory, MysqlShareReplayStore.DEFAULT_BATCH_INTERVAL_MS, MysqlShareReplayStore.DEFAULT_RETENTION_MS);
+        _insertSpentShare(JOB_ID, 3L, 12345L, System.currentTimeMillis()); // Spent by another node...
+        Assert.assertTrue(shareReplayStore.add(JOB_ID, 1L));
+
+        // Action
+        final boolean isSpentShareContained = shareReplayStore.contains(JOB_ID, 1L);
+        final boolean isUnspentShareContained = shareReplayStore.contains(JOB_ID, 2L);
+        final boolean isForeignShareContained = shareReplayStore.contains(JOB_ID, 3L);
+        final boolean isForeignShareAccepted = shareReplayStore.add(JOB_ID, 3L);
+
+        // Assert
+        Assert.assertTrue(isSpentShareContained);
+        Assert.assertFalse(isUnspentShareContained);
+        Assert.assertFalse(isForeignShareContained); // Not yet seen by this node, so not looked up...
+        Assert.assertFalse(isForeignShareAccepted); // ...but the claim is still rejected by the database.
+        Assert.assertEquals(Long.valueOf(1L), shareReplayStore.getExactLookupCount());
+        Assert.assertEquals(Long.valueOf(2L), shareReplayStore.getSkippedLookupCount());
+        Assert.assertTrue(shareReplayStore.contains(JOB_ID, 3L));
+    }
+
+    @Test
+    public void should_reject_shares_of_retired_job_without_claiming_them() throws Exception {
+        // Setup
+        final MysqlShareReplayStore shareReplayStore = _startShareReplayStore(_databaseConnectionFactory, MysqlShareReplayStore.DEFAULT_BATCH_INTERVAL_MS, MysqlShareReplayStore.DEFAULT_RETENTION_MS);
+
+        // Action
+        shareReplayStore.retireJob(JOB_ID);
+        final boolean isAccepted = shareReplayStore.add(JOB_ID, 1L);
+        final boolean isOtherJobAccepted = shareReplayStore.add(JOB_ID + 1L, 1L);
+
+        // Assert
+        Assert.assertTrue(shareReplayStore.isJobRetired(JOB_ID));
+        Assert.assertFalse(isAccepted);
+        Assert.assertTrue(isOtherJobAccepted);
+        Assert.assertFalse(_isShareStored(JOB_ID, 1L));
+        Assert.assertEquals(Long.valueOf(1L), _queryCount("spent_shares"));
+    }
+
+    @Test
+    public void should_purge_shares_older_than_retention_period() throws Exception {
+        // Setup
+        final Long retentionMs = 60000L;
+        final MysqlShareReplayStore shareReplayStore = _startShareReplayStore(_databaseConnectionFactory, MysqlShareReplayStore.DEFAULT_BATCH_INTERVAL_MS, retentionMs);
+        _insertSpentShare(JOB_ID, 1L, 12345L, (System.currentTimeMillis() - (2L * retentionMs)));
+
+        // Action
+        final boolean isAccepted = shareReplayStore.add(JOB_ID, 2L);
+
+        final long deadline = (System.currentTimeMillis() + TIMEOUT_MS);
+        while ( _isShareStored(JOB_ID, 1L) && (System.currentTimeMillis() < deadline) ) {
+            Thread.sleep(50L);
+        }
+
+        // Assert
+        Assert.assertTrue(isAccepted);
+        Assert.assertFalse(_isShareStored(JOB_ID, 1L));
+        Assert.assertTrue(_isShareStored(JOB_ID, 2L));
+    }
+
+    @Test
+    public void should_reject_shares_when_database_is_unavailable() throws Exception {
+        // Setup
+        final MysqlShareReplayStore shareReplayStore = _startShareReplayStore(_createUnavailableDatabaseConnectionFactory(), MysqlShareReplayStore.DEFAULT_BATCH_INTERVAL_MS, MysqlShareReplayStore.DEFAULT_RETENTION_MS);
+
+        // Action
+        final boolean isAccepted = shareReplayStore.add(JOB_ID, 1L);
+        final boolean isContained = shareReplayStore.contains(JOB_ID, 1L);
+
+        // Assert
+        Assert.assertFalse(isAccepted);
+        Assert.assertFalse(isContained);
+        Assert.assertTrue(shareReplayStore.getFailedShareCount() >= 1L);
+        Assert.assertEquals(Long.valueOf(0L), shareReplayStore.getShareCount());
+    }
+}
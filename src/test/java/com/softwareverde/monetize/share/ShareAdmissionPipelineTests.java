@@ -0,0 +1,134 @@
+package com.softwareverde.monetize.share;
+
+import com.softwareverde.constable.bytearray.ByteArray;
+import com.softwareverde.json.Json;
+import com.softwareverde.monetize.difficulty.VariableDifficultyEngine;
+import com.softwareverde.monetize.subscription.SubscriptionRegistry;
+import com.softwareverde.monetize.work.WorkResponseCache;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ShareAdmissionPipelineTests {
+    protected static final Long JOB_ID = 170L;
+    protected static final String JOB_ID_HEX = "AA";
+    protected static final String SUBSCRIPTION_ID_HEX = "0000000000000001";
+    protected static final Long MINER_ID = 1L;
+    protected static final Integer WORK_EXPONENT = 10;
+
+    protected ShareReplayCache _shareReplayCache;
+    protected WorkResponseCache _workResponseCache;
+    protected ShareAdmissionPipeline _shareAdmissionPipeline;
+
+    protected static Json _createShare(final String extraNonce2Hex, final String timestampHex) {
+        final Json workerSubmitMessage = new Json(true);
+        workerSubmitMessage.add(SUBSCRIPTION_ID_HEX);
+        workerSubmitMessage.add(JOB_ID_HEX);
+        workerSubmitMessage.add(extraNonce2Hex);
+        workerSubmitMessage.add(timestampHex);
+        workerSubmitMessage.add(ShareHashCalculatorTests.NONCE);
+        return workerSubmitMessage;
+    }
+
+    protected static Json _createMinerNotifyMessage(final Json notifyParameters) {
+        final Json minerNotifyMessageJson = new Json(false);
+        minerNotifyMessageJson.put("id", null);
+        minerNotifyMessageJson.put("method", "mining.notify");
+        minerNotifyMessageJson.put("params", notifyParameters);
+        return minerNotifyMessageJson;
+    }
+
+    protected static String _offsetJobTimestamp(final long offsetSeconds) {
+        final long jobTimestamp = ShareUtil.parseHexLong(ShareHashCalculatorTests.TIMESTAMP);
+        return String.format("%08X", (jobTimestamp + offsetSeconds));
+    }
+
+    @Before
+    public void before() {
+        final SubscriptionRegistry subscriptionRegistry = new SubscriptionRegistry(new SubscriptionRegistry.RemovalCallback() {
+            @Override
+            public void onSubscriptionRemoved(final Long minerId) { }
+        });
+        final int extraNonce2ByteCount = (ShareHashCalculatorTests.EXTRA_NONCE_2.length() / 2);
+        subscriptionRegistry.addSubscription(ByteArray.fromHexString(SUBSCRIPTION_ID_HEX), MINER_ID, ByteArray.fromHexString(ShareHashCalculatorTests.EXTRA_NONCE_1), extraNonce2ByteCount, "127.0.0.1");
+
+        _workResponseCache = new WorkResponseCache();
+        _workResponseCache.cacheJob(JOB_ID, _createMinerNotifyMessage(ShareHashCalculatorTests._createNotifyParameters()));
+
+        final JobRegistry jobRegistry = new JobRegistry();
+        jobRegistry.recordJob(JOB_ID);
+
+        final VariableDifficultyEngine difficultyEngine = new VariableDifficultyEngine(WORK_EXPONENT, WORK_EXPONENT, WORK_EXPONENT, VariableDifficultyEngine.DEFAULT_TARGET_SHARE_INTERVAL_MS, VariableDifficultyEngine.DEFAULT_RETARGET_INTERVAL_MS);
+        difficultyEngine.issueJob(MINER_ID, JOB_ID);
+
+        _shareReplayCache = new ShareReplayCache();
+        _shareAdmissionPipeline = new ShareAdmissionPipeline(null, _shareReplayCache, jobRegistry, new ShareIdentifierCalculator(), subscriptionRegistry, _workResponseCache, difficultyEngine);
+    }
+
+    @Test
+    public void should_identify_block_candidate_with_subscription_extra_nonce_2_length_and_job_timestamp() {
+        // Setup
+        final Json workerSubmitMessage = _createShare(ShareHashCalculatorTests.EXTRA_NONCE_2, ShareHashCalculatorTests.TIMESTAMP);
+
+        // Action
+        final Boolean isBlockCandidate = _shareAdmissionPipeline.isBlockCandidate(workerSubmitMessage);
+
+        // Assert
+        Assert.assertTrue(isBlockCandidate);
+    }
+
+    @Test
+    public void should_reject_share_with_extra_nonce_2_length_other_than_subscription() {
+        // Setup
+        final Json shortShare = _createShare("AA0963", ShareHashCalculatorTests.TIMESTAMP);
+        final Json longShare = _createShare(ShareHashCalculatorTests.EXTRA_NONCE_2 + "00", ShareHashCalculatorTests.TIMESTAMP);
+
+        // Action
+        final ShareAdmissionResult shortShareResult = _shareAdmissionPipeline.admit(shortShare);
+        final ShareAdmissionResult longShareResult = _shareAdmissionPipeline.admit(longShare);
+
+        // Assert
+        Assert.assertEquals(ShareAdmissionResult.MALFORMED, shortShareResult);
+        Assert.assertEquals(ShareAdmissionResult.MALFORMED, longShareResult);
+        Assert.assertFalse(_shareAdmissionPipeline.isBlockCandidate(longShare));
+    }
+
+    @Test
+    public void should_reject_share_with_timestamp_outside_of_job_window() {
+        // Setup
+        final Json earlyShare = _createShare(ShareHashCalculatorTests.EXTRA_NONCE_2, _offsetJobTimestamp(-1L));
+        final Json lateShare = _createShare(ShareHashCalculatorTests.EXTRA_NONCE_2, _offsetJobTimestamp(ShareAdmissionPipeline.MAX_TIMESTAMP_ROLL_SECONDS + 1L));
+        final Json latestShare = _createShare(ShareHashCalculatorTests.EXTRA_NONCE_2, _offsetJobTimestamp(ShareAdmissionPipeline.MAX_TIMESTAMP_ROLL_SECONDS));
+
+        // Action
+        final ShareAdmissionResult earlyShareResult = _shareAdmissionPipeline.admit(earlyShare);
+        final ShareAdmissionResult lateShareResult = _shareAdmissionPipeline.admit(lateShare);
+        final ShareAdmissionResult latestShareResult = _shareAdmissionPipeline.admit(latestShare);
+
+        // Assert
+        Assert.assertEquals(ShareAdmissionResult.MALFORMED, earlyShareResult);
+        Assert.assertEquals(ShareAdmissionResult.MALFORMED, lateShareResult);
+        Assert.assertEquals(ShareAdmissionResult.INVALID_WORK, latestShareResult); // Within the window, so it is hashed...
+        Assert.assertFalse(_shareAdmissionPipeline.isBlockCandidate(lateShare));
+    }
+
+    @Test
+    public void should_not_reject_shares_of_new_job_that_reuses_a_retired_job_id() {
+        // Setup
+        final WorkResponseCache previousWorkResponseCache = new WorkResponseCache(); // A job of a previous run, with the same job id...
+        previousWorkResponseCache.cacheJob(JOB_ID, _createMinerNotifyMessage(ShareHashCalculatorTests._createNotifyParameters(_offsetJobTimestamp(-600L))));
+        _shareReplayCache.retireJob(previousWorkResponseCache.getJobKey(JOB_ID)); // As restored from the previous run's snapshot...
+
+        final Json workerSubmitMessage = _createShare(ShareHashCalculatorTests.EXTRA_NONCE_2, _offsetJobTimestamp(1L));
+
+        // Action
+        final ShareAdmissionResult shareAdmissionResult = _shareAdmissionPipeline.admit(workerSubmitMessage);
+        _shareReplayCache.retireJob(_workResponseCache.getJobKey(JOB_ID));
+        final ShareAdmissionResult retiredShareAdmissionResult = _shareAdmissionPipeline.admit(workerSubmitMessage);
+
+        // Assert
+        Assert.assertNotEquals(previousWorkResponseCache.getJobKey(JOB_ID), _workResponseCache.getJobKey(JOB_ID));
+        Assert.assertEquals(ShareAdmissionResult.INVALID_WORK, shareAdmissionResult); // Hashed rather than rejected as stale...
+        Assert.assertEquals(ShareAdmissionResult.STALE_JOB, retiredShareAdmissionResult);
+    }
+}
@@ -0,0 +1,140 @@
+package com.softwareverde.monetize.share;
+
+import com.softwareverde.json.Json;
+import com.softwareverde.util.HexUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class ShareHashCalculatorTests {
+    // Mainnet block 170 (the first block with a non-coinbase transaction), split into the parameters of a job and share.
+    protected static final String PREVIOUS_BLOCK_HASH = "55BD840A78798AD0DA853F68974F3D183E2BD1DB6A842C1FEECF222A00000000";
+    protected static final String COINBASE_HEAD = "01000000010000000000000000000000000000000000000000000000000000000000000000FFFFFFFF0704FFFF001D0102FFFFFFFF0100F2052A01000000434104D46C4968BD";
+    protected static final String EXTRA_NONCE_1 = "E02899D2";
+    protected static final String EXTRA_NONCE_2 = "AA096336";
+    protected static final String COINBASE_TAIL = "7C7A6CE34EEC332B32E42E5F3407E052D64AC625DA6F0718E7B302140434BD725706957C092DB53805B821A85B23A7AC61725BAC00000000";
+    protected static final String MERKLE_BRANCH = "169E1E83E930853391BC6F35F605C6754CFEAD57CF8387639D3B4096C54F18F4";
+    protected static final String VERSION = "00000001";
+    protected static final String DIFFICULTY = "1D00FFFF";
+    protected static final String TIMESTAMP = "496AB951";
+    protected static final String NONCE = "709E3E28";
+    protected static final String BLOCK_HASH = "00000000D1145790A8694403D4063F323D499E655C83426834D4CE2F8DD4A2EE";
+
+    protected static Json _createNotifyParameters() {
+        return _createNotifyParameters(TIMESTAMP);
+    }
+
+    protected static Json _createNotifyParameters(final String timestampHex) {
+        final Json merkleBranches = new Json(true);
+        merkleBranches.add(MERKLE_BRANCH);
+
+        final Json notifyParameters = new Json(true);
+        notifyParameters.add("AA");
+        notifyParameters.add(PREVIOUS_BLOCK_HASH);
+        notifyParameters.add(COINBASE_HEAD);
+        notifyParameters.add(COINBASE_TAIL);
+        notifyParameters.add(merkleBranches);
+        notifyParameters.add(VERSION);
+        notifyParameters.add(DIFFICULTY);
+        notifyParameters.add(timestampHex);
+        notifyParameters.add(true);
+        return notifyParameters;
+    }
+
+    protected static byte[] _toLittleEndian(final String hexString) {
+        final byte[] bytes = HexUtil.hexStringToByteArray(hexString);
+        for (int i = 0; i < (bytes.length / 2); ++i) {
+            final byte value = bytes[i];
+            bytes[i] = bytes[bytes.length - i - 1];
+            bytes[bytes.length - i - 1] = value;
+        }
+        return bytes;
+    }
+
+    protected static byte[] _createTarget(final int value) {
+        final byte[] target = new byte[32];
+        for (int i = 0; i < target.length; ++i) {
+            target[i] = (byte) value;
+        }
+        return target;
+    }
+
+    @Test
+    public void should_calculate_hash_of_mainnet_block() {
+        // Setup
+        final ShareHashCalculator shareHashCalculator = new ShareHashCalculator();
+        final Json notifyParameters = _createNotifyParameters();
+        final byte[] extraNonce1 = HexUtil.hexStringToByteArray(EXTRA_NONCE_1);
+
+        // Action
+        final byte[] blockHash = shareHashCalculator.calculateHash(170L, notifyParameters, extraNonce1, EXTRA_NONCE_2, TIMESTAMP, NONCE);
+
+        // Assert
+        Assert.assertArrayEquals(_toLittleEndian(BLOCK_HASH), blockHash);
+    }
+
+    @Test
+    public void should_identify_mainnet_block_as_block_candidate() {
+        // Setup
+        final ShareHashCalculator shareHashCalculator = new ShareHashCalculator();
+        final Json notifyParameters = _createNotifyParameters();
+        final byte[] extraNonce1 = HexUtil.hexStringToByteArray(EXTRA_NONCE_1);
+
+        // Action
+        final ShareHashCalculator.WorkResult workResult = shareHashCalculator.checkWork(170L, notifyParameters, extraNonce1, EXTRA_NONCE_2, TIMESTAMP, NONCE, _createTarget(0xFF));
+        final ShareHashCalculator.WorkResult hardShareTargetWorkResult = shareHashCalculator.checkWork(170L, notifyParameters, extraNonce1, EXTRA_NONCE_2, TIMESTAMP, NONCE, _createTarget(0x00));
+        final ShareHashCalculator.WorkResult networkTargetWorkResult = shareHashCalculator.checkWork(170L, notifyParameters, extraNonce1, EXTRA_NONCE_2, TIMESTAMP, NONCE, null);
+
+        // Assert
+        Assert.assertEquals(ShareHashCalculator.WorkResult.BLOCK_CANDIDATE, workResult);
+        Assert.assertEquals(ShareHashCalculator.WorkResult.BLOCK_CANDIDATE, hardShareTargetWorkResult);
+        Assert.assertEquals(ShareHashCalculator.WorkResult.BLOCK_CANDIDATE, networkTargetWorkResult);
+    }
+
+    @Test
+    public void should_check_altered_share_against_share_target() {
+        // Setup
+        final ShareHashCalculator shareHashCalculator = new ShareHashCalculator();
+        final Json notifyParameters = _createNotifyParameters();
+        final byte[] extraNonce1 = HexUtil.hexStringToByteArray(EXTRA_NONCE_1);
+        final String alteredNonce = "709E3E29";
+
+        // Action
+        final ShareHashCalculator.WorkResult easyShareTargetWorkResult = shareHashCalculator.checkWork(170L, notifyParameters, extraNonce1, EXTRA_NONCE_2, TIMESTAMP, alteredNonce, _createTarget(0xFF));
+        final ShareHashCalculator.WorkResult hardShareTargetWorkResult = shareHashCalculator.checkWork(170L, notifyParameters, extraNonce1, EXTRA_NONCE_2, TIMESTAMP, alteredNonce, _createTarget(0x00));
+        final ShareHashCalculator.WorkResult networkTargetWorkResult = shareHashCalculator.checkWork(170L, notifyParameters, extraNonce1, EXTRA_NONCE_2, TIMESTAMP, alteredNonce, null);
+
+        // Assert
+        Assert.assertEquals(ShareHashCalculator.WorkResult.SHARE, easyShareTargetWorkResult);
+        Assert.assertEquals(ShareHashCalculator.WorkResult.INVALID, hardShareTargetWorkResult);
+        Assert.assertEquals(ShareHashCalculator.WorkResult.INVALID, networkTargetWorkResult);
+    }
+
+    @Test
+    public void should_not_reuse_cached_header_for_different_extra_nonce() {
+        // Setup
+        final ShareHashCalculator shareHashCalculator = new ShareHashCalculator();
+        final Json notifyParameters = _createNotifyParameters();
+        final byte[] extraNonce1 = HexUtil.hexStringToByteArray(EXTRA_NONCE_1);
+
+        // Action
+        final byte[] otherBlockHash = shareHashCalculator.calculateHash(170L, notifyParameters, extraNonce1, "AA096337", TIMESTAMP, NONCE);
+        final byte[] blockHash = shareHashCalculator.calculateHash(170L, notifyParameters, extraNonce1, EXTRA_NONCE_2, TIMESTAMP, NONCE);
+        final byte[] uncachedBlockHash = shareHashCalculator.calculateHash(null, _createNotifyParameters(), extraNonce1, EXTRA_NONCE_2, TIMESTAMP, NONCE);
+
+        // Assert
+        Assert.assertFalse(Arrays.equals(blockHash, otherBlockHash));
+        Assert.assertArrayEquals(_toLittleEndian(BLOCK_HASH), blockHash);
+        Assert.assertArrayEquals(_toLittleEndian(BLOCK_HASH), uncachedBlockHash);
+    }
+
+    @Test
+    public void should_expand_compact_target() {
+        // Action
+        final byte[] target = ShareHashCalculator.expandCompactTarget(0x1D00FFFFL);
+
+        // Assert
+        Assert.assertArrayEquals(HexUtil.hexStringToByteArray("00000000FFFF0000000000000000000000000000000000000000000000000000"), target);
+    }
+}
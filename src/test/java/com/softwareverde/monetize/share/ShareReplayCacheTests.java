@@ -0,0 +1,245 @@
+package com.softwareverde.monetize.share;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ShareReplayCacheTests {
+    protected static Long _sumJobShareCounts(final ShareReplayCache shareReplayCache) {
+        long shareCount = 0L;
+        for (final Long jobId : shareReplayCache.getJobIds()) {
+            final long[] shareFingerprints = shareReplayCache.getShareFingerprints(jobId);
+            if (shareFingerprints != null) {
+                shareCount += shareFingerprints.length;
+            }
+        }
+        return shareCount;
+    }
+
+    @Test
+    public void should_reject_duplicate_share() {
+        // Setup
+        final ShareReplayCache shareReplayCache = new ShareReplayCache();
+
+        // Action
+        final boolean wasAdded = shareReplayCache.add(1L, 10L);
+        final boolean wasDuplicateAdded = shareReplayCache.add(1L, 10L);
+        final boolean wasOtherJobAdded = shareReplayCache.add(2L, 10L);
+
+        // Assert
+        Assert.assertTrue(wasAdded);
+        Assert.assertFalse(wasDuplicateAdded);
+        Assert.assertTrue(wasOtherJobAdded);
+        Assert.assertTrue(shareReplayCache.contains(1L, 10L));
+        Assert.assertFalse(shareReplayCache.contains(1L, 11L));
+        Assert.assertEquals(Long.valueOf(2L), shareReplayCache.getShareCount());
+    }
+
+    @Test
+    public void should_reject_zero_fingerprint_once_recorded() {
+        // Setup
+        final ShareReplayCache shareReplayCache = new ShareReplayCache();
+
+        // Action
+        final boolean wasAdded = shareReplayCache.add(1L, 0L);
+        final boolean wasDuplicateAdded = shareReplayCache.add(1L, 0L);
+
+        // Assert
+        Assert.assertTrue(wasAdded);
+        Assert.assertFalse(wasDuplicateAdded);
+        Assert.assertTrue(shareReplayCache.contains(1L, 0L));
+    }
+
+    @Test
+    public void should_reject_shares_of_retired_job() {
+        // Setup
+        final ShareReplayCache shareReplayCache = new ShareReplayCache();
+        shareReplayCache.add(1L, 10L);
+        shareReplayCache.add(2L, 20L);
+
+        // Action
+        shareReplayCache.retireJob(1L);
+        shareReplayCache.retireJob(3L); // Not yet seen...
+
+        // Assert
+        Assert.assertTrue(shareReplayCache.isJobRetired(1L));
+        Assert.assertTrue(shareReplayCache.isJobRetired(3L));
+        Assert.assertFalse(shareReplayCache.isJobRetired(2L));
+        Assert.assertFalse(shareReplayCache.add(1L, 10L));
+        Assert.assertFalse(shareReplayCache.add(1L, 11L));
+        Assert.assertFalse(shareReplayCache.add(3L, 30L));
+        Assert.assertFalse(shareReplayCache.contains(1L, 10L));
+        Assert.assertNull(shareReplayCache.getShareFingerprints(1L));
+        Assert.assertEquals(Long.valueOf(1L), shareReplayCache.getShareCount());
+        Assert.assertEquals(Integer.valueOf(1), shareReplayCache.getJobCount());
+        Assert.assertEquals(2, shareReplayCache.getRetiredJobIds().size());
+    }
+
+    @Test
+    public void should_forget_oldest_retired_job_beyond_limit() {
+        // Setup
+        final ShareReplayCache shareReplayCache = new ShareReplayCache(ShareReplayCache.DEFAULT_MAX_SHARE_COUNT, ShareReplayCache.DEFAULT_MAX_JOB_IDLE_MS, 2);
+
+        // Action
+        shareReplayCache.retireJob(1L);
+        shareReplayCache.retireJob(2L);
+        shareReplayCache.retireJob(3L);
+
+        // Assert
+        Assert.assertFalse(shareReplayCache.isJobRetired(1L));
+        Assert.assertTrue(shareReplayCache.isJobRetired(2L));
+        Assert.assertTrue(shareReplayCache.isJobRetired(3L));
+    }
+
+    @Test
+    public void should_keep_age_order_of_remaining_jobs_when_job_is_retired() {
+        // Setup
+        final ShareReplayCache shareReplayCache = new ShareReplayCache(3L, ShareReplayCache.DEFAULT_MAX_JOB_IDLE_MS, ShareReplayCache.DEFAULT_MAX_RETIRED_JOB_COUNT);
+        shareReplayCache.add(1L, 1L);
+        shareReplayCache.add(2L, 1L);
+        shareReplayCache.add(3L, 1L);
+
+        // Action
+        shareReplayCache.retireJob(2L);
+        shareReplayCache.add(4L, 1L);
+        shareReplayCache.add(5L, 1L); // At capacity, so the oldest job is retired...
+
+        // Assert
+        Assert.assertTrue(shareReplayCache.isJobRetired(1L));
+        Assert.assertEquals(3, shareReplayCache.getJobIds().size());
+        Assert.assertEquals(Long.valueOf(3L), shareReplayCache.getJobIds().get(0));
+        Assert.assertEquals(Long.valueOf(4L), shareReplayCache.getJobIds().get(1));
+        Assert.assertEquals(Long.valueOf(5L), shareReplayCache.getJobIds().get(2));
+        Assert.assertEquals(Long.valueOf(3L), shareReplayCache.getShareCount());
+    }
+
+    @Test
+    public void should_retire_oldest_job_when_at_capacity() {
+        // Setup
+        final ShareReplayCache shareReplayCache = new ShareReplayCache(4L, ShareReplayCache.DEFAULT_MAX_JOB_IDLE_MS, ShareReplayCache.DEFAULT_MAX_RETIRED_JOB_COUNT);
+        for (long shareFingerprint = 1L; shareFingerprint <= 4L; ++shareFingerprint) {
+            Assert.assertTrue(shareReplayCache.add(1L, shareFingerprint));
+        }
+
+        // Action
+        final boolean wasAdded = shareReplayCache.add(2L, 1L);
+
+        // Assert
+        Assert.assertTrue(wasAdded);
+        Assert.assertTrue(shareReplayCache.isJobRetired(1L));
+        Assert.assertFalse(shareReplayCache.add(1L, 1L)); // Retired rather than forgotten...
+        Assert.assertEquals(Long.valueOf(1L), shareReplayCache.getShareCount());
+        Assert.assertEquals(1, shareReplayCache.getJobIds().size());
+        Assert.assertEquals(Long.valueOf(2L), shareReplayCache.getJobIds().get(0));
+    }
+
+    @Test
+    public void should_reject_new_shares_when_only_job_is_at_capacity() {
+        // Setup
+        final ShareReplayCache shareReplayCache = new ShareReplayCache(2L, ShareReplayCache.DEFAULT_MAX_JOB_IDLE_MS, ShareReplayCache.DEFAULT_MAX_RETIRED_JOB_COUNT);
+        shareReplayCache.add(1L, 1L);
+        shareReplayCache.add(1L, 2L);
+
+        // Action
+        final boolean wasAdded = shareReplayCache.add(1L, 3L);
+
+        // Assert
+        Assert.assertFalse(wasAdded);
+        Assert.assertFalse(shareReplayCache.isJobRetired(1L));
+        Assert.assertTrue(shareReplayCache.contains(1L, 1L));
+        Assert.assertTrue(shareReplayCache.contains(1L, 2L));
+        Assert.assertEquals(Long.valueOf(2L), shareReplayCache.getShareCount());
+    }
+
+    @Test
+    public void should_retire_idle_job() throws Exception {
+        // Setup
+        final ShareReplayCache shareReplayCache = new ShareReplayCache(ShareReplayCache.DEFAULT_MAX_SHARE_COUNT, 10L, ShareReplayCache.DEFAULT_MAX_RETIRED_JOB_COUNT);
+        shareReplayCache.add(1L, 1L);
+        Thread.sleep(50L);
+
+        // Action
+        shareReplayCache.add(2L, 1L);
+
+        // Assert
+        Assert.assertTrue(shareReplayCache.isJobRetired(1L));
+        Assert.assertEquals(Long.valueOf(1L), shareReplayCache.getShareCount());
+    }
+
+    @Test
+    public void should_restore_job_with_age_of_its_most_recent_share() {
+        // Setup
+        final ShareReplayCache shareReplayCache = new ShareReplayCache(ShareReplayCache.DEFAULT_MAX_SHARE_COUNT, 1000L, ShareReplayCache.DEFAULT_MAX_RETIRED_JOB_COUNT);
+        final long now = System.currentTimeMillis();
+
+        // Action
+        final boolean wasRestored = shareReplayCache.restore(1L, 10L, (now - 6000L));
+        final boolean wasSecondShareRestored = shareReplayCache.restore(1L, 11L, (now - 5000L));
+        final boolean wasOlderShareRestored = shareReplayCache.restore(1L, 12L, (now - 7000L));
+        final Long lastShareTimestamp = shareReplayCache.getLastShareTimestamp(1L);
+        shareReplayCache.add(2L, 20L);
+
+        // Assert
+        Assert.assertTrue(wasRestored);
+        Assert.assertTrue(wasSecondShareRestored);
+        Assert.assertTrue(wasOlderShareRestored);
+        Assert.assertEquals(Long.valueOf(now - 5000L), lastShareTimestamp);
+        Assert.assertTrue(shareReplayCache.isJobRetired(1L)); // Idle for longer than maxJobIdleMs before the restart...
+        Assert.assertFalse(shareReplayCache.isJobRetired(2L));
+        Assert.assertEquals(Long.valueOf(1L), shareReplayCache.getShareCount());
+    }
+
+    @Test
+    public void should_keep_share_count_consistent_while_jobs_are_retired_concurrently() throws Exception {
+        // Setup
+        final ShareReplayCache shareReplayCache = new ShareReplayCache(ShareReplayCache.DEFAULT_MAX_SHARE_COUNT, ShareReplayCache.DEFAULT_MAX_JOB_IDLE_MS, 1000000);
+        final AtomicLong currentJobId = new AtomicLong(1L);
+        final AtomicBoolean isRunning = new AtomicBoolean(true);
+        final AtomicBoolean wasReplayAccepted = new AtomicBoolean(false);
+
+        final List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; ++i) {
+            final long seed = i;
+            final Thread thread = new Thread(() -> {
+                final Random random = new Random(seed);
+                while (isRunning.get()) {
+                    final long jobId = currentJobId.get();
+                    final long shareFingerprint = random.nextLong();
+                    if (shareReplayCache.add(jobId, shareFingerprint)) {
+                        if (shareReplayCache.add(jobId, shareFingerprint)) {
+                            wasReplayAccepted.set(true);
+                        }
+                    }
+                }
+            });
+            threads.add(thread);
+        }
+
+        // Action
+        for (final Thread thread : threads) {
+            thread.start();
+        }
+        for (int i = 0; i < 5000; ++i) {
+            final long jobId = currentJobId.getAndIncrement();
+            shareReplayCache.retireJob(jobId);
+        }
+        isRunning.set(false);
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        // Assert
+        Assert.assertFalse(wasReplayAccepted.get());
+        Assert.assertEquals(_sumJobShareCounts(shareReplayCache), shareReplayCache.getShareCount());
+        for (final Long jobId : shareReplayCache.getJobIds()) {
+            shareReplayCache.retireJob(jobId);
+        }
+        Assert.assertEquals(Long.valueOf(0L), shareReplayCache.getShareCount());
+        Assert.assertEquals(Integer.valueOf(0), shareReplayCache.getJobCount());
+    }
+}
@@ -0,0 +1,52 @@
+package com.softwareverde.monetize.share;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+
+public class ShareReplaySnapshotTests {
+    protected File _file;
+
+    @Before
+    public void before() throws Exception {
+        _file = File.createTempFile("share-replay", ".snapshot");
+    }
+
+    @After
+    public void after() {
+        _file.delete();
+    }
+
+    @Test
+    public void should_restore_shares_retired_jobs_and_job_ages() throws Exception {
+        // Setup
+        final long now = System.currentTimeMillis();
+        final ShareReplayCache shareReplayCache = new ShareReplayCache();
+        shareReplayCache.restore(1L, 10L, (now - 60000L));
+        shareReplayCache.restore(1L, 11L, (now - 50000L));
+        shareReplayCache.add(2L, 20L);
+        shareReplayCache.retireJob(3L);
+
+        final ShareReplaySnapshot shareReplaySnapshot = new ShareReplaySnapshot(_file);
+        final Long savedShareCount = shareReplaySnapshot.save(shareReplayCache);
+
+        final ShareReplayCache restoredShareReplayCache = new ShareReplayCache();
+
+        // Action
+        final Long restoredShareCount = shareReplaySnapshot.restore(restoredShareReplayCache, 60000L);
+
+        // Assert
+        Assert.assertEquals(Long.valueOf(3L), savedShareCount);
+        Assert.assertEquals(Long.valueOf(3L), restoredShareCount);
+        Assert.assertTrue(restoredShareReplayCache.contains(1L, 10L));
+        Assert.assertTrue(restoredShareReplayCache.contains(1L, 11L));
+        Assert.assertTrue(restoredShareReplayCache.contains(2L, 20L));
+        Assert.assertTrue(restoredShareReplayCache.isJobRetired(3L));
+        Assert.assertEquals(Long.valueOf(now - 50000L), restoredShareReplayCache.getLastShareTimestamp(1L));
+        Assert.assertEquals(shareReplayCache.getLastShareTimestamp(2L), restoredShareReplayCache.getLastShareTimestamp(2L));
+        Assert.assertEquals(shareReplayCache.getJobIds(), restoredShareReplayCache.getJobIds());
+    }
+}
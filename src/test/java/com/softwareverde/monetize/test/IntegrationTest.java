@@ -0,0 +1,56 @@
+package com.softwareverde.monetize.test;
+
+import com.softwareverde.database.DatabaseException;
+import com.softwareverde.database.mysql.MysqlDatabaseConnection;
+import com.softwareverde.database.mysql.MysqlDatabaseConnectionFactory;
+import com.softwareverde.database.query.Query;
+import com.softwareverde.database.row.Row;
+import com.softwareverde.test.database.MysqlTestDatabase;
+import org.junit.Before;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.List;
+
+/**
+ * Runs tests against an embedded MariaDB instance, shared by every test and emptied before each one.
+ */
+public abstract class IntegrationTest {
+    protected static final MysqlTestDatabase _database = new MysqlTestDatabase();
+
+    protected MysqlDatabaseConnectionFactory _databaseConnectionFactory;
+
+    /**
+     * Returns a connection factory for a port on which no database is listening.
+     */
+    protected static MysqlDatabaseConnectionFactory _createUnavailableDatabaseConnectionFactory() throws IOException {
+        final int port;
+        try (final ServerSocket serverSocket = new ServerSocket(0)) {
+            port = serverSocket.getLocalPort();
+        }
+        return new MysqlDatabaseConnectionFactory("127.0.0.1", port, "monetize", "root", "");
+    }
+
+    protected List<Row> _query(final Query query) throws DatabaseException {
+        try (final MysqlDatabaseConnection databaseConnection = _databaseConnectionFactory.newConnection()) {
+            return databaseConnection.query(query);
+        }
+    }
+
+    protected void _executeSql(final Query query) throws DatabaseException {
+        try (final MysqlDatabaseConnection databaseConnection = _databaseConnectionFactory.newConnection()) {
+            databaseConnection.executeSql(query);
+        }
+    }
+
+    protected Long _queryCount(final String tableName) throws DatabaseException {
+        final List<Row> rows = _query(new Query("SELECT COUNT(*) AS row_count FROM " + tableName));
+        return rows.get(0).getLong("row_count");
+    }
+
+    @Before
+    public void before() throws Exception {
+        _database.reset();
+        _databaseConnectionFactory = _database.getDatabaseConnectionFactory();
+    }
+}
@@ -0,0 +1,175 @@
+"use strict";
+
+// libauth.js exports itself as window.libauth; workers have no window...
+self.window = self;
+importScripts("/js/libauth.js");
+
+(function() {
+    const BATCH_NONCE_COUNT = 65536; // The number of nonces hashed before yielding to receive new messages.
+    const NONCE_SPACE_SIZE = 4294967296;
+
+    let sha256 = null;
+    const sha256Promise = window.libauth.instantiateSha256().then(function(instance) {
+        sha256 = instance;
+    });
+
+    let currentGeneration = null;
+
+    const hexStringToByteArray = function(hexString) {
+        return window.libauth.hexToBin(hexString);
+    };
+    const byteArrayToHexString = function(byteArray) {
+        return window.libauth.binToHex(byteArray);
+    };
+    const reverseEndian = function(byteArray) {
+        const result = new Uint8Array(byteArray.length);
+        for (let i = 0; i < byteArray.length; i += 1) {
+            result[i] = byteArray[byteArray.length - i - 1];
+        }
+        return result;
+    };
+
+    // Increments the big-endian value stored within byteArray[startIndex, length); returns true if the value overflowed.
+    const increment = function(byteArray, startIndex) {
+        for (let i = (byteArray.length - 1); i >= startIndex; i -= 1) {
+            if (byteArray[i] < 255) {
+                byteArray[i] += 1;
+                return false;
+            }
+            byteArray[i] = 0;
+        }
+        return true;
+    };
+
+    // Returns true if the little-endian hash is less than or equal to the big-endian target.
+    const isTargetSatisfied = function(hash, target) {
+        for (let i = 0; i < 32; i += 1) {
+            const hashByte = hash[31 - i];
+            const targetByte = target[i];
+
+            if (hashByte < targetByte) { return true; }
+            if (hashByte > targetByte) { return false; }
+        }
+        return true;
+    };
+
+    const doubleSha256 = function(bytes) {
+        return sha256.hash(sha256.hash(bytes));
+    };
+
+    // Returns the merkle root in the byte order it is serialized within the block header.
+    const calculateMerkleRoot = function(coinbaseHead, extraNonce, extraNonce2, coinbaseTail, merkleTreeBranches) {
+        const coinbaseTransaction = new Uint8Array(coinbaseHead.length + extraNonce.length + extraNonce2.length + coinbaseTail.length);
+        coinbaseTransaction.set(coinbaseHead, 0);
+        coinbaseTransaction.set(extraNonce, coinbaseHead.length);
+        coinbaseTransaction.set(extraNonce2, coinbaseHead.length + extraNonce.length);
+        coinbaseTransaction.set(coinbaseTail, coinbaseHead.length + extraNonce.length + extraNonce2.length);
+
+        let hash = doubleSha256(coinbaseTransaction);
+        const byteBuffer = new Uint8Array(64);
+        for (let i = 0; i < merkleTreeBranches.length; i += 1) {
+            byteBuffer.set(hash, 0);
+            byteBuffer.set(merkleTreeBranches[i], 32);
+            hash = doubleSha256(byteBuffer);
+        }
+        return hash;
+    };
+
+    const mine = function(message) {
+        const generation = message.generation;
+        const minerNotify = message.minerNotify;
+        const workerIndex = message.workerIndex;
+
+        const shareTarget = hexStringToByteArray(message.shareDifficulty);
+        const extraNonce = hexStringToByteArray(message.extraNonce);
+        const coinbaseHead = hexStringToByteArray(minerNotify[2]);
+        const coinbaseTail = hexStringToByteArray(minerNotify[3]);
+        const merkleTreeBranches = minerNotify[4].map(hexStringToByteArray);
+
+        // The 80-byte header is allocated once; only its nonce (and, rarely, its merkle root) is mutated.
+        const header = new Uint8Array(80);
+        header.set(reverseEndian(hexStringToByteArray(minerNotify[5])), 0);     // Version
+        header.set(hexStringToByteArray(minerNotify[1]), 4);                    // Previous Block Hash
+        header.set(reverseEndian(hexStringToByteArray(minerNotify[7])), 68);    // Timestamp
+        header.set(reverseEndian(hexStringToByteArray(minerNotify[6])), 72);    // Difficulty
+        const headerTail = header.subarray(64, 80);
+
+        // Each worker owns the extraNonce2 values prefixed by its index, so workers never search the same header.
+        const extraNonce2 = new Uint8Array(message.extraNonce2ByteCount);
+        self.crypto.getRandomValues(extraNonce2);
+        const extraNonce2StartIndex = Math.min(2, extraNonce2.length);
+        if (extraNonce2.length > 1) {
+            extraNonce2[0] = workerIndex;
+            extraNonce2[1] = 0; // Leave room to increment without overflowing into another worker's range.
+        }
+
+        let midstate = null;
+        const stateBuffer = new Uint8Array(sha256.init().length);
+        const updateMerkleRoot = function() {
+            header.set(calculateMerkleRoot(coinbaseHead, extraNonce, extraNonce2, coinbaseTail, merkleTreeBranches), 36);
+            // The first 64 bytes of the header are constant for the extraNonce2, so their compression is computed once.
+            midstate = sha256.update(sha256.init(), header.subarray(0, 64));
+        };
+        updateMerkleRoot();
+
+        let nonce = (self.crypto.getRandomValues(new Uint32Array(1))[0]);
+        let searchedNonceCount = 0;
+        let hashCount = 0;
+
+        const mineBatch = function() {
+            if (currentGeneration !== generation) { return; } // The work was abandoned.
+
+            for (let i = 0; i < BATCH_NONCE_COUNT; i += 1) {
+                header[76] = (nonce & 0xFF);
+                header[77] = ((nonce >>> 8) & 0xFF);
+                header[78] = ((nonce >>> 16) & 0xFF);
+                header[79] = ((nonce >>> 24) & 0xFF);
+
+                stateBuffer.set(midstate);
+                const hash = sha256.hash(sha256.final(sha256.update(stateBuffer, headerTail)));
+                hashCount += 1;
+
+                if (isTargetSatisfied(hash, shareTarget)) {
+                    currentGeneration = null;
+                    self.postMessage({
+                        type: "share",
+                        generation: generation,
+                        extraNonce2: byteArrayToHexString(extraNonce2),
+                        timestamp: minerNotify[7],
+                        nonce: byteArrayToHexString(reverseEndian(header.subarray(76, 80))),
+                        hashCount: hashCount
+                    });
+                    return;
+                }
+
+                nonce = ((nonce + 1) >>> 0);
+                searchedNonceCount += 1;
+                if (searchedNonceCount >= NONCE_SPACE_SIZE) {
+                    searchedNonceCount = 0;
+                    increment(extraNonce2, extraNonce2StartIndex);
+                    updateMerkleRoot();
+                }
+            }
+
+            self.setTimeout(mineBatch, 0);
+        };
+
+        mineBatch();
+    };
+
+    self.onmessage = function(event) {
+        const message = event.data;
+        if (message.type == "stop") {
+            currentGeneration = null;
+            return;
+        }
+
+        if (message.type == "mine") {
+            currentGeneration = message.generation;
+            sha256Promise.then(function() {
+                if (currentGeneration !== message.generation) { return; }
+                mine(message);
+            });
+        }
+    };
+})();
@@ -144,7 +144,10 @@
             return byteUtil.reverseEndian(merkleRoot);
         };
 
-        let merkleRoot = calculateMerkleRoot(extraNonce2);
+        // The header is allocated once; only the nonce (and, on overflow, the merkle root) is mutated.
+        const blockHeaderBytes = byteUtil.concatenateBytes(blockVersion, previousBlockHashLe, calculateMerkleRoot(extraNonce2), blockTimestampLe, blockDifficulty, blockNonce);
+        const nonceOffset = 76;
+        const merkleRootOffset = 36;
 
         const startTime = Date.now();
         let hashCount = 0;
@@ -154,14 +157,11 @@
             const didOverflow = byteUtil.increment(blockNonce);
             if (didOverflow) {
                 byteUtil.increment(extraNonce2);
-                merkleRoot = calculateMerkleRoot(extraNonce2);
+                blockHeaderBytes.set(calculateMerkleRoot(extraNonce2), merkleRootOffset);
             }
-
-            const blockHeaderBytes = byteUtil.concatenateBytes(blockVersion, previousBlockHashLe, merkleRoot, blockTimestampLe, blockDifficulty, blockNonce);
-            const blockHashBytes = hashBlock(blockHeaderBytes);
+            blockHeaderBytes.set(blockNonce, nonceOffset);
 
             const blockHash = hashBlock(blockHeaderBytes);
-
             isValid = isDifficultySatisfied(shareDifficultyBytes, blockHash);
 
             hashCount += 1;
@@ -224,7 +224,10 @@
             const subscription = {
                 id: subscriptionId,
                 extraNonce: resultJson[1],
-                extraNonce2ByteCount: resultJson[2]
+                extraNonce2ByteCount: resultJson[2],
+                workStreamPort: (data.workStreamPort || null),
+                socketPort: (data.socketPort || null),
+                resourcePrice: (data.resourcePrice || null)
             };
 
             if (typeof callback == "function") {
@@ -238,22 +241,249 @@
         };
 
         Http.get("/api/v1/monetize/get-work", parameters, function(data) {
+            api._onWork(data, callback);
+        });
+    };
+    api._onWork = function(data, callback) {
+        const resultJson = data.result;
+        if ( (! resultJson) || (resultJson.method != "mining.notify") || (! resultJson.params)) {
+            console.log("Error loading work from stratum.");
+            if (typeof callback == "function") {
+                callback(null, null);
+            }
+            return;
+        }
+
+        const shareDifficulty = resultJson.shareDifficulty;
+        const parametersJson = resultJson.params; // [jobId, previousBlockHash, coinbaseHead, coinbaseTail, [merkleTreeBranches], versionBytes, difficultyBytes, timestampBytes, shouldAbandonOldJobs]
+        if (typeof callback == "function") {
+            callback(shareDifficulty, parametersJson);
+        }
+    };
+    // Submits many shares at once; their work is credited to the subscription and redeemed via the returned access token (cookie).
+    api.submitShares = function(subscriptionId, shares, callback) {
+        const parameters = {
+            subscriptionId: subscriptionId,
+            shares: JSON.stringify(shares)
+        };
+
+        Http.post("/api/v1/monetize/submit-shares", { }, parameters, function(data) {
             const resultJson = data.result;
-            if ( (! resultJson) || (resultJson.method != "mining.notify") || (! resultJson.params)) {
-                console.log("Error loading work from stratum.");
+            if ( (! data.wasSuccess) || (! resultJson) ) {
+                console.log("Error submitting shares: " + data.errorMessage);
                 if (typeof callback == "function") {
-                    callback(null, null);
+                    callback(null);
                 }
                 return;
             }
 
-            const shareDifficulty = resultJson.shareDifficulty;
-            const parametersJson = resultJson.params; // [jobId, previousBlockHash, coinbaseHead, coinbaseTail, [merkleTreeBranches], versionBytes, difficultyBytes, timestampBytes, shouldAbandonOldJobs]
             if (typeof callback == "function") {
-                callback(shareDifficulty, parametersJson);
+                callback(resultJson);
             }
         });
     };
+    api.streamWork = function(subscription, callback) {
+        // The work stream is served over plain http on its own port; browsers block it from https pages.
+        if ( (! subscription.workStreamPort) || (window.location.protocol != "http:") || (typeof EventSource == "undefined") ) {
+            return null;
+        }
+
+        const url = "http://" + window.location.hostname + ":" + subscription.workStreamPort + "/api/v1/monetize/work-stream?subscriptionId=" + encodeURIComponent(subscription.id);
+        const eventSource = new EventSource(url);
+        eventSource.addEventListener("work", function(event) {
+            let data = null;
+            try {
+                data = JSON.parse(event.data);
+            }
+            catch (exception) {
+                console.log("Error parsing streamed work.", exception);
+                return;
+            }
+
+            api._onWork(data, callback);
+        });
+        eventSource.onerror = function() {
+            // Fall back to the work loaded via get-work; the stream is not reconnected.
+            eventSource.close();
+        };
+
+        return eventSource;
+    };
+    // Opens the binary work socket (see BinaryWorkServer) and resumes the subscription; returns null if the socket is unavailable.
+    //  The callback receives each job pushed via the socket, in the same form as api.getWork's callback.
+    api.openSocket = function(subscription, callback) {
+        // The socket is served over plain http on its own port; browsers block it from https pages.
+        if ( (! subscription.socketPort) || (window.location.protocol != "http:") || (typeof WebSocket == "undefined") ) {
+            return null;
+        }
+
+        const socket = {
+            webSocket: new WebSocket("ws://" + window.location.hostname + ":" + subscription.socketPort + "/api/v1/monetize/socket"),
+            isSubscribed: false,
+            nextSequenceNumber: 1,
+            pendingSubmits: { }
+        };
+        socket.webSocket.binaryType = "arraybuffer";
+
+        const readMessage = function(buffer) {
+            const reader = {
+                bytes: new Uint8Array(buffer),
+                view: new DataView(buffer),
+                offset: 1 // Skip the message type...
+            };
+            reader.readUint8 = function() {
+                reader.offset += 1;
+                return reader.view.getUint8(reader.offset - 1);
+            };
+            reader.readUint16 = function() {
+                reader.offset += 2;
+                return reader.view.getUint16(reader.offset - 2);
+            };
+            reader.readUint32 = function() {
+                reader.offset += 4;
+                return reader.view.getUint32(reader.offset - 4);
+            };
+            reader.readUint64 = function() {
+                const high = reader.readUint32();
+                const low = reader.readUint32();
+                return ((high * 4294967296) + low);
+            };
+            reader.readHex = function(byteCount) {
+                reader.offset += byteCount;
+                return hexUtil.byteArrayToHexString(reader.bytes.subarray(reader.offset - byteCount, reader.offset));
+            };
+            return reader;
+        };
+
+        const onNotify = function(reader) {
+            // [u8 workExponent][32 shareTarget][u8 jobIdLength][jobId][32 previousBlockHash][4 version][4 nBits][4 timestamp][u8 cleanJobs]
+            //  [u16 coinbaseHeadLength][coinbaseHead][u16 coinbaseTailLength][coinbaseTail][u8 merkleBranchCount][32 * merkleBranchCount]
+            reader.readUint8(); // workExponent
+            const shareDifficulty = reader.readHex(32);
+            const jobId = reader.readHex(reader.readUint8());
+            const previousBlockHash = reader.readHex(32);
+            const versionBytes = reader.readHex(4);
+            const difficultyBytes = reader.readHex(4);
+            const timestampBytes = reader.readHex(4);
+            const shouldAbandonOldJobs = (reader.readUint8() != 0);
+            const coinbaseHead = reader.readHex(reader.readUint16());
+            const coinbaseTail = reader.readHex(reader.readUint16());
+
+            const merkleTreeBranches = [];
+            const merkleTreeBranchCount = reader.readUint8();
+            for (let i = 0; i < merkleTreeBranchCount; i += 1) {
+                merkleTreeBranches.push(reader.readHex(32));
+            }
+
+            // The miner workers consume the get-work API's mining.notify parameters...
+            const minerNotify = [jobId, previousBlockHash, coinbaseHead, coinbaseTail, merkleTreeBranches, versionBytes, difficultyBytes, timestampBytes, shouldAbandonOldJobs];
+            if (typeof callback == "function") {
+                callback(shareDifficulty, minerNotify);
+            }
+        };
+
+        const onSubmitResult = function(reader) {
+            // [u32 sequenceNumber][u8 resultCode][u64 balance][u8 accessTokenLength][accessToken]
+            const sequenceNumber = reader.readUint32();
+            const resultCode = reader.readUint8();
+            const balance = reader.readUint64();
+            const accessTokenLength = reader.readUint8();
+            const accessToken = String.fromCharCode.apply(null, reader.bytes.subarray(reader.offset, reader.offset + accessTokenLength));
+
+            const pendingSubmit = socket.pendingSubmits[sequenceNumber];
+            delete socket.pendingSubmits[sequenceNumber];
+            if (pendingSubmit) {
+                pendingSubmit({ wasAccepted: (resultCode == 0), balance: balance, accessToken: accessToken });
+            }
+        };
+
+        socket.webSocket.onopen = function() {
+            const subscriptionId = hexUtil.hexStringToByteArray(subscription.id);
+            socket.webSocket.send(byteUtil.concatenateBytes(new Uint8Array([0x01, subscriptionId.length]), subscriptionId));
+        };
+        socket.webSocket.onmessage = function(event) {
+            const reader = readMessage(event.data);
+            const messageType = reader.bytes[0];
+            if (messageType == 0x81) { // SUBSCRIBED
+                socket.isSubscribed = true;
+            }
+            else if (messageType == 0x82) { // NOTIFY
+                onNotify(reader);
+            }
+            else if (messageType == 0x83) { // SUBMIT_RESULT
+                onSubmitResult(reader);
+            }
+            else if (messageType == 0x8F) { // ERROR
+                console.log("Work socket error: " + reader.readUint8());
+            }
+        };
+        socket.webSocket.onclose = function() {
+            // Fall back to the HTTP API; the socket is not reconnected.
+            socket.isSubscribed = false;
+
+            const pendingSubmits = socket.pendingSubmits;
+            socket.pendingSubmits = { };
+            for (const sequenceNumber in pendingSubmits) {
+                pendingSubmits[sequenceNumber](null);
+            }
+        };
+
+        // Submits a single share; the callback receives { wasAccepted, balance, accessToken }, or null if the socket closed.
+        socket.submitShare = function(submitWorkParameters, callback) {
+            const sequenceNumber = socket.nextSequenceNumber;
+            socket.nextSequenceNumber = ((sequenceNumber % 4294967295) + 1);
+            socket.pendingSubmits[sequenceNumber] = callback;
+
+            // [0x02][u32 sequenceNumber][u8 jobIdLength][jobId][u8 extraNonce2Length][extraNonce2][4 timestamp][4 nonce]
+            const jobId = hexUtil.hexStringToByteArray(submitWorkParameters[1]);
+            const extraNonce2 = hexUtil.hexStringToByteArray(submitWorkParameters[2]);
+            const header = new Uint8Array(5);
+            header[0] = 0x02;
+            new DataView(header.buffer).setUint32(1, sequenceNumber);
+            socket.webSocket.send(byteUtil.concatenateBytes(
+                header,
+                new Uint8Array([jobId.length]), jobId,
+                new Uint8Array([extraNonce2.length]), extraNonce2,
+                hexUtil.hexStringToByteArray(submitWorkParameters[3]),
+                hexUtil.hexStringToByteArray(submitWorkParameters[4])
+            ));
+        };
+        // Submits many shares; the callback receives the same result as api.submitShares, or null if no share was credited.
+        socket.submitShares = function(shares, callback) {
+            let pendingShareCount = shares.length;
+            let acceptedShareCount = 0;
+            let lastResult = null;
+            let balance = 0;
+            const onResult = function(result) {
+                pendingShareCount -= 1;
+                if (result) {
+                    lastResult = result;
+                    balance = Math.max(balance, result.balance); // Results may arrive out of order...
+                    acceptedShareCount += (result.wasAccepted ? 1 : 0);
+                }
+                if (pendingShareCount > 0) { return; }
+
+                if (! lastResult) {
+                    callback(null);
+                    return;
+                }
+
+                callback({
+                    acceptedShareCount: acceptedShareCount,
+                    rejectedShareCount: (shares.length - acceptedShareCount),
+                    balance: balance,
+                    resourcePrice: subscription.resourcePrice,
+                    accessToken: lastResult.accessToken
+                });
+            };
+
+            for (let i = 0; i < shares.length; i += 1) {
+                socket.submitShare(shares[i], onResult);
+            }
+        };
+
+        return socket;
+    };
 
     const appendMonetizationParameters = function(srcUrl, blockParameters) {
         const parameterName = "Monetization";
@@ -277,24 +507,208 @@
         return url.toString();
     };
 
-    const loadElement = function(element, subscription, shareDifficulty, minerNotify) {
-        subscription = (subscription || window.Monetize.state.subscription);
-        const blockParameters = window.Monetize.mineBlock(subscription, shareDifficulty, minerNotify);
+    const minerEngine = {
+        workers: [],
+        queue: [],
+        currentRequest: null,
+        generation: 0,
+        isDisabled: false
+    };
+    minerEngine.isAvailable = function() {
+        if (minerEngine.isDisabled) { return false; }
+        if (minerEngine.workers.length > 0) { return true; }
+        if (typeof Worker == "undefined") { return false; }
 
-        const monetizeSrc = element.getAttribute("monetize-src");
-        const monetizeHref = element.getAttribute("monetize-href");
+        try {
+            const workerCount = Math.max(1, Math.min(64, (navigator.hardwareConcurrency || 1)));
+            for (let i = 0; i < workerCount; i += 1) {
+                const worker = new Worker("/js/monetize-worker.js");
+                worker.onmessage = minerEngine._onMessage;
+                worker.onerror = minerEngine._onError;
+                minerEngine.workers.push(worker);
+            }
+        }
+        catch (exception) {
+            console.log("Unable to start miner workers.", exception);
+            minerEngine._onError();
+            return false;
+        }
+
+        return true;
+    };
+    minerEngine._stopWorkers = function() {
+        for (let i = 0; i < minerEngine.workers.length; i += 1) {
+            minerEngine.workers[i].postMessage({ type: "stop" });
+        }
+    };
+    minerEngine._startNextRequest = function() {
+        if (minerEngine.currentRequest || (minerEngine.queue.length == 0)) { return; }
+
+        const request = minerEngine.queue.shift();
+        minerEngine.currentRequest = request;
+        minerEngine.generation += 1;
+        request.startTime = Date.now();
+
+        for (let i = 0; i < minerEngine.workers.length; i += 1) {
+            minerEngine.workers[i].postMessage({
+                type: "mine",
+                generation: minerEngine.generation,
+                workerIndex: i,
+                extraNonce: request.subscription.extraNonce,
+                extraNonce2ByteCount: request.subscription.extraNonce2ByteCount,
+                shareDifficulty: request.shareDifficulty,
+                minerNotify: request.minerNotify
+            });
+        }
+    };
+    minerEngine._onMessage = function(event) {
+        const message = event.data;
+        const request = minerEngine.currentRequest;
+        if ( (message.type != "share") || (! request) || (message.generation != minerEngine.generation) ) { return; }
+
+        minerEngine._stopWorkers();
+        minerEngine.currentRequest = null;
+
+        const elapsed = (Date.now() - request.startTime);
+        console.log("Share found by " + minerEngine.workers.length + " workers in " + elapsed + "ms.");
+
+        const submitWorkParameters = [
+            request.subscription.id,    // workerUsername
+            request.minerNotify[0],     // taskId
+            message.extraNonce2,        // extraNonce2
+            message.timestamp,          // blockTimestamp
+            message.nonce               // blockNonce
+        ];
+
+        try {
+            request.callback(submitWorkParameters);
+        }
+        finally {
+            minerEngine._startNextRequest();
+        }
+    };
+    minerEngine._onError = function() {
+        // Fall back to mining on the main thread for the current and any queued requests.
+        minerEngine.isDisabled = true;
+        for (let i = 0; i < minerEngine.workers.length; i += 1) {
+            minerEngine.workers[i].terminate();
+        }
+        minerEngine.workers = [];
 
+        const requests = minerEngine.queue;
+        if (minerEngine.currentRequest) {
+            requests.unshift(minerEngine.currentRequest);
+        }
+        minerEngine.queue = [];
+        minerEngine.currentRequest = null;
+
+        for (let i = 0; i < requests.length; i += 1) {
+            const request = requests[i];
+            request.callback(mineBlock(request.subscription, request.shareDifficulty, request.minerNotify));
+        }
+    };
+    // Mines a share across all cores; requests are mined one at a time, in the order they are received.
+    minerEngine.mine = function(subscription, shareDifficulty, minerNotify, callback) {
+        minerEngine.queue.push({
+            subscription: subscription,
+            shareDifficulty: shareDifficulty,
+            minerNotify: minerNotify,
+            callback: callback
+        });
+        minerEngine._startNextRequest();
+    };
+
+    // Returns the approximate number of hashes required to find a share for the hex-encoded target.
+    const getShareWork = function(shareDifficulty) {
+        const target = BigInt("0x" + shareDifficulty);
+        return Number((BigInt(1) << BigInt(256)) / (target + BigInt(1)));
+    };
+
+    // Mines enough shares to pay for resourceCount resources and credits them to the subscription in a single request.
+    //  The callback receives the number of resources the resulting credit pays for (which may be zero) and, if the credit was
+    //  purchased via the work socket (which cannot set the access token cookie), the access token to load them with.
+    const purchaseCredit = function(subscription, shareDifficulty, minerNotify, resourceCount, callback) {
+        const socket = window.Monetize.state.socket;
+        const isSocketAvailable = (socket && socket.isSubscribed);
+        const maxShareCount = 64;
+        const shareWork = getShareWork(shareDifficulty);
+        const shareCount = Math.max(1, Math.min(maxShareCount, Math.ceil((resourceCount * subscription.resourcePrice) / shareWork)));
+
+        const shares = [];
+        const onShareFound = function(blockParameters) {
+            shares.push(blockParameters);
+            if (shares.length < shareCount) {
+                minerEngine.mine(subscription, shareDifficulty, minerNotify, onShareFound);
+                return;
+            }
+
+            const onSharesSubmitted = function(result) {
+                const paidResourceCount = (result ? Math.floor(result.balance / result.resourcePrice) : 0);
+                callback(paidResourceCount, ((isSocketAvailable && result) ? result.accessToken : null));
+            };
+
+            if (isSocketAvailable) {
+                socket.submitShares(shares, onSharesSubmitted);
+            }
+            else {
+                api.submitShares(subscription.id, shares, onSharesSubmitted);
+            }
+        };
+        minerEngine.mine(subscription, shareDifficulty, minerNotify, onShareFound);
+    };
+
+    // Loads the element's resource; if blockParameters is null, the request is paid for by the access token cookie.
+    const setElementUrl = function(element, monetizeSrc, monetizeHref, blockParameters) {
         if (monetizeSrc) {
-            const newUrl = appendMonetizationParameters(monetizeSrc, blockParameters);
+            const newUrl = (blockParameters ? appendMonetizationParameters(monetizeSrc, blockParameters) : monetizeSrc);
             element.setAttribute("src", newUrl);
         }
         else if (monetizeHref) {
-            const newUrl = appendMonetizationParameters(monetizeHref, blockParameters);
+            const newUrl = (blockParameters ? appendMonetizationParameters(monetizeHref, blockParameters) : monetizeHref);
             element.setAttribute("href", newUrl);
         }
+    };
+
+    // If accessToken is provided, it is sent as a query parameter instead of relying upon the access token cookie.
+    const loadElementWithCredit = function(element, accessToken) {
+        const tokenParameter = (accessToken ? ("Monetization-Token=" + encodeURIComponent(accessToken)) : null);
+        const appendToken = function(url) {
+            if ( (! url) || (! tokenParameter) ) { return url; }
+            return (url + (url.indexOf("?") < 0 ? "?" : "&") + tokenParameter);
+        };
+
+        const monetizeSrc = element.getAttribute("monetize-src");
+        const monetizeHref = element.getAttribute("monetize-href");
+        element.setAttribute("monetize-src", null);
+        element.setAttribute("monetize-href", null);
 
+        setElementUrl(element, appendToken(monetizeSrc), appendToken(monetizeHref), null);
+    };
+
+    const loadElement = function(element, subscription, shareDifficulty, minerNotify, callback) {
+        subscription = (subscription || window.Monetize.state.subscription);
+        shareDifficulty = (shareDifficulty || window.Monetize.state.shareDifficulty);
+        minerNotify = (minerNotify || window.Monetize.state.minerNotify);
+
+        const monetizeSrc = element.getAttribute("monetize-src");
+        const monetizeHref = element.getAttribute("monetize-href");
         element.setAttribute("monetize-src", null);
         element.setAttribute("monetize-href", null);
+
+        const onShareFound = function(blockParameters) {
+            setElementUrl(element, monetizeSrc, monetizeHref, blockParameters);
+
+            if (typeof callback == "function") {
+                callback(element);
+            }
+        };
+
+        if (minerEngine.isAvailable()) {
+            minerEngine.mine(subscription, shareDifficulty, minerNotify, onShareFound);
+        }
+        else {
+            onShareFound(window.Monetize.mineBlock(subscription, shareDifficulty, minerNotify));
+        }
     };
 
     const monetize = {
@@ -307,7 +721,10 @@
         hashMerkleRoot: hashMerkleRoot,
         hashBlock: hashBlock,
         mineBlock: mineBlock,
+        MinerEngine: minerEngine,
+        purchaseCredit: purchaseCredit,
         loadElement: loadElement,
+        loadElementWithCredit: loadElementWithCredit,
         appendMonetizationParameters: appendMonetizationParameters
     };
 
@@ -319,30 +736,68 @@ window.setTimeout(function() {
         window.Monetize.state.subscription = subscription;
 
         window.Monetize.Api.getWork(subscription.id, function(shareDifficulty, minerNotify) {
+            window.Monetize.state.shareDifficulty = shareDifficulty;
+            window.Monetize.state.minerNotify = minerNotify;
+
             const hrefElements = document.querySelectorAll("[monetize-href]");
             const srcElements = document.querySelectorAll("[monetize-src]");
-
-            for (let i = 0; i < hrefElements.length; i += 1) {
-                const element = hrefElements[i];
-                try {
-                    window.Monetize.loadElement(element, subscription, shareDifficulty, minerNotify);
-                }
-                catch (exception) {
-                    console.log(element, exception);
+            const elements = Array.from(hrefElements).concat(Array.from(srcElements));
+
+            // Elements are mined asynchronously; "load" is dispatched once every element has been loaded.
+            let pendingElementCount = elements.length;
+            const onElementLoaded = function() {
+                pendingElementCount -= 1;
+                if (pendingElementCount == 0) {
+                    window.dispatchEvent(new Event("load"));
                 }
+            };
+
+            if (elements.length == 0) {
+                window.dispatchEvent(new Event("load"));
             }
 
-            for (let i = 0; i < srcElements.length; i += 1) {
-                const element = srcElements[i];
-                try {
-                    window.Monetize.loadElement(element, subscription, shareDifficulty, minerNotify);
-                }
-                catch (exception) {
-                    console.log(element, exception);
+            const loadElements = function(startIndex) {
+                for (let i = startIndex; i < elements.length; i += 1) {
+                    const element = elements[i];
+                    try {
+                        window.Monetize.loadElement(element, subscription, shareDifficulty, minerNotify, onElementLoaded);
+                    }
+                    catch (exception) {
+                        console.log(element, exception);
+                        onElementLoaded();
+                    }
                 }
+            };
+
+            // Pages with several paid elements buy credit with a single batch of shares instead of one share per element.
+            const canPurchaseCredit = ( (elements.length > 1) && subscription.resourcePrice && window.Monetize.MinerEngine.isAvailable() && (typeof BigInt != "undefined") );
+            if (canPurchaseCredit) {
+                window.Monetize.purchaseCredit(subscription, shareDifficulty, minerNotify, elements.length, function(paidResourceCount, accessToken) {
+                    const paidElementCount = Math.min(paidResourceCount, elements.length);
+                    for (let i = 0; i < paidElementCount; i += 1) {
+                        window.Monetize.loadElementWithCredit(elements[i], accessToken);
+                        onElementLoaded();
+                    }
+
+                    loadElements(paidElementCount); // Any elements the credit does not cover are paid for individually.
+                });
+            }
+            else {
+                loadElements(0);
             }
 
-            window.dispatchEvent(new Event("load"));
+            const onNewWork = function(shareDifficulty, minerNotify) {
+                if (! minerNotify) { return; }
+
+                window.Monetize.state.shareDifficulty = shareDifficulty;
+                window.Monetize.state.minerNotify = minerNotify;
+            };
+
+            // New work is pushed via the binary work socket when possible, otherwise via the work stream.
+            window.Monetize.state.socket = window.Monetize.Api.openSocket(subscription, onNewWork);
+            if (! window.Monetize.state.socket) {
+                window.Monetize.state.workStream = window.Monetize.Api.streamWork(subscription, onNewWork);
+            }
         });
     });
 }, 0);